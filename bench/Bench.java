@@ -0,0 +1,214 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Class to measure the throughput and allocation rate of a piece of code
+ * Like JMH, each benchmark runs a number of warmup iterations, then a number of measured iterations of a fixed length.
+ * Allocation is read from the thread's allocation counter and GC activity from the garbage collector beans, which
+ * stands in for JMH's GC profiler. JMH itself can't be used, as it doesn't support benchmarking classes in the default package
+ */
+public class Bench {
+
+    /**
+     * A piece of code being benchmarked
+     */
+    public interface Operation {
+
+        /**
+         * Runs the code once
+         * @return Any value worked out by the code, which is consumed so the work can't be optimised away
+         */
+        long run();
+    }
+
+    /**
+     * The number of warmup iterations, which aren't measured
+     */
+    private final int warmupIterations;
+    /**
+     * The number of measured iterations
+     */
+    private final int iterations;
+    /**
+     * The length of each iteration in nanoseconds
+     */
+    private final long iterationNanos;
+    /**
+     * Only benchmarks whose names contain this are run
+     */
+    private final String filter;
+    /**
+     * Used to read the number of bytes allocated by the benchmark thread
+     */
+    private final com.sun.management.ThreadMXBean threadBean;
+    /**
+     * Collects the values returned by operations, so the work isn't optimised away
+     */
+    private long sink;
+
+    /**
+     * The constructor for Bench
+     * @param warmupIterations The number of warmup iterations
+     * @param iterations The number of measured iterations
+     * @param iterationMillis The length of each iteration in milliseconds
+     * @param filter Only benchmarks whose names contain this are run
+     */
+    public Bench(int warmupIterations, int iterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1000000;
+        this.filter = filter;
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Prints the header of the results table
+     */
+    public static void printHeader() {
+        System.out.printf("%-44s %14s %10s %14s %12s %8s %8s%n",
+                "Benchmark", "ops/s", "error", "ns/op", "B/op", "MB/s", "gc ms");
+    }
+
+    /**
+     * Checks whether a benchmark will be run
+     * @param name The name of the benchmark
+     * @return True if the name matches the filter
+     */
+    public boolean isSelected(String name) {
+        return name.contains(filter);
+    }
+
+    /**
+     * Runs a benchmark and prints a row of results
+     * @param name The name of the benchmark
+     * @param operation The code to measure
+     */
+    public void run(String name, Operation operation) {
+        run(name, 1, operation);
+    }
+
+    /**
+     * Runs a benchmark where each call of the operation does a batch of smaller operations, and prints a row of results
+     * @param name The name of the benchmark
+     * @param opsPerCall The number of operations done by each call
+     * @param operation The code to measure
+     */
+    public void run(String name, int opsPerCall, Operation operation) {
+        if (!isSelected(name)) {
+            return;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            measureIteration(operation);
+        }
+        double[] opsPerSecond = new double[iterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long gcMillisBefore = getGcMillis();
+        for (int i = 0; i < iterations; i++) {
+            long[] measurement = measureIteration(operation);
+            totalOps += measurement[0] * opsPerCall;
+            totalNanos += measurement[1];
+            totalBytes += measurement[2];
+            opsPerSecond[i] = measurement[0] * opsPerCall * 1e9 / measurement[1];
+        }
+        long gcMillis = getGcMillis() - gcMillisBefore;
+
+        double mean = totalOps * 1e9 / totalNanos;
+        double variance = 0;
+        for (double value : opsPerSecond) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0; // Standard deviation between iterations
+        System.out.printf("%-44s %14.1f %10.1f %14.1f %12.1f %8.1f %8d%n", name, mean, error, (double) totalNanos / totalOps,
+                (double) totalBytes / totalOps, totalBytes / (totalNanos / 1e9) / (1 << 20), gcMillis);
+    }
+
+    /**
+     * Calls an operation repeatedly for one iteration
+     * @param operation The code to measure
+     * @return The number of calls, the time taken in nanoseconds and the bytes allocated
+     */
+    private long[] measureIteration(Operation operation) {
+        long threadId = Thread.currentThread().getId();
+        long calls = 0;
+        long result = 0;
+        long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        long endTime = startTime + iterationNanos;
+        long now;
+
+        do {
+            result += operation.run();
+            calls++;
+            now = System.nanoTime();
+        } while (now < endTime);
+
+        long bytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        sink += result;
+        return new long[]{calls, now - startTime, bytes};
+    }
+
+    /**
+     * Gets the total time spent in garbage collection so far
+     * @return The time in milliseconds
+     */
+    private static long getGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(bean.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the values consumed from all operations. Printing it stops the JIT from treating the work as unused
+     * @return The combined value
+     */
+    public long getSink() {
+        return sink;
+    }
+
+    /**
+     * Writes a random map file in the text map format, surrounded by walls, for benchmarks which need bigger maps than the examples
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param seed The seed used to choose the tiles
+     * @return The path of the map file, which is deleted when the JVM exits
+     * @throws IOException If the file can't be written
+     */
+    public static String writeGeneratedMap(int width, int height, long seed) throws IOException {
+        File file = File.createTempFile("generated_map_" + width + "x" + height + "_", ".txt");
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        char[] row = new char[width];
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("name Generated " + width + "x" + height + " Dungeon\n");
+            writer.write("win 5\n");
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int roll = random.nextInt(1000);
+                    if (x == 0 || y == 0 || x == width - 1 || y == height - 1 || roll < 250) {
+                        row[x] = '#';
+                    } else if (roll < 260) {
+                        row[x] = 'G';
+                    } else if (roll < 262) {
+                        row[x] = 'E';
+                    } else {
+                        row[x] = '.';
+                    }
+                }
+                writer.write(row);
+                writer.write('\n');
+            }
+        }
+
+        return file.getPath();
+    }
+}
@@ -0,0 +1,66 @@
+import java.io.IOException;
+
+/**
+ * Class to run the benchmarks from the command line
+ * It should be run from the project directory, so the example maps can be found
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks and prints a table of results
+     * @param args Optionally a filter, so only benchmarks whose names contain it are run, then "-wi", "-i" and "-t"
+     *             followed by the number of warmup iterations, measured iterations and milliseconds per iteration
+     * @throws IOException If the generated maps can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        String filter = "";
+        int warmupIterations = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    filter = args[i];
+            }
+        }
+
+        String[] mapNames = {"small", "medium", "large", "generated1000", "generated4000"};
+        String[] mapPaths = {"small_example_map.txt", "medium_example_map.txt", "large_example_map.txt",
+                Bench.writeGeneratedMap(1000, 1000, 1), Bench.writeGeneratedMap(4000, 4000, 2)};
+        Bench bench = new Bench(warmupIterations, iterations, iterationMillis, filter);
+
+        Bench.printHeader();
+        MapBenchmarks.run(bench, mapNames, mapPaths);
+        // Whole games on the generated maps would mostly measure the simulated player's searches, so only the examples are used
+        String[] gameMapNames = {"small", "medium", "large"};
+        String[] gameMapPaths = {mapPaths[0], mapPaths[1], mapPaths[2]};
+        GameBenchmarks.run(bench, gameMapNames, gameMapPaths);
+        // Forks are measured on a generated map too, to show they take the same time however large the map is
+        ForkBenchmarks.run(bench, new String[]{"large", "generated1000"}, new String[]{mapPaths[2], mapPaths[3]});
+        MctsBenchmarks.run(bench, "medium", mapPaths[1]);
+        TickBenchmarks.run(bench, "generated1000", mapPaths[3]);
+        // LOOKs are measured on an open map and on a generated one, where walls hide most of each view
+        FieldOfViewBenchmarks.run(bench, new String[]{"large", "generated1000"}, new String[]{mapPaths[2], mapPaths[3]});
+        PathBenchmarks.run(bench);
+        HierarchicalPathBenchmarks.run(bench);
+        DistanceFieldBenchmarks.run(bench);
+        ChunkedMapBenchmarks.run(bench);
+        OffHeapBenchmarks.run(bench, "generated4000", mapPaths[4]);
+        TemplateBenchmarks.run(bench, new String[]{"large", "generated1000", "generated4000"},
+                new String[]{mapPaths[2], mapPaths[3], mapPaths[4]});
+        GeneratorBenchmarks.run(bench);
+        JournalBenchmarks.run(bench, mapPaths[1]);
+        SessionBenchmarks.run(bench, mapPaths[1]);
+        System.out.println("(sink " + bench.getSink() + ")");
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks for reading tiles from maps stored in chunk files, with different chunk cache budgets
+ */
+public class ChunkedMapBenchmarks {
+
+    /**
+     * The number of lookups done by each call of the access benchmarks
+     */
+    private static final int LOOKUPS_PER_CALL = 1024;
+    /**
+     * The number of tiles along each side of a chunk
+     */
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * Runs all chunked map benchmarks
+     * @param bench The benchmark harness
+     * @throws IOException If the generated map or chunk file can't be written
+     */
+    public static void run(Bench bench) throws IOException {
+        if (!bench.isSelected("chunked.")) {
+            return;
+        }
+        int size = 4000;
+        String mapPath = Bench.writeGeneratedMap(size, size, 3);
+        File chunkFile = File.createTempFile("dungeon-bench", ".ddch");
+        chunkFile.deleteOnExit();
+        bench.run("chunked.convert." + size + "x" + size, () -> {
+            ChunkedTileStore.convert(mapPath, chunkFile.getPath(), CHUNK_SIZE);
+            return chunkFile.length();
+        });
+
+        // Random lookups across the whole map, and a walk which stays in a small area, as a player's would
+        int[] randomXs = new int[LOOKUPS_PER_CALL];
+        int[] randomYs = new int[LOOKUPS_PER_CALL];
+        int[] walkXs = new int[LOOKUPS_PER_CALL];
+        int[] walkYs = new int[LOOKUPS_PER_CALL];
+        Random random = new Random(4);
+        int x = size / 2;
+        int y = size / 2;
+        for (int i = 0; i < LOOKUPS_PER_CALL; i++) {
+            randomXs[i] = random.nextInt(size);
+            randomYs[i] = random.nextInt(size);
+            x = Math.max(0, Math.min(size - 1, x + random.nextInt(5) - 2));
+            y = Math.max(0, Math.min(size - 1, y + random.nextInt(5) - 2));
+            walkXs[i] = x;
+            walkYs[i] = y;
+        }
+
+        for (long budget : new long[]{64 << 10, 1 << 20, 8 << 20}) {
+            String budgetName = (budget >> 10) + "k";
+            Map map = Map.openChunked(chunkFile.getPath(), budget);
+            bench.run("chunked.getCharAtPos.random." + budgetName, LOOKUPS_PER_CALL,
+                    () -> sumTiles(map, randomXs, randomYs));
+            bench.run("chunked.getCharAtPos.walk." + budgetName, LOOKUPS_PER_CALL,
+                    () -> sumTiles(map, walkXs, walkYs));
+            map.close();
+        }
+    }
+
+    /**
+     * Reads the tiles at a list of positions
+     * @param map The map to read from
+     * @param xs The horizontal coordinates of the positions
+     * @param ys The vertical coordinates of the positions
+     * @return The sum of the tile characters, so the reads can't be optimised away
+     */
+    private static long sumTiles(Map map, int[] xs, int[] ys) {
+        long total = 0;
+        for (int i = 0; i < xs.length; i++) {
+            total += map.getCharAtPos(xs[i], ys[i]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmarks for building distance fields, updating them as gold is picked up, and reading steps from them
+ */
+public class DistanceFieldBenchmarks {
+
+    /**
+     * The number of positions read by each call of the next step benchmark
+     */
+    private static final int QUERIES_PER_CALL = 1024;
+
+    /**
+     * Runs all distance field benchmarks
+     * @param bench The benchmark harness
+     * @throws IOException If the generated maps can't be written
+     */
+    public static void run(Bench bench) throws IOException {
+        if (!bench.isSelected("field.")) {
+            return;
+        }
+        for (int size : new int[]{250, 1000, 4000}) {
+            Map template = new Map(Bench.writeGeneratedMap(size, size, size));
+            DistanceField templateField = new DistanceField(template, 'G');
+            int[] golds = findGold(template);
+
+            bench.run("field.build." + size + "x" + size, () -> new DistanceField(template, 'G').getDistance(1, 1));
+
+            // Picks up the gold in a random order. Once it's all gone, the map and field are copied again, which is
+            // included in the time but happens rarely enough to make little difference
+            Map[] map = {null};
+            DistanceField[] field = {null};
+            int[] next = {golds.length};
+            bench.run("field.removeGold." + size + "x" + size, () -> {
+                if (next[0] == golds.length) {
+                    map[0] = new Map(template);
+                    field[0] = new DistanceField(templateField, map[0]);
+                    map[0].addTileListener(field[0]);
+                    next[0] = 0;
+                }
+                int gold = golds[next[0]++];
+                map[0].resetCharAtPos(gold % size, gold / size);
+                return field[0].getDistance(gold % size, gold / size);
+            });
+
+            int[] xs = new int[QUERIES_PER_CALL];
+            int[] ys = new int[QUERIES_PER_CALL];
+            Random random = new Random(size);
+            for (int i = 0; i < QUERIES_PER_CALL; i++) {
+                xs[i] = random.nextInt(size);
+                ys[i] = random.nextInt(size);
+            }
+            bench.run("field.getNextStep." + size + "x" + size, QUERIES_PER_CALL, () -> {
+                long total = 0;
+                for (int i = 0; i < QUERIES_PER_CALL; i++) {
+                    total += templateField.getNextStep(xs[i], ys[i]);
+                }
+                return total;
+            });
+        }
+    }
+
+    /**
+     * Finds all gold on a map, in a random order
+     * @param map The map to search
+     * @return The tile indexes (y * width + x) of the gold
+     */
+    private static int[] findGold(Map map) {
+        int width = map.getMapWidth();
+        int count = 0;
+        int[] golds = new int[width * map.getMapHeight()];
+        for (int y = 0; y < map.getMapHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                if (map.getCharAtPos(x, y) == 'G') {
+                    golds[count++] = y * width + x;
+                }
+            }
+        }
+        Random random = new Random(count);
+        for (int i = count - 1; i > 0; i--) { // Shuffles the gold
+            int j = random.nextInt(i + 1);
+            int swap = golds[i];
+            golds[i] = golds[j];
+            golds[j] = swap;
+        }
+        return Arrays.copyOf(golds, count);
+    }
+}
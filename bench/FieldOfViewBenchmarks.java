@@ -0,0 +1,149 @@
+import java.util.Random;
+
+/**
+ * Benchmarks for LOOKs at different view radii: the square view seeing through walls, a field of view found by tracing
+ * a line to every tile, shadowcasting, and shadowcasting answered from the cache
+ */
+public class FieldOfViewBenchmarks {
+
+    /**
+     * The view radii measured
+     */
+    private static final int[] RADII = {2, 10, 25, 50};
+    /**
+     * The number of floor positions looked from in turn by each benchmark
+     */
+    private static final int POSITION_COUNT = 256;
+
+    /**
+     * Runs all field of view benchmarks
+     * @param bench The benchmark harness
+     * @param mapNames The names of the maps, used in benchmark names
+     * @param mapPaths The paths of the map files, matching the names
+     */
+    public static void run(Bench bench, String[] mapNames, String[] mapPaths) {
+        if (!bench.isSelected("fov.")) {
+            return;
+        }
+        for (int i = 0; i < mapNames.length; i++) {
+            Map map = new Map(mapPaths[i]);
+            int[][] positions = createPositions(map);
+            HumanPlayer looker = new HumanPlayer('P', null, null);
+            OccupancyIndex occupancy = new OccupancyIndex(new Player[]{looker});
+            for (int radius : RADII) {
+                String suffix = ".r" + radius + "." + mapNames[i];
+                int[] next = {0};
+
+                // What LOOK did before: the whole square, walls or not, scanned for a player
+                char[] view = new char[(2 * radius + 1) * (2 * radius + 1)];
+                bench.run("fov.square" + suffix, () -> {
+                    int[] position = positions[next[0]++ % POSITION_COUNT];
+                    looker.setPos(position[0], position[1]);
+                    map.renderView(position[0], position[1], 2 * radius + 1, occupancy, view);
+                    int found = 0;
+                    for (char tile : view) {
+                        if (tile == 'P') {
+                            found++;
+                        }
+                    }
+                    return found;
+                });
+
+                bench.run("fov.naive" + suffix, () -> {
+                    int[] position = positions[next[0]++ % POSITION_COUNT];
+                    return countVisibleByLines(map, position[0], position[1], radius);
+                });
+
+                FieldOfView fieldOfView = new FieldOfView(map, radius, POSITION_COUNT);
+                bench.run("fov.cast" + suffix, () -> {
+                    int[] position = positions[next[0]++ % POSITION_COUNT];
+                    return fieldOfView.castVisible(position[0], position[1])[0];
+                });
+
+                // Every position fits in the cache, so after the first pass each LOOK is a lookup
+                bench.run("fov.cached" + suffix, () -> {
+                    int[] position = positions[next[0]++ % POSITION_COUNT];
+                    long[] visible = fieldOfView.getVisible(position[0], position[1]);
+                    return fieldOfView.isVisible(visible, 1, 1) ? 1 : 0;
+                });
+            }
+        }
+    }
+
+    /**
+     * Chooses random floor positions to look from
+     * @param map The map
+     * @return The positions, as {x, y}
+     */
+    private static int[][] createPositions(Map map) {
+        Random random = new Random(1);
+        int[][] positions = new int[POSITION_COUNT][];
+        int count = 0;
+        while (count < POSITION_COUNT) {
+            int xPos = random.nextInt(map.getMapWidth());
+            int yPos = random.nextInt(map.getMapHeight());
+            if (!map.isWall(xPos, yPos)) {
+                positions[count++] = new int[]{xPos, yPos};
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Counts the tiles in sight of a position the naive way, tracing a line to every tile within the radius and
+     * checking each tile on it for walls
+     * @param map The map
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @param radius The view radius
+     * @return The number of tiles in sight
+     */
+    private static int countVisibleByLines(Map map, int xPos, int yPos, int radius) {
+        int visible = 0;
+        int radiusSquared = radius * radius + radius;
+        for (int yDist = -radius; yDist <= radius; yDist++) {
+            for (int xDist = -radius; xDist <= radius; xDist++) {
+                if (xDist * xDist + yDist * yDist <= radiusSquared && isLineClear(map, xPos, yPos, xDist, yDist)) {
+                    visible++;
+                }
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Checks that no wall stands between a position and a tile, along a Bresenham line
+     * @param map The map
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @param xDist The tile's horizontal distance from the position
+     * @param yDist The tile's vertical distance from the position
+     * @return True if every tile on the line before the end is open
+     */
+    private static boolean isLineClear(Map map, int xPos, int yPos, int xDist, int yDist) {
+        int xStep = Integer.signum(xDist);
+        int yStep = Integer.signum(yDist);
+        int xLength = Math.abs(xDist);
+        int yLength = Math.abs(yDist);
+        int error = xLength - yLength;
+        int x = 0;
+        int y = 0;
+        while (true) {
+            int doubled = 2 * error;
+            if (doubled > -yLength) {
+                error -= yLength;
+                x += xStep;
+            }
+            if (doubled < xLength) {
+                error += xLength;
+                y += yStep;
+            }
+            if (x == xDist && y == yDist) {
+                return true; // The tile itself can be a wall and still be seen
+            }
+            if (map.isWall(xPos + x, yPos + y)) {
+                return false;
+            }
+        }
+    }
+}
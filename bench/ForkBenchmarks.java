@@ -0,0 +1,80 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Benchmarks for snapshots and forks of games, compared with copying a game's map and players in full
+ */
+public class ForkBenchmarks {
+
+    /**
+     * The number of forks held at once when measuring their memory
+     */
+    private static final int MEMORY_FORKS = 10000;
+    /**
+     * The number of full copies held at once when measuring their memory
+     */
+    private static final int MEMORY_COPIES = 200;
+
+    /**
+     * Runs all fork benchmarks
+     * @param bench The benchmark harness
+     * @param mapNames The names of the maps, used in benchmark names
+     * @param mapPaths The paths of the map files, matching the names
+     */
+    public static void run(Bench bench, String[] mapNames, String[] mapPaths) {
+        for (int i = 0; i < mapNames.length; i++) {
+            Map template = new Map(mapPaths[i]);
+            Game game = new Game(new Map(template), new HumanPlayer('P', null, null), new BotPlayer('B', 1), 1);
+            bench.run("fork.snapshot." + mapNames[i], () -> game.snapshot().getHumanXPos());
+            bench.run("fork.game." + mapNames[i], () -> game.fork().getHumanPlayer().getXPos());
+            GameSnapshot snapshot = game.snapshot();
+            bench.run("fork.restore." + mapNames[i], () -> {
+                game.restore(snapshot);
+                return game.getBotPlayer().getXPos();
+            });
+            // A full copy of the same state, as a game had to be copied before forks: the tiles are copied, then the players placed
+            long[] seed = {0};
+            bench.run("fork.deepCopy." + mapNames[i], () -> {
+                Game copy = new Game(new Map(template), new HumanPlayer('P', null, null), new BotPlayer('B', seed[0]), seed[0]++);
+                return copy.getHumanPlayer().getXPos();
+            });
+
+            if (bench.isSelected("fork.memory." + mapNames[i])) {
+                measureMemory(mapNames[i], template, game);
+            }
+        }
+    }
+
+    /**
+     * Holds many forks, then many full copies, of a game, and prints how much memory each takes
+     * @param mapName The name of the map, used in the printout
+     * @param template A map which has never been forked, so copying it copies its tiles
+     * @param game The game to fork
+     */
+    private static void measureMemory(String mapName, Map template, Game game) {
+        long heapBefore = usedHeap();
+        Game[] forks = new Game[MEMORY_FORKS];
+        for (int i = 0; i < forks.length; i++) {
+            forks[i] = game.fork();
+        }
+        double forkBytes = (double) (usedHeap() - heapBefore) / forks.length;
+        forks = null;
+
+        heapBefore = usedHeap();
+        Game[] copies = new Game[MEMORY_COPIES];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = new Game(new Map(template), new HumanPlayer('P', null, null), new BotPlayer('B', i), i);
+        }
+        double copyBytes = (double) (usedHeap() - heapBefore) / copies.length;
+        System.out.printf("fork.memory.%s: %.0f B/fork, %.0f B/deep copy%n", mapName, forkBytes, copyBytes);
+    }
+
+    /**
+     * Collects garbage, then gets the size of the heap in use
+     * @return The heap in use in bytes
+     */
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Benchmarks for game commands, the bot's decisions and whole games
+ */
+public class GameBenchmarks {
+
+    /**
+     * The number of rounds a scripted game lasts
+     */
+    private static final int SCRIPTED_ROUNDS = 100;
+
+    /**
+     * Runs all game benchmarks
+     * @param bench The benchmark harness
+     * @param mapNames The names of the maps, used in benchmark names
+     * @param mapPaths The paths of the map files, matching the names
+     */
+    public static void run(Bench bench, String[] mapNames, String[] mapPaths) {
+        for (int i = 0; i < mapNames.length; i++) {
+            Game game = new Game(new Map(mapPaths[i]), new ScriptedHumanPlayer('P'), new BotPlayer('B', 1), 1);
+            HumanPlayer humanPlayer = game.getHumanPlayer();
+            bench.run("game.look." + mapNames[i], () -> game.playTurn(humanPlayer, Command.LOOK).length());
+        }
+
+        // Setting up a game copies the map and places the players, which is most of the cost of a short game
+        for (int i = 0; i < mapNames.length; i++) {
+            Map template = new Map(mapPaths[i]);
+            long[] seed = {0};
+            bench.run("game.setup." + mapNames[i], () -> {
+                Game game = new Game(new Map(template), new HumanPlayer('P', null, null), new BotPlayer('B', seed[0]), seed[0]++);
+                return game.getBotPlayer().getXPos();
+            });
+        }
+
+        // Turns which don't LOOK, alternating moves back and forth with the other commands, so the game never ends
+        int[] turnCommands = {Command.HELLO, Command.move('N'), Command.GOLD, Command.move('S'), Command.PICKUP,
+                Command.move('E'), Command.parse("move w"), Command.parse("nonsense")};
+        Game turnGame = new Game(new Map(mapPaths[0]), new ScriptedHumanPlayer('P'), new BotPlayer('B', 1), 1);
+        HumanPlayer turnPlayer = turnGame.getHumanPlayer();
+        bench.run("game.playTurn", turnCommands.length, () -> {
+            long total = 0;
+            for (int command : turnCommands) {
+                total += turnGame.playTurn(turnPlayer, command).length();
+            }
+            return total;
+        });
+
+        // Compare game.playTurn run with and without -Ddungeon.stats=true to see the cost of instrumentation
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] nanos = {0};
+        bench.run("stats.histogram.record", () -> {
+            histogram.record(nanos[0] & 0xFFFF);
+            return nanos[0]++;
+        });
+
+        String[] lines = {"HELLO", "gold", "MOVE N", "move e ", "PICKUP", "Look", "MOVE  N", "quit"};
+        bench.run("command.parse", lines.length, () -> {
+            long total = 0;
+            for (String line : lines) {
+                total += Command.parse(line);
+            }
+            return total;
+        });
+
+        BotPlayer searchingBot = new BotPlayer('B', 1);
+        bench.run("bot.getCommand", searchingBot::getCommand);
+
+        char[] mapView = ("#####"
+                + "#...#"
+                + "#.B.#"
+                + "#..P#"
+                + "#####").toCharArray();
+        BotPlayer lookingBot = new BotPlayer('B', 1);
+        bench.run("bot.processLookResult", () -> {
+            lookingBot.processLookResult(mapView, 5, 'P');
+            return lookingBot.getCommand(); // Uses up the chase so the next call sees the player again
+        });
+
+        String[] script = createScript(SCRIPTED_ROUNDS);
+        for (int i = 0; i < mapNames.length; i++) {
+            Map template = new Map(mapPaths[i]);
+            long[] gameNumber = {0};
+            bench.run("game.scripted." + mapNames[i], () -> {
+                long seed = gameNumber[0]++;
+                Game game = new Game(new Map(template), new ScriptedHumanPlayer('P', script), new BotPlayer('B', seed), seed);
+                return game.playHeadless(SCRIPTED_ROUNDS).getRounds();
+            });
+            SimulationRunner runner = new SimulationRunner(template, 1000, 1);
+            bench.run("game.simulated." + mapNames[i], () -> runner.playGame(gameNumber[0]++).getRounds());
+            runner.close();
+        }
+    }
+
+    /**
+     * Creates a script which wanders around the map, looking and picking up gold as it goes
+     * @param length The number of commands in the script
+     * @return The script
+     */
+    private static String[] createScript(int length) {
+        String[] commands = {"LOOK", "MOVE N", "MOVE E", "PICKUP", "MOVE S", "MOVE E", "GOLD", "MOVE W", "MOVE S", "HELLO"};
+        String[] script = new String[length];
+        for (int i = 0; i < length; i++) {
+            script[i] = commands[i % commands.length];
+        }
+        return script;
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Benchmarks for generating maps: the random maps the other benchmarks use against dungeons of rooms and caves, on one
+ * thread and on all of them, and for loading and searching a generated dungeon
+ */
+public class GeneratorBenchmarks {
+
+    /**
+     * The number of tiles along each side of the generated maps
+     */
+    private static final int SIZE = 1000;
+
+    /**
+     * Runs all generator benchmarks
+     * @param bench The benchmark harness
+     * @throws IOException If a temporary map file can't be created
+     */
+    public static void run(Bench bench) throws IOException {
+        if (!bench.isSelected("generator.")) {
+            return;
+        }
+        String suffix = "." + SIZE + "x" + SIZE;
+        long[] seed = {1};
+        bench.run("generator.random" + suffix, () -> {
+            try {
+                return new File(Bench.writeGeneratedMap(SIZE, SIZE, seed[0]++)).delete() ? 1 : 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        File file = File.createTempFile("generated_dungeon_", ".txt");
+        file.deleteOnExit();
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        bench.run("generator.dungeon.threads1" + suffix, () -> new DungeonGenerator(SIZE, SIZE, seed[0]++).write(file.getPath(), 1));
+        if (threadCount > 1) {
+            bench.run("generator.dungeon.threads" + threadCount + suffix,
+                    () -> new DungeonGenerator(SIZE, SIZE, seed[0]++).write(file.getPath(), threadCount));
+        }
+
+        // A dungeon is mostly walls and one component, unlike the random maps, which are open and split into many
+        new DungeonGenerator(SIZE, SIZE, 1).write(file.getPath(), threadCount);
+        bench.run("generator.load.dungeon" + suffix, () -> new Map(file.getPath()).getMapWidth());
+        PackedTileStore tiles = Map.readTiles(new MapFileReader(file.getPath()));
+        bench.run("generator.connectivity.dungeon" + suffix, () -> new MapConnectivity(tiles).getComponentCount());
+    }
+}
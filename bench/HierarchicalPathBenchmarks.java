@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks for finding long paths on the map's abstract graph (HierarchicalPathFinder) against A* over every tile, on
+ * random maps and generated dungeons, and for building the graph and rebuilding it around a reset wall
+ */
+public class HierarchicalPathBenchmarks {
+
+    /**
+     * The number of (start, goal) pairs searched in turn by each benchmark
+     */
+    private static final int PAIR_COUNT = 64;
+
+    /**
+     * Runs all hierarchical path benchmarks
+     * @param bench The benchmark harness
+     * @throws IOException If the generated maps can't be written
+     */
+    public static void run(Bench bench) throws IOException {
+        for (int size : new int[]{1000, 4000}) {
+            if (!bench.isSelected("hierarchy.")) {
+                return;
+            }
+            File dungeonFile = File.createTempFile("generated_dungeon_", ".txt");
+            dungeonFile.deleteOnExit();
+            new DungeonGenerator(size, size, size).write(dungeonFile.getPath(), Runtime.getRuntime().availableProcessors());
+            String[] kinds = {"random", "dungeon"};
+            String[] paths = {Bench.writeGeneratedMap(size, size, size), dungeonFile.getPath()};
+            for (int k = 0; k < kinds.length; k++) {
+                String suffix = "." + kinds[k] + "." + size + "x" + size;
+                Map map = new Map(paths[k]);
+                if (size == 1000) { // Built once per template, so only the smaller maps are timed
+                    bench.run("hierarchy.build" + suffix, () -> new PathHierarchy(map, true).getNodeCount());
+                }
+                PathHierarchy hierarchy = map.getPathHierarchy();
+                System.out.printf("hierarchy%s: %d clusters, %d nodes%n", suffix, hierarchy.getClusterCount(),
+                        hierarchy.getNodeCount());
+
+                PathFinder pathFinder = new PathFinder(map, Integer.MAX_VALUE); // No limit, so every path is found
+                HierarchicalPathFinder hierarchicalPathFinder = new HierarchicalPathFinder(map, Integer.MAX_VALUE);
+                for (int distance : new int[]{64, 256, 1024}) {
+                    int[][] pairs = createPairs(map, distance, size + distance);
+                    int[] next = {0, 0};
+                    // A whole path over the tiles, against the first part of one over the graph, which is all a turn needs
+                    bench.run("hierarchy.astar.d" + distance + suffix, () -> {
+                        int[] pair = pairs[next[0]++ % PAIR_COUNT];
+                        int[] path = pathFinder.findPath(pair[0], pair[1], pair[2], pair[3]);
+                        return path == null ? 0 : path.length;
+                    });
+                    bench.run("hierarchy.segment.d" + distance + suffix, () -> {
+                        int[] pair = pairs[next[1]++ % PAIR_COUNT];
+                        int[] path = hierarchicalPathFinder.findPathSegment(pair[0], pair[1], pair[2], pair[3]);
+                        return path == null ? 0 : path.length;
+                    });
+                }
+
+                // What resetting a wall costs the graph: its cluster, and the one across the border if it's on one
+                Random random = new Random(size);
+                int[] resetTiles = new int[PAIR_COUNT];
+                for (int i = 0; i < PAIR_COUNT; i++) {
+                    resetTiles[i] = random.nextInt(size * size);
+                }
+                int[] nextReset = {0};
+                bench.run("hierarchy.rebuild" + suffix, () -> {
+                    int tile = resetTiles[nextReset[0]++ % PAIR_COUNT];
+                    return hierarchy.rebuildAt(map, tile % size, tile / size).getNodeCount();
+                });
+            }
+        }
+    }
+
+    /**
+     * Creates pairs of floor positions a set Manhattan distance apart, in the same connected area
+     * @param map The map the positions are on
+     * @param distance The distance between the positions of each pair
+     * @param seed The seed used to choose the positions
+     * @return The pairs, as {startX, startY, goalX, goalY}
+     */
+    private static int[][] createPairs(Map map, int distance, long seed) {
+        Random random = new Random(seed);
+        int[][] pairs = new int[PAIR_COUNT][];
+        int count = 0;
+        while (count < PAIR_COUNT) {
+            int startX = random.nextInt(map.getMapWidth());
+            int startY = random.nextInt(map.getMapHeight());
+            int xDistance = random.nextInt(distance + 1);
+            int goalX = startX + (random.nextBoolean() ? xDistance : -xDistance);
+            int goalY = startY + (random.nextBoolean() ? distance - xDistance : xDistance - distance);
+            if (!map.isWall(startX, startY) && !map.isWall(goalX, goalY) && map.canReach(startX, startY, goalX, goalY)) {
+                pairs[count++] = new int[]{startX, startY, goalX, goalY};
+            }
+        }
+        return pairs;
+    }
+}
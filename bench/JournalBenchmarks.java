@@ -0,0 +1,59 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Benchmarks for recording games to a journal and replaying them
+ */
+public class JournalBenchmarks {
+
+    /**
+     * The number of games recorded for the replay benchmark
+     */
+    private static final int RECORDED_GAMES = 2000;
+
+    /**
+     * Runs all journal benchmarks
+     * @param bench The benchmark harness
+     * @param mapPath The path of the map the games are played on
+     * @throws IOException If a temporary journal file can't be created
+     */
+    public static void run(Bench bench, String mapPath) throws IOException {
+        if (!bench.isSelected("journal.playTurn") && !bench.isSelected("journal.replay")) {
+            return;
+        }
+        File journalFile = File.createTempFile("dungeon-bench", ".djnl");
+        journalFile.deleteOnExit();
+
+        // The same turns as game.playTurn, so the two can be compared to see the cost of recording
+        int[] turnCommands = {Command.HELLO, Command.move('N'), Command.GOLD, Command.move('S'), Command.PICKUP,
+                Command.move('E'), Command.parse("move w"), Command.parse("nonsense")};
+        GameJournal journal = new GameJournal(journalFile.getPath());
+        Game turnGame = new Game(new Map(mapPath), new ScriptedHumanPlayer('P'), new BotPlayer('B', 1), 1);
+        turnGame.setJournal(journal);
+        HumanPlayer turnPlayer = turnGame.getHumanPlayer();
+        bench.run("journal.playTurn", turnCommands.length, () -> {
+            long total = 0;
+            for (int command : turnCommands) {
+                total += turnGame.playTurn(turnPlayer, command).length();
+            }
+            return total;
+        });
+        journal.close();
+
+        // Simulated games are recorded once, then replayed in full by each call
+        Map template = new Map(mapPath);
+        SimulationRunner runner = new SimulationRunner(template, 1000, 1);
+        GameJournal recording = new GameJournal(journalFile.getPath());
+        runner.setJournal(recording);
+        for (int i = 0; i < RECORDED_GAMES; i++) {
+            runner.playGame(i);
+        }
+        runner.close();
+        recording.close();
+        bench.run("journal.replay", RECORDED_GAMES, () -> {
+            GameReplayer replayer = new GameReplayer(template);
+            replayer.replay(journalFile.getPath());
+            return replayer.getDifferentGames();
+        });
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks for loading maps and reading tiles and views from them
+ */
+public class MapBenchmarks {
+
+    /**
+     * The number of lookups done by each call of the random access benchmark
+     */
+    private static final int LOOKUPS_PER_CALL = 1024;
+
+    /**
+     * A player which only exists to be shown on map views
+     */
+    private static class ViewPlayer extends Player {
+
+        /**
+         * The constructor for ViewPlayer
+         * @param playerChar The character to represent the player on the map
+         */
+        private ViewPlayer(char playerChar) {
+            super(playerChar);
+        }
+
+        /**
+         * View players never take turns
+         * @return A LOOK command
+         */
+        @Override
+        public int getCommand() {
+            return Command.LOOK;
+        }
+    }
+
+    /**
+     * Runs all map benchmarks
+     * @param bench The benchmark harness
+     * @param mapNames The names of the maps, used in benchmark names
+     * @param mapPaths The paths of the map files, matching the names
+     * @throws IOException If a temporary binary map file can't be created
+     */
+    public static void run(Bench bench, String[] mapNames, String[] mapPaths) throws IOException {
+        for (int i = 0; i < mapNames.length; i++) {
+            String path = mapPaths[i];
+            bench.run("map.load." + mapNames[i], () -> new Map(path).getMapWidth());
+        }
+
+        // The same maps compiled to binary map files, with and without run-length encoding
+        if (bench.isSelected("map.loadBinary.")) {
+            for (int i = 0; i < mapNames.length; i++) {
+                String rawPath = writeBinaryMap(mapPaths[i], false);
+                String rlePath = writeBinaryMap(mapPaths[i], true);
+                System.out.printf("map.loadBinary.%s: text %d B, raw %d B, rle %d B%n", mapNames[i],
+                        new File(mapPaths[i]).length(), new File(rawPath).length(), new File(rlePath).length());
+                bench.run("map.loadBinary.raw." + mapNames[i], () -> Map.load(rawPath).getMapWidth());
+                bench.run("map.loadBinary.rle." + mapNames[i], () -> Map.load(rlePath).getMapWidth());
+            }
+        }
+
+        // Finding the connected areas of each map, which is part of every load. Huge maps are split into stripes across threads
+        if (bench.isSelected("map.connectivity.")) {
+            for (int i = 0; i < mapNames.length; i++) {
+                TileStore tiles = new BinaryMapFile(writeBinaryMap(mapPaths[i], false)).getTiles();
+                System.out.printf("map.connectivity.%s: %d areas%n", mapNames[i],
+                        new MapConnectivity(tiles).getComponentCount());
+                bench.run("map.connectivity." + mapNames[i], () -> new MapConnectivity(tiles).getComponentCount());
+            }
+        }
+
+        for (int i = 0; i < mapNames.length; i++) {
+            Map map = new Map(mapPaths[i]);
+            int[] xs = new int[LOOKUPS_PER_CALL];
+            int[] ys = new int[LOOKUPS_PER_CALL];
+            Random random = new Random(1);
+            for (int j = 0; j < LOOKUPS_PER_CALL; j++) {
+                xs[j] = random.nextInt(map.getMapWidth());
+                ys[j] = random.nextInt(map.getMapHeight());
+            }
+            bench.run("map.getCharAtPos.random." + mapNames[i], LOOKUPS_PER_CALL, () -> {
+                long total = 0;
+                for (int j = 0; j < LOOKUPS_PER_CALL; j++) {
+                    total += map.getCharAtPos(xs[j], ys[j]);
+                }
+                return total;
+            });
+        }
+
+        // Views are taken from the last (biggest) map, with players clustered around its centre
+        Map map = new Map(mapPaths[mapPaths.length - 1]);
+        for (int playerCount : new int[]{2, 64, 512}) {
+            OccupancyIndex occupancy = createPlayers(map, playerCount);
+            for (int viewWidth : new int[]{5, 11, 21}) {
+                int centreX = map.getMapWidth() / 2;
+                int centreY = map.getMapHeight() / 2;
+                bench.run("map.getMapViewAtPos.w" + viewWidth + ".p" + playerCount,
+                        () -> map.getMapViewAtPos(centreX, centreY, viewWidth, occupancy)[0][0]);
+                char[] view = new char[viewWidth * viewWidth];
+                bench.run("map.renderView.w" + viewWidth + ".p" + playerCount, () -> {
+                    map.renderView(centreX, centreY, viewWidth, occupancy, view);
+                    return view[0];
+                });
+            }
+        }
+    }
+
+    /**
+     * Converts a text map file into a temporary binary map file
+     * @param mapPath The path of the text map file
+     * @param compress Whether to run-length encode the tiles
+     * @return The path of the binary map file
+     * @throws IOException If the temporary file can't be created
+     */
+    private static String writeBinaryMap(String mapPath, boolean compress) throws IOException {
+        File file = File.createTempFile("binary_map_", BinaryMapFile.EXTENSION);
+        file.deleteOnExit();
+        BinaryMapFile.convert(mapPath, file.getPath(), compress);
+        return file.getPath();
+    }
+
+    /**
+     * Creates players on random positions near the centre of a map
+     * @param map The map to place the players on
+     * @param playerCount The number of players
+     * @return The occupancy index holding the players
+     */
+    private static OccupancyIndex createPlayers(Map map, int playerCount) {
+        Player[] players = new Player[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            players[i] = new ViewPlayer((char) ('a' + i % 26));
+        }
+        OccupancyIndex occupancy = new OccupancyIndex(players);
+        Random random = new Random(2);
+        int spread = 32;
+        for (Player player : players) {
+            player.setPos(map.getMapWidth() / 2 - spread / 2 + random.nextInt(spread),
+                    map.getMapHeight() / 2 - spread / 2 + random.nextInt(spread));
+        }
+        return occupancy;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Benchmarks for the Monte Carlo tree search bot: how rollouts per second scale with threads, and how it plays
+ */
+public class MctsBenchmarks {
+
+    /**
+     * The number of rollouts in each search measured for throughput
+     */
+    private static final int ROLLOUTS_PER_SEARCH = 2000;
+    /**
+     * The number of rollouts for each move in the games played against the heuristic bot
+     */
+    private static final int ROLLOUTS_PER_MOVE = 300;
+    /**
+     * The number of games each bot plays to compare them
+     */
+    private static final int STRENGTH_GAMES = 40;
+    /**
+     * The number of rounds after which a compared game is stopped
+     */
+    private static final int STRENGTH_ROUNDS = 300;
+
+    /**
+     * Runs all MCTS benchmarks
+     * @param bench The benchmark harness
+     * @param mapName The name of the map, used in benchmark names
+     * @param mapPath The path of the map file
+     */
+    public static void run(Bench bench, String mapName, String mapPath) {
+        Map template = new Map(mapPath);
+        // Doubles the threads up to the number of processors, then measures with exactly that many
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads = threads < processors ? Math.min(threads * 2, processors) : threads + 1) {
+            String name = "mcts.rollouts." + mapName + ".t" + threads;
+            if (!bench.isSelected(name)) {
+                continue;
+            }
+            Map map = new Map(template);
+            // Each search is limited by rollouts rather than time, so ops/s is rollouts per second
+            MctsBotPlayer bot = new MctsBotPlayer('B', map, threads, 60_000, 1);
+            bot.setMaxRollouts(ROLLOUTS_PER_SEARCH);
+            Game game = new Game(map, new HumanPlayer('P', null, null), bot, 1); // Places the bot on the map
+            game.playTurn(bot, Command.LOOK);
+            bench.run(name, ROLLOUTS_PER_SEARCH, bot::chooseMove);
+            bot.close();
+        }
+
+        if (bench.isSelected("mcts.strength." + mapName)) {
+            compareStrength(mapName, template);
+        }
+    }
+
+    /**
+     * Plays simulated human players against the heuristic bot and against the MCTS bot, and prints how often each won
+     * @param mapName The name of the map, used in the printout
+     * @param template The map which every game starts from a copy of
+     */
+    private static void compareStrength(String mapName, Map template) {
+        int heuristicWins = 0;
+        int mctsWins = 0;
+        for (int seed = 0; seed < STRENGTH_GAMES; seed++) {
+            Map heuristicMap = new Map(template);
+            Game heuristicGame = new Game(heuristicMap, new SimulatedHumanPlayer('P', heuristicMap, seed),
+                    new BotPlayer('B', ~seed), seed);
+            if (heuristicGame.playHeadless(STRENGTH_ROUNDS).getOutcome() == GameResult.Outcome.BOT_WIN) {
+                heuristicWins++;
+            }
+
+            Map mctsMap = new Map(template);
+            MctsBotPlayer bot = new MctsBotPlayer('B', mctsMap, Runtime.getRuntime().availableProcessors(), 60_000, ~seed);
+            bot.setMaxRollouts(ROLLOUTS_PER_MOVE);
+            Game mctsGame = new Game(mctsMap, new SimulatedHumanPlayer('P', mctsMap, seed), bot, seed);
+            if (mctsGame.playHeadless(STRENGTH_ROUNDS).getOutcome() == GameResult.Outcome.BOT_WIN) {
+                mctsWins++;
+            }
+            bot.close();
+        }
+        System.out.printf("mcts.strength.%s: heuristic bot won %d/%d, MCTS bot (%d rollouts/move) won %d/%d%n",
+                mapName, heuristicWins, STRENGTH_GAMES, ROLLOUTS_PER_MOVE, mctsWins, STRENGTH_GAMES);
+    }
+}
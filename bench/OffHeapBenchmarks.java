@@ -0,0 +1,187 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks for maps with their tiles off the heap, in a direct buffer or mapped from a binary map file, against packed
+ * tiles on the heap and a plain char[][] grid, as the map was first stored
+ */
+public class OffHeapBenchmarks {
+
+    /**
+     * The number of lookups done by each call of the lookup benchmarks
+     */
+    private static final int LOOKUPS_PER_CALL = 1024;
+    /**
+     * The number of views rendered by each call of the view benchmarks
+     */
+    private static final int VIEWS_PER_CALL = 256;
+    /**
+     * The width of the views, as seen by LOOK
+     */
+    private static final int VIEW_WIDTH = 5;
+
+    /**
+     * Runs all off-heap benchmarks
+     * @param bench The benchmark harness
+     * @param mapName The name of the map, used in benchmark names
+     * @param mapPath The path of the text map file
+     * @throws IOException If a temporary binary map file can't be created
+     */
+    public static void run(Bench bench, String mapName, String mapPath) throws IOException {
+        if (!bench.isSelected("offheap.")) {
+            return;
+        }
+        File binaryFile = File.createTempFile("dungeon-bench", BinaryMapFile.EXTENSION);
+        binaryFile.deleteOnExit();
+        BinaryMapFile.convert(mapPath, binaryFile.getPath(), false); // Tiles which aren't encoded can be mapped as they are
+
+        // How much memory just the tiles take on and off the heap, and how long a full collection takes while they're held
+        // Each is kept until all are measured, as buffers freed by a collection are only released some time after it
+        List<Object> held = new ArrayList<>();
+        held.add(printMemory("chars", mapName, () -> readChars(mapPath)));
+        held.add(printMemory("packed", mapName, () -> Map.readTiles(new MapFileReader(mapPath))));
+        held.add(printMemory("direct", mapName, () -> OffHeapTileStore.copyOf(Map.readTiles(new MapFileReader(mapPath)))));
+        held.add(printMemory("mapped", mapName, () -> new BinaryMapFile(binaryFile.getPath(), true).getTiles()));
+        held.clear();
+
+        char[][] chars = readChars(mapPath);
+        String[] names = {"packed", "direct", "mapped"};
+        Map[] maps = {new Map(mapPath), Map.openOffHeap(mapPath), Map.openOffHeap(binaryFile.getPath())};
+        int width = maps[0].getMapWidth();
+        int height = maps[0].getMapHeight();
+        Random random = new Random(5);
+        int[] xs = new int[LOOKUPS_PER_CALL];
+        int[] ys = new int[LOOKUPS_PER_CALL];
+        for (int i = 0; i < LOOKUPS_PER_CALL; i++) {
+            xs[i] = random.nextInt(width);
+            ys[i] = random.nextInt(height);
+        }
+
+        bench.run("offheap.getCharAtPos.chars." + mapName, LOOKUPS_PER_CALL, () -> {
+            long sum = 0;
+            for (int i = 0; i < LOOKUPS_PER_CALL; i++) {
+                int x = xs[i];
+                int y = ys[i];
+                sum += x < 0 || y < 0 || y >= chars.length || x >= chars[y].length ? '#' : chars[y][x];
+            }
+            return sum;
+        });
+        for (int m = 0; m < maps.length; m++) {
+            Map map = maps[m];
+            bench.run("offheap.getCharAtPos." + names[m] + "." + mapName, LOOKUPS_PER_CALL, () -> {
+                long sum = 0;
+                for (int i = 0; i < LOOKUPS_PER_CALL; i++) {
+                    sum += map.getCharAtPos(xs[i], ys[i]);
+                }
+                return sum;
+            });
+        }
+
+        OccupancyIndex occupancy = new OccupancyIndex(new Player[0]);
+        bench.run("offheap.getMapViewAtPos.chars." + mapName, VIEWS_PER_CALL, () -> {
+            long sum = 0;
+            for (int i = 0; i < VIEWS_PER_CALL; i++) {
+                sum += getCharsView(chars, xs[i], ys[i])[0][0];
+            }
+            return sum;
+        });
+        for (int m = 0; m < maps.length; m++) {
+            Map map = maps[m];
+            bench.run("offheap.getMapViewAtPos." + names[m] + "." + mapName, VIEWS_PER_CALL, () -> {
+                long sum = 0;
+                for (int i = 0; i < VIEWS_PER_CALL; i++) {
+                    sum += map.getMapViewAtPos(xs[i], ys[i], VIEW_WIDTH, occupancy)[0][0];
+                }
+                return sum;
+            });
+        }
+
+        // What each game pays for its own copy of the template: off the heap, only an empty overlay and the placement index
+        for (int m = 0; m < maps.length; m++) {
+            Map template = maps[m];
+            bench.run("offheap.copy." + names[m] + "." + mapName, () -> new Map(template).getMapWidth());
+        }
+    }
+
+    /**
+     * Prints the memory taken by some tiles on and off the heap, and how long a full collection takes while they're held
+     * @param name The name of the way the tiles are stored
+     * @param mapName The name of the map
+     * @param loader Loads the tiles
+     * @return The tiles
+     */
+    private static Object printMemory(String name, String mapName, Supplier<Object> loader) {
+        long heapBefore = usedHeap();
+        long offHeapBefore = usedOffHeap();
+        Object tiles = loader.get();
+        long heap = usedHeap() - heapBefore;
+        long offHeap = usedOffHeap() - offHeapBefore;
+        long startTime = System.nanoTime();
+        System.gc();
+        double gcMillis = (System.nanoTime() - startTime) / 1e6;
+        System.out.printf("offheap.memory.%s.%s: heap %.1f MB, off heap %.1f MB, full GC %.1f ms%n", name, mapName,
+                heap / 1e6, offHeap / 1e6, gcMillis);
+        return tiles;
+    }
+
+    /**
+     * Gets the heap in use after a full collection
+     * @return The number of bytes
+     */
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Gets the memory in use by direct and mapped buffers
+     * @return The number of bytes
+     */
+    private static long usedOffHeap() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            used += pool.getMemoryUsed();
+        }
+        return used;
+    }
+
+    /**
+     * Reads a map file into a char[][] grid
+     * @param mapPath The path of the map file
+     * @return The grid, indexed by row then column
+     */
+    private static char[][] readChars(String mapPath) {
+        PackedTileStore tiles = Map.readTiles(new MapFileReader(mapPath));
+        char[][] chars = new char[tiles.getHeight()][tiles.getWidth()];
+        for (int y = 0; y < chars.length; y++) {
+            tiles.getChars(0, y, tiles.getWidth(), chars[y], 0);
+        }
+        return chars;
+    }
+
+    /**
+     * Gets a view of a char[][] grid the way getMapViewAtPos did before tiles were packed
+     * @param chars The grid
+     * @param xPos The horizontal coordinate of the centre of the view
+     * @param yPos The vertical coordinate of the centre of the view
+     * @return The view
+     */
+    private static char[][] getCharsView(char[][] chars, int xPos, int yPos) {
+        char[][] view = new char[VIEW_WIDTH][VIEW_WIDTH];
+        int radius = VIEW_WIDTH / 2;
+        for (int y = 0; y < VIEW_WIDTH; y++) {
+            for (int x = 0; x < VIEW_WIDTH; x++) {
+                int mapX = xPos - radius + x;
+                int mapY = yPos - radius + y;
+                view[y][x] = mapX < 0 || mapY < 0 || mapY >= chars.length || mapX >= chars[mapY].length ? '#' : chars[mapY][mapX];
+            }
+        }
+        return view;
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks for finding paths, to show how the cost of a chasing bot's turn grows with the map
+ */
+public class PathBenchmarks {
+
+    /**
+     * The number of (start, goal) pairs searched in turn by each benchmark
+     */
+    private static final int PAIR_COUNT = 256;
+
+    /**
+     * Runs all path benchmarks
+     * @param bench The benchmark harness
+     * @throws IOException If the generated maps can't be written
+     */
+    public static void run(Bench bench) throws IOException {
+        for (int size : new int[]{250, 1000, 4000}) {
+            if (!bench.isSelected("path.")) {
+                return;
+            }
+            Map map = new Map(Bench.writeGeneratedMap(size, size, size));
+            PathFinder pathFinder = new PathFinder(map, PathCache.DEFAULT_MAX_EXPANSIONS);
+            for (int distance : new int[]{2, 16, 128}) {
+                int[][] pairs = createPairs(map, pathFinder, distance, size);
+                int[] next = {0};
+                // A bot which has just seen the player is at most 2 tiles away, but walls can make the path much longer
+                bench.run("path.astar.d" + distance + "." + size + "x" + size, () -> {
+                    int[] pair = pairs[next[0]++ % PAIR_COUNT];
+                    int[] path = pathFinder.findPath(pair[0], pair[1], pair[2], pair[3]);
+                    return path == null ? 0 : path.length;
+                });
+                // The search the path cache uses, which visits every tile closer to the goal than the start
+                bench.run("path.fromGoal.d" + distance + "." + size + "x" + size, () -> {
+                    int[] pair = pairs[next[0]++ % PAIR_COUNT];
+                    int[] path = pathFinder.findPathFromGoal(pair[0], pair[1], pair[2], pair[3]);
+                    return path == null ? 0 : path.length;
+                });
+            }
+            PathCache pathCache = new PathCache(map, 1 << 16, PathCache.DEFAULT_MAX_EXPANSIONS);
+            int[][] pairs = createPairs(map, pathFinder, 16, size);
+            int[] next = {0};
+            // Every lookup after the first for a pair is answered from the cache
+            bench.run("path.cached.d16." + size + "x" + size, () -> {
+                int[] pair = pairs[next[0]++ % PAIR_COUNT];
+                return pathCache.getNextStep(pair[0], pair[1], pair[2], pair[3]);
+            });
+        }
+    }
+
+    /**
+     * Creates pairs of floor positions a set Manhattan distance apart, with a path between them
+     * @param map The map the positions are on
+     * @param pathFinder Used to check there's a path between the positions
+     * @param distance The distance between the positions of each pair
+     * @param seed The seed used to choose the positions
+     * @return The pairs, as {startX, startY, goalX, goalY}
+     */
+    private static int[][] createPairs(Map map, PathFinder pathFinder, int distance, long seed) {
+        Random random = new Random(seed);
+        int[][] pairs = new int[PAIR_COUNT][];
+        int count = 0;
+        while (count < PAIR_COUNT) {
+            int startX = random.nextInt(map.getMapWidth());
+            int startY = random.nextInt(map.getMapHeight());
+            int xDistance = random.nextInt(distance + 1);
+            int goalX = startX + (random.nextBoolean() ? xDistance : -xDistance);
+            int goalY = startY + (random.nextBoolean() ? distance - xDistance : xDistance - distance);
+            if (pathFinder.findPath(startX, startY, goalX, goalY) != null) {
+                pairs[count++] = new int[]{startX, startY, goalX, goalY};
+            }
+        }
+        return pairs;
+    }
+}
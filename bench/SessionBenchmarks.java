@@ -0,0 +1,330 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks comparing games run on virtual threads against games run on a fixed pool of platform threads
+ * Each session plays the ordinary blocking playGame, reading its commands from an in-memory pipe. Two things are measured:
+ * the memory each waiting session takes, and the cost of handing a command to a session and getting its response back,
+ * which is mostly the cost of switching threads. The bots stand still, so games never end while they're measured.
+ * The memory of sessions whose bots have searched for a path to the human player is measured too, as each search borrows
+ * a path finder holding 12 bytes for every tile of the map
+ */
+public class SessionBenchmarks {
+
+    /**
+     * The number of sessions which are sent a command in each call of the round trip benchmark
+     */
+    private static final int ROUND_TRIP_SESSIONS = 1000;
+    /**
+     * Marks the end of a pipe's input
+     */
+    private static final byte[] END_OF_INPUT = new byte[0];
+
+    /**
+     * An input stream whose lines are sent by another thread. Reading blocks until a line has been sent
+     * It's read through an InputStreamReader, which virtual threads can wait on without holding their carrier thread.
+     * A BufferedReader straight on a custom Reader would lock the reader with synchronized, which holds the carrier
+     */
+    private static class LinePipe extends InputStream {
+
+        /**
+         * The lines sent, each ending with a newline
+         */
+        private final LinkedBlockingQueue<byte[]> lines = new LinkedBlockingQueue<>();
+        /**
+         * The line being read
+         */
+        private byte[] line = new byte[0];
+        /**
+         * The position of the next byte to read in the line
+         */
+        private int linePos;
+
+        /**
+         * Sends a line to the stream
+         * @param text The line, without a newline
+         */
+        private void send(String text) {
+            lines.add((text + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Ends the input, so the session's player quits
+         */
+        private void end() {
+            lines.add(END_OF_INPUT);
+        }
+
+        /**
+         * Reads bytes from the sent lines, waiting for a line if there are none left
+         * @param buffer The buffer to read into
+         * @param offset The position in the buffer to read into
+         * @param length The most bytes to read
+         * @return The number of bytes read, or -1 if the input has ended
+         * @throws IOException If the thread is interrupted while waiting
+         */
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (linePos == line.length) {
+                try {
+                    line = lines.take();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                linePos = 0;
+                if (line == END_OF_INPUT) {
+                    return -1;
+                }
+            }
+            int count = Math.min(length, line.length - linePos);
+            System.arraycopy(line, linePos, buffer, offset, count);
+            linePos += count;
+            return count;
+        }
+
+        /**
+         * Reads one byte from the sent lines
+         * @return The byte, or -1 if the input has ended
+         * @throws IOException If the thread is interrupted while waiting
+         */
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+    }
+
+    /**
+     * An output stream which signals a semaphore at the end of every response, marked by a blank line
+     */
+    private static class ResponseSignal extends OutputStream {
+
+        /**
+         * Released once for each response
+         */
+        private final Semaphore responses;
+        /**
+         * The number of newlines in a row at the end of what has been written
+         */
+        private int newlinesInRow;
+
+        /**
+         * The constructor for ResponseSignal
+         * @param responses Released once for each response
+         */
+        private ResponseSignal(Semaphore responses) {
+            this.responses = responses;
+        }
+
+        /**
+         * Looks at each byte written for the end of a response
+         * @param b The byte
+         */
+        @Override
+        public void write(int b) {
+            newlinesInRow = b == '\n' ? newlinesInRow + 1 : 0;
+            if (newlinesInRow == 2) {
+                responses.release();
+            }
+        }
+
+        /**
+         * Looks at each byte written for the end of a response
+         * @param bytes The bytes
+         * @param offset The position of the first byte
+         * @param length The number of bytes
+         */
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(bytes[i]);
+            }
+        }
+    }
+
+    /**
+     * A group of running sessions
+     */
+    private static class Sessions {
+
+        /**
+         * Runs the sessions
+         */
+        private final ExecutorService executor;
+        /**
+         * The input of each session
+         */
+        private final LinePipe[] pipes;
+        /**
+         * Released at the end of each session's responses
+         */
+        private final Semaphore responses = new Semaphore(0);
+
+        /**
+         * The constructor for Sessions. It starts the sessions and waits until they have all sent their welcome message
+         * @param template The map which every game starts from a copy of
+         * @param count The number of sessions
+         * @param executor Runs the sessions
+         * @param pathCache The path cache the bots search for the human player with each turn, or null if they don't
+         */
+        private Sessions(Map template, int count, ExecutorService executor, PathCache pathCache) {
+            this.executor = executor;
+            pipes = new LinePipe[count];
+            for (int i = 0; i < count; i++) {
+                LinePipe pipe = new LinePipe();
+                pipes[i] = pipe;
+                long seed = i;
+                executor.execute(() -> {
+                    PrintStream output = new PrintStream(new ResponseSignal(responses), true);
+                    HumanPlayer humanPlayer = new HumanPlayer('P', new BufferedReader(new InputStreamReader(pipe, StandardCharsets.UTF_8), ThreadedGameServer.INPUT_BUFFER_SIZE), output);
+                    BotPlayer botPlayer = new BotPlayer('B') {
+                        @Override
+                        public int getCommand() {
+                            if (pathCache != null) { // Searches as a chasing bot would, but doesn't move
+                                pathCache.getNextStep(getXPos(), getYPos(), humanPlayer.getXPos(), humanPlayer.getYPos());
+                            }
+                            return Command.HELLO; // Doesn't change the game
+                        }
+                    };
+                    new Game(new Map(template), humanPlayer, botPlayer, seed, output).playGame();
+                });
+            }
+            responses.acquireUninterruptibly(count);
+        }
+
+        /**
+         * Sends a command to every session and waits for all the responses
+         * @param command The command to send
+         */
+        private void roundTrip(String command) {
+            for (LinePipe pipe : pipes) {
+                pipe.send(command);
+            }
+            responses.acquireUninterruptibly(pipes.length);
+        }
+
+        /**
+         * Ends every session and waits for them to finish
+         */
+        private void close() {
+            for (LinePipe pipe : pipes) {
+                pipe.end();
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs all session benchmarks
+     * @param bench The benchmark harness
+     * @param mapPath The path of the map the sessions are played on
+     */
+    public static void run(Bench bench, String mapPath) {
+        if (!bench.isSelected("session.")) {
+            return;
+        }
+        ExecutorService probe = ThreadedGameServer.newSessionExecutor(true, 0);
+        if (probe == null) {
+            System.out.println("session.* skipped: virtual threads need Java 21 or later");
+            return;
+        }
+        probe.shutdown();
+        Map template = new Map(mapPath);
+
+        for (boolean virtual : new boolean[]{false, true}) {
+            String mode = virtual ? "virtual" : "platform";
+            Sessions sessions = new Sessions(template, ROUND_TRIP_SESSIONS,
+                    ThreadedGameServer.newSessionExecutor(virtual, ROUND_TRIP_SESSIONS), null);
+            bench.run("session.roundTrip." + mode, ROUND_TRIP_SESSIONS, () -> {
+                sessions.roundTrip("HELLO");
+                return 0;
+            });
+            sessions.close();
+        }
+
+        // Platform threads each reserve a native stack, so the number of them is kept lower
+        if (bench.isSelected("session.memory")) {
+            measureMemory(template, false, 1000, false);
+            measureMemory(template, false, 5000, false);
+            measureMemory(template, true, 1000, false);
+            measureMemory(template, true, 10000, false);
+            measureMemory(template, true, 50000, false);
+            measureMemory(template, true, 10000, true);
+        }
+    }
+
+    /**
+     * Starts sessions which wait for their first command, and prints how much memory each takes
+     * Both the heap, which holds virtual threads' stacks, and the process's resident memory, which also holds platform threads' stacks, are measured
+     * @param template The map which every game starts from a copy of
+     * @param virtual Whether to run the sessions on virtual threads
+     * @param count The number of sessions
+     * @param chasing Whether each session's bot searches a shared path cache once before the memory is measured
+     */
+    private static void measureMemory(Map template, boolean virtual, int count, boolean chasing) {
+        PathCache pathCache = chasing ? new PathCache(template, 1 << 16, PathCache.DEFAULT_MAX_EXPANSIONS) : null;
+        long heapBefore = usedHeap();
+        long residentBefore = residentMemory();
+        Sessions sessions = new Sessions(template, count, ThreadedGameServer.newSessionExecutor(virtual, count), pathCache);
+        if (chasing) {
+            sessions.roundTrip("HELLO"); // Every bot takes a turn, searching for the human player
+        }
+        long heapAfter = usedHeap();
+        long residentAfter = residentMemory();
+        sessions.close();
+        if (pathCache != null) {
+            pathCache.close();
+        }
+
+        System.out.printf("session.memory.%s%s.%d: %.0f heap B/session, %.0f resident B/session%n",
+                virtual ? "virtual" : "platform", chasing ? ".chasing" : "", count,
+                (double) (heapAfter - heapBefore) / count, (double) (residentAfter - residentBefore) / count);
+    }
+
+    /**
+     * Collects garbage, then gets the size of the heap in use
+     * @return The bytes of heap in use
+     */
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Gets the memory of the process which is held in RAM, on Linux
+     * @return The resident memory in bytes, or 0 if it can't be read
+     */
+    private static long residentMemory() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Random;
+
+/**
+ * Benchmarks for games' maps copied from a shared template, which only keep which gold has been picked up, against full
+ * copies of the map's tiles, for copying a distance field to gold for each game, and for loading a map from the template
+ * cache against reading its file
+ */
+public class TemplateBenchmarks {
+
+    /**
+     * The number of views rendered by each call of the view benchmarks
+     */
+    private static final int VIEWS_PER_CALL = 256;
+
+    /**
+     * Runs all template benchmarks
+     * @param bench The benchmark harness
+     * @param mapNames The names of the maps, used in benchmark names
+     * @param mapPaths The paths of the map files, matching the names
+     */
+    public static void run(Bench bench, String[] mapNames, String[] mapPaths) {
+        if (!bench.isSelected("template.")) {
+            return;
+        }
+        for (int i = 0; i < mapNames.length; i++) {
+            String path = mapPaths[i];
+            Map full = new Map(path);
+            Map shared = MapTemplateCache.get(path);
+
+            // Each op is what a new game pays for its own map. B/op is the memory each game's map holds
+            bench.run("template.copy.full." + mapNames[i], () -> new Map(full).getMapWidth());
+            bench.run("template.copy.shared." + mapNames[i], () -> new Map(shared).getMapWidth());
+            // A simulated human's distance field to gold is copied for each game too, like SimulationRunner does
+            DistanceField goldField = new DistanceField(shared, 'G');
+            bench.run("template.goldField.copy." + mapNames[i], () -> new DistanceField(goldField, full).getChangedTileCount());
+            bench.run("template.load.file." + mapNames[i], () -> Map.load(path).getMapWidth());
+            bench.run("template.load.cached." + mapNames[i], () -> Map.loadShared(path).getMapWidth());
+
+            // Views of maps with a quarter of the gold picked up, to show what checking the overlay costs
+            Map fullGame = new Map(full);
+            Map sharedGame = new Map(shared);
+            int width = full.getMapWidth();
+            int height = full.getMapHeight();
+            Random random = new Random(6);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (full.getCharAtPos(x, y) == 'G' && random.nextInt(4) == 0) {
+                        fullGame.resetCharAtPos(x, y);
+                        sharedGame.resetCharAtPos(x, y);
+                    }
+                }
+            }
+            int[] xs = new int[VIEWS_PER_CALL];
+            int[] ys = new int[VIEWS_PER_CALL];
+            for (int v = 0; v < VIEWS_PER_CALL; v++) {
+                xs[v] = random.nextInt(width);
+                ys[v] = random.nextInt(height);
+            }
+            OccupancyIndex occupancy = new OccupancyIndex(new Player[0]);
+            char[] view = new char[25];
+            Map[] games = {fullGame, sharedGame};
+            String[] names = {"full", "shared"};
+            for (int g = 0; g < games.length; g++) {
+                Map game = games[g];
+                bench.run("template.renderView." + names[g] + "." + mapNames[i], VIEWS_PER_CALL, () -> {
+                    long sum = 0;
+                    for (int v = 0; v < VIEWS_PER_CALL; v++) {
+                        game.renderView(xs[v], ys[v], 5, occupancy, view);
+                        sum += view[12];
+                    }
+                    return sum;
+                });
+            }
+        }
+        System.out.printf("template cache: %d hits, %d misses%n", MapTemplateCache.getHits(), MapTemplateCache.getMisses());
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Benchmarks for games with many bots, to show how ticks per second fall as the number of bots grows
+ */
+public class TickBenchmarks {
+
+    /**
+     * The numbers of bots measured
+     */
+    private static final int[] BOT_COUNTS = {1, 16, 128, 512, 2048};
+    /**
+     * The fewest steps between the human player and each bot when a game starts, so games don't end straight away
+     */
+    private static final int MIN_SPAWN_DISTANCE = 20;
+
+    /**
+     * Runs all tick benchmarks
+     * @param bench The benchmark harness
+     * @param mapName The name of the map, used in benchmark names
+     * @param mapPath The path of the map file
+     */
+    public static void run(Bench bench, String mapName, String mapPath) {
+        Map template = new Map(mapPath);
+        PathCache pathCache = new PathCache(template, 1 << 16, PathCache.DEFAULT_MAX_EXPANSIONS);
+        for (int botCount : BOT_COUNTS) {
+            String name = "tick.bots" + botCount + "." + mapName;
+            if (!bench.isSelected(name)) {
+                continue;
+            }
+            Game[] game = {createGame(template, pathCache, botCount, 0)};
+            long[] seed = {1};
+            int[] moves = {Command.move('N'), Command.move('E'), Command.move('S'), Command.move('W')};
+            // Each op is one tick: the human player's move, then every bot's turn. Caught players start a new game
+            bench.run(name, () -> {
+                if (!game[0].isActive()) {
+                    game[0] = createGame(template, pathCache, botCount, seed[0]++);
+                }
+                HumanPlayer humanPlayer = game[0].getHumanPlayer();
+                game[0].playTurn(humanPlayer, moves[(int) (seed[0]++ & 3)]);
+                if (game[0].isActive()) {
+                    game[0].playBotTurns();
+                }
+                return humanPlayer.getXPos();
+            });
+        }
+        pathCache.close();
+    }
+
+    /**
+     * Creates a game on a copy of the map with a number of bots sharing a path cache
+     * @param template The map to copy
+     * @param pathCache The path cache the bots share
+     * @param botCount The number of bots
+     * @param seed The seed for the players' positions and the bots' moves
+     * @return The game
+     */
+    private static Game createGame(Map template, PathCache pathCache, int botCount, long seed) {
+        BotPlayer[] botPlayers = new BotPlayer[botCount];
+        for (int i = 0; i < botCount; i++) {
+            botPlayers[i] = new BotPlayer('B', seed * botCount + i, pathCache);
+        }
+        return new Game(new Map(template), new HumanPlayer('P', null, null), botPlayers, seed, System.out, MIN_SPAWN_DISTANCE);
+    }
+}
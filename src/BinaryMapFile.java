@@ -0,0 +1,318 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Class to read and write maps in the compiled binary map format (.dmap files), which load much faster than text maps
+ * A file is a header holding the map's name, gold required, width, height and a CRC-32 checksum of its tiles, followed by
+ * the tiles packed 2 bits each, exactly as a PackedTileStore holds them. The packed tiles can be run-length encoded, which
+ * shrinks most maps a lot because they are mostly long runs of wall and floor
+ */
+public class BinaryMapFile {
+
+    /**
+     * The file extension of binary map files
+     */
+    public static final String EXTENSION = ".dmap";
+    /**
+     * The first bytes of every binary map file ("DMAP")
+     */
+    private static final int MAGIC = 0x444D4150;
+    /**
+     * The version of the format
+     */
+    private static final int VERSION = 1;
+    /**
+     * Set in the header's flags when the packed tiles are run-length encoded
+     */
+    private static final int FLAG_RLE = 1;
+    /**
+     * The size of the header before the map name
+     */
+    private static final int FIXED_HEADER_SIZE = 34;
+    /**
+     * The longest run of equal bytes, or of different bytes, held by one run-length encoded block
+     */
+    private static final int MAX_RUN = 128;
+
+    /**
+     * The name of the map
+     */
+    private final String mapName;
+    /**
+     * The gold required for a player to win the game
+     */
+    private final int goldRequired;
+    /**
+     * The CRC-32 checksum of the packed tiles
+     */
+    private final int checksum;
+    /**
+     * The map's tiles
+     */
+    private final TileStore tiles;
+
+    /**
+     * The constructor for BinaryMapFile. It reads the whole file onto the heap, checking its checksum
+     * @param filePath The path of the binary map file
+     */
+    public BinaryMapFile(String filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * The constructor for BinaryMapFile. It reads the whole file, checking its checksum
+     * Off the heap, the file is mapped into memory, and tiles which aren't run-length encoded are used straight from the
+     * mapping without being copied. Encoded tiles are decoded into a direct buffer
+     * @param filePath The path of the binary map file
+     * @param offHeap Whether to keep the tiles off the heap, in an OffHeapTileStore, rather than in a PackedTileStore
+     */
+    public BinaryMapFile(String filePath, boolean offHeap) {
+        String name = null;
+        int gold = 0, fileChecksum = 0;
+        TileStore store = null;
+
+        try {
+            ByteBuffer file;
+            if (offHeap) {
+                try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                    file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays mapped once closed
+                }
+            } else {
+                file = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filePath)));
+            }
+            if (file.remaining() < FIXED_HEADER_SIZE || file.getInt() != MAGIC || file.getInt() != VERSION) {
+                invalidFileFormat();
+            }
+            int flags = file.getInt();
+            int width = file.getInt();
+            int height = file.getInt();
+            gold = file.getInt();
+            fileChecksum = file.getInt();
+            int payloadLength = file.getInt();
+            byte[] nameBytes = new byte[file.getShort() & 0xFFFF];
+            if (width <= 0 || height < 0 || payloadLength < 0 || file.remaining() < nameBytes.length + (long) payloadLength) {
+                invalidFileFormat();
+            }
+            if ((long) width * height > Map.MAX_TILE_COUNT) {
+                invalidFileFormat(); // Checked before the tiles are allocated, as a map this size can't be indexed
+            }
+            file.get(nameBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            int packedLength = (int) ((width * (long) height + 3) >>> 2);
+            if (offHeap && (flags & FLAG_RLE) == 0) { // Uses the tiles where they are in the mapped file
+                if (payloadLength != packedLength) {
+                    invalidFileFormat();
+                }
+                ByteBuffer packed = file.slice();
+                packed.limit(packedLength);
+                CRC32 crc = new CRC32();
+                crc.update(packed.duplicate());
+                if ((int) crc.getValue() != fileChecksum) {
+                    invalidFileFormat();
+                }
+                store = new OffHeapTileStore(width, height, packed);
+            } else {
+                byte[] packed = new byte[packedLength];
+                if ((flags & FLAG_RLE) != 0) {
+                    decode(file, payloadLength, packed);
+                } else if (payloadLength == packed.length) {
+                    file.get(packed);
+                } else {
+                    invalidFileFormat();
+                }
+                if (checksum(packed) != fileChecksum) {
+                    invalidFileFormat();
+                }
+                store = offHeap ? OffHeapTileStore.copyOf(width, height, packed) : new PackedTileStore(width, height, packed);
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+
+        mapName = name;
+        goldRequired = gold;
+        checksum = fileChecksum;
+        tiles = store;
+    }
+
+    /**
+     * Outputs a specific error message and quits the program
+     */
+    private static void invalidFileFormat() {
+        System.out.println("Invalid binary map file format");
+        System.exit(0);
+    }
+
+    /**
+     * Calculates the checksum of packed tiles
+     * @param packed The packed tiles
+     * @return The CRC-32 checksum
+     */
+    private static int checksum(byte[] packed) {
+        CRC32 crc = new CRC32();
+        crc.update(packed, 0, packed.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Run-length encodes packed tiles
+     * The bytes are split into blocks, each starting with a control byte. A control byte of n from 0 to 127 is
+     * followed by n + 1 bytes copied as they are, and one of -n from -1 to -127 is followed by one byte repeated n + 1 times
+     * @param packed The packed tiles
+     * @return The encoded bytes, in a buffer from its start to its position
+     */
+    private static ByteBuffer encode(byte[] packed) {
+        // Blocks of different bytes only end when full or at a run which saves at least their control byte, so encoding
+        // never adds more than one byte per full block
+        ByteBuffer encoded = ByteBuffer.allocate(packed.length + packed.length / MAX_RUN + 1);
+        int i = 0;
+        while (i < packed.length) {
+            int runEnd = i + 1; // Finds the run of equal bytes starting here
+            while (runEnd < packed.length && runEnd - i < MAX_RUN && packed[runEnd] == packed[i]) {
+                runEnd++;
+            }
+            if (runEnd - i > 1) {
+                encoded.put((byte) (1 - (runEnd - i))).put(packed[i]);
+                i = runEnd;
+                continue;
+            }
+            // Collects bytes until a run of at least 3 starts. Shorter runs stay in the block, as ending it would cost a control byte
+            int literalEnd = i + 1;
+            while (literalEnd < packed.length && literalEnd - i < MAX_RUN && (literalEnd + 2 >= packed.length
+                    || packed[literalEnd] != packed[literalEnd + 1] || packed[literalEnd] != packed[literalEnd + 2])) {
+                literalEnd++;
+            }
+            encoded.put((byte) (literalEnd - i - 1)).put(packed, i, literalEnd - i);
+            i = literalEnd;
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes run-length encoded packed tiles
+     * @param file The file, positioned at the start of the encoded bytes
+     * @param length The number of encoded bytes
+     * @param packed The array to decode into. It must be filled exactly
+     */
+    private static void decode(ByteBuffer file, int length, byte[] packed) {
+        int end = file.position() + length;
+        int i = 0;
+        while (file.position() < end) {
+            int control = file.get();
+            int count = control >= 0 ? control + 1 : 1 - control;
+            if (i + count > packed.length || file.position() + (control >= 0 ? count : 1) > end) {
+                invalidFileFormat();
+            }
+            if (control >= 0) {
+                file.get(packed, i, count); // Different bytes, copied as they are
+            } else {
+                Arrays.fill(packed, i, i + count, file.get()); // One byte repeated
+            }
+            i += count;
+        }
+        if (i != packed.length) {
+            invalidFileFormat();
+        }
+    }
+
+    /**
+     * Writes a binary map file
+     * @param filePath The path of the file to write
+     * @param mapName The name of the map
+     * @param goldRequired The gold required to win the game
+     * @param tiles The map's tiles
+     * @param compress Whether to run-length encode the tiles. They're stored as they are if that would be smaller
+     */
+    public static void write(String filePath, String mapName, int goldRequired, PackedTileStore tiles, boolean compress) {
+        byte[] packed = tiles.toPackedBytes();
+        ByteBuffer payload = ByteBuffer.wrap(packed);
+        int flags = 0;
+        if (compress) {
+            ByteBuffer encoded = encode(packed);
+            if (encoded.position() < packed.length) {
+                encoded.flip();
+                payload = encoded;
+                flags |= FLAG_RLE;
+            }
+        }
+        byte[] nameBytes = mapName.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(nameBytes.length, 0xFFFF); // Very long names are cut short to fit the header
+
+        ByteBuffer file = ByteBuffer.allocate(FIXED_HEADER_SIZE + nameLength + payload.remaining());
+        file.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(tiles.getWidth()).putInt(tiles.getHeight()).putInt(goldRequired);
+        file.putInt(checksum(packed)).putInt(payload.remaining()).putShort((short) nameLength).put(nameBytes, 0, nameLength);
+        file.put(payload);
+        try {
+            Files.write(Paths.get(filePath), file.array());
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+
+    /**
+     * Converts a text map file into a binary map file
+     * @param mapFilePath The path of the text map file
+     * @param binaryFilePath The path of the binary map file to write
+     * @param compress Whether to run-length encode the tiles
+     */
+    public static void convert(String mapFilePath, String binaryFilePath, boolean compress) {
+        MapFileReader reader = new MapFileReader(mapFilePath);
+        PackedTileStore tiles = Map.readTiles(reader);
+        write(binaryFilePath, reader.getMapName(), reader.getGoldRequired(), tiles, compress);
+    }
+
+    /**
+     * Gets the name of the map
+     * @return The map name
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    /**
+     * Gets the gold required to win
+     * @return The gold required
+     */
+    public int getGoldRequired() {
+        return goldRequired;
+    }
+
+    /**
+     * Gets the checksum of the map's tiles, which is the same for every file holding the same tiles
+     * @return The CRC-32 checksum
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Gets the map's tiles
+     * @return The tile store, a PackedTileStore, or an OffHeapTileStore if the file was read off the heap
+     */
+    public TileStore getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Converts a text map file into a binary map file from the command line
+     * @param args The text map file path, the binary map file path, then optionally "raw" to store the tiles without run-length encoding
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: BinaryMapFile <map file> <binary map file> [raw]");
+            System.exit(0);
+        }
+        convert(args[0], args[1], args.length < 3 || !args[2].equals("raw"));
+    }
+}
@@ -5,14 +5,90 @@ import java.util.Random;
  */
 public class BotPlayer extends Player {
 
+    /**
+     * The multiplier of the random number generator, the same as java.util.Random's
+     */
+    private static final long RANDOM_MULTIPLIER = 0x5DEECE66DL;
+    /**
+     * The increment of the random number generator
+     */
+    private static final long RANDOM_ADDEND = 0xBL;
+    /**
+     * The random number generator's state is kept to 48 bits
+     */
+    private static final long RANDOM_MASK = (1L << 48) - 1;
+
+    /**
+     * A snapshot of everything a bot decides its commands with, so a bot can be saved, restored or forked
+     * It's immutable, so one state can be shared by any number of snapshots and forks
+     */
+    public static final class State {
+
+        /**
+         * The last seen x position of the human player, relative to the bot's position
+         */
+        private final int knownOpponentXDist;
+        /**
+         * The last seen y position of the human player, relative to the bot's position
+         */
+        private final int knownOpponentYDist;
+        /**
+         * The last seen x position of the human player on the map
+         */
+        private final int knownOpponentXPos;
+        /**
+         * The last seen y position of the human player on the map
+         */
+        private final int knownOpponentYPos;
+        /**
+         * True if the bot is searching for the player's position, rather than chasing
+         */
+        private final boolean searching;
+        /**
+         * Coordinates the timings of commands when searching
+         */
+        private final int searchCounter;
+        /**
+         * The state of the bot's random number generator
+         */
+        private final long randomState;
+        /**
+         * The path cache the bot uses, which is shared rather than copied
+         */
+        private final PathCache pathCache;
+
+        /**
+         * The constructor for State
+         * @param bot The bot whose state is saved
+         */
+        private State(BotPlayer bot) {
+            knownOpponentXDist = bot.knownOpponentXDist;
+            knownOpponentYDist = bot.knownOpponentYDist;
+            knownOpponentXPos = bot.knownOpponentXPos;
+            knownOpponentYPos = bot.knownOpponentYPos;
+            searching = bot.searching;
+            searchCounter = bot.searchCounter;
+            randomState = bot.randomState;
+            pathCache = bot.pathCache;
+        }
+    }
+
     /**
      * The last seen x position of the human player, relative to the bot's position
      */
     private int knownOpponentXDist;
     /**
-     * The last seen x position of the human player, relative to the bot's position
+     * The last seen y position of the human player, relative to the bot's position
      */
     private int knownOpponentYDist;
+    /**
+     * The last seen x position of the human player on the map
+     */
+    private int knownOpponentXPos;
+    /**
+     * The last seen y position of the human player on the map
+     */
+    private int knownOpponentYPos;
     /**
      * True if the bot is searching for the player's position, rather than chasing
      */
@@ -25,13 +101,43 @@ public class BotPlayer extends Player {
      * An array of directions to use in commands
      */
     private final char[] directions;
+    /**
+     * The state of the random number generator used to choose directions when searching
+     * It's the same generator as java.util.Random, kept in a field so it can be saved with the rest of the bot's state
+     */
+    private long randomState;
+    /**
+     * Finds paths around walls when chasing, or null if the bot chases in a straight line
+     */
+    private final PathCache pathCache;
 
     /**
      * The constructor for BotPlayer
      * @param playerChar The character to represent the player on the map
      */
     public BotPlayer(char playerChar) {
+        this(playerChar, new Random().nextLong(), null);
+    }
+
+    /**
+     * The constructor for BotPlayer, with a seed so that its random choices can be repeated
+     * @param playerChar The character to represent the player on the map
+     * @param seed The seed for the bot's random choices
+     */
+    public BotPlayer(char playerChar, long seed) {
+        this(playerChar, seed, null);
+    }
+
+    /**
+     * The constructor for BotPlayer, for a bot which chases along the shortest path around walls
+     * @param playerChar The character to represent the player on the map
+     * @param seed The seed for the bot's random choices
+     * @param pathCache Finds paths on the map being played on. It can be shared by many bots
+     */
+    public BotPlayer(char playerChar, long seed, PathCache pathCache) {
         super(playerChar);
+        randomState = (seed ^ RANDOM_MULTIPLIER) & RANDOM_MASK; // Scrambles the seed as java.util.Random does
+        this.pathCache = pathCache;
         knownOpponentXDist = 0;
         knownOpponentYDist = 0;
         searching = true;
@@ -39,50 +145,109 @@ public class BotPlayer extends Player {
         directions = new char[]{'N', 'S', 'E', 'W'};
     }
 
+    /**
+     * The constructor for BotPlayer, for a bot which carries on from a saved state, e.g. in a fork of a game
+     * @param playerChar The character to represent the player on the map
+     * @param state The state to start from
+     */
+    public BotPlayer(char playerChar, State state) {
+        super(playerChar);
+        pathCache = state.pathCache;
+        directions = new char[]{'N', 'S', 'E', 'W'};
+        restoreState(state);
+    }
+
+    /**
+     * Saves everything the bot decides its commands with. Its position is saved by the game
+     * @return The saved state
+     */
+    public State saveState() {
+        return new State(this);
+    }
+
+    /**
+     * Sets the bot back to a saved state
+     * @param state The state, saved by this bot or one using the same path cache
+     */
+    public void restoreState(State state) {
+        knownOpponentXDist = state.knownOpponentXDist;
+        knownOpponentYDist = state.knownOpponentYDist;
+        knownOpponentXPos = state.knownOpponentXPos;
+        knownOpponentYPos = state.knownOpponentYPos;
+        searching = state.searching;
+        searchCounter = state.searchCounter;
+        randomState = state.randomState;
+    }
+
+    /**
+     * Chooses a random direction, giving the same directions as java.util.Random.nextInt(4) would with the same seed
+     * @return The index of the direction, from 0 to 3
+     */
+    private int nextRandomDirection() {
+        randomState = (randomState * RANDOM_MULTIPLIER + RANDOM_ADDEND) & RANDOM_MASK;
+        return (int) ((4 * (randomState >>> 17)) >> 31); // The top 31 bits, scaled to 0-3
+    }
+
     /**
      * Selects a command to try and find the player's position
-     * @return The selected command
+     * @return The selected command, from Command
      */
-    private String getSearchCommand() {
-        Random random = new Random();
+    private int getSearchCommand() {
         if (searchCounter % 4 == 0) { // Every 4 loops, the bot looks for the player
-            return "LOOK";
+            return Command.LOOK;
         } else { // Every other loop, the bot moves in a random direction
-            return "MOVE " + directions[random.nextInt(4)];
+            return Command.move(directions[nextRandomDirection()]);
         }
     }
 
     /**
      * Selects a command to move to the player's last known position
-     * @return The selected command
+     * @return The selected command, from Command
      */
-    private String getChaseCommand() {
+    private int getChaseCommand() {
+        if (pathCache != null) {
+            // Follows the shortest path around walls to where the player was seen
+            char step = pathCache.getNextStep(getXPos(), getYPos(), knownOpponentXPos, knownOpponentYPos);
+            if (step != 0) {
+                return Command.move(step);
+            }
+            // If the bot has reached the position, or there's no path to it, it starts searching again
+            searching = true;
+            if (GameStats.ENABLED) {
+                GameStats.countBotSearch();
+            }
+            searchCounter = 1;
+            return Command.LOOK;
+        }
         if (knownOpponentXDist < 0) { // Moves west if the player's known position is to the left
             knownOpponentXDist++; // Adjusts the relative opponent position
-            return "MOVE W";
+            return Command.move('W');
         } else if (knownOpponentXDist > 0) { // Moves west if the player's known position is to the right
             knownOpponentXDist--; // Adjusts the relative opponent position
-            return "MOVE E";
+            return Command.move('E');
         } else if (knownOpponentYDist < 0) { // Moves north if the player's known position is above the bot
             knownOpponentYDist++; // Adjusts the relative opponent position
-            return "MOVE N";
+            return Command.move('N');
         } else if (knownOpponentYDist > 0) { // Moves south if the player's known position is below the bot
             knownOpponentYDist--; // Adjusts the relative opponent position
-            return "MOVE S";
+            return Command.move('S');
         } else { // If bot reaches the last seen player position, it starts searching again
             searching = true;
+            if (GameStats.ENABLED) {
+                GameStats.countBotSearch();
+            }
             searchCounter = 1;
-            return "LOOK";
+            return Command.LOOK;
         }
     }
 
     /**
      * Selects a command for the bot
-     * @return The selected command
+     * @return The selected command, from Command
      */
     @Override
-    public String[] getCommand() {
-        String command;
+    public int getCommand() {
+        int command;
 
         if (searching) { // If the bot doesn't know the player's position, it searches for the player
             command = getSearchCommand();
@@ -90,27 +255,57 @@ public class BotPlayer extends Player {
         } else { // If the bot has seen the player, it moves to the position it was seen at
             command = getChaseCommand();
         }
-        command = command.toUpperCase(); // Command converted to upper case
 
-        return command.split(" "); // Command split into an array, separated by spaces
+        return command;
     }
 
     /**
-     * Processes the data returned by the 'look' command to find the player
-     * @param mapView The grid view produced by the command
+     * Processes the raw view produced by the 'look' command to find the player
+     * @param view The grid view produced by the command, in row-major order
+     * @param viewWidth The width and height of the grid
      * @param opponentPlayerChar The opponent's player char to search for
      */
-    public void processLookResult(char[][] mapView, char opponentPlayerChar) {
+    public void processLookResult(char[] view, int viewWidth, char opponentPlayerChar) {
         // Goes through every item in the grid and searches for the human player's character
-        for (int y = 0; y < mapView.length; y++) {
-            for (int x = 0; x < mapView[0].length; x++) {
-                if (mapView[y][x] == opponentPlayerChar) {
+        for (int y = 0; y < viewWidth; y++) {
+            for (int x = 0; x < viewWidth; x++) {
+                if (view[y * viewWidth + x] == opponentPlayerChar) {
                     // Calculates the player's position relative to the bot, using the index of the player's character in the grid
-                    knownOpponentXDist = x - (mapView[0].length - 1) / 2;
-                    knownOpponentYDist = y - (mapView.length - 1) / 2;
-                    searching = false; // Bot now chases down the player
+                    seeOpponent(x - (viewWidth - 1) / 2, y - (viewWidth - 1) / 2);
                 }
             }
         }
     }
+
+    /**
+     * Processes the tiles seen by the 'look' command with a field of view, to find the player
+     * Only the player's tile needs checking, so it takes the same time however far the bot can see
+     * @param fieldOfView The field of view the bot looked with
+     * @param visible The tiles the bot can see, from fieldOfView.getVisible at the bot's position
+     * @param opponentXPos The horizontal coordinate of the opponent, which the bot only learns if it can see them
+     * @param opponentYPos The vertical coordinate of the opponent
+     */
+    public void processVisibleTiles(FieldOfView fieldOfView, long[] visible, int opponentXPos, int opponentYPos) {
+        int xDist = opponentXPos - getXPos();
+        int yDist = opponentYPos - getYPos();
+        if (fieldOfView.isVisible(visible, xDist, yDist)) {
+            seeOpponent(xDist, yDist);
+        }
+    }
+
+    /**
+     * Remembers where the player was seen, and starts chasing them
+     * @param xDist The player's horizontal distance from the bot
+     * @param yDist The player's vertical distance from the bot
+     */
+    private void seeOpponent(int xDist, int yDist) {
+        knownOpponentXDist = xDist;
+        knownOpponentYDist = yDist;
+        knownOpponentXPos = getXPos() + knownOpponentXDist;
+        knownOpponentYPos = getYPos() + knownOpponentYDist;
+        if (GameStats.ENABLED && searching) {
+            GameStats.countBotChase();
+        }
+        searching = false; // Bot now chases down the player
+    }
 }
@@ -0,0 +1,521 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Class to store a map's tiles on disk in fixed-size square chunks, which are only read into memory when needed
+ * This allows maps far bigger than the heap, as long as players only use small parts of them at a time.
+ * Chunks are kept in a least-recently-used cache with a memory budget. Changed chunks are written back to the file
+ * when they leave the cache, or when the store is flushed or closed.
+ *
+ * A chunk file starts with a header block holding the map's details, followed by every chunk in row-major order.
+ * Each chunk holds its tiles as 2-bit codes in row-major order, four to a byte. Tiles past the edge of the map are walls
+ */
+public class ChunkedTileStore implements TileStore {
+
+    /**
+     * Identifies a chunk file ("DDCH")
+     */
+    private static final int MAGIC = 0x44444348;
+    /**
+     * The version of the chunk file format
+     */
+    private static final int VERSION = 1;
+    /**
+     * The size of the header block at the start of a chunk file. Chunks start straight after it
+     */
+    private static final int HEADER_SIZE = 4096;
+    /**
+     * A byte of four wall tiles, used to fill tiles past the edge of the map
+     */
+    private static final byte ALL_WALLS = (byte) 0b01010101;
+
+    /**
+     * A chunk of tiles held in memory
+     */
+    private static class Chunk {
+
+        /**
+         * The index of the chunk in the file
+         */
+        private final long index;
+        /**
+         * The packed tile codes of the chunk
+         */
+        private final byte[] tiles;
+        /**
+         * Whether the chunk has changed since it was read
+         */
+        private boolean dirty;
+
+        /**
+         * The constructor for Chunk
+         * @param index The index of the chunk in the file
+         * @param tiles The packed tile codes of the chunk
+         */
+        private Chunk(long index, byte[] tiles) {
+            this.index = index;
+            this.tiles = tiles;
+        }
+    }
+
+    /**
+     * The open chunk file
+     */
+    private final FileChannel channel;
+    /**
+     * The name of the map
+     */
+    private final String mapName;
+    /**
+     * The gold required to win the game
+     */
+    private final int goldRequired;
+    /**
+     * The number of tiles in each row
+     */
+    private final int width;
+    /**
+     * The number of rows
+     */
+    private final int height;
+    /**
+     * The number of tiles along each side of a chunk. A power of 2
+     */
+    private final int chunkSize;
+    /**
+     * The number of bits to shift a coordinate by to get its chunk coordinate
+     */
+    private final int chunkShift;
+    /**
+     * The number of chunks in each row of chunks
+     */
+    private final int chunksAcross;
+    /**
+     * The number of bytes in each chunk
+     */
+    private final int chunkBytes;
+    /**
+     * The chunks held in memory, in order of last use
+     */
+    private final LinkedHashMap<Long, Chunk> cache;
+    /**
+     * The most recently used chunk, checked before the cache so repeated lookups in one area are quick
+     */
+    private Chunk lastChunk;
+    /**
+     * The number of lookups which found their chunk in memory
+     */
+    private long hits;
+    /**
+     * The number of lookups which had to read their chunk from the file
+     */
+    private long misses;
+    /**
+     * The number of chunks which have left the cache
+     */
+    private long evictions;
+    /**
+     * The number of changed chunks written back to the file
+     */
+    private long writeBacks;
+
+    /**
+     * The constructor for ChunkedTileStore. It opens an existing chunk file
+     * @param filePath The path of the chunk file
+     * @param memoryBudget The most bytes of chunks to hold in memory at once. At least one chunk is always held
+     */
+    public ChunkedTileStore(String filePath, long memoryBudget) {
+        FileChannel openedChannel = null;
+        String name = null;
+        int gold = 0, fileWidth = 0, fileHeight = 0, fileChunkSize = 0;
+
+        try {
+            openedChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(openedChannel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                invalidFileFormat();
+            }
+            fileChunkSize = header.getInt();
+            fileWidth = header.getInt();
+            fileHeight = header.getInt();
+            gold = header.getInt();
+            byte[] nameBytes = new byte[header.getShort() & 0xFFFF];
+            header.get(nameBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_8);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+
+        channel = openedChannel;
+        mapName = name;
+        goldRequired = gold;
+        width = fileWidth;
+        height = fileHeight;
+        chunkSize = fileChunkSize;
+        chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        chunksAcross = (width + chunkSize - 1) >> chunkShift;
+        chunkBytes = chunkSize * chunkSize / 4;
+        long maxChunks = Math.max(memoryBudget / chunkBytes, 1);
+        cache = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<Long, Chunk> eldest) {
+                if (size() > maxChunks) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Outputs a specific error message and quits the program
+     */
+    private static void invalidFileFormat() {
+        System.out.println("Invalid chunk file format");
+        System.exit(0);
+    }
+
+    /**
+     * Reads from a file until the buffer is full or the file ends
+     * @param channel The file to read from
+     * @param buffer The buffer to fill
+     * @param position The position in the file to start reading at
+     * @throws IOException If the file can't be read
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead == -1) {
+                break;
+            }
+            position += bytesRead;
+        }
+    }
+
+    /**
+     * Writes a whole buffer to a file
+     * @param channel The file to write to
+     * @param buffer The buffer to write
+     * @param position The position in the file to start writing at
+     * @throws IOException If the file can't be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Gets the chunk holding a position, reading it from the file if it isn't in memory
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return The chunk
+     */
+    private Chunk getChunk(int xPos, int yPos) {
+        long index = (long) (yPos >> chunkShift) * chunksAcross + (xPos >> chunkShift);
+        Chunk chunk = lastChunk;
+        if (chunk != null && chunk.index == index) {
+            hits++;
+            return chunk;
+        }
+        chunk = cache.get(index);
+        if (chunk != null) {
+            hits++;
+        } else {
+            misses++;
+            chunk = readChunk(index);
+            cache.put(index, chunk); // May evict the least recently used chunk
+        }
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Reads a chunk from the file
+     * @param index The index of the chunk
+     * @return The chunk
+     */
+    private Chunk readChunk(long index) {
+        byte[] tiles = new byte[chunkBytes];
+        try {
+            readFully(channel, ByteBuffer.wrap(tiles), HEADER_SIZE + index * chunkBytes);
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+        return new Chunk(index, tiles);
+    }
+
+    /**
+     * Called when a chunk leaves the cache. Writes it back to the file if it has changed
+     * @param chunk The chunk leaving the cache
+     */
+    private void evict(Chunk chunk) {
+        evictions++;
+        if (lastChunk == chunk) {
+            lastChunk = null;
+        }
+        writeBack(chunk);
+    }
+
+    /**
+     * Writes a chunk back to the file if it has changed since it was read
+     * @param chunk The chunk to write
+     */
+    private void writeBack(Chunk chunk) {
+        if (!chunk.dirty) {
+            return;
+        }
+        try {
+            writeFully(channel, ByteBuffer.wrap(chunk.tiles), HEADER_SIZE + chunk.index * chunkBytes);
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+        chunk.dirty = false;
+        writeBacks++;
+    }
+
+    /**
+     * Gets the index of a tile within its chunk
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The row-major index of the tile in the chunk
+     */
+    private int tileIndex(int xPos, int yPos) {
+        int mask = chunkSize - 1;
+        return ((yPos & mask) << chunkShift) | (xPos & mask);
+    }
+
+    /**
+     * Gets the code of the tile at the specified position
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The tile code
+     */
+    @Override
+    public synchronized int getTileCode(int xPos, int yPos) {
+        int i = tileIndex(xPos, yPos);
+        return (getChunk(xPos, yPos).tiles[i >>> 2] >> ((i & 3) << 1)) & 3;
+    }
+
+    /**
+     * Sets the code of the tile at the specified position. The chunk is written back to the file once it leaves memory
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param tileCode The new code of the tile
+     */
+    @Override
+    public synchronized void setTileCode(int xPos, int yPos, int tileCode) {
+        Chunk chunk = getChunk(xPos, yPos);
+        int i = tileIndex(xPos, yPos);
+        int shift = (i & 3) << 1;
+        chunk.tiles[i >>> 2] = (byte) ((chunk.tiles[i >>> 2] & ~(3 << shift)) | (tileCode << shift));
+        chunk.dirty = true;
+    }
+
+    /**
+     * Gets the number of tiles in each row
+     * @return The width of the store
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows
+     * @return The height of the store
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Chunked stores share their file, so they can't be copied
+     * @return Never returns
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public TileStore copy() {
+        throw new UnsupportedOperationException("Chunked tile stores can't be copied");
+    }
+
+    /**
+     * Writes every changed chunk in memory back to the file
+     */
+    public synchronized void flush() {
+        for (Chunk chunk : cache.values()) {
+            writeBack(chunk);
+        }
+    }
+
+    /**
+     * Writes back changed chunks, then closes the file
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+
+    /**
+     * Gets the name of the map stored in the file
+     * @return The map name
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    /**
+     * Gets the gold required to win the game, stored in the file
+     * @return The gold required to win the game
+     */
+    public int getGoldRequired() {
+        return goldRequired;
+    }
+
+    /**
+     * Gets the number of lookups which found their chunk in memory
+     * @return The number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups which had to read their chunk from the file
+     * @return The number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of chunks which have left the cache
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of changed chunks written back to the file
+     * @return The number of write-backs
+     */
+    public synchronized long getWriteBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * Converts a text map file into a chunk file
+     * The text file is read once, and only one band of chunks is held in memory at a time, so maps of any size can be converted
+     * @param mapFilePath The path of the text map file
+     * @param chunkFilePath The path of the chunk file to write. Any existing file is replaced
+     * @param chunkSize The number of tiles along each side of a chunk. Must be a power of 2, at least 4
+     */
+    public static void convert(String mapFilePath, String chunkFilePath, int chunkSize) {
+        if (chunkSize < 4 || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("Chunk size must be a power of 2, at least 4");
+        }
+        MapFileReader reader = new MapFileReader(mapFilePath);
+        int chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        int chunkBytes = chunkSize * chunkSize / 4;
+
+        try (FileChannel output = FileChannel.open(Paths.get(chunkFilePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[][] band = new byte[1][]; // The chunks of the current band of rows, side by side, created once the width is known
+            long[] bandStart = {HEADER_SIZE}; // The file position of the current band
+            reader.read(row -> {
+                int chunksAcross = (row.length + chunkSize - 1) >> chunkShift;
+                if (band[0] == null) {
+                    band[0] = new byte[chunksAcross * chunkBytes];
+                    Arrays.fill(band[0], ALL_WALLS); // Tiles past the edge of the map are walls
+                }
+                int y = (reader.getRowCount() & (chunkSize - 1)); // The row being added within the band
+                for (int x = 0; x < row.length; x++) {
+                    int i = (x >> chunkShift) * chunkBytes * 4 + (y << chunkShift) + (x & (chunkSize - 1));
+                    int shift = (i & 3) << 1;
+                    band[0][i >>> 2] = (byte) ((band[0][i >>> 2] & ~(3 << shift)) | (row[x] << shift));
+                }
+                if (y == chunkSize - 1) { // The band is complete, so its chunks are written
+                    writeBand(output, band[0], bandStart[0]);
+                    bandStart[0] += band[0].length;
+                    Arrays.fill(band[0], ALL_WALLS);
+                }
+            });
+            if ((reader.getRowCount() & (chunkSize - 1)) != 0) { // Writes the last band if it's only partly filled
+                writeBand(output, band[0], bandStart[0]);
+            }
+            writeHeader(output, reader.getMapName(), reader.getGoldRequired(), reader.getWidth(), reader.getRowCount(), chunkSize);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+
+    /**
+     * Writes a band of chunks to a chunk file
+     * @param output The chunk file
+     * @param band The packed chunks of the band, side by side
+     * @param position The file position of the band
+     */
+    private static void writeBand(FileChannel output, byte[] band, long position) {
+        try {
+            writeFully(output, ByteBuffer.wrap(band), position);
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+
+    /**
+     * Writes the header block of a chunk file
+     * @param output The chunk file
+     * @param mapName The name of the map
+     * @param goldRequired The gold required to win the game
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param chunkSize The number of tiles along each side of a chunk
+     * @throws IOException If the file can't be written
+     */
+    private static void writeHeader(FileChannel output, String mapName, int goldRequired, int width, int height, int chunkSize) throws IOException {
+        byte[] nameBytes = mapName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int nameLength = Math.min(nameBytes.length, HEADER_SIZE - 32); // Very long names are cut short to fit the header
+        header.putInt(MAGIC).putInt(VERSION).putInt(chunkSize).putInt(width).putInt(height).putInt(goldRequired);
+        header.putShort((short) nameLength).put(nameBytes, 0, nameLength);
+        header.clear();
+        writeFully(output, header, 0);
+    }
+
+    /**
+     * Converts a text map file into a chunk file from the command line
+     * @param args The text map file path, the chunk file path, then optionally the chunk size
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: ChunkedTileStore <map file> <chunk file> [chunk size]");
+            System.exit(0);
+        }
+        convert(args[0], args[1], args.length > 2 ? Integer.parseInt(args[2]) : 64);
+    }
+}
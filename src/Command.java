@@ -0,0 +1,308 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Class to encode game commands as single ints, so choosing, parsing and carrying out a command allocates nothing
+ * The low 8 bits of a command hold its opcode and the next 8 bits hold the direction of a MOVE, as typed (N, E, S or W),
+ * or 0 if the direction wasn't one of them. Commands are parsed straight from a line of text or bytes, without
+ * upper-casing or splitting it, and are read the same way the console game always read them
+ */
+public final class Command {
+
+    /**
+     * The kinds of command
+     */
+    public enum Opcode {
+        /**
+         * Anything which isn't one of the other commands
+         */
+        INVALID,
+        /**
+         * Gets the gold required to win
+         */
+        HELLO,
+        /**
+         * Gets the gold the human player owns
+         */
+        GOLD,
+        /**
+         * Moves one tile in a direction
+         */
+        MOVE,
+        /**
+         * Picks up gold. Only the human player can give this command
+         */
+        PICKUP,
+        /**
+         * Gets the view around the player
+         */
+        LOOK,
+        /**
+         * Ends the game. Only the human player can give this command
+         */
+        QUIT
+    }
+
+    /**
+     * The opcodes, indexed by ordinal. Opcode.values() makes a new array each call, so it's kept here
+     */
+    private static final Opcode[] OPCODES = Opcode.values();
+
+    /**
+     * A command which isn't valid
+     */
+    public static final int INVALID = Opcode.INVALID.ordinal();
+    /**
+     * The HELLO command
+     */
+    public static final int HELLO = Opcode.HELLO.ordinal();
+    /**
+     * The GOLD command
+     */
+    public static final int GOLD = Opcode.GOLD.ordinal();
+    /**
+     * The PICKUP command
+     */
+    public static final int PICKUP = Opcode.PICKUP.ordinal();
+    /**
+     * The LOOK command
+     */
+    public static final int LOOK = Opcode.LOOK.ordinal();
+    /**
+     * The QUIT command
+     */
+    public static final int QUIT = Opcode.QUIT.ordinal();
+
+    /**
+     * The number of characters at the start of a line which are packed into a long while it's parsed, enough to hold
+     * the longest command, PICKUP or MOVE and a direction
+     */
+    private static final int PACKED_LETTERS = 6;
+    /**
+     * The packed letters of HELLO
+     */
+    private static final long HELLO_LETTERS = letters("HELLO");
+    /**
+     * The packed letters of GOLD
+     */
+    private static final long GOLD_LETTERS = letters("GOLD");
+    /**
+     * The packed letters of PICKUP
+     */
+    private static final long PICKUP_LETTERS = letters("PICKUP");
+    /**
+     * The packed letters of LOOK
+     */
+    private static final long LOOK_LETTERS = letters("LOOK");
+    /**
+     * The packed letters of QUIT
+     */
+    private static final long QUIT_LETTERS = letters("QUIT");
+    /**
+     * The packed letters of MOVE
+     */
+    private static final long MOVE_LETTERS = letters("MOVE");
+
+    /**
+     * Commands are only ever ints
+     */
+    private Command() {
+    }
+
+    /**
+     * Creates a MOVE command
+     * @param direction The direction to move in (N, E, S or W). Anything else makes a move which always fails
+     * @return The command
+     */
+    public static int move(char direction) {
+        return Opcode.MOVE.ordinal() | (isDirection(direction) ? direction << 8 : 0);
+    }
+
+    /**
+     * Gets the kind of a command
+     * @param command The command
+     * @return The opcode
+     */
+    public static Opcode getOpcode(int command) {
+        return OPCODES[command & 0xFF];
+    }
+
+    /**
+     * Gets the direction of a MOVE command
+     * @param command The command
+     * @return The direction (N, E, S or W), or 0 if the command has no valid direction
+     */
+    public static char getDirection(int command) {
+        return (char) ((command >>> 8) & 0xFF);
+    }
+
+    /**
+     * Checks if a character is a direction
+     * @param c The character
+     * @return True if it's N, E, S or W
+     */
+    private static boolean isDirection(char c) {
+        return c == 'N' || c == 'E' || c == 'S' || c == 'W';
+    }
+
+    /**
+     * Parses a line of text into a command
+     * @param line The line, without its line ending
+     * @return The command
+     */
+    public static int parse(CharSequence line) {
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses a line of text into a command
+     * @param line The text holding the line
+     * @param start The index of the first character of the line
+     * @param end The index after the last character of the line, not including its line ending
+     * @return The command
+     */
+    public static int parse(CharSequence line, int start, int end) {
+        while (end > start && line.charAt(end - 1) == ' ') {
+            end--; // Ignores spaces at the end
+        }
+        long letters = 0;
+        int spaces = 0, firstSpace = -1;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == ' ' && spaces++ == 0) {
+                firstSpace = i - start;
+            }
+            letters = addLetter(letters, i - start, c);
+        }
+        return decode(letters, end - start, spaces, firstSpace);
+    }
+
+    /**
+     * Parses a line of ASCII bytes into a command, without copying them
+     * @param buffer The buffer holding the line. Its position and limit aren't changed
+     * @param start The index of the first byte of the line
+     * @param end The index after the last byte of the line, not including its line ending
+     * @return The command
+     */
+    public static int parse(ByteBuffer buffer, int start, int end) {
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--; // Ignores spaces at the end
+        }
+        long letters = 0;
+        int spaces = 0, firstSpace = -1;
+        for (int i = start; i < end; i++) {
+            char c = (char) (buffer.get(i) & 0xFF);
+            if (c == ' ' && spaces++ == 0) {
+                firstSpace = i - start;
+            }
+            letters = addLetter(letters, i - start, c);
+        }
+        return decode(letters, end - start, spaces, firstSpace);
+    }
+
+    /**
+     * Parses a line of ASCII bytes into a command, without copying them
+     * @param bytes The array holding the line
+     * @param start The index of the first byte of the line
+     * @param end The index after the last byte of the line, not including its line ending
+     * @return The command
+     */
+    public static int parse(byte[] bytes, int start, int end) {
+        while (end > start && bytes[end - 1] == ' ') {
+            end--; // Ignores spaces at the end
+        }
+        long letters = 0;
+        int spaces = 0, firstSpace = -1;
+        for (int i = start; i < end; i++) {
+            char c = (char) (bytes[i] & 0xFF);
+            if (c == ' ' && spaces++ == 0) {
+                firstSpace = i - start;
+            }
+            letters = addLetter(letters, i - start, c);
+        }
+        return decode(letters, end - start, spaces, firstSpace);
+    }
+
+    /**
+     * Packs the letters of a word, as a line holding only that word would be packed
+     * @param word The word, no longer than PACKED_LETTERS
+     * @return The packed letters
+     */
+    private static long letters(String word) {
+        long letters = 0;
+        for (int i = 0; i < word.length(); i++) {
+            letters = addLetter(letters, i, word.charAt(i));
+        }
+        return letters;
+    }
+
+    /**
+     * Adds a character of a line to its packed letters, one byte each with the first character highest. Letters are
+     * upper-cased, and characters past PACKED_LETTERS are left out
+     * @param letters The letters packed so far
+     * @param index The index of the character in the line
+     * @param c The character
+     * @return The packed letters
+     */
+    private static long addLetter(long letters, int index, char c) {
+        if (index >= PACKED_LETTERS) {
+            return letters;
+        }
+        return letters << 8 | (c < 0x80 ? toUpperCase(c) : 0xFF); // 0xFF stands for anything outside ASCII
+    }
+
+    /**
+     * Works out the command a line holds, once the line has been scanned
+     * The line is read as words separated by single spaces, ignoring spaces at the end, with letters in any case.
+     * One word must be HELLO, GOLD, PICKUP, LOOK or QUIT, and two words must be MOVE and a direction
+     * @param letters The first PACKED_LETTERS characters of the line, packed by addLetter
+     * @param length The length of the line, without the spaces at its end
+     * @param spaces The number of spaces in the line, without the spaces at its end
+     * @param firstSpace The index of the first space in the line, or -1 if it has none
+     * @return The command
+     */
+    private static int decode(long letters, int length, int spaces, int firstSpace) {
+        if (spaces == 0) { // One word
+            if (length == 5 && letters == HELLO_LETTERS) {
+                return HELLO;
+            } else if (length == 4 && letters == GOLD_LETTERS) {
+                return GOLD;
+            } else if (length == 6 && letters == PICKUP_LETTERS) {
+                return PICKUP;
+            } else if (length == 4 && letters == LOOK_LETTERS) {
+                return LOOK;
+            } else if (length == 4 && letters == QUIT_LETTERS) {
+                return QUIT;
+            }
+            return INVALID;
+        }
+        // Two words, the first of which must be MOVE. Any further space means there are too many words. As spaces at
+        // the end are ignored, the line is at least "MOVE x", so all PACKED_LETTERS characters were packed
+        if (spaces != 1 || firstSpace != 4 || letters >>> 16 != MOVE_LETTERS) {
+            return INVALID;
+        }
+        char direction = length == 6 ? (char) (letters & 0xFF) : 0;
+        return move(direction);
+    }
+
+    /**
+     * Converts an ASCII letter to upper case
+     * @param c The character
+     * @return The upper case letter, or the character unchanged if it isn't a lower case ASCII letter
+     */
+    private static char toUpperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    /**
+     * Gets the text of a command, as it would be typed
+     * @param command The command
+     * @return The text of the command
+     */
+    public static String toString(int command) {
+        Opcode opcode = getOpcode(command);
+        if (opcode == Opcode.MOVE) {
+            return getDirection(command) != 0 ? "MOVE " + getDirection(command) : "MOVE ?";
+        }
+        return opcode.name();
+    }
+}
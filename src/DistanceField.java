@@ -0,0 +1,379 @@
+import java.util.Arrays;
+
+/**
+ * Class to hold the walking distance from every map tile to the nearest tile of one type, such as gold or exits
+ * The field is built with one breadth-first search from all target tiles at once. When a target tile is reset
+ * (e.g. gold is picked up), only the tiles whose nearest target it was are worked out again, rather than the whole field.
+ * When a wall is reset, only the tiles the new floor brings nearer a target are lowered.
+ * Asking which way to step towards the nearest target only needs the distances of the four neighbouring tiles
+ *
+ * The distances the field was built with are never changed, so copies of the field share them. Each field only keeps
+ * the distances which have changed since in a table of its own, so a copy takes memory in proportion to the tiles
+ * its updates have changed rather than the size of the map
+ */
+public class DistanceField implements TileListener {
+
+    /**
+     * The distance of tiles which can't reach any target
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * The map the field covers. Only its walls are read after the field is built
+     */
+    private final Map map;
+    /**
+     * The character of the target tiles
+     */
+    private final char target;
+    /**
+     * The width of the map
+     */
+    private final int width;
+    /**
+     * The distance from each tile to the nearest target when the field was built, indexed by y * width + x
+     * Never changed, and shared by every copy of the field
+     */
+    private final int[] builtDistances;
+    /**
+     * The distances which have changed since the field was built, by tile index
+     */
+    private final TileTable changedDistances;
+    /**
+     * The tiles affected by the current update. Reused between updates
+     */
+    private final TileTable affected;
+    /**
+     * The tiles affected by the current update, in the order they were found
+     */
+    private int[] affectedTiles;
+    /**
+     * Tiles waiting to be visited, packed as (distance << 32 | tile). Reused between builds and updates
+     */
+    private long[] queue;
+    /**
+     * Affected tiles next to unaffected ones, packed as (distance << 32 | tile), which restart the search in an update
+     */
+    private long[] seeds;
+
+    /**
+     * The constructor for DistanceField. It builds the field with a breadth-first search from every target tile
+     * @param map The map to build the field on
+     * @param target The character of the target tiles, e.g. 'G' or 'E'
+     */
+    public DistanceField(Map map, char target) {
+        this.map = map;
+        this.target = target;
+        width = map.getMapWidth();
+        builtDistances = new int[width * map.getMapHeight()];
+        changedDistances = new TileTable();
+        affected = new TileTable();
+        affectedTiles = new int[64];
+        queue = new long[64];
+        seeds = new long[64];
+        Arrays.fill(builtDistances, UNREACHABLE);
+
+        // Visits the tiles in order of distance, from every target at once
+        int tail = 0;
+        for (int y = 0; y < map.getMapHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                if (map.getCharAtPos(x, y) == target) {
+                    builtDistances[y * width + x] = 0;
+                    tail = enqueue(tail, 0, y * width + x);
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int tile = (int) queue[head];
+            int x = tile % width;
+            int y = tile / width;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                if (!map.isWall(nextX, nextY)) {
+                    int next = nextY * width + nextX;
+                    if (builtDistances[next] == UNREACHABLE) {
+                        builtDistances[next] = builtDistances[tile] + 1;
+                        tail = enqueue(tail, builtDistances[next], next);
+                    }
+                }
+            }
+        }
+        queue = new long[64]; // The build's queue held most of the map, so it isn't kept
+    }
+
+    /**
+     * The copy constructor for DistanceField, for a copy of the map the field was built on
+     * The copy shares the distances the other field was built with, and starts with the same changes, so it takes time and
+     * memory in proportion to the tiles changed rather than the size of the map. It can be updated separately
+     * @param other The field to copy
+     * @param map The map the copy covers. It must have the same walls as the other field's map
+     */
+    public DistanceField(DistanceField other, Map map) {
+        this.map = map;
+        target = other.target;
+        width = other.width;
+        builtDistances = other.builtDistances;
+        changedDistances = new TileTable(other.changedDistances);
+        affected = new TileTable();
+        affectedTiles = new int[64];
+        queue = new long[64];
+        seeds = new long[64];
+    }
+
+    /**
+     * Gets the current distance of a tile
+     * @param tile The tile index
+     * @return The distance
+     */
+    private int distance(int tile) {
+        return changedDistances.get(tile, builtDistances[tile]);
+    }
+
+    /**
+     * Checks if a tile is affected by the current update
+     * @param tile The tile index
+     * @return True if it's affected
+     */
+    private boolean isAffected(int tile) {
+        return affected.get(tile, 0) != 0;
+    }
+
+    /**
+     * Adds a tile to the end of the queue, growing it if it's full
+     * @param tail The number of entries in the queue
+     * @param distance The distance of the tile
+     * @param tile The tile index
+     * @return The new number of entries in the queue
+     */
+    private int enqueue(int tail, int distance, int tile) {
+        if (tail == queue.length) {
+            queue = Arrays.copyOf(queue, tail * 2);
+        }
+        queue[tail] = ((long) distance << 32) | tile;
+        return tail + 1;
+    }
+
+    /**
+     * Lowers distances outwards from the queued tiles, and from a sorted list of seed tiles merged into the queue in order
+     * Unit-cost moves mean the queue stays sorted by distance, so this is Dijkstra's algorithm without a heap
+     * @param head The index of the first queued tile
+     * @param tail The number of entries in the queue
+     * @param seedCount The number of seed tiles, sorted by distance
+     */
+    private void search(int head, int tail, int seedCount) {
+        int seedPos = 0;
+
+        while (head < tail || seedPos < seedCount) {
+            long entry;
+            // Takes whichever of the next seed and the next queued tile is nearer
+            if (seedPos < seedCount && (head == tail || seeds[seedPos] <= queue[head])) {
+                entry = seeds[seedPos++];
+            } else {
+                entry = queue[head++];
+            }
+            int distance = (int) (entry >>> 32);
+            int tile = (int) entry;
+            if (distance != distance(tile)) {
+                continue; // A shorter distance has been found since the tile was queued
+            }
+            int x = tile % width;
+            int y = tile / width;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                if (!map.isWall(nextX, nextY)) {
+                    int next = nextY * width + nextX;
+                    if (distance + 1 < distance(next)) {
+                        changedDistances.put(next, distance + 1);
+                        tail = enqueue(tail, distance + 1, next);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the field after a target tile has been removed
+     * First finds every tile whose shortest paths all lead to the removed target, then sets the distances of just those
+     * tiles again, starting from the unaffected tiles around them
+     * @param xPos The horizontal coordinate of the removed target
+     * @param yPos The vertical coordinate of the removed target
+     */
+    public void removeTarget(int xPos, int yPos) {
+        int removed = yPos * width + xPos;
+        if (distance(removed) != 0) {
+            return; // Not a target
+        }
+
+        // Finds the affected tiles in order of distance. A tile is affected if all its neighbours one step nearer are affected
+        affected.clear();
+        int affectedCount = 0;
+        affected.put(removed, 1);
+        affectedTiles[affectedCount++] = removed;
+        for (int i = 0; i < affectedCount; i++) {
+            int tile = affectedTiles[i];
+            int x = tile % width;
+            int y = tile / width;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                if (!map.isWall(nextX, nextY)) {
+                    int next = nextY * width + nextX;
+                    if (distance(next) == distance(tile) + 1 && !isAffected(next) && !hasUnaffectedParent(next)) {
+                        affected.put(next, 1);
+                        if (affectedCount == affectedTiles.length) {
+                            affectedTiles = Arrays.copyOf(affectedTiles, affectedCount * 2);
+                        }
+                        affectedTiles[affectedCount++] = next;
+                    }
+                }
+            }
+        }
+
+        // Affected tiles next to unaffected ones get a first guess from their unaffected neighbours
+        int seedCount = 0;
+        for (int i = 0; i < affectedCount; i++) {
+            changedDistances.put(affectedTiles[i], UNREACHABLE);
+        }
+        for (int i = 0; i < affectedCount; i++) {
+            int tile = affectedTiles[i];
+            int best = nearestUnaffectedNeighbour(tile);
+            if (best != UNREACHABLE) {
+                changedDistances.put(tile, best + 1);
+                if (seedCount == seeds.length) {
+                    seeds = Arrays.copyOf(seeds, seedCount * 2);
+                }
+                seeds[seedCount++] = ((long) (best + 1) << 32) | tile;
+            }
+        }
+        Arrays.sort(seeds, 0, seedCount);
+        search(0, 0, seedCount);
+    }
+
+    /**
+     * Checks if a tile has a neighbour one step nearer a target which isn't affected by the current update
+     * @param tile The tile index
+     * @return True if such a neighbour exists
+     */
+    private boolean hasUnaffectedParent(int tile) {
+        int x = tile % width;
+        int y = tile / width;
+        for (int direction = 0; direction < 4; direction++) {
+            int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+            int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+            if (!map.isWall(nextX, nextY)) {
+                int next = nextY * width + nextX;
+                if (distance(next) == distance(tile) - 1 && !isAffected(next)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the smallest distance among a tile's neighbours which aren't affected by the current update
+     * @param tile The tile index
+     * @return The smallest distance, or UNREACHABLE if there's no such neighbour
+     */
+    private int nearestUnaffectedNeighbour(int tile) {
+        int x = tile % width;
+        int y = tile / width;
+        int best = UNREACHABLE;
+        for (int direction = 0; direction < 4; direction++) {
+            int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+            int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+            if (!map.isWall(nextX, nextY)) {
+                int next = nextY * width + nextX;
+                if (!isAffected(next)) {
+                    best = Math.min(best, distance(next));
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Updates the field after a wall tile has been replaced by floor
+     * A new floor tile can only shorten paths, so the tile takes its distance from its nearest neighbour and the search
+     * lowers the distances outwards from it, stopping at tiles which were already as near
+     * @param xPos The horizontal coordinate of the new floor tile
+     * @param yPos The vertical coordinate of the new floor tile
+     */
+    public void addFloor(int xPos, int yPos) {
+        int tile = yPos * width + xPos;
+        int best = UNREACHABLE;
+        for (int direction = 0; direction < 4; direction++) {
+            int nextX = xPos + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+            int nextY = yPos + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+            if (!map.isWall(nextX, nextY)) {
+                best = Math.min(best, distance(nextY * width + nextX));
+            }
+        }
+        if (best == UNREACHABLE || best + 1 >= distance(tile)) {
+            return; // No target can be reached through the tile, or it's already as near
+        }
+        changedDistances.put(tile, best + 1);
+        search(0, enqueue(0, best + 1, tile), 0);
+    }
+
+    /**
+     * Updates the field when a tile is reset on the map: a target is removed, and a wall opens up new paths
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param previousChar The character of the tile before it was reset
+     */
+    @Override
+    public void tileReset(int xPos, int yPos, char previousChar) {
+        if (previousChar == target) {
+            removeTarget(xPos, yPos);
+        } else if (previousChar == '#') {
+            addFloor(xPos, yPos);
+        }
+    }
+
+    /**
+     * Gets the walking distance from a position to the nearest target
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return The distance, or UNREACHABLE if no target can be reached
+     */
+    public int getDistance(int xPos, int yPos) {
+        if (xPos < 0 || yPos < 0 || xPos >= width || yPos >= map.getMapHeight()) {
+            return UNREACHABLE;
+        }
+        return distance(yPos * width + xPos);
+    }
+
+    /**
+     * Gets the number of tiles whose distances have changed since the field was built, which the field keeps itself
+     * @return The number of tiles
+     */
+    public int getChangedTileCount() {
+        return changedDistances.size();
+    }
+
+    /**
+     * Gets the direction of the first step on a shortest path from a position to the nearest target
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return The direction to move in (N, E, S or W), or 0 if the position is a target or can't reach one
+     */
+    public char getNextStep(int xPos, int yPos) {
+        int distance = getDistance(xPos, yPos);
+        if (distance == 0 || distance == UNREACHABLE) {
+            return 0;
+        }
+        // Any neighbour one step nearer is on a shortest path
+        if (getDistance(xPos, yPos - 1) == distance - 1) {
+            return 'N';
+        } else if (getDistance(xPos + 1, yPos) == distance - 1) {
+            return 'E';
+        } else if (getDistance(xPos, yPos + 1) == distance - 1) {
+            return 'S';
+        } else {
+            return 'W';
+        }
+    }
+}
@@ -0,0 +1,556 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class to generate dungeons of any size from a seed, and write them straight to a text map file
+ *
+ * The map is split into a grid of cells about 32 tiles across. Each cell is either a room or a cave grown by a cellular
+ * automaton, and has a hub tile joined to the hubs of the cells to its right and below by L-shaped corridors. All of a
+ * cell's contents come from hashing the seed with the cell's position, and a corridor only needs the hubs of the cells at
+ * its ends, so each row of cells can be generated on its own. Rows of cells are generated in parallel, and each is written
+ * to its place in the file as soon as it's done, so only a few rows of cells are ever held in memory, however large the
+ * map is. The same seed always gives the same file, whatever the number of threads
+ *
+ * Every walkable tile is joined to its cell's hub, so all gold and exits can be reached from anywhere on the map
+ */
+public class DungeonGenerator {
+
+    /**
+     * The number of tiles along each side of a cell. The last cells in each row and column take up what's left over
+     */
+    private static final int CELL_SIZE = 32;
+    /**
+     * The fewest tiles along each side of the map, so a cell has room for its hub inside its walls
+     */
+    private static final int MIN_SIZE = 5;
+    /**
+     * The chance of each tile in a cave starting as a wall
+     */
+    private static final double CAVE_WALL_CHANCE = 0.45;
+    /**
+     * The number of times the cave rule is applied
+     */
+    private static final int CAVE_STEPS = 4;
+    /**
+     * The fewest walls in the 3x3 square around a cave tile (including itself) for it to become a wall
+     */
+    private static final int CAVE_WALL_NEIGHBOURS = 5;
+    /**
+     * The number of digits the gold required is written with, so the header's length is known before the gold is counted
+     */
+    private static final int WIN_DIGITS = 10;
+    /**
+     * The steps to the 4 tiles a player can move to, as {x, y}
+     */
+    private static final int[][] STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    // Salts, so each thing hashed from the same position gets a different value
+    private static final long SALT_HUB_X = 1;
+    private static final long SALT_HUB_Y = 2;
+    private static final long SALT_CAVE = 3;
+    private static final long SALT_ROOM = 4;
+    private static final long SALT_CAVE_TILE = 5;
+    private static final long SALT_GOLD = 6;
+    private static final int SALT_COUNT = 7;
+
+    /**
+     * The number of tiles in each row
+     */
+    private final int width;
+    /**
+     * The number of rows
+     */
+    private final int height;
+    /**
+     * The seed everything on the map is hashed from
+     */
+    private final long seed;
+    /**
+     * The seed already mixed with each salt, so hashing a position takes two mixes rather than three
+     */
+    private final long[] saltedSeeds;
+    /**
+     * The number of columns of cells
+     */
+    private final int cellColumns;
+    /**
+     * The number of rows of cells
+     */
+    private final int cellRows;
+    /**
+     * The chance of each walkable tile holding gold
+     */
+    private double goldDensity;
+    /**
+     * The number of exits
+     */
+    private int exitCount;
+    /**
+     * The gold required to win the game, if there's that much on the map
+     */
+    private int goldRequired;
+    /**
+     * The chance of each cell being a cave rather than a room
+     */
+    private double caveFraction;
+
+    /**
+     * The constructor for DungeonGenerator. It starts with 1% gold, one exit, 5 gold required to win and a third of the
+     * cells as caves
+     * @param width The number of tiles in each row
+     * @param height The number of rows
+     * @param seed The seed the map is generated from
+     */
+    public DungeonGenerator(int width, int height, long seed) {
+        if (width < MIN_SIZE || height < MIN_SIZE) {
+            throw new IllegalArgumentException("Maps must be at least " + MIN_SIZE + " tiles wide and high");
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        saltedSeeds = new long[SALT_COUNT];
+        for (int salt = 0; salt < SALT_COUNT; salt++) {
+            saltedSeeds[salt] = mix(seed, salt);
+        }
+        cellColumns = Math.max(1, width / CELL_SIZE);
+        cellRows = Math.max(1, height / CELL_SIZE);
+        goldDensity = 0.01;
+        exitCount = 1;
+        goldRequired = 5;
+        caveFraction = 1.0 / 3;
+    }
+
+    /**
+     * Sets the chance of each walkable tile holding gold
+     * @param goldDensity The chance, from 0 to 1
+     */
+    public void setGoldDensity(double goldDensity) {
+        if (goldDensity < 0 || goldDensity > 1) {
+            throw new IllegalArgumentException("Gold density must be between 0 and 1");
+        }
+        this.goldDensity = goldDensity;
+    }
+
+    /**
+     * Sets the number of exits. Each is put at the hub of a different cell
+     * @param exitCount The number of exits, from 1 to the number of cells
+     */
+    public void setExitCount(int exitCount) {
+        if (exitCount < 1 || exitCount > (long) cellColumns * cellRows) {
+            throw new IllegalArgumentException("There must be from 1 to " + (long) cellColumns * cellRows + " exits");
+        }
+        this.exitCount = exitCount;
+    }
+
+    /**
+     * Sets the gold required to win the game. If less gold than this is generated, all of it is required instead
+     * @param goldRequired The gold required to win
+     */
+    public void setGoldRequired(int goldRequired) {
+        this.goldRequired = Math.max(0, goldRequired);
+    }
+
+    /**
+     * Sets the chance of each cell being a cave rather than a room
+     * @param caveFraction The chance, from 0 to 1
+     */
+    public void setCaveFraction(double caveFraction) {
+        if (caveFraction < 0 || caveFraction > 1) {
+            throw new IllegalArgumentException("Cave fraction must be between 0 and 1");
+        }
+        this.caveFraction = caveFraction;
+    }
+
+    /**
+     * Generates the map and writes it to a text map file
+     * @param filePath The path of the file to write
+     * @param threadCount The number of threads to generate rows of cells on
+     * @return The amount of gold on the map
+     */
+    public long write(String filePath, int threadCount) {
+        byte[] name = ("name Generated " + width + "x" + height + " Dungeon " + seed + "\n").getBytes(StandardCharsets.UTF_8);
+        long headerLength = name.length + "win \n".length() + WIN_DIGITS;
+        Set<Integer> exitCells = chooseExitCells();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        long gold = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<Future<Long>> tasks = new ArrayList<>();
+            for (int cellY = 0; cellY < cellRows; cellY++) {
+                int bandCellY = cellY;
+                tasks.add(executor.submit(() -> writeBand(channel, headerLength, bandCellY, exitCells)));
+            }
+            for (Future<Long> task : tasks) {
+                gold += task.get();
+            }
+
+            // The header goes in last, now the gold required can be cut down to the gold there is
+            String win = String.format("win %0" + WIN_DIGITS + "d\n", Math.min(goldRequired, gold));
+            ByteBuffer header = ByteBuffer.allocate((int) headerLength);
+            header.put(name).put(win.getBytes(StandardCharsets.US_ASCII)).flip();
+            writeFully(channel, header, 0);
+        } catch (IOException | InvalidPathException | InterruptedException | ExecutionException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        } finally {
+            executor.shutdown();
+        }
+        return gold;
+    }
+
+    /**
+     * Generates a row of cells and writes its rows of tiles to their place in the file
+     * @param channel The file
+     * @param headerLength The length of the header in bytes, which the rows of tiles follow
+     * @param cellY The row of cells
+     * @param exitCells The indexes of the cells with exits
+     * @return The amount of gold in the row of cells
+     * @throws IOException If the file can't be written
+     */
+    private long writeBand(FileChannel channel, long headerLength, int cellY, Set<Integer> exitCells) throws IOException {
+        int firstRow = cellStart(cellY, height, cellRows);
+        int endRow = cellStart(cellY + 1, height, cellRows);
+        int stride = width + 1;
+        byte[] band = new byte[(endRow - firstRow) * stride];
+        for (int row = 0; row < endRow - firstRow; row++) {
+            Arrays.fill(band, row * stride, row * stride + width, (byte) '#');
+            band[row * stride + width] = '\n';
+        }
+
+        // Scratch space for a cell's cave and flood fill, big enough for the largest cell
+        int maxCellArea = (2 * CELL_SIZE) * (2 * CELL_SIZE);
+        byte[] cave = new byte[maxCellArea];
+        byte[] nextCave = new byte[maxCellArea];
+        int[] queue = new int[maxCellArea];
+        long gold = 0;
+        for (int cellX = 0; cellX < cellColumns; cellX++) {
+            gold += generateCell(band, firstRow, cellX, cellY, exitCells.contains(cellY * cellColumns + cellX),
+                    cave, nextCave, queue);
+        }
+        writeFully(channel, ByteBuffer.wrap(band), headerLength + (long) firstRow * stride);
+        return gold;
+    }
+
+    /**
+     * Generates one cell's room or cave, corridors, gold and exit into the tiles of its row of cells
+     * @param band The tiles of the row of cells, as the lines of the file
+     * @param firstRow The map row the band starts at
+     * @param cellX The cell's column
+     * @param cellY The cell's row
+     * @param exit Whether the cell has an exit at its hub
+     * @param cave Scratch space for the cave
+     * @param nextCave More scratch space for the cave
+     * @param queue Scratch space for the flood fill
+     * @return The amount of gold in the cell
+     */
+    private long generateCell(byte[] band, int firstRow, int cellX, int cellY, boolean exit,
+                              byte[] cave, byte[] nextCave, int[] queue) {
+        int x0 = cellStart(cellX, width, cellColumns);
+        int x1 = cellStart(cellX + 1, width, cellColumns);
+        int y0 = cellStart(cellY, height, cellRows);
+        int y1 = cellStart(cellY + 1, height, cellRows);
+        int stride = width + 1;
+        int hubX = hubX(cellX, cellY);
+        int hubY = hubY(cellX, cellY);
+        boolean isCave = unit(hash(SALT_CAVE, cellX, cellY)) < caveFraction;
+
+        if (isCave) {
+            growCave(band, firstRow, x0, x1, y0, y1, cave, nextCave);
+        } else { // A room somewhere inside the cell's walls, around the hub
+            long roll = hash(SALT_ROOM, cellX, cellY);
+            int left = x0 + 1 + (int) ((roll & 0xFFFF) % (hubX - x0 - 1));
+            int right = hubX + 1 + (int) ((roll >>> 16 & 0xFFFF) % (x1 - 2 - hubX));
+            int top = y0 + 1 + (int) ((roll >>> 32 & 0xFFFF) % (hubY - y0 - 1));
+            int bottom = hubY + 1 + (int) ((roll >>> 48) % (y1 - 2 - hubY));
+            carve(band, firstRow, left, right, top, bottom);
+        }
+        carve(band, firstRow, hubX - 1, hubX + 1, hubY - 1, hubY + 1);
+
+        // Corridors, each an L from one hub across then down to the next. Only the part inside this cell is carved here
+        if (cellX + 1 < cellColumns) { // To the right edge, where the next cell's part carries on
+            carve(band, firstRow, hubX, x1 - 1, hubY, hubY);
+        }
+        if (cellX > 0) { // From the left edge, along the left hub's row, then to this hub
+            int leftHubY = hubY(cellX - 1, cellY);
+            carve(band, firstRow, x0, hubX, leftHubY, leftHubY);
+            carve(band, firstRow, hubX, hubX, Math.min(leftHubY, hubY), Math.max(leftHubY, hubY));
+        }
+        if (cellY + 1 < cellRows) { // Across to the lower hub's column, then down to the bottom edge
+            int lowerHubX = hubX(cellX, cellY + 1);
+            carve(band, firstRow, Math.min(hubX, lowerHubX), Math.max(hubX, lowerHubX), hubY, hubY);
+            carve(band, firstRow, lowerHubX, lowerHubX, hubY, y1 - 1);
+        }
+        if (cellY > 0) { // From the top edge down to this hub
+            carve(band, firstRow, hubX, hubX, y0, hubY);
+        }
+
+        if (isCave) {
+            fillUnreached(band, firstRow, x0, x1, y0, y1, hubX, hubY, queue);
+        }
+
+        // Gold is hashed from each tile's position, so it doesn't depend on the order cells are generated in
+        long gold = 0;
+        for (int yPos = y0; yPos < y1; yPos++) {
+            int rowStart = (yPos - firstRow) * stride;
+            for (int xPos = x0; xPos < x1; xPos++) {
+                if (band[rowStart + xPos] == '.' && unit(hash(SALT_GOLD, xPos, yPos)) < goldDensity
+                        && !(exit && xPos == hubX && yPos == hubY)) {
+                    band[rowStart + xPos] = 'G';
+                    gold++;
+                }
+            }
+        }
+        if (exit) {
+            band[(hubY - firstRow) * stride + hubX] = 'E';
+        }
+        return gold;
+    }
+
+    /**
+     * Grows a cave over a cell with a cellular automaton: tiles start as walls at random, then each step a tile becomes a
+     * wall if most of the 3x3 square around it is wall. The cell's edge stays wall
+     * @param band The tiles of the row of cells
+     * @param firstRow The map row the band starts at
+     * @param x0 The cell's first column
+     * @param x1 The column after the cell's last
+     * @param y0 The cell's first row
+     * @param y1 The row after the cell's last
+     * @param cave Scratch space for the cave, with 1 for walls
+     * @param nextCave Scratch space for the next step of the cave
+     */
+    private void growCave(byte[] band, int firstRow, int x0, int x1, int y0, int y1, byte[] cave, byte[] nextCave) {
+        int cellWidth = x1 - x0;
+        int cellHeight = y1 - y0;
+        for (int y = 0; y < cellHeight; y++) {
+            for (int x = 0; x < cellWidth; x++) {
+                boolean edge = x == 0 || y == 0 || x == cellWidth - 1 || y == cellHeight - 1;
+                cave[y * cellWidth + x] = (byte) (edge || unit(hash(SALT_CAVE_TILE, x0 + x, y0 + y)) < CAVE_WALL_CHANCE ? 1 : 0);
+            }
+        }
+        for (int step = 0; step < CAVE_STEPS; step++) {
+            for (int y = 0; y < cellHeight; y++) {
+                for (int x = 0; x < cellWidth; x++) {
+                    int tile = y * cellWidth + x;
+                    if (x == 0 || y == 0 || x == cellWidth - 1 || y == cellHeight - 1) {
+                        nextCave[tile] = 1;
+                        continue;
+                    }
+                    int walls = cave[tile - cellWidth - 1] + cave[tile - cellWidth] + cave[tile - cellWidth + 1]
+                            + cave[tile - 1] + cave[tile] + cave[tile + 1]
+                            + cave[tile + cellWidth - 1] + cave[tile + cellWidth] + cave[tile + cellWidth + 1];
+                    nextCave[tile] = (byte) (walls >= CAVE_WALL_NEIGHBOURS ? 1 : 0);
+                }
+            }
+            byte[] swap = cave; // Swaps the buffers, so the last step always ends up in cave
+            cave = nextCave;
+            nextCave = swap;
+        }
+        for (int y = 0; y < cellHeight; y++) {
+            int rowStart = (y0 + y - firstRow) * (width + 1) + x0;
+            for (int x = 0; x < cellWidth; x++) {
+                band[rowStart + x] = cave[y * cellWidth + x] == 1 ? (byte) '#' : (byte) '.';
+            }
+        }
+    }
+
+    /**
+     * Walls off the walkable tiles of a cell which can't be reached from its hub without leaving the cell
+     * @param band The tiles of the row of cells
+     * @param firstRow The map row the band starts at
+     * @param x0 The cell's first column
+     * @param x1 The column after the cell's last
+     * @param y0 The cell's first row
+     * @param y1 The row after the cell's last
+     * @param hubX The horizontal coordinate of the hub
+     * @param hubY The vertical coordinate of the hub
+     * @param queue Scratch space for the flood fill
+     */
+    private void fillUnreached(byte[] band, int firstRow, int x0, int x1, int y0, int y1, int hubX, int hubY, int[] queue) {
+        int stride = width + 1;
+        int cellWidth = x1 - x0;
+        // Reached tiles are marked by changing them to 'R' for now
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = (hubY - y0) * cellWidth + hubX - x0;
+        band[(hubY - firstRow) * stride + hubX] = 'R';
+        while (head < tail) {
+            int tile = queue[head++];
+            int x = tile % cellWidth;
+            int y = tile / cellWidth;
+            for (int[] step : STEPS) {
+                int nextX = x + step[0];
+                int nextY = y + step[1];
+                if (nextX < 0 || nextY < 0 || nextX >= cellWidth || nextY >= y1 - y0) {
+                    continue;
+                }
+                int index = (y0 + nextY - firstRow) * stride + x0 + nextX;
+                if (band[index] == '.') {
+                    band[index] = 'R';
+                    queue[tail++] = nextY * cellWidth + nextX;
+                }
+            }
+        }
+        for (int yPos = y0; yPos < y1; yPos++) {
+            int rowStart = (yPos - firstRow) * stride;
+            for (int xPos = x0; xPos < x1; xPos++) {
+                band[rowStart + xPos] = band[rowStart + xPos] == 'R' ? (byte) '.' : (byte) '#';
+            }
+        }
+    }
+
+    /**
+     * Makes a rectangle of tiles walkable
+     * @param band The tiles of the row of cells
+     * @param firstRow The map row the band starts at
+     * @param left The first column
+     * @param right The last column
+     * @param top The first row
+     * @param bottom The last row
+     */
+    private void carve(byte[] band, int firstRow, int left, int right, int top, int bottom) {
+        for (int yPos = top; yPos <= bottom; yPos++) {
+            int rowStart = (yPos - firstRow) * (width + 1);
+            Arrays.fill(band, rowStart + left, rowStart + right + 1, (byte) '.');
+        }
+    }
+
+    /**
+     * Chooses which cells have exits
+     * @return The indexes of the cells, in row-major order
+     */
+    private Set<Integer> chooseExitCells() {
+        Random random = new Random(seed);
+        Set<Integer> cells = new HashSet<>();
+        int cellCount = cellColumns * cellRows;
+        while (cells.size() < exitCount) {
+            cells.add(random.nextInt(cellCount));
+        }
+        return cells;
+    }
+
+    /**
+     * Gets the first tile of a cell along one axis
+     * @param cell The cell's column or row
+     * @param size The width or height of the map
+     * @param cellCount The number of columns or rows of cells
+     * @return The first tile, or the size of the map for the cell after the last
+     */
+    private static int cellStart(int cell, int size, int cellCount) {
+        return cell == cellCount ? size : cell * CELL_SIZE;
+    }
+
+    /**
+     * Gets the horizontal coordinate of a cell's hub, which is at least 2 tiles inside the cell's edges
+     * @param cellX The cell's column
+     * @param cellY The cell's row
+     * @return The horizontal coordinate
+     */
+    private int hubX(int cellX, int cellY) {
+        int x0 = cellStart(cellX, width, cellColumns);
+        int x1 = cellStart(cellX + 1, width, cellColumns);
+        return x0 + 2 + (int) Long.remainderUnsigned(hash(SALT_HUB_X, cellX, cellY), x1 - x0 - 4);
+    }
+
+    /**
+     * Gets the vertical coordinate of a cell's hub, which is at least 2 tiles inside the cell's edges
+     * @param cellX The cell's column
+     * @param cellY The cell's row
+     * @return The vertical coordinate
+     */
+    private int hubY(int cellX, int cellY) {
+        int y0 = cellStart(cellY, height, cellRows);
+        int y1 = cellStart(cellY + 1, height, cellRows);
+        return y0 + 2 + (int) Long.remainderUnsigned(hash(SALT_HUB_Y, cellX, cellY), y1 - y0 - 4);
+    }
+
+    /**
+     * Hashes the seed with a salt and a position
+     * @param salt The salt, which says what the hash is for
+     * @param x The horizontal coordinate
+     * @param y The vertical coordinate
+     * @return The hash
+     */
+    private long hash(long salt, long x, long y) {
+        return mix(mix(saltedSeeds[(int) salt], x), y);
+    }
+
+    /**
+     * Mixes a value into a hash, using the SplitMix64 finaliser
+     * @param hash The hash so far
+     * @param value The value
+     * @return The new hash
+     */
+    private static long mix(long hash, long value) {
+        hash += 0x9E3779B97F4A7C15L + value;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Turns a hash into a number from 0 to 1
+     * @param hash The hash
+     * @return The number, at least 0 and less than 1
+     */
+    private static double unit(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Writes all of a buffer to a file at a position
+     * @param channel The file
+     * @param buffer The buffer
+     * @param position The position in the file to write from
+     * @throws IOException If the file can't be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Generates a map from the command line
+     * @param args The map file path, the width and height, then optionally the seed, the gold density, the number of
+     *             exits and the number of threads
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: DungeonGenerator <map file> <width> <height> [seed] [gold density] [exits] [threads]");
+            System.exit(0);
+        }
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        int threadCount = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+
+        DungeonGenerator generator = new DungeonGenerator(width, height, seed);
+        if (args.length > 4) {
+            generator.setGoldDensity(Double.parseDouble(args[4]));
+        }
+        if (args.length > 5) {
+            generator.setExitCount(Integer.parseInt(args[5]));
+        }
+        long startTime = System.nanoTime();
+        long gold = generator.write(args[0], threadCount);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("Generated %dx%d map with %d gold and %d exits in %.2f s%n", width, height, gold,
+                generator.exitCount, seconds);
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.LinkedHashMap;
+
+/**
+ * Class to find the tiles a player can see from a position, out to a radius, where walls block the view of the tiles
+ * behind them. Tiles are found with recursive shadowcasting: each of the 8 octants around the position is scanned row by
+ * row outwards, and a wall casts a shadow over a range of slopes which later rows skip, so no tile is checked twice
+ *
+ * The tiles seen from a position are returned as a bitmask over the square around it, so checking one tile is a single
+ * bit test. Only walls block the view, so masks are cached by position, and the least recently used masks are dropped
+ * once the cache is full. Resetting a wall on the map drops the masks of the positions within the radius of it, which are
+ * the only ones it could be seen from. Masks are never changed once made, so they can be shared, and the cache can be
+ * shared between threads and between games on copies of the same map
+ */
+public class FieldOfView implements TileListener {
+
+    /**
+     * How each octant's row and column steps are turned into x and y steps, as {xx, xy, yx, yy} for each octant
+     */
+    private static final int[][] OCTANTS = {
+            {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+            {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}};
+
+    /**
+     * The map the tiles are on
+     */
+    private final Map map;
+    /**
+     * The furthest a tile can be from the position and still be seen, in tiles
+     */
+    private final int radius;
+    /**
+     * The width of the square the masks cover, which is centred on the position
+     */
+    private final int viewWidth;
+    /**
+     * The masks of the positions seen from most recently, keyed by the position's row-major index
+     */
+    private final LinkedHashMap<Integer, long[]> cache;
+    /**
+     * The number of walls reset on the map, so a mask cast before one isn't cached after it
+     */
+    private int wallResets;
+    /**
+     * The number of masks answered from the cache
+     */
+    private long hits;
+    /**
+     * The number of masks which had to be cast
+     */
+    private long misses;
+
+    /**
+     * The constructor for FieldOfView
+     * @param map The map the tiles are on. Only its walls are used, so copies of the map can share one field of view, as
+     *            long as walls are only reset on this map. The field of view listens to it, to drop masks a reset changes
+     * @param radius The furthest a tile can be from the position and still be seen, in tiles
+     * @param capacity The most masks kept in the cache
+     */
+    public FieldOfView(Map map, int radius, int capacity) {
+        this.map = map;
+        this.radius = radius;
+        viewWidth = 2 * radius + 1;
+        cache = new LinkedHashMap<Integer, long[]>(16, 0.75f, true) { // Ordered by access, so the eldest is least recently used
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<Integer, long[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        map.addTileListener(this);
+    }
+
+    /**
+     * Drops the cached masks of every position within the radius of a wall which has been reset, as the new floor may
+     * let them see further
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param previousChar The character of the tile before it was reset
+     */
+    @Override
+    public synchronized void tileReset(int xPos, int yPos, char previousChar) {
+        if (previousChar != '#') {
+            return;
+        }
+        wallResets++;
+        int width = map.getMapWidth();
+        int minX = Math.max(xPos - radius, 0);
+        int maxX = Math.min(xPos + radius, width - 1);
+        int minY = Math.max(yPos - radius, 0);
+        int maxY = Math.min(yPos + radius, map.getMapHeight() - 1);
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                cache.remove(y * width + x);
+            }
+        }
+    }
+
+    /**
+     * Gets the tiles which can be seen from a position, from the cache if they've been found recently
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return The mask of the tiles seen, which must not be changed. Test tiles with isVisible
+     */
+    public long[] getVisible(int xPos, int yPos) {
+        Integer key = yPos * map.getMapWidth() + xPos;
+        int castWallResets;
+        synchronized (this) {
+            long[] visible = cache.get(key);
+            if (visible != null) {
+                hits++;
+                return visible;
+            }
+            misses++;
+            castWallResets = wallResets;
+        }
+        long[] visible = castVisible(xPos, yPos); // Cast outside the lock, so threads don't wait for each other
+        synchronized (this) {
+            if (castWallResets == wallResets) { // Otherwise a wall was reset while casting, and the mask may be out of date
+                cache.put(key, visible); // May drop the least recently used mask
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Finds the tiles which can be seen from a position by shadowcasting, without the cache
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return The mask of the tiles seen
+     */
+    public long[] castVisible(int xPos, int yPos) {
+        long[] visible = new long[(viewWidth * viewWidth + 63) / 64];
+        setVisible(visible, 0, 0); // The position itself can always be seen
+        for (int[] octant : OCTANTS) {
+            castLight(visible, xPos, yPos, 1, 1.0, 0.0, octant[0], octant[1], octant[2], octant[3]);
+        }
+        return visible;
+    }
+
+    /**
+     * Scans one octant outwards from a row, marking the tiles which can be seen between two slopes
+     * Each wall met narrows the slopes of the rest of the scan, and the tiles beside it are scanned by a recursive call
+     * @param visible The mask to mark the tiles seen in
+     * @param xPos The horizontal coordinate of the position seen from
+     * @param yPos The vertical coordinate of the position seen from
+     * @param firstRow The first row to scan, counted outwards from the position
+     * @param startSlope The slope the scan starts at, the steeper edge of the light
+     * @param endSlope The slope the scan ends at, the shallower edge of the light
+     * @param xx How a step along a row changes x
+     * @param xy How a step outwards changes x
+     * @param yx How a step along a row changes y
+     * @param yy How a step outwards changes y
+     */
+    private void castLight(long[] visible, int xPos, int yPos, int firstRow, double startSlope, double endSlope,
+                           int xx, int xy, int yx, int yy) {
+        if (startSlope < endSlope) {
+            return;
+        }
+        int radiusSquared = radius * radius + radius; // Rounds the circle's edge out, so it isn't pointed along the axes
+        double nextStartSlope = startSlope;
+        for (int row = firstRow; row <= radius; row++) {
+            int rowDist = -row; // Rows go outwards in the negative direction, as in the usual form of the algorithm
+            boolean blocked = false;
+            for (int column = -row; column <= 0; column++) {
+                double leftSlope = (column - 0.5) / (rowDist + 0.5);
+                double rightSlope = (column + 0.5) / (rowDist - 0.5);
+                if (startSlope < rightSlope) {
+                    continue; // The tile is before the light
+                } else if (endSlope > leftSlope) {
+                    break; // The tile and the rest of the row are past the light
+                }
+                int xDist = column * xx + rowDist * xy;
+                int yDist = column * yx + rowDist * yy;
+                if (xDist * xDist + yDist * yDist <= radiusSquared) {
+                    setVisible(visible, xDist, yDist);
+                }
+                boolean wall = map.isWall(xPos + xDist, yPos + yDist);
+                if (blocked) {
+                    if (wall) { // Still in the wall's shadow
+                        nextStartSlope = rightSlope;
+                    } else { // Out of the shadow, so the light starts again
+                        blocked = false;
+                        startSlope = nextStartSlope;
+                    }
+                } else if (wall && row < radius) {
+                    // Scans the light before the wall, then carries on after its shadow
+                    blocked = true;
+                    castLight(visible, xPos, yPos, row + 1, startSlope, leftSlope, xx, xy, yx, yy);
+                    nextStartSlope = rightSlope;
+                }
+            }
+            if (blocked) {
+                break; // The rest of the octant is in shadow
+            }
+        }
+    }
+
+    /**
+     * Marks a tile as seen
+     * @param visible The mask
+     * @param xDist The tile's horizontal distance from the position
+     * @param yDist The tile's vertical distance from the position
+     */
+    private void setVisible(long[] visible, int xDist, int yDist) {
+        int bit = (yDist + radius) * viewWidth + xDist + radius;
+        visible[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Checks if a tile can be seen
+     * @param visible The mask of the tiles seen from the position
+     * @param xDist The tile's horizontal distance from the position
+     * @param yDist The tile's vertical distance from the position
+     * @return True if the tile is within the radius and in sight
+     */
+    public boolean isVisible(long[] visible, int xDist, int yDist) {
+        if (xDist < -radius || xDist > radius || yDist < -radius || yDist > radius) {
+            return false;
+        }
+        int bit = (yDist + radius) * viewWidth + xDist + radius;
+        return (visible[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Gets the furthest a tile can be seen from
+     * @return The radius in tiles
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Gets the number of masks answered from the cache
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of masks which had to be cast
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Stops the field of view listening to its map, which holds on to it and its masks until then
+     */
+    public void close() {
+        map.removeTileListener(this);
+    }
+}
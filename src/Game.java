@@ -1,13 +1,71 @@
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Class to create and control a game
  */
 public class Game {
 
+    /**
+     * The number of path steps the bot's path cache can hold in a console game
+     */
+    private static final int BOT_PATH_CACHE_SIZE = 1 << 12;
+    /**
+     * The width of the grid shown by the 'look' command
+     */
+    private static final int LOOK_WIDTH = 5;
+    /**
+     * The width of the view rendered for all the bots looking from one LOOK_WIDTH square region of the map in a tick,
+     * which covers every grid they can see
+     */
+    private static final int REGION_VIEW_WIDTH = 2 * LOOK_WIDTH - 1;
+    /**
+     * The fewest bots for them to choose their commands in parallel each tick. Most choices take well under a
+     * microsecond, so fewer bots are quicker on one thread
+     */
+    private static final int PARALLEL_MIN_BOTS = 256;
+
+    /**
+     * A command method, which writes the result of the command to the response
+     */
+    private interface CommandAction {
+
+        /**
+         * Carries out the command
+         * @param game The game the command is given in
+         * @param player The player who gave the command
+         * @param direction The direction of a MOVE command, or 0
+         */
+        void run(Game game, Player player, char direction);
+    }
+
+    /**
+     * The method for each command, indexed by opcode ordinal, so commands are dispatched without comparing strings
+     */
+    private static final CommandAction[] ACTIONS = new CommandAction[Command.Opcode.values().length];
+    /**
+     * Whether each command can only be given by the human player, indexed by opcode ordinal
+     */
+    private static final boolean[] HUMAN_ONLY = new boolean[Command.Opcode.values().length];
+
+    static {
+        ACTIONS[Command.Opcode.INVALID.ordinal()] = (game, player, direction) -> game.response.append("Invalid command");
+        ACTIONS[Command.Opcode.HELLO.ordinal()] = Game::hello;
+        ACTIONS[Command.Opcode.GOLD.ordinal()] = Game::gold;
+        ACTIONS[Command.Opcode.MOVE.ordinal()] = Game::move;
+        ACTIONS[Command.Opcode.PICKUP.ordinal()] = Game::pickup;
+        ACTIONS[Command.Opcode.LOOK.ordinal()] = Game::look;
+        ACTIONS[Command.Opcode.QUIT.ordinal()] = Game::quit;
+        HUMAN_ONLY[Command.Opcode.PICKUP.ordinal()] = true;
+        HUMAN_ONLY[Command.Opcode.QUIT.ordinal()] = true;
+    }
+
     /**
      * The game map
      */
@@ -17,284 +75,940 @@ public class Game {
      */
     private HumanPlayer humanPlayer;
     /**
-     * The computer-controlled player playing the game
+     * The first computer-controlled player playing the game, which is the only one unless the game has many bots
      */
     private BotPlayer botPlayer;
+    /**
+     * All the computer-controlled players, in the order they take their turns. A bot's id is its index
+     */
+    private BotPlayer[] botPlayers;
     /**
      * Contains all players
      */
 	private Player[] players;
+    /**
+     * Tracks the positions of all players
+     */
+    private OccupancyIndex occupancy;
     /**
      * Stores whether or not the game is still running
      */
 	private boolean gameActive;
+    /**
+     * The seed the starting positions of the players were chosen with
+     */
+    private final long seed;
+    /**
+     * Used to choose the starting positions of the players
+     */
+    private final Random random;
+    /**
+     * The fewest steps around walls between the human player and the bot when they're placed, or 0 for any distance
+     */
+    private final int minSpawnDistance;
+    /**
+     * The journal the game's turns are recorded to, or null if they aren't recorded
+     */
+    private GameJournal journal;
+    /**
+     * The id of the game in its journal
+     */
+    private long journalGameId;
+    /**
+     * How the game ended, or null if it hasn't ended yet
+     */
+    private GameResult.Outcome outcome;
+    /**
+     * True if the game's turns are timed and recorded in GameStats when instrumentation is on. Forks aren't, so
+     * searches playing them out don't add their turns to the real game's
+     */
+    private final boolean instrumented;
+    /**
+     * Where messages to the human player are written by playGame
+     */
+    private final PrintStream output;
+    /**
+     * Holds the result of the current turn's command. It's reused every turn, so turns don't allocate
+     */
+    private final StringBuilder response = new StringBuilder(64);
+    /**
+     * Holds the grid of the current 'look' command. It's reused by every look
+     */
+    private final char[] lookView = new char[LOOK_WIDTH * LOOK_WIDTH];
+    /**
+     * The field of view 'look' sees with, or null to see the whole LOOK_WIDTH square, walls or not
+     */
+    private FieldOfView fieldOfView;
+    /**
+     * Holds the grid of the human player's looks with a field of view, which is as wide as the field of view
+     */
+    private char[] fieldOfViewGrid;
+    /**
+     * Holds the view rendered for a region with several bots looking from it. It's reused by every region
+     */
+    private final char[] regionView = new char[REGION_VIEW_WIDTH * REGION_VIEW_WIDTH];
+    /**
+     * The command each bot chose in the current tick, by bot id
+     */
+    private int[] botCommands;
+    /**
+     * The bots looking in the current tick, packed with the regions they look from so they can be sorted by region
+     */
+    private long[] lookers;
 
     /**
-     * The constructor for Game
+     * The constructor for Game. It asks the user for the map file, and plays against a bot on the console
      */
 	public Game() {
+	    this(HumanPlayer.getConsoleInput(), System.out);
+    }
+
+    /**
+     * The constructor for Game, for a user on streams other than the console, such as a socket or a pipe
+     * It asks the user for the map file, and plays against a bot
+     * @param input Where the user's input is read from, one line at a time
+     * @param output Where messages to the user are written
+     */
+    public Game(BufferedReader input, PrintStream output) {
+        this(Map.loadShared(getFilePathInput(input, output)), input, output, new Random().nextLong());
+    }
+
+    /**
+     * The constructor for Game, for a game against a bot with its own path cache
+     * @param map The map to play on
+     * @param input Where the user's input is read from, one line at a time
+     * @param output Where messages to the user are written
+     * @param seed The seed used to choose the starting positions of the players and the bot's moves
+     */
+    private Game(Map map, BufferedReader input, PrintStream output, long seed) {
+        this(map, input, output, new PathCache(map, BOT_PATH_CACHE_SIZE, PathCache.DEFAULT_MAX_EXPANSIONS), seed);
+    }
+
+    /**
+     * The constructor for Game, for a user on streams playing against a bot which chases around walls
+     * Many games on copies of one map can share a path cache, so hosting lots of sessions doesn't need a cache each
+     * @param map The map to play on. Gold picked up during the game is removed from it
+     * @param input Where the user's input is read from, one line at a time
+     * @param output Where messages to the user are written
+     * @param pathCache The path cache used by the bot
+     * @param seed The seed used to choose the starting positions of the players and the bot's moves
+     */
+    public Game(Map map, BufferedReader input, PrintStream output, PathCache pathCache, long seed) {
+        this(map, new HumanPlayer('P', input, output), new BotPlayer('B', ~seed, pathCache), seed, output);
+    }
+
+    /**
+     * The constructor for Game with given players and a seed, so that games can be played without the console
+     * @param map The map to play on. Gold picked up during the game is removed from it
+     * @param humanPlayer The player collecting gold, which may be controlled by a script or AI rather than the console
+     * @param botPlayer The player chasing the human player
+     * @param seed The seed used to choose the starting positions of the players
+     */
+    public Game(Map map, HumanPlayer humanPlayer, BotPlayer botPlayer, long seed) {
+        this(map, humanPlayer, botPlayer, seed, System.out);
+    }
+
+    /**
+     * The constructor for Game with given players, a seed and somewhere to write messages to the human player
+     * @param map The map to play on. Gold picked up during the game is removed from it
+     * @param humanPlayer The player collecting gold
+     * @param botPlayer The player chasing the human player
+     * @param seed The seed used to choose the starting positions of the players
+     * @param output Where playGame writes messages to the human player
+     */
+    public Game(Map map, HumanPlayer humanPlayer, BotPlayer botPlayer, long seed, PrintStream output) {
+        this(map, humanPlayer, botPlayer, seed, output, 0);
+    }
+
+    /**
+     * The constructor for Game with given players, a seed, somewhere to write messages to the human player, and a
+     * distance the bot must start from the human player, so it can't catch them straight away
+     * @param map The map to play on. Gold picked up during the game is removed from it
+     * @param humanPlayer The player collecting gold
+     * @param botPlayer The player chasing the human player
+     * @param seed The seed used to choose the starting positions of the players
+     * @param output Where playGame writes messages to the human player
+     * @param minSpawnDistance The fewest steps around walls between the players' starting positions, or 0 for any.
+     *                         If no position is that far away, the bot is placed anywhere
+     */
+    public Game(Map map, HumanPlayer humanPlayer, BotPlayer botPlayer, long seed, PrintStream output, int minSpawnDistance) {
+        this(map, humanPlayer, new BotPlayer[]{botPlayer}, seed, output, minSpawnDistance);
+    }
+
+    /**
+     * The constructor for Game with any number of bots, which take their turns together each tick (see playBotTurns)
+     * @param map The map to play on. Gold picked up during the game is removed from it
+     * @param humanPlayer The player collecting gold
+     * @param botPlayers The players chasing the human player, at least one. They can share a path cache, which gives
+     *                   every bot the same path from a tile to a goal, whichever bot searched for it first
+     * @param seed The seed used to choose the starting positions of the players
+     * @param output Where playGame writes messages to the human player
+     * @param minSpawnDistance The fewest steps around walls between the human player and each bot when they're placed,
+     *                         or 0 for any. If no position is that far away, a bot is placed anywhere
+     */
+    public Game(Map map, HumanPlayer humanPlayer, BotPlayer[] botPlayers, long seed, PrintStream output, int minSpawnDistance) {
 	    // Initialises the map and players
-		map = new Map(getFilePathInput());
-		humanPlayer = new HumanPlayer('P');
-        botPlayer = new BotPlayer('B');
-        players = new Player[]{humanPlayer, botPlayer};
+        this.output = output;
+        this.minSpawnDistance = minSpawnDistance;
+        this.map = map;
+        this.humanPlayer = humanPlayer;
+        this.botPlayers = botPlayers.clone();
+        botPlayer = botPlayers[0];
+        players = new Player[botPlayers.length + 1];
+        players[0] = humanPlayer; // The human player is first, so it's always drawn on top of bots
+        System.arraycopy(botPlayers, 0, players, 1, botPlayers.length);
+        occupancy = new OccupancyIndex(players);
+        botCommands = new int[botPlayers.length];
+        lookers = new long[botPlayers.length];
+        this.seed = seed;
+        random = new Random(seed);
+        instrumented = true;
         setPlayerPositions();
         gameActive = true;
     }
 
+    /**
+     * The constructor for Game, for a fork of a game carrying on from a snapshot. The fork plays on its own fork of
+     * the map, so it takes constant time however large the map is, and the players start where they were in the snapshot
+     * The fork isn't recorded to any journal, and its turns aren't recorded in GameStats
+     * @param snapshot The snapshot to carry on from, which can be forked again
+     * @param humanPlayer The human player, which is given the position and gold of the human player in the snapshot
+     * @param output Where playGame writes messages to the human player
+     */
+    public Game(GameSnapshot snapshot, HumanPlayer humanPlayer, PrintStream output) {
+        this.output = output;
+        map = snapshot.getMap().fork();
+        this.humanPlayer = humanPlayer;
+        int botCount = snapshot.getBotCount();
+        botPlayers = new BotPlayer[botCount];
+        for (int id = 0; id < botCount; id++) {
+            botPlayers[id] = new BotPlayer(snapshot.getBotPlayerChar(id), snapshot.getBotState(id));
+        }
+        botPlayer = botPlayers[0];
+        players = new Player[botCount + 1];
+        players[0] = humanPlayer;
+        System.arraycopy(botPlayers, 0, players, 1, botCount);
+        occupancy = new OccupancyIndex(players);
+        botCommands = new int[botCount];
+        lookers = new long[botCount];
+        seed = snapshot.getSeed();
+        random = new Random(seed);
+        minSpawnDistance = 0; // The players are already placed
+        instrumented = false;
+        restorePlayers(snapshot);
+        gameActive = snapshot.isActive();
+        outcome = snapshot.getOutcome();
+    }
+
     /**
      * Carries out the 'hello' command
      * Gets the gold required to win the game
-     * @return A message stating gold required to win the game
+     * @param player The player who gave the command
+     * @param direction Unused
      */
-    private String hello() {
-        return "Gold to win: " + map.getGoldRequired();
+    private void hello(Player player, char direction) {
+        response.append("Gold to win: ").append(map.getGoldRequired());
     }
 
     /**
      * Carries out the 'gold' command
      * Gets the amount of gold the human player currently has
-     * @return A message stating the amount of gold the human player has
+     * @param player The player who gave the command
+     * @param direction Unused
      */
-    private String gold() {
-        return "Gold owned: " + humanPlayer.getGold();
+    private void gold(Player player, char direction) {
+        response.append("Gold owned: ").append(humanPlayer.getGold());
     }
 
     /**
      * Carries out the 'move' command
      * Detects if the move is valid, and moves the player if so
      * @param player The player being moved
-     * @param direction The direction of movement (N, E, S, W)
-     * @return A message stating whether or not the move was successful
+     * @param direction The direction of movement (N, E, S, W), or 0 if the direction given wasn't valid
      */
-    private String move(Player player, String direction) {
+    private void move(Player player, char direction) {
 	    int xMove = 0;
         int yMove = 0;
 
         // Translates the direction to the coordinate change
         switch (direction) {
-            case "N":
+            case 'N':
                 yMove = -1;
                 break;
-            case "S":
+            case 'S':
                 yMove = 1;
                 break;
-            case "E":
+            case 'E':
                 xMove = 1;
                 break;
-            case "W":
+            case 'W':
                 xMove = -1;
                 break;
         }
         if (xMove == 0 && yMove == 0) { // Command fails if direction isn't valid
-            return "FAIL";
+            response.append("FAIL");
         } else {
             // If the player is trying to move into a wall ('#'), the command fails. If not, the player is moved successfully
-            if (map.getCharAtPos(player.getXPos() + xMove, player.getYPos() + yMove) != '#') {
-                player.move(xMove, yMove);
-                return "SUCCESS";
+            if (map.isWall(player.getXPos() + xMove, player.getYPos() + yMove)) {
+                response.append("FAIL");
+                if (GameStats.ENABLED && instrumented) {
+                    GameStats.countWallBump();
+                }
+            } else if (player != humanPlayer && botPlayers.length > 1
+                    && isBotAt(player.getXPos() + xMove, player.getYPos() + yMove)) {
+                response.append("FAIL"); // Bots can't move onto each other, only onto the human player
             } else {
-                return "FAIL";
+                player.move(xMove, yMove);
+                response.append("SUCCESS");
             }
         }
     }
 
+    /**
+     * Checks if a bot is standing on a position, without the human player
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return True if the position is occupied by bots only
+     */
+    private boolean isBotAt(int xPos, int yPos) {
+        Player occupant = occupancy.getFirstOccupant(xPos, yPos); // The human player comes first if it's there
+        return occupant != null && occupant != humanPlayer;
+    }
+
     /**
      * Carries out the 'pickup' command
      * Checks that the human player is on top of gold, and lets them pick it up if so
-     * @return A message stating the result of the command, and the amount of gold the player now has
+     * Gives the result of the command, and the amount of gold the player now has
+     * @param player The player who gave the command
+     * @param direction Unused
      */
-    private String pickup() {
-        String outputMessage;
-
+    private void pickup(Player player, char direction) {
         // If the player's position contains gold, give the player gold, and remove the gold from the map
 	    if (map.getCharAtPos(humanPlayer.getXPos(), humanPlayer.getYPos()) == 'G') {
             humanPlayer.pickupGold();
             map.resetCharAtPos(humanPlayer.getXPos(), humanPlayer.getYPos());
-            outputMessage = "SUCCESS";
+            response.append("SUCCESS");
         } else {
-            outputMessage = "FAIL"; // If player not on gold, command fails
+            response.append("FAIL"); // If player not on gold, command fails
         }
 
-        return outputMessage + ". Gold owned: " + humanPlayer.getGold();
+        response.append(". Gold owned: ").append(humanPlayer.getGold());
     }
 
     /**
      * Carries out the 'look' command
-     * Gets a 5x5 grid view of the map around the player and translates it to a printable string
+     * Gets a 5x5 grid view of the map around the player and translates it to printable text
+     * The bot reads the grid directly, so its looks have no text
      * @param player The player which is looking
-     * @return The string representation of the grid
+     * @param direction Unused
      */
-    private String look(Player player) {
-	    final int viewWidth = 5; // Specifies the width of the grid
+    private void look(Player player, char direction) {
+        if (fieldOfView != null) {
+            lookWithFieldOfView(player);
+            return;
+        }
         // Gets grid view from map
-        char[][] mapView = map.getMapViewAtPos(player.getXPos(), player.getYPos(), viewWidth, players);
+        map.renderView(player.getXPos(), player.getYPos(), LOOK_WIDTH, occupancy, lookView);
 
-        if (player == botPlayer) { // If the player is the bot, it processes the data
-            botPlayer.processLookResult(mapView, humanPlayer.getPlayerChar());
+        if (player != humanPlayer) { // If the player is a bot, it processes the data
+            ((BotPlayer) player).processLookResult(lookView, LOOK_WIDTH, humanPlayer.getPlayerChar());
+            return;
         }
-        // Converts the 2D char array to a printable string
-        StringBuilder mapViewOutput = new StringBuilder();
-        for (int y = 0; y < viewWidth; y++) {
-            for (int x = 0; x < viewWidth; x++) {
-                mapViewOutput.append(mapView[y][x]); // Adds each char to the string
-            }
-            if (y < viewWidth - 1) {
-                mapViewOutput.append("\n"); // Adds a new line at the end of each row, unless it is the last row
+        // Converts the grid to printable text
+        for (int y = 0; y < LOOK_WIDTH; y++) {
+            response.append(lookView, y * LOOK_WIDTH, LOOK_WIDTH); // Adds each row to the text
+            if (y < LOOK_WIDTH - 1) {
+                response.append('\n'); // Adds a new line at the end of each row, unless it is the last row
             }
         }
+    }
 
-        return mapViewOutput.toString();
+    /**
+     * Carries out the 'look' command with a field of view, so walls hide the tiles behind them
+     * Bots only check whether the human player's tile is in sight. The human player gets a grid as wide as the field of
+     * view, where tiles out of sight are shown as '?'
+     * @param player The player which is looking
+     */
+    private void lookWithFieldOfView(Player player) {
+        long[] visible = fieldOfView.getVisible(player.getXPos(), player.getYPos());
+        if (player != humanPlayer) {
+            ((BotPlayer) player).processVisibleTiles(fieldOfView, visible, humanPlayer.getXPos(), humanPlayer.getYPos());
+            return;
+        }
+        int radius = fieldOfView.getRadius();
+        int gridWidth = 2 * radius + 1;
+        map.renderView(player.getXPos(), player.getYPos(), gridWidth, occupancy, fieldOfViewGrid);
+        for (int y = 0; y < gridWidth; y++) {
+            for (int x = 0; x < gridWidth; x++) {
+                if (!fieldOfView.isVisible(visible, x - radius, y - radius)) {
+                    fieldOfViewGrid[y * gridWidth + x] = '?';
+                }
+            }
+            response.append(fieldOfViewGrid, y * gridWidth, gridWidth);
+            if (y < gridWidth - 1) {
+                response.append('\n');
+            }
+        }
     }
 
     /**
      * Carries out the 'quit' command
      * If the player is on an exit and has enough gold to win, they win the game, and the game ends
      * If not, they lose the game, and the game ends
-     * @return A message stating whether they have won or not
+     * Gives a message stating whether they have won or not
+     * @param player The player who gave the command
+     * @param direction Unused
      */
-    private String quit() {
+    private void quit(Player player, char direction) {
         gameActive = false; // Causes the game to exit at the end of this turn
 	    if (map.getCharAtPos(humanPlayer.getXPos(), humanPlayer.getYPos()) == 'E' && humanPlayer.getGold() >= map.getGoldRequired()) {
-            return "WIN";
+            outcome = GameResult.Outcome.HUMAN_WIN;
+            response.append("WIN");
         } else {
-            return "LOSE";
+            outcome = GameResult.Outcome.HUMAN_LOSE;
+            response.append("LOSE");
         }
     }
 
     /**
      * Goes through all players in the player list and gives them a random location
+     * Locations are chosen from the map's placement index, so every free cell which isn't a wall or gold is equally likely
+     * Each player's cell is taken out of the free cells, so players are never placed on each other, and the cells too near
+     * the human player for a bot are taken out while the bots are placed, so a bot never has to be drawn again for them
      */
     private void setPlayerPositions() {
-	    int xPos = 0;
-        int yPos = 0;
-        boolean valid; // Whether or not the currently placement is valid
-        int repeatCounter; // Counts the number of attempts
-        final int repeatLimit = 1000; // Maximum number of attempts for placing each player
-	    Random random = new Random();
-
-	    // Goes through all players in the game
-	    for (Player p1 : players) {
-	        valid = false;
-	        repeatCounter = 0;
-	        while (!valid) { // Repeats until a placement is valid
-	            // If repeat counter reaches limit, error message outputted and program quit
-	            if (repeatCounter >= repeatLimit) {
-	                System.out.println("Player can't be placed");
-	                System.exit(0);
+        PlacementIndex placement = map.getPlacementIndex();
+        PlacementIndex.FreeCells freeCells = placement.freeCells();
+        MapConnectivity connectivity = map.getConnectivity();
+        int goldRequired = map.getGoldRequired();
+
+        // Puts the human player where the gold and an exit can be reached, if possible
+        int humanCell = freeCells.choose(random,
+                (xPos, yPos) -> connectivity.canWin(connectivity.getComponent(xPos, yPos), goldRequired));
+        placePlayer(humanPlayer, humanCell, placement, freeCells);
+        int humanComponent = connectivity.getComponent(humanPlayer.getXPos(), humanPlayer.getYPos());
+        // The free cells too near the human player for a bot, found once for all the bots
+        int[] nearCells = minSpawnDistance > 0 ? findNearCells(humanPlayer.getXPos(), humanPlayer.getYPos(),
+                minSpawnDistance - 1, placement.getWidth()) : new int[0];
+        int removedCount = 0;
+        for (int cell : nearCells) {
+            if (freeCells.remove(cell)) {
+                nearCells[removedCount++] = cell;
+            }
+        }
+
+	    // Goes through all bots in the game, putting each where it can reach the human player, if possible
+	    for (BotPlayer bot : botPlayers) {
+	        int cell = freeCells.choose(random, (xPos, yPos) -> connectivity.getComponent(xPos, yPos) == humanComponent);
+	        if (cell == -1 && removedCount > 0) { // Nowhere is far enough away, so the near cells are used after all
+	            for (int i = 0; i < removedCount; i++) {
+	                freeCells.add(nearCells[i]);
                 }
-	            valid = true;
-	            // Sets random coordinates on the map
-                xPos = random.nextInt(map.getMapWidth());
-                yPos = random.nextInt(map.getMapHeight());
-                // Tests that the coordinates don't clash with another player's
-                for (Player p2 : players) {
-                    if (p1 != p2 && xPos == p2.getXPos() && yPos == p2.getYPos()) {
-                        valid = false; // Position not valid if clash found
-                        break;
+	            removedCount = 0;
+	            cell = freeCells.choose(random, (xPos, yPos) -> connectivity.getComponent(xPos, yPos) == humanComponent);
+            }
+	        placePlayer(bot, cell, placement, freeCells);
+        }
+    }
+
+    /**
+     * Sets a player's starting position, or anywhere free if no cell was chosen for it, and takes it out of the free cells
+     * @param player The player
+     * @param cell The row-major index of the cell chosen for the player, or -1 if none could be
+     * @param placement The cells players can be placed on
+     * @param freeCells The cells no player has been placed on yet
+     */
+    private void placePlayer(Player player, int cell, PlacementIndex placement, PlacementIndex.FreeCells freeCells) {
+        int width = placement.getWidth();
+        if (cell == -1) {
+            cell = freeCells.choose(random, (xPos, yPos) -> true);
+        }
+        // If there's nowhere left to place the player, error message outputted and program quit
+        if (cell == -1) {
+            System.out.println("Player can't be placed");
+            System.exit(0);
+        }
+        freeCells.remove(cell);
+        player.setPos(cell % width, cell / width); // Finally sets valid position of player
+    }
+
+    /**
+     * Finds the cells a few steps from a position, moving around walls, with a breadth-first search
+     * The cells are marked in a BitSet over the square which the steps can reach, in row-major order, so the search only
+     * needs memory for that square however large the map is
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @param maxSteps The most steps from the position
+     * @param width The width of the map
+     * @return The row-major indexes of the cells found, in the order they were found
+     */
+    private int[] findNearCells(int xPos, int yPos, int maxSteps, int width) {
+        int squareWidth = 2 * maxSteps + 1;
+        int left = xPos - maxSteps; // The map coordinates of the square's top-left corner
+        int top = yPos - maxSteps;
+        BitSet found = new BitSet(squareWidth * squareWidth);
+        int[] queue = new int[64]; // Indexes into the square, in the order they were found
+        int start = maxSteps * squareWidth + maxSteps;
+        found.set(start);
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        // Expands one step further each time round, so cells are only found up to maxSteps away
+        for (int steps = 0; steps < maxSteps && head < tail; steps++) {
+            int stepEnd = tail;
+            while (head < stepEnd) {
+                int cell = queue[head++];
+                int x = cell % squareWidth;
+                int y = cell / squareWidth;
+                for (int direction = 0; direction < 4; direction++) {
+                    // Fewer than maxSteps steps have been taken, so the next cell is always inside the square
+                    int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                    int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                    int next = nextY * squareWidth + nextX;
+                    if (!found.get(next) && !map.isWall(left + nextX, top + nextY)) {
+                        found.set(next);
+                        if (tail == queue.length) { // Doubles the queue when full
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = next;
                     }
                 }
-                // Tests that the position isn't on a wall or on gold
-                if (map.getCharAtPos(xPos, yPos) == '#' || map.getCharAtPos(xPos, yPos) == 'G') {
-                    valid = false; // Position not valid if on wall or gold
-                }
-                repeatCounter++;
             }
-            p1.setPos(xPos, yPos); // Finally sets valid position of player
         }
+        // Turns the indexes into the square into the map's own
+        int[] cells = new int[tail];
+        for (int i = 0; i < tail; i++) {
+            cells[i] = (top + queue[i] / squareWidth) * width + left + queue[i] % squareWidth;
+        }
+        return cells;
     }
 
     /**
-     * Checks if the bot player has caught the human player
-     * @return If the bot has won or not
+     * Checks if a bot has caught the human player, by looking for another player on the human player's position in the
+     * occupancy index, so it takes the same time however many bots there are
+     * @return If a bot has won or not
      */
     private boolean checkBotWin() {
-        // Checks if the bot player is at the same position as the human player
-	    return humanPlayer.getXPos() == botPlayer.getXPos() && humanPlayer.getYPos() == botPlayer.getYPos();
+        // Checks if another player, which can only be a bot, shares the human player's position
+	    return occupancy.isShared(humanPlayer.getXPos(), humanPlayer.getYPos());
     }
 
     /**
-     * Activates the command method according to the specified command
-     * Gets the result of the command as a string
+     * Activates the command method according to the specified command, which writes its result to the response
      * If the command doesn't match any built-in commands, the result of the command is "Invalid command"
-     * @param command An array containing the command being activated - separated by spaces
+     * @param command The command being activated
      * @param player The player who gave the command
-     * @return The result of the command which can be outputted
-     */
-    private String getCommandOutput(String[] command, Player player) {
-	    String commandOutput;
-        String commandWord = command[0];
-
-        // Calls the appropriate method, according to the command given
-        // The following commands must be just one word to be valid
-        if (command.length == 1) {
-            if (commandWord.equals("HELLO")) {
-                commandOutput = hello();
-            } else if (commandWord.equals("GOLD")) {
-                commandOutput = gold();
-            } else if (commandWord.equals("PICKUP") && player == humanPlayer) { // Only the human player can give this command
-                commandOutput = pickup();
-            } else if (commandWord.equals("LOOK")) {
-                commandOutput = look(player);
-            } else if (commandWord.equals("QUIT") && player == humanPlayer) { // Only the human player can give this command
-                commandOutput = quit();
-            } else {
-                commandOutput = "Invalid command"; // If none of the above, the command is invalid
-            }
-        } else if (command.length == 2 && commandWord.equals("MOVE")) { // The only valid command of length 2
-            commandOutput = move(player, command[1]);
-        } else {
-            commandOutput = "Invalid command"; // If none of the above, the command is invalid
+     */
+    private void runCommand(int command, Player player) {
+        Command.Opcode opcode = Command.getOpcode(command);
+        // Only the human player can give the PICKUP and QUIT commands
+        if (HUMAN_ONLY[opcode.ordinal()] && player != humanPlayer) {
+            opcode = Command.Opcode.INVALID;
         }
+        ACTIONS[opcode.ordinal()].run(this, player, Command.getDirection(command));
+    }
 
-        return commandOutput;
+    /**
+     * Makes 'look' see with a field of view, out to its radius and not through walls, rather than the whole 5x5 square
+     * around the player. It must be on this game's map or a copy of it, and can be shared by many games
+     * Journals don't record it, and replays look with the 5x5 square, so games with one shouldn't be recorded
+     * @param fieldOfView The field of view, or null to go back to the 5x5 square
+     */
+    public void setFieldOfView(FieldOfView fieldOfView) {
+        this.fieldOfView = fieldOfView;
+        if (fieldOfView != null) {
+            int gridWidth = 2 * fieldOfView.getRadius() + 1;
+            fieldOfViewGrid = new char[gridWidth * gridWidth];
+        }
     }
 
     /**
-     * Runs and coordinates the game itself
+     * Starts recording the game to a journal, so it can be replayed by GameReplayer. It must be called before the first turn
+     * The seed, the starting map and the number of bots are recorded, then every command given and how the game ends
+     * @param journal The journal to record to
      */
-    private void playGame() {
-	    String commandResult;
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+        journalGameId = journal.startGame(seed, map.getChecksum(), botPlayers.length, minSpawnDistance);
+    }
 
-	    System.out.println("Welcome to the " + map.getMapName());
+    /**
+     * Records the end of the game, if it's being recorded to a journal
+     */
+    private void recordEnd() {
+        if (journal != null) {
+            journal.endGame(journalGameId, outcome, humanPlayer.getGold());
+        }
+    }
+
+    /**
+     * Carries out a player's turn. The command is activated, then the game checks if the bot has won
+     * When instrumentation is on, the turn is timed and recorded in GameStats and as a TurnEvent, unless the game is a fork
+     * @param player The player taking their turn
+     * @param command The command being activated, from Command
+     * @return The result of the command which can be outputted. It's reused by the next turn, so it must be used or copied before then
+     */
+    public CharSequence playTurn(Player player, int command) {
+        // The player's index is only needed for the journal, and finding a bot's takes time with many bots
+        return playTurn(player, journal != null ? getPlayerIndex(player) : 0, command);
+    }
+
+    /**
+     * Carries out a player's turn, given the player's index for the journal
+     * @param player The player taking their turn
+     * @param playerIndex The index of the player: 0 for the human player, or a bot's id plus 1
+     * @param command The command being activated, from Command
+     * @return The result of the command, which is reused by the next turn
+     */
+    private CharSequence playTurn(Player player, int playerIndex, int command) {
+        if (!GameStats.ENABLED || !instrumented) {
+            return runTurn(player, playerIndex, command);
+        }
+        TurnEvent event = new TurnEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        runTurn(player, playerIndex, command);
+        long elapsed = System.nanoTime() - startTime;
+        // Every command which fails starts its result with FAIL
+        boolean failed = response.length() >= 4 && response.charAt(0) == 'F' && response.charAt(1) == 'A'
+                && response.charAt(2) == 'I' && response.charAt(3) == 'L';
+        GameStats.recordTurn(player == humanPlayer ? GameStats.HUMAN : GameStats.BOT, command, elapsed, failed);
+        event.end();
+        if (event.shouldCommit()) {
+            event.player = player == humanPlayer ? "human" : "bot";
+            event.playerChar = player.getPlayerChar();
+            event.command = Command.toString(command);
+            event.failed = failed;
+            event.commit();
+        }
+        return response;
+    }
+
+    /**
+     * Gets the index a player is recorded with in the journal
+     * @param player A player in this game
+     * @return 0 for the human player, or the bot's id plus 1
+     */
+    private int getPlayerIndex(Player player) {
+        if (player == humanPlayer) {
+            return 0;
+        }
+        int id = 0;
+        while (botPlayers[id] != player) {
+            id++;
+        }
+        return id + 1;
+    }
+
+    /**
+     * Gets a player's next command. When instrumentation is on, the time the player takes is recorded in GameStats
+     * @param player The player
+     * @return The command, from Command
+     */
+    public int nextCommand(Player player) {
+        if (!GameStats.ENABLED || !instrumented) {
+            return player.getCommand();
+        }
+        long startTime = System.nanoTime();
+        int command = player.getCommand();
+        GameStats.recordCommand(player == humanPlayer ? GameStats.HUMAN : GameStats.BOT, System.nanoTime() - startTime);
+        return command;
+    }
+
+    /**
+     * Carries out a player's turn, without instrumentation
+     * @param player The player taking their turn
+     * @param playerIndex The index of the player: 0 for the human player, or a bot's id plus 1
+     * @param command The command being activated, from Command
+     * @return The result of the command
+     */
+    private CharSequence runTurn(Player player, int playerIndex, int command) {
+        response.setLength(0);
+        if (journal != null) {
+            journal.recordTurn(journalGameId, playerIndex, command);
+        }
+        runCommand(command, player); // Activates command and writes its printable result
+        //Checks if the bot has won
+        if (checkBotWin()) {
+            outcome = GameResult.Outcome.BOT_WIN;
+            gameActive = false; // Stops the game
+        }
+        if (!gameActive) {
+            recordEnd();
+        }
+        return response;
+    }
+
+    /**
+     * Runs and coordinates the game itself, until it ends
+     * Runs on the calling thread, which waits for the human player's input each turn. Running each game on its own
+     * virtual thread lets many games wait at once without an operating system thread each
+     */
+    public void playGame() {
+	    CharSequence commandResult;
+
+	    output.println("Welcome to the " + map.getMapName());
+	    output.println();
 	    while (gameActive) { // Continues playing until the game is no longer active
-	        for (Player currentPlayer : players) { // Gives each player their turn in order
-                String[] command = currentPlayer.getCommand(); // Gets command from player
-                commandResult = getCommandOutput(command, currentPlayer); // Activates command and gets printable result
-                // Only outputs the result if it is the human player's turn
-                if (currentPlayer == humanPlayer) {
-                    System.out.println(commandResult);
-                    System.out.println();
-                }
-                //Checks if the bot has won
-                if (checkBotWin()) {
-                    System.out.println("GAME OVER. The bot caught you"); // Prints end game message
-                    gameActive = false; // Stops the game
+	        int command = nextCommand(humanPlayer); // Gets command from the human player
+	        commandResult = playTurn(humanPlayer, command);
+	        // Only outputs the result of the human player's turn
+	        output.println(commandResult);
+	        output.println();
+	        // If the game is deactivated, no more turns should occur
+	        if (gameActive) {
+	            playBotTurns(); // Then every bot takes its turn
+            }
+	        if (outcome == GameResult.Outcome.BOT_WIN) {
+	            output.println("GAME OVER. The bot caught you"); // Prints end game message
+            }
+        }
+    }
+
+    /**
+     * Gives every bot its turn, together as one tick
+     * First every bot chooses its command, in parallel when there are many bots, while nothing in the game changes.
+     * Bots sharing a path cache get the same path from a tile to a goal whichever of them searches first, so the
+     * commands are the same either way.
+     * Then the commands are carried out in order of the bots' ids, so when two bots try to move onto the same tile, the
+     * bot with the lower id gets there and the other's move fails. The tick stops as soon as a bot catches the human player
+     * When there's more than one bot, their LOOKs are carried out together once the moves are done. Moves can't change
+     * what a bot sees, as bots never hide the human player and can't pick up gold, so the results are the same as
+     * looking straight away, but each part of the map is only rendered once however many bots look at it
+     */
+    public void playBotTurns() {
+        int botCount = botPlayers.length;
+        if (botCount >= PARALLEL_MIN_BOTS && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            IntStream.range(0, botCount).parallel().forEach(id -> botCommands[id] = nextCommand(botPlayers[id]));
+        } else {
+            for (int id = 0; id < botCount; id++) {
+                botCommands[id] = nextCommand(botPlayers[id]);
+            }
+        }
+
+        int lookerCount = 0;
+        for (int id = 0; id < botCount && gameActive; id++) {
+            if (botCount > 1 && Command.getOpcode(botCommands[id]) == Command.Opcode.LOOK) {
+                BotPlayer bot = botPlayers[id];
+                // Packs the region's row and column above the id, so sorting groups the lookers by region
+                lookers[lookerCount++] = ((long) (bot.getYPos() / LOOK_WIDTH) << 42)
+                        | ((long) (bot.getXPos() / LOOK_WIDTH) << 21) | id;
+            } else {
+                playTurn(botPlayers[id], id + 1, botCommands[id]);
+            }
+        }
+        if (lookerCount > 0) {
+            long startTime = GameStats.ENABLED && instrumented ? System.nanoTime() : 0;
+            playLooks(lookerCount);
+            if (GameStats.ENABLED && instrumented) { // The looks are timed together, so each is recorded as an equal share
+                long share = (System.nanoTime() - startTime) / lookerCount;
+                for (int i = 0; i < lookerCount; i++) {
+                    GameStats.recordTurn(GameStats.BOT, Command.LOOK, share, false);
                 }
-                // If the game is deactivated, no more turns should occur, so the FOR loop is broken
-                if (!gameActive) {
-                    break;
+            }
+        }
+    }
+
+    /**
+     * Carries out the LOOKs of the bots looking this tick. Bots looking from the same LOOK_WIDTH square region share one
+     * render of the area every one of them can see, and each bot's grid is copied out of it
+     * @param lookerCount The number of bots looking, whose packed regions and ids are at the start of lookers
+     */
+    private void playLooks(int lookerCount) {
+        // Recorded as turns of their own, in order of the bots' ids, which replay the same way. Once a bot has caught the
+        // human player the game's end is already recorded, and the looks can't change how it ended
+        if (journal != null && gameActive) {
+            for (int i = 0; i < lookerCount; i++) {
+                journal.recordTurn(journalGameId, (int) (lookers[i] & 0x1FFFFF) + 1, Command.LOOK);
+            }
+        }
+        if (fieldOfView != null) { // Each bot's tiles in sight are looked up on their own, so nothing is rendered
+            for (int i = 0; i < lookerCount; i++) {
+                lookWithFieldOfView(botPlayers[(int) (lookers[i] & 0x1FFFFF)]);
+            }
+            return;
+        }
+        Arrays.sort(lookers, 0, lookerCount);
+        int radius = (LOOK_WIDTH - 1) / 2;
+        int regionRadius = (REGION_VIEW_WIDTH - 1) / 2;
+        char humanChar = humanPlayer.getPlayerChar();
+        int start = 0;
+        while (start < lookerCount) {
+            long region = lookers[start] >>> 21;
+            int end = start + 1;
+            while (end < lookerCount && lookers[end] >>> 21 == region) {
+                end++;
+            }
+            if (end - start == 1) { // A bot looking on its own renders just its own grid
+                BotPlayer bot = botPlayers[(int) (lookers[start] & 0x1FFFFF)];
+                map.renderView(bot.getXPos(), bot.getYPos(), LOOK_WIDTH, occupancy, lookView);
+                bot.processLookResult(lookView, LOOK_WIDTH, humanChar);
+            } else {
+                int centreX = (int) (region & 0x1FFFFF) * LOOK_WIDTH + radius;
+                int centreY = (int) (region >>> 21) * LOOK_WIDTH + radius;
+                map.renderView(centreX, centreY, REGION_VIEW_WIDTH, occupancy, regionView);
+                for (int i = start; i < end; i++) {
+                    BotPlayer bot = botPlayers[(int) (lookers[i] & 0x1FFFFF)];
+                    // The bot's grid starts this far into the region's view
+                    int left = bot.getXPos() - radius - (centreX - regionRadius);
+                    int top = bot.getYPos() - radius - (centreY - regionRadius);
+                    for (int y = 0; y < LOOK_WIDTH; y++) {
+                        System.arraycopy(regionView, (top + y) * REGION_VIEW_WIDTH + left, lookView, y * LOOK_WIDTH, LOOK_WIDTH);
+                    }
+                    bot.processLookResult(lookView, LOOK_WIDTH, humanChar);
                 }
             }
+            start = end;
+        }
+    }
+
+    /**
+     * Runs the game without the console until it ends or runs out of rounds
+     * In each round, the human player takes a turn, then every bot does (see playBotTurns). Nothing is printed
+     * @param maxRounds The number of rounds after which the game is stopped if it hasn't ended
+     * @return The result of the game
+     */
+    public GameResult playHeadless(int maxRounds) {
+        int rounds = 0;
+
+        while (gameActive && rounds < maxRounds) {
+            rounds++;
+            playTurn(humanPlayer, nextCommand(humanPlayer));
+            if (gameActive) {
+                playBotTurns(); // Every bot takes its turn after the human player
+            }
+        }
+
+        if (outcome == null) { // The game didn't end on its own
+            outcome = GameResult.Outcome.ROUND_LIMIT;
+            recordEnd();
+        }
+        return new GameResult(outcome, rounds, humanPlayer.getGold());
+    }
+
+    /**
+     * Takes a snapshot of the game, which the game can be restored to or forked from
+     * It takes constant time however large the map is, and time in proportion to the number of bots
+     * @return The snapshot
+     */
+    public GameSnapshot snapshot() {
+        return new GameSnapshot(seed, map.fork(), humanPlayer, botPlayers, gameActive, outcome);
+    }
+
+    /**
+     * Rolls the game back to a snapshot taken of it, in constant time however large the map is
+     * Tile listeners on the map aren't told about the gold put back, and a journal the game is recorded to doesn't
+     * record the rollback, so games which are rolled back shouldn't use either
+     * @param snapshot A snapshot of this game, or of a fork of it
+     */
+    public void restore(GameSnapshot snapshot) {
+        map.restoreTiles(snapshot.getMap());
+        restorePlayers(snapshot);
+        for (int id = 0; id < botPlayers.length; id++) {
+            botPlayers[id].restoreState(snapshot.getBotState(id));
+        }
+        gameActive = snapshot.isActive();
+        outcome = snapshot.getOutcome();
+    }
+
+    /**
+     * Forks the game in constant time however large the map is. The fork's human player has no input or output, so its commands must be given
+     * to playTurn, e.g. by a search trying out different moves
+     * @return The fork, which can be played without affecting this game
+     */
+    public Game fork() {
+        GameSnapshot snapshot = snapshot();
+        return new Game(snapshot, new HumanPlayer(snapshot.getHumanPlayerChar(), null, null), output);
+    }
+
+    /**
+     * Puts the players back where they were in a snapshot, and gives the human player back its gold
+     * @param snapshot The snapshot
+     */
+    private void restorePlayers(GameSnapshot snapshot) {
+        humanPlayer.setPos(snapshot.getHumanXPos(), snapshot.getHumanYPos()); // Keeps the occupancy index up to date
+        humanPlayer.setGold(snapshot.getHumanGold());
+        for (int id = 0; id < botPlayers.length; id++) {
+            botPlayers[id].setPos(snapshot.getBotXPos(id), snapshot.getBotYPos(id));
         }
     }
 
+    /**
+     * Checks if the game is still running
+     * @return True if the game hasn't ended
+     */
+    public boolean isActive() {
+        return gameActive;
+    }
+
+    /**
+     * Gets how the game ended
+     * @return The outcome, or null if the game hasn't ended
+     */
+    public GameResult.Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Gets the human player playing the game
+     * @return The human player
+     */
+    public HumanPlayer getHumanPlayer() {
+        return humanPlayer;
+    }
+
+    /**
+     * Gets the computer-controlled player playing the game, or the first of them if there are many
+     * @return The bot player
+     */
+    public BotPlayer getBotPlayer() {
+        return botPlayer;
+    }
+
+    /**
+     * Gets the number of computer-controlled players playing the game
+     * @return The number of bots
+     */
+    public int getBotCount() {
+        return botPlayers.length;
+    }
+
+    /**
+     * Gets one of the computer-controlled players playing the game
+     * @param id The bot's id, its index in the order the bots take their turns
+     * @return The bot player
+     */
+    public BotPlayer getBotPlayer(int id) {
+        return botPlayers[id];
+    }
+
+    /**
+     * Gets all the computer-controlled players playing the game
+     * @return The bot players, in order of their ids
+     */
+    public BotPlayer[] getBotPlayers() {
+        return botPlayers.clone();
+    }
+
     /**
      * Gets the path of the map file from the user
+     * @param input Where the user's input is read from. The same reader must be used for the rest of the game, so no input is lost
+     * @param output Where the prompt is written
      * @return The map file path
      */
-    private String getFilePathInput() {
-        BufferedReader br;
-        String filePath = "";
+    private static String getFilePathInput(BufferedReader input, PrintStream output) {
+        String filePath = null;
 
-        System.out.print("Enter file path: ");
+        output.print("Enter file path: ");
         try {
-            br = new BufferedReader(new InputStreamReader(System.in)); // Sets up BufferedReader
-            filePath = br.readLine(); // Reads the line and interprets it as the file path
+            filePath = input.readLine(); // Reads the line and interprets it as the file path
         } catch (IOException e) {
             System.out.println(e.toString()); // Prints an error message
             System.exit(0); // Quits the program
         }
+        if (filePath == null) { // The input ended before a path was entered
+            System.exit(0);
+        }
 
         return filePath;
     }
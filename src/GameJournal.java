@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to record games to an append-only binary journal file, so they can be replayed exactly by GameReplayer
+ * A game is fully decided by its seed, its starting map and the command each player gave each turn, so those are all that's
+ * recorded. Many games, e.g. every session of a server, can be recorded to one journal at once, each with its own game id.
+ * Records are put into an in-memory buffer, and a background thread writes full buffers to the file, and partly
+ * filled ones every FLUSH_INTERVAL_MILLIS, so recording a turn doesn't wait for the disk. At most MAX_BUFFERS buffers
+ * are kept: if the writer falls that far behind, recording waits for it to free one, rather than losing records which
+ * replays need, or holding more and more memory
+ *
+ * The file starts with MAGIC and VERSION, followed by records which each start with a type byte:
+ * START (game id, seed, map checksum, bot count, min spawn distance), TURN (game id, player index, command) and
+ * END (game id, outcome ordinal, gold)
+ */
+public class GameJournal {
+
+    /**
+     * The first bytes of every journal file ("DJNL")
+     */
+    static final int MAGIC = 0x444A4E4C;
+    /**
+     * The version of the format. Version 2 games place their players with the map's placement index, so games recorded
+     * by version 1 start from different positions and can't be replayed. Version 3 records how many bots each game has
+     * and how far they started from the human player, and which bot took each turn
+     */
+    static final int VERSION = 3;
+    /**
+     * The type of a record marking the start of a game
+     */
+    static final byte START = 1;
+    /**
+     * The type of a record holding one turn
+     */
+    static final byte TURN = 2;
+    /**
+     * The type of a record marking the end of a game
+     */
+    static final byte END = 3;
+    /**
+     * The size of a START record
+     */
+    static final int START_SIZE = 1 + 8 + 8 + 4 + 4 + 4;
+    /**
+     * The size of a TURN record
+     */
+    static final int TURN_SIZE = 1 + 8 + 4 + 4;
+    /**
+     * The size of an END record
+     */
+    static final int END_SIZE = 1 + 8 + 1 + 4;
+    /**
+     * The size of each buffer of records
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The most buffers of records kept at once
+     */
+    private static final int MAX_BUFFERS = 16;
+    /**
+     * The longest time a record waits in memory before it's written to the file
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+    /**
+     * Passed to the writer thread to make it stop
+     */
+    private static final ByteBuffer STOP = ByteBuffer.allocate(0);
+
+    /**
+     * The journal file
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer records are being added to
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * Buffers waiting to be written to the file, in order. There's room for every buffer and STOP, so adding never waits
+     */
+    private final ArrayBlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(MAX_BUFFERS + 1);
+    /**
+     * Buffers which have been written, ready to be reused
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of buffers made so far, up to MAX_BUFFERS. Only changed while synchronized
+     */
+    private int bufferCount = 1;
+    /**
+     * Writes buffers to the file
+     */
+    private final Thread writer;
+    /**
+     * The id the next game will be given
+     */
+    private long nextGameId;
+    /**
+     * Whether the journal has been closed or has failed, so records are no longer kept
+     */
+    private volatile boolean closed;
+    /**
+     * Whether close has been called. Only used while synchronized
+     */
+    private boolean closing;
+
+    /**
+     * The constructor for GameJournal. It creates the journal file, replacing any existing file, and starts the writer thread
+     * @param filePath The path of the journal file
+     */
+    public GameJournal(String filePath) {
+        FileChannel openedChannel = null;
+        try {
+            openedChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+        channel = openedChannel;
+        buffer.putInt(MAGIC).putInt(VERSION);
+        writer = new Thread(this::writeBuffers, "game-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a journal which is closed when the program exits, so records still in memory aren't lost
+     * @param filePath The path of the journal file
+     * @return The journal
+     */
+    public static GameJournal openUntilExit(String filePath) {
+        GameJournal journal = new GameJournal(filePath);
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+        return journal;
+    }
+
+    /**
+     * Records the start of a game
+     * @param seed The seed the game was created with
+     * @param mapChecksum The checksum of the map at the start of the game, from Map.getChecksum
+     * @param botCount The number of bots in the game
+     * @param minSpawnDistance The fewest steps the bots had to start from the human player, or 0 for any
+     * @return The id of the game, to pass with the game's other records
+     */
+    public synchronized long startGame(long seed, int mapChecksum, int botCount, int minSpawnDistance) {
+        long gameId = nextGameId++;
+        if (!closed) {
+            ensureSpace(START_SIZE);
+            buffer.put(START).putLong(gameId).putLong(seed).putInt(mapChecksum).putInt(botCount).putInt(minSpawnDistance);
+        }
+        return gameId;
+    }
+
+    /**
+     * Records one turn of a game
+     * @param gameId The id of the game, from startGame
+     * @param playerIndex The index of the player taking the turn: 0 for the human player, or a bot's id plus 1
+     * @param command The command the player gave, from Command
+     */
+    public synchronized void recordTurn(long gameId, int playerIndex, int command) {
+        if (!closed) {
+            ensureSpace(TURN_SIZE);
+            buffer.put(TURN).putLong(gameId).putInt(playerIndex).putInt(command);
+        }
+    }
+
+    /**
+     * Records the end of a game
+     * @param gameId The id of the game, from startGame
+     * @param outcome How the game ended
+     * @param gold The gold the human player owned at the end
+     */
+    public synchronized void endGame(long gameId, GameResult.Outcome outcome, int gold) {
+        if (!closed) {
+            ensureSpace(END_SIZE);
+            buffer.put(END).putLong(gameId).put((byte) outcome.ordinal()).putInt(gold);
+        }
+    }
+
+    /**
+     * Makes sure the current buffer has room for a record, handing it to the writer thread if it hasn't
+     * @param bytes The size of the record
+     */
+    private void ensureSpace(int bytes) {
+        if (buffer.remaining() < bytes) {
+            handOff();
+        }
+    }
+
+    /**
+     * Hands the current buffer to the writer thread, and starts a new one. Must be called while synchronized
+     * If the writer is behind and every buffer has been made, this waits for the writer to free one. The lock is let go
+     * while waiting, so other records can still be added to the current buffer until it's full
+     */
+    private void handOff() {
+        ByteBuffer next = freeBuffers.poll();
+        if (next == null && bufferCount < MAX_BUFFERS) { // The writer is behind, so another buffer is needed
+            bufferCount++;
+            next = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        boolean interrupted = false;
+        while (next == null) { // The writer frees every buffer if it fails, so this always ends
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // The record still has to be kept, so the interrupt is kept for later
+            }
+            next = freeBuffers.poll();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        buffer.flip();
+        fullBuffers.add(buffer);
+        buffer = next;
+    }
+
+    /**
+     * Writes buffers to the file as they're handed off, until the journal is closed
+     * Runs on the writer thread. If nothing has been handed off for a while, the records added so far are written anyway
+     */
+    private void writeBuffers() {
+        try {
+            while (true) {
+                ByteBuffer full = fullBuffers.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (full == null) {
+                    // Only while nothing is waiting to be written, when every other buffer is free, so handing off
+                    // doesn't wait for this thread
+                    synchronized (this) {
+                        if (buffer.position() > 0 && !closed && fullBuffers.isEmpty()) {
+                            handOff();
+                        }
+                    }
+                    continue;
+                }
+                if (full == STOP) {
+                    break;
+                }
+                while (full.hasRemaining()) {
+                    channel.write(full);
+                }
+                full.clear();
+                freeBuffers.add(full);
+                synchronized (this) {
+                    notifyAll(); // Wakes any game waiting for a buffer
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message, and the journal stops recording
+            closed = true;
+            // Frees the buffers which won't be written, so a game waiting for one can carry on
+            ByteBuffer full;
+            while ((full = fullBuffers.poll()) != null) {
+                if (full != STOP) {
+                    full.clear();
+                    freeBuffers.add(full);
+                }
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes all records to the file, then closes it. Records made after this are ignored
+     * The file is closed even if writing to it has failed
+     */
+    public void close() {
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            if (!closed) { // Unless the writer has failed, what's left is written before it stops
+                closed = true;
+                if (buffer.position() > 0) {
+                    handOff();
+                }
+            }
+            fullBuffers.add(STOP);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+        }
+    }
+}
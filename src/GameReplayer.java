@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Class to replay the games recorded in a GameJournal, as fast as possible and without any output, checking that each
+ * ends the same way it did when it was recorded
+ * Each game is recreated from its seed on a copy of the map, then given the recorded commands in order. Games which were
+ * recorded on a different map, or whose recording stops before they ended (e.g. the client left), can't be checked
+ */
+public class GameReplayer {
+
+    /**
+     * The number of differing games described in the report
+     */
+    private static final int MAX_REPORTED_DIFFERENCES = 10;
+    /**
+     * The outcomes, indexed by ordinal
+     */
+    private static final GameResult.Outcome[] OUTCOMES = GameResult.Outcome.values();
+
+    /**
+     * The map which every game starts from a copy of
+     */
+    private final Map mapTemplate;
+    /**
+     * The checksum of the map, which games must have been recorded on to be replayed
+     */
+    private final int mapChecksum;
+    /**
+     * The games being replayed, by game id
+     */
+    private final HashMap<Long, Game> games = new HashMap<>();
+    /**
+     * The ids of games which can't be replayed, or already differ, so the rest of their records are ignored
+     */
+    private final HashSet<Long> ignoredGames = new HashSet<>();
+    /**
+     * The number of games which ended the same way as when they were recorded
+     */
+    private long matchedGames;
+    /**
+     * The number of games which didn't end the same way as when they were recorded
+     */
+    private long differentGames;
+    /**
+     * The number of games recorded on a different map
+     */
+    private long skippedGames;
+    /**
+     * The number of turns played
+     */
+    private long turns;
+    /**
+     * Descriptions of the first games which differed
+     */
+    private final StringBuilder differences = new StringBuilder();
+
+    /**
+     * The constructor for GameReplayer
+     * @param mapTemplate The map the games were recorded on. It isn't changed by the games
+     */
+    public GameReplayer(Map mapTemplate) {
+        this.mapTemplate = mapTemplate.shareTiles(); // Each game's copy then only keeps which of the gold it has picked up
+        mapChecksum = mapTemplate.getChecksum();
+    }
+
+    /**
+     * Outputs a specific error message and quits the program
+     */
+    private static void invalidFileFormat() {
+        System.out.println("Invalid journal file format");
+        System.exit(0);
+    }
+
+    /**
+     * Replays every game in a journal file
+     * @param journalFilePath The path of the journal file
+     */
+    public void replay(String journalFilePath) {
+        try (FileChannel channel = FileChannel.open(Paths.get(journalFilePath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.flip(); // Starts empty, ready to be read from
+            if (!fill(channel, buffer, 8) || buffer.getInt() != GameJournal.MAGIC || buffer.getInt() != GameJournal.VERSION) {
+                invalidFileFormat();
+            }
+            while (fill(channel, buffer, 1)) {
+                byte type = buffer.get(buffer.position());
+                int size = type == GameJournal.START ? GameJournal.START_SIZE
+                        : type == GameJournal.TURN ? GameJournal.TURN_SIZE
+                        : type == GameJournal.END ? GameJournal.END_SIZE : -1;
+                if (size == -1) {
+                    invalidFileFormat();
+                }
+                if (!fill(channel, buffer, size)) {
+                    break; // The last record was cut short, e.g. by the program being killed
+                }
+                buffer.get(); // The type
+                long gameId = buffer.getLong();
+                if (type == GameJournal.START) {
+                    startGame(gameId, buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                } else if (type == GameJournal.TURN) {
+                    playTurn(gameId, buffer.getInt(), buffer.getInt());
+                } else {
+                    endGame(gameId, buffer.get(), buffer.getInt());
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+
+    /**
+     * Makes sure a buffer holds a number of bytes past its position, reading more of a file into it if it doesn't
+     * @param channel The file to read from
+     * @param buffer The buffer, ready to be read from
+     * @param bytes The number of bytes needed
+     * @return False if the file ended first
+     * @throws IOException If the file can't be read
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) == -1) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Recreates a game from its START record
+     * @param gameId The id of the game
+     * @param seed The seed the game was created with
+     * @param checksum The checksum of the map the game was recorded on
+     * @param botCount The number of bots in the game
+     * @param minSpawnDistance The fewest steps the bots had to start from the human player
+     */
+    private void startGame(long gameId, long seed, int checksum, int botCount, int minSpawnDistance) {
+        if (checksum != mapChecksum) {
+            skippedGames++;
+            ignoredGames.add(gameId);
+            return;
+        }
+        if (botCount < 1 || minSpawnDistance < 0) {
+            invalidFileFormat();
+        }
+        // The players' commands come from the journal, so they never choose any themselves
+        BotPlayer[] botPlayers = new BotPlayer[botCount];
+        for (int i = 0; i < botCount; i++) {
+            botPlayers[i] = new BotPlayer('B', 0);
+        }
+        Game game = new Game(new Map(mapTemplate), new HumanPlayer('P', null, null), botPlayers, seed, System.out,
+                minSpawnDistance);
+        games.put(gameId, game);
+    }
+
+    /**
+     * Plays a turn from a TURN record
+     * @param gameId The id of the game
+     * @param playerIndex The index of the player taking the turn: 0 for the human player, or a bot's id plus 1
+     * @param command The command the player gave
+     */
+    private void playTurn(long gameId, int playerIndex, int command) {
+        Game game = games.get(gameId);
+        if (game == null) {
+            if (!ignoredGames.contains(gameId)) {
+                invalidFileFormat(); // The game never started
+            }
+            return;
+        }
+        if (!game.isActive()) { // The rest of the game's records are ignored
+            games.remove(gameId);
+            ignoredGames.add(gameId);
+            addDifference(gameId, "ended early with " + game.getOutcome());
+            return;
+        }
+        if (playerIndex < 0 || playerIndex > game.getBotCount()) {
+            invalidFileFormat();
+        }
+        Player player = playerIndex == 0 ? game.getHumanPlayer() : game.getBotPlayer(playerIndex - 1);
+        game.playTurn(player, command);
+        turns++;
+    }
+
+    /**
+     * Checks a game against its END record
+     * @param gameId The id of the game
+     * @param outcomeOrdinal The ordinal of how the game ended when it was recorded
+     * @param gold The gold the human player owned when it was recorded
+     */
+    private void endGame(long gameId, int outcomeOrdinal, int gold) {
+        Game game = games.remove(gameId);
+        if (game == null) {
+            ignoredGames.remove(gameId);
+            return;
+        }
+        if (outcomeOrdinal < 0 || outcomeOrdinal >= OUTCOMES.length) {
+            invalidFileFormat();
+        }
+        GameResult.Outcome expected = OUTCOMES[outcomeOrdinal];
+        // Games stopped by a round limit never end by themselves, so they must still be running
+        GameResult.Outcome actual = game.isActive() ? GameResult.Outcome.ROUND_LIMIT : game.getOutcome();
+        int actualGold = game.getHumanPlayer().getGold();
+        if (actual == expected && actualGold == gold) {
+            matchedGames++;
+        } else {
+            addDifference(gameId, "ended with " + actual + " and " + actualGold + " gold, but was recorded ending with "
+                    + expected + " and " + gold + " gold");
+        }
+    }
+
+    /**
+     * Counts a game which differs from its recording
+     * @param gameId The id of the game
+     * @param description How it differs
+     */
+    private void addDifference(long gameId, String description) {
+        differentGames++;
+        if (differentGames <= MAX_REPORTED_DIFFERENCES) {
+            differences.append("  Game ").append(gameId).append(' ').append(description).append('\n');
+        }
+    }
+
+    /**
+     * Prints the results of the replays
+     * @param seconds How long the replays took
+     */
+    public void printReport(double seconds) {
+        System.out.printf("Replayed %d turns in %.3f s (%.0f turns/sec)%n", turns, seconds, turns / seconds);
+        System.out.printf("Games: %d matched, %d differed, %d unfinished, %d recorded on a different map%n",
+                matchedGames, differentGames, games.size(), skippedGames);
+        System.out.print(differences);
+    }
+
+    /**
+     * Gets the number of games which ended the same way as when they were recorded
+     * @return The number of matching games
+     */
+    public long getMatchedGames() {
+        return matchedGames;
+    }
+
+    /**
+     * Gets the number of games which didn't end the same way as when they were recorded
+     * @return The number of differing games
+     */
+    public long getDifferentGames() {
+        return differentGames;
+    }
+
+    /**
+     * Replays a journal from the command line
+     * @param args The map file path and the journal file path
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: GameReplayer <map file> <journal file>");
+            System.exit(0);
+        }
+        GameReplayer replayer = new GameReplayer(MapTemplateCache.get(args[0]));
+        long startTime = System.nanoTime();
+        replayer.replay(args[1]);
+        replayer.printReport((System.nanoTime() - startTime) / 1e9);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Class to hold the result of a finished game
+ */
+public class GameResult {
+
+    /**
+     * The ways a game can end
+     */
+    public enum Outcome {
+        /**
+         * The human player quit on an exit with enough gold
+         */
+        HUMAN_WIN,
+        /**
+         * The human player quit without being on an exit with enough gold
+         */
+        HUMAN_LOSE,
+        /**
+         * The bot caught the human player
+         */
+        BOT_WIN,
+        /**
+         * The game was stopped after running out of rounds
+         */
+        ROUND_LIMIT
+    }
+
+    /**
+     * How the game ended
+     */
+    private final Outcome outcome;
+    /**
+     * The number of rounds played. In each round, every player takes one turn
+     */
+    private final int rounds;
+    /**
+     * The gold the human player owned at the end of the game
+     */
+    private final int gold;
+
+    /**
+     * The constructor for GameResult
+     * @param outcome How the game ended
+     * @param rounds The number of rounds played
+     * @param gold The gold the human player owned at the end of the game
+     */
+    public GameResult(Outcome outcome, int rounds, int gold) {
+        this.outcome = outcome;
+        this.rounds = rounds;
+        this.gold = gold;
+    }
+
+    /**
+     * Gets how the game ended
+     * @return The outcome of the game
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Gets the number of rounds played
+     * @return The number of rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the gold the human player owned at the end of the game
+     * @return The quantity of gold
+     */
+    public int getGold() {
+        return gold;
+    }
+}
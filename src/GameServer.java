@@ -0,0 +1,543 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class to host many games at once over TCP, with one game against a bot for each connection
+ * Clients send the same commands as the console game, one per line, and get back the same text the console would print.
+ * Each response is followed by a blank line, so clients know where it ends. The bot takes its turn straight after each
+ * command, and the connection is closed once the game ends.
+ *
+ * A single thread waits on every connection with a Selector, reading commands and writing responses without blocking.
+ * Turns are played on a pool of worker threads. Each connection only has one command being played at a time, and its
+ * next command isn't started until the last response has been written, so a slow client can't make responses pile up.
+ * Only a few commands are kept waiting for each connection. While they're full, or a command is being played, the
+ * connection isn't read from, so a client sending commands faster than they're played is held back by TCP instead
+ */
+public class GameServer {
+
+    /**
+     * The number of path steps the shared path cache can hold
+     */
+    private static final int PATH_CACHE_SIZE = 1 << 20;
+    /**
+     * The longest command line accepted. Longer lines are answered with "Invalid command"
+     */
+    private static final int MAX_LINE_LENGTH = 256;
+    /**
+     * The most commands kept waiting for each connection. Lines after these stay unread until there's room
+     */
+    private static final int MAX_WAITING_COMMANDS = 4;
+    /**
+     * The starting size of each session's response buffer, which fits a LOOK
+     */
+    private static final int RESPONSE_BUFFER_SIZE = 64;
+    /**
+     * Written after every response. Each session writes its own duplicate, so the position isn't shared
+     */
+    private static final ByteBuffer RESPONSE_END = ByteBuffer.wrap("\n\n".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+
+    /**
+     * The map which every game starts from a copy of
+     */
+    private final Map mapTemplate;
+    /**
+     * Finds paths for the bots of every game. All games are played on copies of the same map, so they share one cache
+     */
+    private final PathCache pathCache;
+    /**
+     * Waits for connections to be ready to read or write
+     */
+    private final Selector selector;
+    /**
+     * Accepts new connections
+     */
+    private final ServerSocketChannel serverChannel;
+    /**
+     * Plays turns, so the selector thread is never held up by a game
+     */
+    private final ExecutorService workers;
+    /**
+     * Sessions whose turn has been played by a worker, waiting for the selector thread to send the response
+     */
+    private final Queue<Session> playedSessions = new ConcurrentLinkedQueue<>();
+    /**
+     * The journal every game is recorded to, or null if games aren't recorded
+     */
+    private GameJournal journal;
+    /**
+     * Gives each game a different seed
+     */
+    private long nextSeed;
+    /**
+     * Whether the server should keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * Class to hold one connection and its game
+     */
+    private class Session {
+
+        /**
+         * The connection to the client
+         */
+        private final SocketChannel channel;
+        /**
+         * The game being played
+         */
+        private final Game game;
+        /**
+         * Bytes read from the client which haven't made up a whole line yet
+         */
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        /**
+         * Commands waiting to be played, as a ring starting at commandHead
+         */
+        private final int[] commands = new int[MAX_WAITING_COMMANDS];
+        /**
+         * The index of the first waiting command
+         */
+        private int commandHead;
+        /**
+         * The number of waiting commands
+         */
+        private int commandCount;
+        /**
+         * Holds the text of each response. It's reused for every response, and only grows if one doesn't fit
+         */
+        private ByteBuffer responseBody = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+        /**
+         * The blank line written after every response, as this session's own duplicate of RESPONSE_END
+         */
+        private final ByteBuffer responseEnd = RESPONSE_END.duplicate();
+        /**
+         * The body and end of the response, as passed to each gathered write
+         */
+        private final ByteBuffer[] responseBuffers = {responseBody, responseEnd};
+        /**
+         * The buffers of the response being written, or null if there's nothing to write
+         */
+        private ByteBuffer[] response;
+        /**
+         * Whether a command is being played by a worker
+         */
+        private boolean playing;
+        /**
+         * Whether the line being read is too long, so the rest of it should be ignored
+         */
+        private boolean skippingLine;
+
+        /**
+         * The constructor for Session. It starts a new game on a copy of the map
+         * @param channel The connection to the client
+         * @param seed The seed for the game
+         */
+        private Session(SocketChannel channel, long seed) {
+            this.channel = channel;
+            Map map = new Map(mapTemplate); // Each game removes gold from its own copy
+            game = new Game(map, new HumanPlayer('P'), new BotPlayer('B', ~seed, pathCache), seed);
+            if (journal != null) {
+                game.setJournal(journal);
+            }
+            responseBody.clear();
+            appendResponse("Welcome to the " + map.getMapName());
+            finishResponse();
+        }
+
+        /**
+         * Adds text to the end of the response being built, growing the buffer if it doesn't fit
+         * Game responses are ASCII, so each character is copied straight in as a byte. Anything else (e.g. in a map name) is encoded as UTF-8
+         * @param text The text to add
+         */
+        private void appendResponse(CharSequence text) {
+            int length = text.length();
+            ensureResponseSpace(length);
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) { // Not ASCII, so the rest is encoded the slow way
+                    byte[] encoded = text.subSequence(i, length).toString().getBytes(StandardCharsets.UTF_8);
+                    ensureResponseSpace(encoded.length);
+                    responseBody.put(encoded);
+                    return;
+                }
+                responseBody.put((byte) c);
+            }
+        }
+
+        /**
+         * Makes sure the response buffer has room for more bytes, replacing it with a bigger one if it hasn't
+         * @param bytes The number of bytes which will be added
+         */
+        private void ensureResponseSpace(int bytes) {
+            if (responseBody.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(responseBody.capacity() * 2, responseBody.position() + bytes));
+                responseBody.flip();
+                grown.put(responseBody);
+                responseBody = grown;
+                responseBuffers[0] = grown;
+            }
+        }
+
+        /**
+         * Marks the response being built as ready to write to the client, followed by the blank line
+         */
+        private void finishResponse() {
+            responseBody.flip();
+            responseEnd.clear();
+            response = responseBuffers;
+        }
+
+        /**
+         * Checks whether there's room for another waiting command
+         * @return True if another command can be added
+         */
+        private boolean hasCommandSpace() {
+            return commandCount < commands.length;
+        }
+
+        /**
+         * Adds a command to the end of the waiting commands. There must be room for it
+         * @param command The command
+         */
+        private void addCommand(int command) {
+            commands[(commandHead + commandCount) % commands.length] = command;
+            commandCount++;
+        }
+
+        /**
+         * Removes the first waiting command
+         * @return The command
+         */
+        private int pollCommand() {
+            int command = commands[commandHead];
+            commandHead = (commandHead + 1) % commands.length;
+            commandCount--;
+            return command;
+        }
+
+        /**
+         * Plays one round: the client's command, then the bot's turn if the game is still running
+         * Called on a worker thread
+         * @param command The command sent by the client
+         */
+        private void playRound(int command) {
+            responseBody.clear();
+            // The game reuses its result text for every turn, so it's copied out before the bot plays
+            appendResponse(game.playTurn(game.getHumanPlayer(), command));
+            if (game.isActive()) {
+                game.playBotTurns();
+            }
+            if (game.getOutcome() == GameResult.Outcome.BOT_WIN) {
+                appendResponse("\nGAME OVER. The bot caught you");
+            }
+            finishResponse();
+        }
+    }
+
+    /**
+     * The constructor for GameServer. It starts listening straight away, but connections aren't accepted until run is called
+     * @param mapTemplate The map which every game starts from a copy of. It isn't changed by the games
+     * @param port The port to listen on, or 0 for any free port
+     * @param workerCount The number of threads to play turns on
+     * @throws IOException If the port can't be listened on
+     */
+    public GameServer(Map mapTemplate, int port, int workerCount) throws IOException {
+        this.mapTemplate = mapTemplate.shareTiles(); // Each game's copy then only keeps which of the gold it has picked up
+        pathCache = new PathCache(mapTemplate, PATH_CACHE_SIZE, PathCache.DEFAULT_MAX_EXPANSIONS, workerCount);
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 4096);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(workerCount);
+        nextSeed = System.nanoTime();
+        running = true;
+    }
+
+    /**
+     * Records every game started from now on to a journal, so they can be replayed by GameReplayer
+     * @param journal The journal to record to
+     */
+    public void setJournal(GameJournal journal) {
+        mapTemplate.getChecksum(); // Calculated once here, so each game's copy of the map already has it
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the port the server is listening on
+     * @return The port number
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts connections and serves them until stop is called
+     * @throws IOException If the selector or listening socket fails
+     */
+    public void run() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                sendPlayedResponses();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(session);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(session);
+                            }
+                        } catch (IOException e) {
+                            close(session); // Only this connection is affected
+                        }
+                    }
+                }
+            }
+        } finally {
+            workers.shutdown();
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Session) {
+                    close((Session) key.attachment()); // Games which are still running end as if their clients quit
+                } else {
+                    key.channel().close();
+                }
+            }
+            selector.close();
+            pathCache.close(); // The template is cached for the whole program, so it would keep the cache too
+        }
+    }
+
+    /**
+     * Stops the server. Can be called from any thread
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Accepts every waiting connection and starts a game for each
+     * @throws IOException If the listening socket fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true); // Responses are small, so they're sent straight away
+            Session session = new Session(channel, nextSeed++);
+            channel.register(selector, SelectionKey.OP_READ, session);
+            try {
+                write(session); // Sends the welcome message
+            } catch (IOException e) {
+                close(session);
+            }
+        }
+    }
+
+    /**
+     * Reads from a connection, splitting what has arrived into command lines
+     * @param session The session to read from
+     * @throws IOException If the connection fails
+     */
+    private void read(Session session) throws IOException {
+        int bytesRead = session.channel.read(session.readBuffer);
+        if (bytesRead == -1) { // The client has closed the connection
+            close(session);
+            return;
+        }
+        parseCommands(session);
+        playNextCommand(session);
+        updateInterest(session);
+    }
+
+    /**
+     * Adds the whole lines which have been read to a session's waiting commands, until there's no more room
+     * Any lines left over stay in the read buffer, to be added once commands have been played
+     * @param session The session
+     */
+    private void parseCommands(Session session) {
+        ByteBuffer buffer = session.readBuffer;
+        buffer.flip();
+        int lineStart = 0;
+        for (int i = 0; i < buffer.limit() && session.hasCommandSpace(); i++) {
+            if (buffer.get(i) == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--; // Removes the carriage return of \r\n line endings
+                }
+                if (session.skippingLine) { // The end of a line which was too long
+                    session.addCommand(Command.INVALID);
+                    session.skippingLine = false;
+                } else {
+                    session.addCommand(Command.parse(buffer, lineStart, lineEnd)); // Parsed straight from the buffer
+                }
+                lineStart = i + 1;
+            }
+        }
+        buffer.position(lineStart);
+        buffer.compact();
+        if (!buffer.hasRemaining() && session.hasCommandSpace()) { // The line doesn't fit in the buffer, so it's dropped
+            buffer.clear();
+            session.skippingLine = true;
+        }
+    }
+
+    /**
+     * Hands a session's next command to a worker, if it's ready for one
+     * @param session The session
+     */
+    private void playNextCommand(Session session) {
+        if (session.playing || session.response != null || session.commandCount == 0 || !session.game.isActive()) {
+            return;
+        }
+        int command = session.pollCommand();
+        parseCommands(session); // Fills the space with a line which was left unread
+        session.playing = true;
+        workers.execute(() -> {
+            session.playRound(command);
+            playedSessions.add(session); // Hands the session back to the selector thread
+            selector.wakeup();
+        });
+    }
+
+    /**
+     * Sets which events the selector waits for on a session's connection. It's only read from while there's room for
+     * another command and none is being played, and only written to while it has a response to send
+     * @param session The session
+     */
+    private void updateInterest(Session session) {
+        SelectionKey key = session.channel.keyFor(selector);
+        if (key == null || !key.isValid()) {
+            return; // The connection has been closed
+        }
+        int interestOps = 0;
+        if (!session.playing) { // A worker owns the response while a command is being played
+            if (session.hasCommandSpace()) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            if (session.response != null) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(interestOps);
+    }
+
+    /**
+     * Starts writing the responses of sessions whose turns have been played
+     */
+    private void sendPlayedResponses() {
+        Session session;
+        while ((session = playedSessions.poll()) != null) {
+            session.playing = false;
+            if (!session.channel.isOpen()) {
+                quitLeftGame(session); // The client left while the turn was played
+                continue;
+            }
+            try {
+                write(session);
+            } catch (IOException e) {
+                close(session);
+            }
+        }
+    }
+
+    /**
+     * Writes as much of a session's response as the connection will take, as one gathered write
+     * Once the response is written, the session can play its next command, or is closed if its game has ended
+     * @param session The session to write to
+     * @throws IOException If the connection fails
+     */
+    private void write(Session session) throws IOException {
+        ByteBuffer[] response = session.response;
+        session.channel.write(response);
+        if (response[response.length - 1].hasRemaining()) {
+            updateInterest(session); // Waits until the connection can take more
+            return;
+        }
+        session.response = null;
+        if (!session.game.isActive()) {
+            close(session);
+        } else {
+            playNextCommand(session);
+            updateInterest(session);
+        }
+    }
+
+    /**
+     * Closes a session's connection. A game the client left is ended as if they had quit, unless a worker is playing
+     * its turn, in which case it's ended once the turn comes back
+     * @param session The session to close
+     */
+    private void close(Session session) {
+        if (!session.channel.isOpen()) {
+            return;
+        }
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+        if (!session.playing) {
+            quitLeftGame(session);
+        }
+    }
+
+    /**
+     * Ends the game of a client which has left by playing QUIT for them, as ThreadedGameServer does when its input
+     * ends, so the game's end is recorded to the journal rather than it looking unfinished. Called on the selector
+     * thread while no worker is playing the session's turn
+     * @param session The session whose connection has closed
+     */
+    private void quitLeftGame(Session session) {
+        if (session.game.isActive()) {
+            session.game.playTurn(session.game.getHumanPlayer(), Command.QUIT);
+        }
+    }
+
+    /**
+     * Runs a server from the command line
+     * @param args The map file path, then optionally the port, the number of worker threads and a journal file to record games to
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: GameServer <map file> [port] [workers] [journal file]");
+            System.exit(0);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int workerCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        try {
+            GameServer server = new GameServer(MapTemplateCache.get(args[0]), port, workerCount);
+            if (args.length > 3) {
+                server.setJournal(GameJournal.openUntilExit(args[3]));
+            }
+            System.out.println("Listening on port " + server.getPort());
+            server.run();
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+}
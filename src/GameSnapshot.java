@@ -0,0 +1,197 @@
+/**
+ * Class to hold the state of a game at one moment, so the game can be rolled back to it or forked from it
+ * Taking a snapshot takes constant time however large the map is: the map is forked rather than copied, and everything
+ * else is a few numbers for each player, so a search can take thousands of snapshots of a large map. Snapshots are immutable, so one can be restored or
+ * forked any number of times
+ */
+public final class GameSnapshot {
+
+    /**
+     * The seed the game was created with
+     */
+    private final long seed;
+    /**
+     * A fork of the game's map, which is never changed
+     */
+    private final Map map;
+    /**
+     * The character representing the human player
+     */
+    private final char humanPlayerChar;
+    /**
+     * The horizontal position of the human player
+     */
+    private final int humanXPos;
+    /**
+     * The vertical position of the human player
+     */
+    private final int humanYPos;
+    /**
+     * The amount of gold the human player has
+     */
+    private final int humanGold;
+    /**
+     * The character representing each bot, by bot id
+     */
+    private final char[] botPlayerChars;
+    /**
+     * The horizontal position of each bot, by bot id
+     */
+    private final int[] botXPositions;
+    /**
+     * The vertical position of each bot, by bot id
+     */
+    private final int[] botYPositions;
+    /**
+     * Everything else each bot decides its commands with, by bot id
+     */
+    private final BotPlayer.State[] botStates;
+    /**
+     * Whether the game was still running
+     */
+    private final boolean gameActive;
+    /**
+     * How the game ended, or null if it hadn't ended
+     */
+    private final GameResult.Outcome outcome;
+
+    /**
+     * The constructor for GameSnapshot
+     * @param seed The seed the game was created with
+     * @param map A fork of the game's map, which mustn't be changed after this
+     * @param humanPlayer The human player
+     * @param botPlayers The bots, in order of their ids
+     * @param gameActive Whether the game is still running
+     * @param outcome How the game ended, or null if it hasn't ended
+     */
+    GameSnapshot(long seed, Map map, HumanPlayer humanPlayer, BotPlayer[] botPlayers, boolean gameActive,
+                 GameResult.Outcome outcome) {
+        this.seed = seed;
+        this.map = map;
+        humanPlayerChar = humanPlayer.getPlayerChar();
+        humanXPos = humanPlayer.getXPos();
+        humanYPos = humanPlayer.getYPos();
+        humanGold = humanPlayer.getGold();
+        int botCount = botPlayers.length;
+        botPlayerChars = new char[botCount];
+        botXPositions = new int[botCount];
+        botYPositions = new int[botCount];
+        botStates = new BotPlayer.State[botCount];
+        for (int id = 0; id < botCount; id++) {
+            botPlayerChars[id] = botPlayers[id].getPlayerChar();
+            botXPositions[id] = botPlayers[id].getXPos();
+            botYPositions[id] = botPlayers[id].getYPos();
+            botStates[id] = botPlayers[id].saveState();
+        }
+        this.gameActive = gameActive;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Gets the seed the game was created with
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the fork of the map held by the snapshot. It mustn't be changed, so fork it again to play on it
+     * @return The map
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Gets the character representing the human player
+     * @return The human player's character
+     */
+    public char getHumanPlayerChar() {
+        return humanPlayerChar;
+    }
+
+    /**
+     * Gets the horizontal position of the human player
+     * @return The human player's x coordinate
+     */
+    public int getHumanXPos() {
+        return humanXPos;
+    }
+
+    /**
+     * Gets the vertical position of the human player
+     * @return The human player's y coordinate
+     */
+    public int getHumanYPos() {
+        return humanYPos;
+    }
+
+    /**
+     * Gets the amount of gold the human player had
+     * @return The human player's gold
+     */
+    public int getHumanGold() {
+        return humanGold;
+    }
+
+    /**
+     * Gets the number of bots in the game
+     * @return The number of bots
+     */
+    public int getBotCount() {
+        return botPlayerChars.length;
+    }
+
+    /**
+     * Gets the character representing a bot
+     * @param id The bot's id
+     * @return The bot's character
+     */
+    public char getBotPlayerChar(int id) {
+        return botPlayerChars[id];
+    }
+
+    /**
+     * Gets the horizontal position of a bot
+     * @param id The bot's id
+     * @return The bot's x coordinate
+     */
+    public int getBotXPos(int id) {
+        return botXPositions[id];
+    }
+
+    /**
+     * Gets the vertical position of a bot
+     * @param id The bot's id
+     * @return The bot's y coordinate
+     */
+    public int getBotYPos(int id) {
+        return botYPositions[id];
+    }
+
+    /**
+     * Gets the rest of a bot's state
+     * @param id The bot's id
+     * @return The bot's state
+     */
+    public BotPlayer.State getBotState(int id) {
+        return botStates[id];
+    }
+
+    /**
+     * Checks if the game was still running
+     * @return True if the game hadn't ended
+     */
+    public boolean isActive() {
+        return gameActive;
+    }
+
+    /**
+     * Gets how the game ended
+     * @return The outcome, or null if the game hadn't ended
+     */
+    public GameResult.Outcome getOutcome() {
+        return outcome;
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class to collect statistics about every game in the program: how long each type of command takes for each type of
+ * player, how long players take to give their commands, and how often commands fail, players walk into walls and the
+ * bot starts or stops chasing. Turns and map loads are also recorded as Java Flight Recorder events (TurnEvent and
+ * MapLoadEvent), which are kept when a recording is running, e.g. with -XX:StartFlightRecording
+ *
+ * Instrumentation is off unless the program is started with -Ddungeon.stats=true. ENABLED is a constant, so when it's
+ * off the JIT compiler removes the instrumentation completely. When it's on, -Ddungeon.stats.file=path writes the
+ * statistics to a file every -Ddungeon.stats.interval milliseconds (10000 by default) and when the program exits
+ */
+public final class GameStats {
+
+    /**
+     * Whether instrumentation is on
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("dungeon.stats");
+    /**
+     * The index of the human player in statistics, as in journals
+     */
+    public static final int HUMAN = 0;
+    /**
+     * The index of the bot in statistics
+     */
+    public static final int BOT = 1;
+    /**
+     * The names of the player types, by index
+     */
+    private static final String[] PLAYER_TYPES = {"human", "bot"};
+    /**
+     * The types of command, by opcode
+     */
+    private static final Command.Opcode[] OPCODES = Command.Opcode.values();
+    /**
+     * The time between writes of the statistics file, unless set by the dungeon.stats.interval property
+     */
+    private static final long DEFAULT_DUMP_INTERVAL_MILLIS = 10000;
+
+    /**
+     * How long each type of player's turns took, by player type then opcode
+     */
+    private static final LatencyHistogram[][] TURN_LATENCIES = new LatencyHistogram[PLAYER_TYPES.length][OPCODES.length];
+    /**
+     * How long each type of player took to give its command, by player type
+     */
+    private static final LatencyHistogram[] COMMAND_LATENCIES = new LatencyHistogram[PLAYER_TYPES.length];
+    /**
+     * How long maps took to load
+     */
+    private static final LatencyHistogram MAP_LOADS = new LatencyHistogram();
+    /**
+     * The number of commands which failed
+     */
+    private static final LongAdder FAILED_COMMANDS = new LongAdder();
+    /**
+     * The number of moves into walls
+     */
+    private static final LongAdder WALL_BUMPS = new LongAdder();
+    /**
+     * The number of times a bot saw the human player while searching, and started chasing
+     */
+    private static final LongAdder BOT_CHASES = new LongAdder();
+    /**
+     * The number of times a bot lost the human player while chasing, and started searching
+     */
+    private static final LongAdder BOT_SEARCHES = new LongAdder();
+
+    static {
+        for (int player = 0; player < PLAYER_TYPES.length; player++) {
+            for (int opcode = 0; opcode < OPCODES.length; opcode++) {
+                TURN_LATENCIES[player][opcode] = new LatencyHistogram();
+            }
+            COMMAND_LATENCIES[player] = new LatencyHistogram();
+        }
+        String filePath = System.getProperty("dungeon.stats.file");
+        if (ENABLED && filePath != null) {
+            startDumping(filePath, Long.getLong("dungeon.stats.interval", DEFAULT_DUMP_INTERVAL_MILLIS));
+        }
+    }
+
+    /**
+     * GameStats only has static members, so it's never created
+     */
+    private GameStats() {
+    }
+
+    /**
+     * Records a turn
+     * @param playerType The type of player which took the turn, HUMAN or BOT
+     * @param command The command given, from Command
+     * @param nanos How long the turn took
+     * @param failed Whether the command failed
+     */
+    public static void recordTurn(int playerType, int command, long nanos, boolean failed) {
+        TURN_LATENCIES[playerType][Command.getOpcode(command).ordinal()].record(nanos);
+        if (failed) {
+            FAILED_COMMANDS.increment();
+        }
+    }
+
+    /**
+     * Records how long a player took to give its command
+     * @param playerType The type of player, HUMAN or BOT
+     * @param nanos How long it took
+     */
+    public static void recordCommand(int playerType, long nanos) {
+        COMMAND_LATENCIES[playerType].record(nanos);
+    }
+
+    /**
+     * Records how long a map took to load
+     * @param nanos How long it took
+     */
+    public static void recordMapLoad(long nanos) {
+        MAP_LOADS.record(nanos);
+    }
+
+    /**
+     * Counts a move into a wall
+     */
+    public static void countWallBump() {
+        WALL_BUMPS.increment();
+    }
+
+    /**
+     * Counts a bot starting to chase the human player
+     */
+    public static void countBotChase() {
+        BOT_CHASES.increment();
+    }
+
+    /**
+     * Counts a bot starting to search for the human player
+     */
+    public static void countBotSearch() {
+        BOT_SEARCHES.increment();
+    }
+
+    /**
+     * Gets how long each type of player's turns took
+     * @param playerType The type of player, HUMAN or BOT
+     * @param opcode The type of command
+     * @return The histogram of turn times
+     */
+    public static LatencyHistogram getTurnLatencies(int playerType, Command.Opcode opcode) {
+        return TURN_LATENCIES[playerType][opcode.ordinal()];
+    }
+
+    /**
+     * Writes a table of the statistics so far
+     * @return The table
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Dungeon of Doom statistics at ").append(Instant.now()).append('\n');
+        report.append(String.format("%-22s %10s %10s %10s %10s %10s %10s%n", "Latency (ns)", "count", "mean", "p50", "p90",
+                "p99", "max"));
+        for (int player = 0; player < PLAYER_TYPES.length; player++) {
+            for (int opcode = 0; opcode < OPCODES.length; opcode++) {
+                appendRow(report, PLAYER_TYPES[player] + " " + OPCODES[opcode], TURN_LATENCIES[player][opcode]);
+            }
+        }
+        for (int player = 0; player < PLAYER_TYPES.length; player++) {
+            appendRow(report, PLAYER_TYPES[player] + " getCommand", COMMAND_LATENCIES[player]);
+        }
+        appendRow(report, "map load", MAP_LOADS);
+        report.append("Failed commands: ").append(FAILED_COMMANDS.sum()).append('\n');
+        report.append("Wall bumps: ").append(WALL_BUMPS.sum()).append('\n');
+        report.append("Bot started chasing: ").append(BOT_CHASES.sum()).append('\n');
+        report.append("Bot started searching: ").append(BOT_SEARCHES.sum()).append('\n');
+        return report.toString();
+    }
+
+    /**
+     * Adds a row for a histogram to the table, unless nothing has been recorded in it
+     * @param report The table
+     * @param label The label of the row
+     * @param histogram The histogram
+     */
+    private static void appendRow(StringBuilder report, String label, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        report.append(String.format("%-22s %10d %10.0f %10d %10d %10d %10d%n", label, histogram.getCount(),
+                histogram.getMean(), histogram.getPercentile(0.5), histogram.getPercentile(0.9),
+                histogram.getPercentile(0.99), histogram.getMax()));
+    }
+
+    /**
+     * Writes the statistics so far to a file, replacing it
+     * @param filePath The path of the file
+     */
+    public static void writeReport(String filePath) {
+        try {
+            Files.write(Paths.get(filePath), getReport().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message, and the game carries on
+        }
+    }
+
+    /**
+     * Writes the statistics to a file on a background thread every interval, and once more when the program exits
+     * @param filePath The path of the file
+     * @param intervalMillis The time between writes
+     */
+    private static void startDumping(String filePath, long intervalMillis) {
+        Thread dumper = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(intervalMillis);
+                    writeReport(filePath);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "game-stats-dumper");
+        dumper.setDaemon(true);
+        dumper.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> writeReport(filePath)));
+    }
+}
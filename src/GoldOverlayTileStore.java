@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+/**
+ * Class to store the tiles of a map as a base store, shared with other overlays and never changed, and a bitset of which
+ * of the base's gold has been picked up. Games only ever change a map by picking up gold, so an overlay takes a bit per
+ * gold tile, and copying one takes time in proportion to the amount of gold, however large the map is
+ *
+ * The gold tiles are numbered in row-major order by an index shared by all the overlays. Any other change, such as a wall
+ * being reset, moves the overlay onto an OverlayTileStore of its own over the base, which holds every change from then on
+ */
+public class GoldOverlayTileStore implements TileStore {
+
+    /**
+     * The base's gold tiles, numbered in row-major order. It's built once and shared by every copy
+     */
+    private static class GoldIndex {
+
+        /**
+         * The number of the first gold tile in each row, with the total number of gold tiles after the last row
+         */
+        private final int[] rowStarts;
+        /**
+         * The column of each gold tile, by number
+         */
+        private final int[] columns;
+
+        /**
+         * The constructor for GoldIndex. It finds every gold tile, a row at a time
+         * @param tiles The tiles
+         */
+        private GoldIndex(TileStore tiles) {
+            int width = tiles.getWidth();
+            int height = tiles.getHeight();
+            char[] row = new char[width];
+            int[] found = new int[16];
+            int count = 0;
+            rowStarts = new int[height + 1];
+            for (int yPos = 0; yPos < height; yPos++) {
+                rowStarts[yPos] = count;
+                tiles.getChars(0, yPos, width, row, 0);
+                for (int xPos = 0; xPos < width; xPos++) {
+                    if (row[xPos] == 'G') {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = xPos;
+                    }
+                }
+            }
+            rowStarts[height] = count;
+            columns = Arrays.copyOf(found, count);
+        }
+
+        /**
+         * Finds the first gold tile in a row at or after a column
+         * @param xPos The column
+         * @param yPos The row
+         * @return The number of the gold tile, or the number of the first gold tile after the row if there's none
+         */
+        private int findFrom(int xPos, int yPos) {
+            // Halves the range without branching on the comparison, which would be mispredicted half the time
+            int low = rowStarts[yPos];
+            int count = rowStarts[yPos + 1] - low;
+            while (count > 1) {
+                int half = count >>> 1;
+                low = columns[low + half - 1] < xPos ? low + half : low;
+                count -= half;
+            }
+            return count == 1 && columns[low] < xPos ? low + 1 : low;
+        }
+
+        /**
+         * Gets the number of a gold tile
+         * @param xPos The horizontal coordinate of the tile
+         * @param yPos The vertical coordinate of the tile
+         * @return The number, or -1 if the tile isn't gold in the base
+         */
+        private int getNumber(int xPos, int yPos) {
+            int number = findFrom(xPos, yPos);
+            return number < rowStarts[yPos + 1] && columns[number] == xPos ? number : -1;
+        }
+    }
+
+    /**
+     * The tiles before any change. They must never be changed while an overlay uses them
+     */
+    private final TileStore base;
+    /**
+     * The base's gold tiles, shared with every copy
+     */
+    private final GoldIndex goldIndex;
+    /**
+     * A bit for every gold tile in the base, set once it has been picked up
+     */
+    private long[] taken;
+    /**
+     * The store tiles are read from before gold is taken out: the base, or once anything other than gold has changed,
+     * an overlay over it holding those changes
+     */
+    private TileStore below;
+
+    /**
+     * The constructor for GoldOverlayTileStore, with no gold picked up from a base store
+     * @param base The tiles before any change. The caller must never change them after this
+     */
+    public GoldOverlayTileStore(TileStore base) {
+        this.base = base;
+        goldIndex = new GoldIndex(base);
+        taken = new long[(goldIndex.columns.length + 63) >>> 6];
+        below = base;
+    }
+
+    /**
+     * The copy constructor for GoldOverlayTileStore. It shares the other store's base and gold index, and copies its bitset
+     * @param other The store to copy
+     */
+    public GoldOverlayTileStore(GoldOverlayTileStore other) {
+        base = other.base;
+        goldIndex = other.goldIndex;
+        taken = other.taken.clone();
+        below = other.below == other.base ? other.base : other.below.copy();
+    }
+
+    /**
+     * Checks if a gold tile of the base has been picked up
+     * @param number The number of the gold tile
+     * @return True if it has been picked up
+     */
+    private boolean isTaken(int number) {
+        return (taken[number >>> 6] & (1L << number)) != 0;
+    }
+
+    /**
+     * Gets the code of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The tile code
+     */
+    @Override
+    public int getTileCode(int xPos, int yPos) {
+        int tileCode = below.getTileCode(xPos, yPos);
+        if (tileCode == GOLD) {
+            int number = goldIndex.getNumber(xPos, yPos);
+            if (number >= 0 && isTaken(number)) {
+                return FLOOR;
+            }
+        }
+        return tileCode;
+    }
+
+    /**
+     * Sets the code of the tile at the specified position. The position isn't range checked
+     * Picking up the base's gold, or putting it back, only changes its bit. Any other change is held in an overlay
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param tileCode The new code of the tile
+     */
+    @Override
+    public void setTileCode(int xPos, int yPos, int tileCode) {
+        int number = goldIndex.getNumber(xPos, yPos);
+        if (number >= 0 && below == base && (tileCode == FLOOR || tileCode == GOLD)) {
+            if (tileCode == FLOOR) {
+                taken[number >>> 6] |= 1L << number;
+            } else {
+                taken[number >>> 6] &= ~(1L << number);
+            }
+            return;
+        }
+        if (below == base) {
+            below = new OverlayTileStore(base);
+        }
+        if (number >= 0) {
+            taken[number >>> 6] &= ~(1L << number); // The overlay holds the tile from now on
+        }
+        below.setTileCode(xPos, yPos, tileCode);
+    }
+
+    /**
+     * Checks if the tile at the specified position is a wall. Picking up gold never makes a wall, so only the store below
+     * is checked, e.g. using its wall bitmap. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return True if the tile is a wall
+     */
+    @Override
+    public boolean isWall(int xPos, int yPos) {
+        return below.isWall(xPos, yPos);
+    }
+
+    /**
+     * Copies the characters of a run of tiles in one row into an array. The run is copied from the store below, then each
+     * gold tile in it is checked in case it has been picked up. Gold is rare, so most runs need no checks
+     * @param xPos The horizontal coordinate of the first tile
+     * @param yPos The vertical coordinate of the row
+     * @param length The number of tiles to copy
+     * @param dest The array to copy into
+     * @param destPos The position in the array to copy the first character to
+     */
+    @Override
+    public void getChars(int xPos, int yPos, int length, char[] dest, int destPos) {
+        below.getChars(xPos, yPos, length, dest, destPos);
+        for (int i = 0; i < length; i++) {
+            if (dest[destPos + i] == 'G') {
+                int number = goldIndex.getNumber(xPos + i, yPos);
+                if (number >= 0 && isTaken(number)) {
+                    dest[destPos + i] = '.';
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of the store, sharing its base, in time proportional to the amount of gold
+     * @return The copy
+     */
+    @Override
+    public GoldOverlayTileStore copy() {
+        return new GoldOverlayTileStore(this);
+    }
+
+    /**
+     * Gets the number of gold tiles in the base
+     * @return The number of gold tiles
+     */
+    public int getGoldCount() {
+        return goldIndex.columns.length;
+    }
+
+    /**
+     * Gets the number of the base's gold tiles which have been picked up
+     * @return The number of gold tiles picked up
+     */
+    public int getTakenCount() {
+        int count = 0;
+        for (long word : taken) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of tiles in each row
+     * @return The width of the store
+     */
+    @Override
+    public int getWidth() {
+        return base.getWidth();
+    }
+
+    /**
+     * Gets the number of rows
+     * @return The height of the store
+     */
+    @Override
+    public int getHeight() {
+        return base.getHeight();
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.Arrays;
+
+/**
+ * Class to find long paths on huge maps using the map's abstract graph (PathHierarchy), rather than every tile
+ * The start and goal are joined to the nodes of their clusters by a search of each cluster, then A* searches the graph,
+ * which crosses a cluster in one step. Only the first part of the path found is turned back into tiles: up to the next
+ * node, which is at most one cluster away. Whoever follows the path searches again from there, so the tiles of the rest
+ * of the path are never found unless they're walked. Paths are close to the shortest, but not always the shortest
+ * The search arrays are kept between searches, so a HierarchicalPathFinder must only be used by one thread at a time
+ */
+public class HierarchicalPathFinder {
+
+    /**
+     * The map being searched
+     */
+    private final Map map;
+    /**
+     * The width of the map
+     */
+    private final int width;
+    /**
+     * The height of the map
+     */
+    private final int height;
+    /**
+     * The maximum number of nodes expanded by one search, so a search between areas the map can't tell apart yet
+     * (see Map.canReach) gives up rather than expanding the whole graph
+     */
+    private final int maxExpansions;
+    /**
+     * The start's cluster, searched from the start
+     */
+    private final PathHierarchy.ClusterGrid startGrid = new PathHierarchy.ClusterGrid();
+    /**
+     * The goal's cluster, searched from the goal
+     */
+    private final PathHierarchy.ClusterGrid goalGrid = new PathHierarchy.ClusterGrid();
+    /**
+     * The cost of the best known path from the start to each node, then the start and the goal. Only valid for nodes
+     * stamped in the current search
+     */
+    private int[] costs;
+    /**
+     * The node each node was reached from on the best known path. Only valid for nodes stamped in the current search
+     */
+    private int[] previousNodes;
+    /**
+     * For each node, the number of the last search which reached it
+     */
+    private int[] searchStamps;
+    /**
+     * The nodes waiting to be expanded, as a binary heap ordered by estimated total cost
+     */
+    private int[] heapNodes;
+    /**
+     * The estimated total cost of each node in the heap
+     */
+    private int[] heapCosts;
+    /**
+     * The number of the current search. Using a new number each search avoids clearing the arrays
+     */
+    private int searchNumber;
+
+    /**
+     * The constructor for HierarchicalPathFinder
+     * @param map The map to search. Its abstract graph is built now if it hasn't been already
+     * @param maxExpansions The maximum number of nodes expanded by one search
+     */
+    public HierarchicalPathFinder(Map map, int maxExpansions) {
+        this.map = map;
+        this.maxExpansions = maxExpansions;
+        width = map.getMapWidth();
+        height = map.getMapHeight();
+        int nodeCount = map.getPathHierarchy().getNodeCount() + 2;
+        costs = new int[nodeCount];
+        previousNodes = new int[nodeCount];
+        searchStamps = new int[nodeCount];
+        heapNodes = new int[64];
+        heapCosts = new int[64];
+        searchNumber = 0;
+    }
+
+    /**
+     * Finds the first part of a path between two positions, up to the next node of the abstract graph on it, or to the goal
+     * if it's reached without leaving the start's cluster
+     * @param startX The horizontal coordinate of the start
+     * @param startY The vertical coordinate of the start
+     * @param goalX The horizontal coordinate of the goal
+     * @param goalY The vertical coordinate of the goal
+     * @return The tile indexes (y * width + x) on the first part of the path, from the tile after the start, or null if the
+     *         goal can't be reached within the expansion limit or is the start
+     */
+    public int[] findPathSegment(int startX, int startY, int goalX, int goalY) {
+        if (map.isWall(startX, startY) || map.isWall(goalX, goalY) || (startX == goalX && startY == goalY)) {
+            return null; // Walls and positions off the map can't be part of a path
+        }
+        if (!map.canReach(startX, startY, goalX, goalY)) {
+            return null; // Different areas, so there's no need to search
+        }
+        PathHierarchy hierarchy = map.getPathHierarchy(); // Rebuilt by the map when a wall is reset
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+        int startCluster = hierarchy.getClusterAt(startX, startY);
+        int goalCluster = hierarchy.getClusterAt(goalX, goalY);
+        startGrid.load(map, startX / PathHierarchy.CLUSTER_SIZE, startY / PathHierarchy.CLUSTER_SIZE);
+        startGrid.search(startGrid.toLocal(start));
+        if (startCluster == goalCluster && startGrid.distances[startGrid.toLocal(goal)] != PathHierarchy.UNREACHABLE) {
+            return startGrid.pathTo(startGrid.toLocal(goal)); // Close enough not to need the graph
+        }
+        goalGrid.load(map, goalX / PathHierarchy.CLUSTER_SIZE, goalY / PathHierarchy.CLUSTER_SIZE);
+        goalGrid.search(goalGrid.toLocal(goal));
+
+        // The start and goal are searched as two extra nodes after the graph's own
+        int startNode = hierarchy.getNodeCount();
+        int goalNode = startNode + 1;
+        if (costs.length < startNode + 2) { // A wall has been reset since, adding nodes
+            costs = new int[startNode + 2];
+            previousNodes = new int[startNode + 2];
+            searchStamps = new int[startNode + 2];
+            searchNumber = 0;
+        }
+        searchNumber++;
+        if (searchNumber == 0) { // Stamps have wrapped around, so old ones could be mistaken for the current search
+            Arrays.fill(searchStamps, 0);
+            searchNumber = 1;
+        }
+        searchStamps[startNode] = searchNumber;
+        costs[startNode] = 0;
+        int heapSize = push(0, startNode, distance(start, goal));
+
+        boolean found = false;
+        int expansions = 0;
+        while (heapSize > 0 && expansions < maxExpansions) {
+            int node = heapNodes[0];
+            int estimate = heapCosts[0];
+            heapSize = pop(heapSize);
+            if (node == goalNode) {
+                found = true;
+                break;
+            }
+            int tile = node == startNode ? start : hierarchy.getNodeTile(node);
+            if (estimate > costs[node] + distance(tile, goal)) {
+                continue; // A better path to this node has been found since it was added to the heap
+            }
+            int cost = costs[node];
+            expansions++;
+            if (node == startNode) {
+                // Joins the start to each node of its cluster it can walk to
+                for (int next = hierarchy.getFirstNode(startCluster); next < hierarchy.getEndNode(startCluster); next++) {
+                    int step = startGrid.distances[startGrid.toLocal(hierarchy.getNodeTile(next))];
+                    if (step != PathHierarchy.UNREACHABLE) {
+                        heapSize = relax(heapSize, hierarchy, node, next, cost + step, goal, goalNode);
+                    }
+                }
+                continue;
+            }
+            int cluster = hierarchy.getNodeCluster(node);
+            // Relaxes each other node of the cluster which can be walked to without leaving it
+            for (int next = hierarchy.getFirstNode(cluster); next < hierarchy.getEndNode(cluster); next++) {
+                int step = hierarchy.getDistance(node, next);
+                if (next != node && step != PathHierarchy.UNREACHABLE) {
+                    heapSize = relax(heapSize, hierarchy, node, next, cost + step, goal, goalNode);
+                }
+            }
+            // Relaxes each node facing this one across a border
+            int x = tile % width;
+            int y = tile / width;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                if (nextX >= 0 && nextY >= 0 && nextX < width && nextY < height
+                        && hierarchy.getClusterAt(nextX, nextY) != cluster) {
+                    int next = hierarchy.findNode(nextX, nextY);
+                    if (next >= 0) {
+                        heapSize = relax(heapSize, hierarchy, node, next, cost + 1, goal, goalNode);
+                    }
+                }
+            }
+            if (cluster == goalCluster) { // Joins the goal's cluster to the goal
+                int step = goalGrid.distances[goalGrid.toLocal(tile)];
+                if (step != PathHierarchy.UNREACHABLE) {
+                    heapSize = relax(heapSize, hierarchy, node, goalNode, cost + step, goal, goalNode);
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+
+        // Walks back to the first node after the start, and the one after that
+        int first = goalNode;
+        int second = -1;
+        while (previousNodes[first] != startNode) {
+            second = first;
+            first = previousNodes[first];
+        }
+        int firstTile = hierarchy.getNodeTile(first);
+        if (firstTile != start) {
+            return startGrid.pathTo(startGrid.toLocal(firstTile));
+        }
+        // The start is a node itself, so the path goes on to the next node, or to the goal
+        if (second == goalNode) {
+            return goalGrid.pathFrom(goalGrid.toLocal(start));
+        }
+        int secondTile = hierarchy.getNodeTile(second);
+        if (hierarchy.getNodeCluster(second) == startCluster) {
+            return startGrid.pathTo(startGrid.toLocal(secondTile));
+        }
+        return new int[]{secondTile}; // One step across the border
+    }
+
+    /**
+     * Updates the best known path to a node if a new path to it is better
+     * @param heapSize The number of nodes in the heap
+     * @param hierarchy The abstract graph being searched
+     * @param from The node the new path comes from
+     * @param to The node the new path reaches
+     * @param cost The cost of the new path
+     * @param goal The tile index of the goal
+     * @param goalNode The number of the goal in the search
+     * @return The new number of nodes in the heap
+     */
+    private int relax(int heapSize, PathHierarchy hierarchy, int from, int to, int cost, int goal, int goalNode) {
+        if (searchStamps[to] != searchNumber || cost < costs[to]) {
+            searchStamps[to] = searchNumber;
+            costs[to] = cost;
+            previousNodes[to] = from;
+            int estimate = to == goalNode ? cost : cost + distance(hierarchy.getNodeTile(to), goal);
+            heapSize = push(heapSize, to, estimate);
+        }
+        return heapSize;
+    }
+
+    /**
+     * Gets the Manhattan distance between two tiles
+     * @param tile1 The tile index of the first tile
+     * @param tile2 The tile index of the second tile
+     * @return The distance
+     */
+    private int distance(int tile1, int tile2) {
+        return Math.abs(tile1 % width - tile2 % width) + Math.abs(tile1 / width - tile2 / width);
+    }
+
+    /**
+     * Adds a node to the heap
+     * @param heapSize The number of nodes in the heap
+     * @param node The number of the node
+     * @param estimate The estimated total cost of a path through the node
+     * @return The new number of nodes in the heap
+     */
+    private int push(int heapSize, int node, int estimate) {
+        if (heapSize == heapNodes.length) { // Doubles the heap when full
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            heapCosts = Arrays.copyOf(heapCosts, heapSize * 2);
+        }
+        int i = heapSize;
+        // Moves the new node up the heap until its parent isn't more costly
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapCosts[parent] <= estimate) {
+                break;
+            }
+            heapNodes[i] = heapNodes[parent];
+            heapCosts[i] = heapCosts[parent];
+            i = parent;
+        }
+        heapNodes[i] = node;
+        heapCosts[i] = estimate;
+        return heapSize + 1;
+    }
+
+    /**
+     * Removes the least costly node from the heap
+     * @param heapSize The number of nodes in the heap
+     * @return The new number of nodes in the heap
+     */
+    private int pop(int heapSize) {
+        heapSize--;
+        int node = heapNodes[heapSize];
+        int estimate = heapCosts[heapSize];
+        int i = 0;
+        // Moves the last node down from the top of the heap until its children aren't less costly
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapCosts[child + 1] < heapCosts[child]) {
+                child++;
+            }
+            if (heapCosts[child] >= estimate) {
+                break;
+            }
+            heapNodes[i] = heapNodes[child];
+            heapCosts[i] = heapCosts[child];
+            i = child;
+        }
+        heapNodes[i] = node;
+        heapCosts[i] = estimate;
+        return heapSize;
+    }
+}
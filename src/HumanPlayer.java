@@ -1,59 +1,86 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 
 /**
  * Class to create and manage a human player
  */
 public class HumanPlayer extends Player {
 
+    /**
+     * Reads the console. It's shared so that input buffered by one read isn't lost to the next
+     */
+    private static final BufferedReader CONSOLE_INPUT = new BufferedReader(new InputStreamReader(System.in));
+
     /**
      * The amount of gold the player has
      */
     private int gold;
+    /**
+     * Where the player's commands are read from
+     */
+    private final BufferedReader input;
+    /**
+     * Where the player's prompts are written to
+     */
+    private final PrintStream output;
 
     /**
-     * The constructor for HumanPlayer
+     * The constructor for HumanPlayer, for a player on the console
      * @param playerChar The character to represent the player on the map
      */
     public HumanPlayer(char playerChar) {
+        this(playerChar, CONSOLE_INPUT, System.out);
+    }
+
+    /**
+     * The constructor for HumanPlayer, for a player whose commands come from a stream, such as a socket or a pipe
+     * @param playerChar The character to represent the player on the map
+     * @param input Where the player's commands are read from, one per line
+     * @param output Where the player's prompts are written to
+     */
+    public HumanPlayer(char playerChar, BufferedReader input, PrintStream output) {
         super(playerChar);
+        this.input = input;
+        this.output = output;
         gold = 0;
     }
 
     /**
-     * Gets a one-line input from the user through the console
-     * @return The line entered by the user
+     * Gets the reader for the console, shared by everything reading it
+     * @return The console reader
+     */
+    public static BufferedReader getConsoleInput() {
+        return CONSOLE_INPUT;
+    }
+
+    /**
+     * Gets a one-line input from the user
+     * If the input has ended or fails, the user has gone, so the player quits. Other games sharing the program carry on
+     * @return The line entered by the user, or QUIT if there are no more lines
      */
     private String getInput() {
-        BufferedReader br;
-        String input = "";
+        String line = null;
 
         try {
-            br = new BufferedReader(new InputStreamReader(System.in));
-            input = br.readLine(); // Reads line from console
+            line = input.readLine(); // Reads line from the input
         } catch (IOException e) {
-            System.out.println(e.toString()); // Prints error message
-            System.exit(0); // Exits program
+            output.println(e.toString()); // Prints error message
         }
 
-        return input;
+        return line != null ? line : "QUIT";
     }
 
     /**
      * Gets a command from the human player by getting input
-     * @return An array containing each word of the command
+     * @return The command, from Command
      */
     @Override
-    public String[] getCommand() {
-        String command;
-        String[] splitCommand;
+    public int getCommand() {
+        output.print("Enter a command: ");
 
-        System.out.print("Enter a command: ");
-        command = getInput().toUpperCase(); // Gets one line from the user and converts it to upper case
-        splitCommand = command.split(" "); // Splits command into an array, separated by spaces
-
-        return splitCommand;
+        return Command.parse(getInput()); // Gets one line from the user and parses it, in any case
     }
 
     /**
@@ -70,4 +97,12 @@ public class HumanPlayer extends Player {
     public void pickupGold() {
         gold++;
     }
+
+    /**
+     * Sets the amount of gold the player has, e.g. when a game is restored from a snapshot
+     * @param gold The quantity of gold
+     */
+    public void setGold(int gold) {
+        this.gold = gold;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class to count how long something took, in buckets of nanoseconds, so percentiles can be reported
+ * Recording only increments atomic counters, so any number of threads can record at once without locks. Buckets are
+ * log-linear: each power of 2 is split into SUB_BUCKETS equal buckets, so a percentile is always within 1/SUB_BUCKETS
+ * of its true value, from 1 ns up to the longest time a long can hold
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits of a time kept in its bucket number, after its leading one bit
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * The number of buckets each power of 2 is split into
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The number of buckets, enough for every positive long
+     */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The number of times recorded in each bucket
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    /**
+     * The sum of the times recorded
+     */
+    private final AtomicLong total = new AtomicLong();
+    /**
+     * The longest time recorded
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Gets the bucket a time is counted in
+     * @param nanos The time, which is counted as 0 if negative
+     * @return The bucket number
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0); // Small times get a bucket each
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the longest time counted in a bucket
+     * @param bucket The bucket number
+     * @return The time in nanoseconds
+     */
+    private static long bucketMax(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long bucketMin = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return bucketMin + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a time
+     * @param nanos The time in nanoseconds
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        total.addAndGet(nanos);
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) { // Only loops while another thread raises it
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of times recorded. It's added up from the buckets, so recording doesn't need another counter
+     * @return The count
+     */
+    public long getCount() {
+        long recorded = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            recorded += counts.get(bucket);
+        }
+        return recorded;
+    }
+
+    /**
+     * Gets the mean of the times recorded
+     * @return The mean in nanoseconds, or 0 if none have been recorded
+     */
+    public double getMean() {
+        long recorded = getCount();
+        return recorded == 0 ? 0 : (double) total.get() / recorded;
+    }
+
+    /**
+     * Gets the longest time recorded
+     * @return The time in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile of the times recorded. Times recorded while it's worked out may or may not be included
+     * @param fraction The fraction of times which are at most the percentile, e.g. 0.99 for the 99th percentile
+     * @return The percentile in nanoseconds, rounded up to the end of its bucket, or 0 if none have been recorded
+     */
+    public long getPercentile(double fraction) {
+        long target = (long) Math.ceil(fraction * getCount());
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= Math.max(target, 1)) {
+                return Math.min(bucketMax(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+}
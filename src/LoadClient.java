@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Class to put load on a GameServer by playing many games at once, and report how well it copes
+ * Every connection sends random commands, waiting for each response (and optionally a think time) before sending the next.
+ * When a game ends, a new connection is opened in its place. All connections are handled on one thread with a Selector
+ */
+public class LoadClient {
+
+    /**
+     * The commands sent by the client. QUIT isn't included, so games only end when the bot catches the player
+     */
+    private static final String[] COMMANDS = {"HELLO", "GOLD", "LOOK", "PICKUP", "MOVE N", "MOVE E", "MOVE S", "MOVE W"};
+
+    /**
+     * The address of the server
+     */
+    private final InetSocketAddress address;
+    /**
+     * The time each connection waits after a response before sending its next command, in nanoseconds
+     */
+    private final long thinkNanos;
+    /**
+     * Waits for connections to be ready
+     */
+    private final Selector selector;
+    /**
+     * Chooses the commands to send
+     */
+    private final Random random = new Random(1);
+    /**
+     * The encoded commands, one per line, matching COMMANDS
+     */
+    private final ByteBuffer[] encodedCommands = new ByteBuffer[COMMANDS.length];
+    /**
+     * Connections which are thinking, in order of when they'll send their next command
+     */
+    private final ArrayDeque<Connection> thinking = new ArrayDeque<>();
+    /**
+     * The time taken by each command to be answered, in nanoseconds
+     */
+    private long[] latencies = new long[1024];
+    /**
+     * The number of latencies recorded
+     */
+    private int latencyCount;
+    /**
+     * The number of connections currently open
+     */
+    private int openConnections;
+    /**
+     * The most connections open at once
+     */
+    private int peakConnections;
+    /**
+     * The number of connections which couldn't be opened or failed
+     */
+    private int failedConnections;
+    /**
+     * The number of games which ended
+     */
+    private int gamesEnded;
+
+    /**
+     * Class to hold one connection to the server
+     */
+    private static class Connection {
+
+        /**
+         * The connection to the server
+         */
+        private final SocketChannel channel;
+        /**
+         * Receives the server's responses
+         */
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        /**
+         * The command being sent, or null if it has all been sent
+         */
+        private ByteBuffer command;
+        /**
+         * The time the last command was sent, or 0 while waiting for the welcome message
+         */
+        private long sentTime;
+        /**
+         * The time the connection will send its next command, while it's thinking
+         */
+        private long sendTime;
+        /**
+         * The number of newlines in a row at the end of what has been read. Two mean the response has ended
+         */
+        private int newlinesInRow;
+
+        /**
+         * The constructor for Connection
+         * @param channel The connection to the server
+         */
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * The constructor for LoadClient
+     * @param address The address of the server
+     * @param thinkMillis The time each connection waits after a response before sending its next command
+     * @throws IOException If the selector can't be opened
+     */
+    public LoadClient(InetSocketAddress address, long thinkMillis) throws IOException {
+        this.address = address;
+        thinkNanos = thinkMillis * 1000000L;
+        selector = Selector.open();
+        for (int i = 0; i < COMMANDS.length; i++) {
+            encodedCommands[i] = ByteBuffer.wrap((COMMANDS[i] + "\n").getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Opens connections and plays games until the time runs out, then prints a report
+     * @param connectionCount The number of connections to keep open
+     * @param seconds How long to run for
+     * @throws IOException If the selector fails
+     */
+    public void run(int connectionCount, long seconds) throws IOException {
+        for (int i = 0; i < connectionCount; i++) {
+            connect();
+        }
+        long startTime = System.nanoTime();
+        long endTime = startTime + seconds * 1000000000L;
+
+        while (System.nanoTime() < endTime) {
+            long now = System.nanoTime();
+            // Sends the commands of connections which have finished thinking
+            while (!thinking.isEmpty() && thinking.peek().sendTime <= now) {
+                sendCommand(thinking.poll());
+            }
+            long waitNanos = thinking.isEmpty() ? endTime - now : Math.min(thinking.peek().sendTime, endTime) - now;
+            selector.select(Math.max(waitNanos / 1000000, 1));
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        connection.channel.finishConnect();
+                        key.interestOps(SelectionKey.OP_READ);
+                        openConnections++;
+                        peakConnections = Math.max(peakConnections, openConnections);
+                    } else {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    }
+                } catch (IOException e) {
+                    failedConnections++;
+                    close(connection);
+                    connect();
+                }
+            }
+        }
+
+        printReport((System.nanoTime() - startTime) / 1e9);
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Starts opening a new connection
+     */
+    private void connect() {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            channel.register(selector, SelectionKey.OP_CONNECT, connection);
+            channel.connect(address);
+        } catch (IOException e) {
+            failedConnections++;
+        }
+    }
+
+    /**
+     * Closes a connection
+     * @param connection The connection to close
+     */
+    private void close(Connection connection) {
+        if (connection.channel.isConnected()) {
+            openConnections--;
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+    }
+
+    /**
+     * Reads from a connection. When a response ends, its latency is recorded and the next command is sent
+     * @param connection The connection to read from
+     * @throws IOException If the connection fails
+     */
+    private void read(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.clear();
+        if (connection.channel.read(buffer) == -1) { // The game has ended, so a new one is started
+            gamesEnded++;
+            close(connection);
+            connect();
+            return;
+        }
+        boolean responseEnded = false;
+        for (int i = 0; i < buffer.position(); i++) {
+            connection.newlinesInRow = buffer.get(i) == '\n' ? connection.newlinesInRow + 1 : 0;
+            if (connection.newlinesInRow == 2) {
+                responseEnded = true;
+            }
+        }
+        if (!responseEnded) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (connection.sentTime != 0) {
+            recordLatency(now - connection.sentTime);
+        }
+        if (thinkNanos == 0) {
+            sendCommand(connection);
+        } else {
+            connection.sendTime = now + thinkNanos;
+            thinking.add(connection);
+        }
+    }
+
+    /**
+     * Sends a random command on a connection
+     * @param connection The connection to send on
+     */
+    private void sendCommand(Connection connection) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        connection.command = encodedCommands[random.nextInt(COMMANDS.length)].duplicate();
+        connection.sentTime = System.nanoTime();
+        try {
+            write(connection);
+        } catch (IOException e) {
+            failedConnections++;
+            close(connection);
+            connect();
+        }
+    }
+
+    /**
+     * Writes as much of a connection's command as it will take
+     * @param connection The connection to write to
+     * @throws IOException If the connection fails
+     */
+    private void write(Connection connection) throws IOException {
+        SelectionKey key = connection.channel.keyFor(selector);
+        connection.channel.write(connection.command);
+        if (connection.command.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Records the time a command took to be answered
+     * @param nanos The latency in nanoseconds
+     */
+    private void recordLatency(long nanos) {
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencyCount * 2);
+        }
+        latencies[latencyCount++] = nanos;
+    }
+
+    /**
+     * Prints the results of the run
+     * @param seconds How long the run took
+     */
+    private void printReport(double seconds) {
+        Arrays.sort(latencies, 0, latencyCount);
+        System.out.printf("Sessions: %d open at the end, %d at most, %d failed, %d games ended%n",
+                openConnections, peakConnections, failedConnections, gamesEnded);
+        System.out.printf("Commands: %d in %.1f s (%.0f commands/sec)%n", latencyCount, seconds, latencyCount / seconds);
+        if (latencyCount > 0) {
+            System.out.printf("Latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    percentile(0.5) / 1e6, percentile(0.99) / 1e6, latencies[latencyCount - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Finds the latency which a given fraction of commands were answered within. The latencies must be sorted
+     * @param fraction The fraction of commands, between 0 and 1
+     * @return The latency in nanoseconds
+     */
+    private long percentile(double fraction) {
+        int index = (int) Math.ceil(fraction * latencyCount) - 1;
+        return latencies[Math.max(index, 0)];
+    }
+
+    /**
+     * Runs the load client from the command line
+     * @param args The server's host and port, then optionally the number of sessions, the number of seconds and the think time in milliseconds
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: LoadClient <host> <port> [sessions] [seconds] [think millis]");
+            System.exit(0);
+        }
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        long thinkMillis = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        try {
+            LoadClient client = new LoadClient(new InetSocketAddress(args[0], Integer.parseInt(args[1])), thinkMillis);
+            client.run(sessions, seconds);
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+}
@@ -1,10 +1,7 @@
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
 
 /**
  * Class to create and manage a game map
@@ -12,17 +9,31 @@ import java.nio.file.Paths;
 public class Map {
 
 	/**
-	 * Contains the map layout itself
+	 * The number of rows the map storage starts with. It's doubled whenever it fills up
 	 */
-	private char[][] map;
+	private static final int INITIAL_ROW_CAPACITY = 64;
+	/**
+	 * The most tiles a map can have. Tiles are numbered by int row-major indexes, and arrays with an entry for each tile
+	 * must fit in Java's largest array
+	 */
+	public static final long MAX_TILE_COUNT = Integer.MAX_VALUE - 8;
+	/**
+	 * Whether Map.load keeps maps' tiles off the heap, set by starting Java with -Ddungeon.offheap=true
+	 */
+	public static final boolean OFF_HEAP = Boolean.getBoolean("dungeon.offheap");
+
+	/**
+	 * Contains the map layout itself. Once the map has been forked, it's an overlay over tiles shared with the forks
+	 */
+	private TileStore tiles;
 	/**
 	 * The name of the map
 	 */
-	private String mapName;
+	private final String mapName;
 	/**
 	 * The gold required for a player to win the game
 	 */
-	private int goldRequired;
+	private final int goldRequired;
 	/**
 	 * The width of the map
 	 */
@@ -32,159 +43,264 @@ public class Map {
 	 */
 	private final int mapHeight;
 	/**
-	 * Contains all characters which are allowed to be put in the map
+	 * The objects to tell when a tile is reset. Listeners are added and removed from any thread, e.g. by the path cache
+	 * of each server on a shared template, so the list is copied when it changes rather than locked while it's read
+	 */
+	private final List<TileListener> tileListeners = new CopyOnWriteArrayList<>();
+	/**
+	 * The checksum of the tiles once it has been calculated, or -1 if it hasn't been, or a tile has changed since
+	 */
+	private volatile long checksum = -1;
+	/**
+	 * The cells players can be placed on, or null for chunked maps until it's first needed
+	 */
+	private PlacementIndex placement;
+	/**
+	 * The connected areas of the map, shared by its copies, or null until it's first needed. A wall being reset gives
+	 * the map an updated copy of its own. Volatile, as a template's is found by whichever thread needs it first
+	 */
+	private volatile MapConnectivity connectivity;
+	/**
+	 * Whether the map has been checked to be winnable, which is done when its connected areas are first found
 	 */
-	private final char[] validChars;
+	private boolean winnableChecked;
+	/**
+	 * The abstract graph of the map for finding long paths, shared by its copies, or null until it's first needed. Templates
+	 * build it when they're loaded. Resetting a wall replaces it with a graph with only the affected clusters rebuilt
+	 */
+	private PathHierarchy pathHierarchy;
 
 	/**
 	 * The constructor for Map. It creates the map from a specified file.
 	 * @param filePath The path of the file to read the map from
 	 */
 	public Map(String filePath) {
-		validChars = new char[]{'.', '#', 'G', 'E'};
-		mapHeight = getFileLength(filePath) - 2; // Sets map height by counting lines. First two lines aren't included in map.
-		if (mapHeight >= 0) { // Initialises the map if the file has enough lines
-			map = new char[mapHeight][];
-		} else { // Outputs error if not enough lines
-			invalidFileFormat();
-		}
-		readMapFile(filePath); // Reads the map file to set map data
-		mapWidth = map[0].length;
+		MapFileReader reader = new MapFileReader(filePath);
+		tiles = readTiles(reader); // Reads the map file to set map data
+		mapName = reader.getMapName();
+		goldRequired = reader.getGoldRequired();
+		mapHeight = tiles.getHeight();
+		mapWidth = tiles.getWidth();
+		placement = new PlacementIndex(tiles);
 	}
 
 	/**
-	 * Finds how many lines are in the given file
-	 * @param filePath The path of the file to count
-	 * @return The number of lines counted
+	 * The constructor for Map, for tiles which are already in a tile store
+	 * @param mapName The name of the map
+	 * @param goldRequired The gold required for a player to win the game
+	 * @param tiles The store holding the map layout
 	 */
-	private int getFileLength(String filePath) {
-		int lineCount = 0;
-
-		try {
-			// Gets the number of lines
-			Path path = Paths.get(filePath);
-			lineCount = (int) Files.lines(path).count();
-		} catch (IOException e) {
-			System.out.println(e.toString()); // Outputs error message
-			System.exit(0); // Quits program
-		}
+	public Map(String mapName, int goldRequired, TileStore tiles) {
+		this.mapName = mapName;
+		this.goldRequired = goldRequired;
+		this.tiles = tiles;
+		mapHeight = tiles.getHeight();
+		mapWidth = tiles.getWidth();
+		// Finding the placeable cells of a chunked map would read every chunk, so it's left until a game needs them
+		placement = tiles instanceof ChunkedTileStore ? null : new PlacementIndex(tiles);
+	}
 
-		return lineCount;
+	/**
+	 * The copy constructor for Map. The copy has its own tiles, so gold picked up in one map stays in the other
+	 * Tile listeners aren't copied
+	 * @param other The map to copy
+	 */
+	public Map(Map other) {
+		tiles = other.tiles.copy();
+		mapName = other.mapName;
+		goldRequired = other.goldRequired;
+		mapWidth = other.mapWidth;
+		mapHeight = other.mapHeight;
+		checksum = other.checksum; // The copy has the same tiles, so copies of a template don't each recalculate it
+		placement = other.placement == null ? null : new PlacementIndex(other.placement);
+		connectivity = other.connectivity; // Never changed, so it's shared
+		winnableChecked = other.winnableChecked;
+		pathHierarchy = other.pathHierarchy;
 	}
 
 	/**
-	 * Outputs a specific error message and quits the program
+	 * Creates a fork of the map in constant time, without copying its tiles
+	 * The first fork turns the map's tiles into a base which is never changed again, shared by the map and all its forks.
+	 * Each then keeps its own small overlay of the tiles changed since, such as removed gold. Tile listeners aren't copied
+	 * @return The fork, which has the same tiles as the map, and can be changed without affecting it
 	 */
-	private void invalidFileFormat() {
-		System.out.println("Invalid file format");
-		System.exit(0);
+	public Map fork() {
+		if (!(tiles instanceof OverlayTileStore)) {
+			tiles = new OverlayTileStore(tiles); // The current tiles become the shared base
+		}
+		return new Map(this); // Copying an overlay only copies references
 	}
 
 	/**
-	 * Finds if a given character is in a given character array
-	 * @param testChar The character which is being tested for being in the array
-	 * @param charArray The array which is being tested for containing the character
-	 * @return True if the character is in the array, false if not
+	 * Makes the map's tiles a base which is never changed again, shared by the map and every copy made of it from now on
+	 * Each then only keeps which of the gold has been picked up, so copying the map takes time and memory in proportion
+	 * to its gold rather than its size. Maps which are already overlays, e.g. forked or off the heap, are left as they are
+	 * The map's connected areas are found now too, unless it's chunked, so every copy shares them
+	 * @return The map
 	 */
-	private boolean charInArray(char testChar, char[] charArray) {
-		// Searches through every character in the array
-		for (char c : charArray) {
-			if (testChar == c) {
-				return true; // If the character is found, returns true
-			}
+	public Map shareTiles() {
+		if (!(tiles instanceof ChunkedTileStore)) {
+			getConnectivity();
 		}
+		if (!(tiles instanceof OverlayTileStore) && !(tiles instanceof GoldOverlayTileStore)) {
+			tiles = new GoldOverlayTileStore(tiles); // The current tiles become the shared base
+		}
+		return this;
+	}
 
-		return false; // Returns false if not already returned
+	/**
+	 * Loads a map for one game, as a copy of a template shared by every game on the same file
+	 * The template is read once and cached (MapTemplateCache), so only the first load reads the file
+	 * @param filePath The path of the map file
+	 * @return The map, which only holds which of the template's gold has been picked up
+	 */
+	public static Map loadShared(String filePath) {
+		return new Map(MapTemplateCache.get(filePath));
 	}
 
 	/**
-	 * Corrects any invalid characters in the line
-	 * @param line A line of characters to be corrected
-	 * @return The corrected line of characters
+	 * Sets the map's tiles back to those of a fork, in constant time, e.g. to roll a game back to a snapshot
+	 * Tile listeners aren't told about the tiles which change, so anything they keep up to date must be rebuilt
+	 * @param fork A fork of this map, or of a map it was forked from, which must have the same size
 	 */
-	private char[] correctChars(char[] line) {
-		// Goes through every item in the array
-		for (int pos = 0; pos < line.length; pos++) {
-			if (!charInArray(line[pos], validChars)) { // If the character isn't valid, it's set to the default character
-				line[pos] = '.';
-			}
-		}
-		return line;
+	public void restoreTiles(Map fork) {
+		tiles = fork.tiles.copy();
+		checksum = fork.checksum;
+		placement = fork.placement == null ? null : new PlacementIndex(fork.placement);
+		connectivity = fork.connectivity;
+		pathHierarchy = fork.pathHierarchy;
 	}
 
 	/**
-	 * Takes a line of text and a header, and returns the data according to the specified format of the map file
-	 * @param line The line of text to extract the data from
-	 * @param header The title/name of the data being extracted, which precedes the data in the specified map format
-	 * @return The data which is extracted from the line
+	 * Opens a map stored in a chunk file, which only holds the parts of the map in use in memory
+	 * Chunk files are made from text map files with ChunkedTileStore.convert
+	 * @param chunkFilePath The path of the chunk file
+	 * @param memoryBudget The most bytes of chunks to hold in memory at once
+	 * @return The map
 	 */
-	private String extractDataFromLine(String line, String header) {
-		int headerLength = header.length();
-		String data = "";
+	public static Map openChunked(String chunkFilePath, long memoryBudget) {
+		ChunkedTileStore store = new ChunkedTileStore(chunkFilePath, memoryBudget);
+		return new Map(store.getMapName(), store.getGoldRequired(), store);
+	}
 
-		// Checks that the line is long enough, then checks that the header matches the first word of the line
-		if ((line.length() > headerLength + 1) && (line.substring(0, headerLength + 1).equals(header + " "))) {
-			data = line.substring(headerLength + 1); // Gets the data following the header
+	/**
+	 * Opens a map with its tiles off the heap, in an OffHeapTileStore which is never changed and is shared by all copies
+	 * of the map without being copied. The map itself holds an overlay of the tiles changed since, such as removed gold
+	 * A binary map file whose tiles aren't run-length encoded is mapped into memory and its tiles used where they are
+	 * @param filePath The path of the map file, read as a binary map file if its name ends with .dmap
+	 * @return The map
+	 */
+	public static Map openOffHeap(String filePath) {
+		String name;
+		int gold;
+		TileStore store;
+		if (filePath.endsWith(BinaryMapFile.EXTENSION)) {
+			BinaryMapFile file = new BinaryMapFile(filePath, true);
+			name = file.getMapName();
+			gold = file.getGoldRequired();
+			store = file.getTiles();
 		} else {
-			invalidFileFormat(); // Causes error if these conditions aren't met
+			MapFileReader reader = new MapFileReader(filePath);
+			store = OffHeapTileStore.copyOf(readTiles(reader)); // The packed tiles on the heap are garbage once copied
+			name = reader.getMapName();
+			gold = reader.getGoldRequired();
 		}
+		return new Map(name, gold, new OverlayTileStore(store));
+	}
 
-		return data;
+	/**
+	 * Loads a map from a file, which is read as a binary map file if its name ends with .dmap, or a text map file otherwise
+	 * Binary map files are made from text map files with BinaryMapFile.convert, and load much faster
+	 * With -Ddungeon.offheap=true, the map's tiles are kept off the heap (Map.openOffHeap)
+	 * When instrumentation is on, the load is timed and recorded in GameStats and as a MapLoadEvent
+	 * @param filePath The path of the map file
+	 * @return The map
+	 */
+	public static Map load(String filePath) {
+		if (!GameStats.ENABLED) {
+			return read(filePath);
+		}
+		MapLoadEvent event = new MapLoadEvent();
+		event.begin();
+		long startTime = System.nanoTime();
+		Map map = read(filePath);
+		GameStats.recordMapLoad(System.nanoTime() - startTime);
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = filePath;
+			event.mapName = map.getMapName();
+			event.width = map.getMapWidth();
+			event.height = map.getMapHeight();
+			event.commit();
+		}
+		return map;
 	}
 
 	/**
-	 * Sets the data of the map object by reading the file
-	 * @param br A BufferedReader used to read the file. Assumed to be ready to use.
+	 * Reads a map from a file, as a binary map file if its name ends with .dmap, or a text map file otherwise
+	 * @param filePath The path of the map file
+	 * @return The map
 	 */
-	private void setMapData(BufferedReader br) {
-		String line;
-		int lineCount = 0;
-		int previousLineLength = 0;
+	private static Map read(String filePath) {
+		if (OFF_HEAP) {
+			return openOffHeap(filePath);
+		}
+		if (filePath.endsWith(BinaryMapFile.EXTENSION)) {
+			BinaryMapFile file = new BinaryMapFile(filePath);
+			return new Map(file.getMapName(), file.getGoldRequired(), file.getTiles()); // The packed tiles are used as they are
+		}
+		return new Map(filePath);
+	}
 
-		try {
-			mapName = extractDataFromLine(br.readLine(), "name"); // Sets map name from first line
-			try { // Tries to set goldRequired from second line
-				goldRequired = Integer.parseInt(extractDataFromLine(br.readLine(), "win"));
-			} catch (NumberFormatException e) {
-				invalidFileFormat(); // Causes error if gold value not numeric
-			}
-			while ((line = br.readLine()) != null) { // Reads until no lines left
-				if (line.length() != previousLineLength && lineCount != 0) { // Checks that the current line is the same length as the last one
-					invalidFileFormat();
-				}
-				map[lineCount] = correctChars(line.toCharArray()); // Sets the map line after converting to array and correcting invalid chars
-				lineCount++;
-				previousLineLength = line.length();
-			}
-		} catch (IOException e) {
-			System.out.println(e.toString()); // Prints error message
-			System.exit(0); // Exits the program
+	/**
+	 * Ends the program if no area of the map has an exit and enough gold to win, so the game could never be won
+	 * @param found The connected areas of the map
+	 */
+	private void checkWinnable(MapConnectivity found) {
+		if (found.countWinnableTiles(goldRequired) == 0) {
+			System.out.println("Invalid map: no exit can be reached with " + goldRequired + " gold");
+			System.exit(0);
 		}
 	}
 
 	/**
-	 * Reads the specified map file and sets the map data accordingly
-	 * @param filePath The file to read the map data from
+	 * Creates a packed tile store holding a map file's tiles
+	 * @param reader The reader for the map file. Its header data can be read once this returns
+	 * @return The tile store
 	 */
-    private void readMapFile(String filePath) {
-		BufferedReader br = null;
+	static PackedTileStore readTiles(MapFileReader reader) {
+		PackedTileStore[] store = new PackedTileStore[1]; // Created once the first row, and so the width, is known
+		reader.read(row -> {
+			if (store[0] == null) {
+				store[0] = new PackedTileStore(row.length, INITIAL_ROW_CAPACITY);
+			}
+			store[0].addRow(row); // Packs each row straight into the store, which grows as rows are read
+		});
+		store[0].trimToSize(); // Trims the tile store to the number of rows read
+		return store[0];
+	}
 
-		try {
-			br = new BufferedReader(new FileReader(filePath)); // Sets up BufferedReader
-			setMapData(br); // Sets map data using BufferedReader
-		} catch (FileNotFoundException e) {
-			System.out.println(e.toString()); // Prints error message
-			System.exit(0); // Exits program
-		} finally {
-			try {
-				if (br != null) {
-					br.close(); // Closes BufferedReader if not null
-				}
-			} catch (IOException e) { // If error when closing BufferedReader
-				System.out.println(e.toString()); // Outputs error message
-				System.exit(0); // Exits program
+	/**
+	 * Calculates a checksum of the map's tiles. Maps with the same tiles have the same checksum, however they're stored,
+	 * so it shows whether a map is the one a game was recorded on. It's only calculated again after a tile changes
+	 * @return The CRC-32 checksum of the tile characters, row by row
+	 */
+	public int getChecksum() {
+		if (checksum != -1) {
+			return (int) checksum;
+		}
+		CRC32 crc = new CRC32();
+		char[] row = new char[mapWidth];
+		byte[] rowBytes = new byte[mapWidth];
+		for (int y = 0; y < mapHeight; y++) {
+			tiles.getChars(0, y, mapWidth, row, 0);
+			for (int x = 0; x < mapWidth; x++) {
+				rowBytes[x] = (byte) row[x]; // Tile characters are all ASCII
 			}
+			crc.update(rowBytes, 0, mapWidth);
 		}
+		checksum = crc.getValue();
+		return (int) checksum;
 	}
 
 	/**
@@ -197,7 +313,21 @@ public class Map {
 		if (xPos < 0 || yPos < 0 || xPos >= mapWidth || yPos >= mapHeight) {
 			return '#'; // Returns a '#' if a coordinate is out of range
 		} else {
-			return map[yPos][xPos]; // The character at the position
+			return tiles.getChar(xPos, yPos); // The character at the position
+		}
+	}
+
+	/**
+	 * Checks whether the specified position can't be moved onto, using the wall bitmap
+	 * @param xPos The horizontal coordinate of the position
+	 * @param yPos The vertical coordinate of the position
+	 * @return True if the position is a wall or out of range
+	 */
+	public boolean isWall(int xPos, int yPos) {
+		if (xPos < 0 || yPos < 0 || xPos >= mapWidth || yPos >= mapHeight) {
+			return true; // Positions out of range are treated as walls
+		} else {
+			return tiles.isWall(xPos, yPos);
 		}
 	}
 
@@ -208,8 +338,116 @@ public class Map {
 	 */
 	public void resetCharAtPos(int xPos, int yPos) {
 		if (xPos >= 0 && yPos >= 0 && xPos < mapWidth && yPos < mapHeight) { // Checks coordinates are in range
-			map[yPos][xPos] = '.';
+			char previousChar = tiles.getChar(xPos, yPos);
+			tiles.setTileCode(xPos, yPos, TileStore.FLOOR);
+			if (previousChar != '.') { // Only tells listeners if the tile actually changed
+				checksum = -1;
+				if (placement != null && previousChar != 'E') { // Gold and walls couldn't be placed on, but floor can
+					placement.add(xPos, yPos);
+				}
+				if (previousChar == '#') {
+					synchronized (this) { // The new floor may join areas. If they haven't been found yet, they're found with it
+						MapConnectivity current = connectivity;
+						if (current != null) {
+							connectivity = current.withFloor(xPos, yPos);
+						}
+					}
+					if (pathHierarchy != null) { // Only the clusters around the tile are rebuilt
+						pathHierarchy = pathHierarchy.rebuildAt(this, xPos, yPos);
+					}
+				}
+				for (TileListener listener : tileListeners) {
+					listener.tileReset(xPos, yPos, previousChar);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the cells players can be placed on, which are kept up to date as gold is picked up
+	 * @return The placement index
+	 */
+	public PlacementIndex getPlacementIndex() {
+		if (placement == null) {
+			placement = new PlacementIndex(tiles);
+		}
+		return placement;
+	}
+
+	/**
+	 * Gets the connected areas of the map, and the gold and exits each held when they were found. They're found the first
+	 * time they're needed, which also ends the program if the map can't be won from anywhere
+	 * @return The connectivity
+	 */
+	public MapConnectivity getConnectivity() {
+		MapConnectivity current = connectivity;
+		return current != null ? current : findConnectivity();
+	}
+
+	/**
+	 * Finds the connected areas of the map, unless another thread has just found them
+	 * @return The connectivity
+	 */
+	private synchronized MapConnectivity findConnectivity() {
+		if (connectivity == null) {
+			MapConnectivity found = new MapConnectivity(tiles);
+			if (!winnableChecked) { // Rejects maps which can't be won from anywhere
+				checkWinnable(found);
+				winnableChecked = true;
+			}
+			connectivity = found;
 		}
+		return connectivity;
+	}
+
+	/**
+	 * Gets the abstract graph of the map used to find long paths (HierarchicalPathFinder)
+	 * @return The graph
+	 */
+	public PathHierarchy getPathHierarchy() {
+		if (pathHierarchy == null) {
+			pathHierarchy = new PathHierarchy(this, !(tiles instanceof ChunkedTileStore));
+		}
+		return pathHierarchy;
+	}
+
+	/**
+	 * Checks whether there could be a path between two positions, with a binary search of each position's row
+	 * The map's connected areas are found if they haven't been yet, except on chunked maps, which aren't checked unless
+	 * their connectivity has been found, since that reads every chunk. Searches between their areas are stopped by the
+	 * path finders' expansion limits instead
+	 * @param startX The horizontal coordinate of the first position
+	 * @param startY The vertical coordinate of the first position
+	 * @param goalX The horizontal coordinate of the second position
+	 * @param goalY The vertical coordinate of the second position
+	 * @return False if there's definitely no path between the positions
+	 */
+	public boolean canReach(int startX, int startY, int goalX, int goalY) {
+		MapConnectivity current = connectivity;
+		if (current == null) {
+			if (tiles instanceof ChunkedTileStore) {
+				return true;
+			}
+			current = getConnectivity();
+		}
+		return current.isConnected(startX, startY, goalX, goalY);
+	}
+
+	/**
+	 * Adds an object to be told whenever a tile is reset
+	 * @param listener The object to tell
+	 */
+	public void addTileListener(TileListener listener) {
+		tileListeners.add(listener);
+	}
+
+	/**
+	 * Stops telling an object when a tile is reset, so the map no longer keeps it, e.g. once a cache on a long-lived
+	 * template is no longer used
+	 * @param listener The object which was added
+	 */
+	public void removeTileListener(TileListener listener) {
+		tileListeners.remove(listener);
 	}
 
 	/**
@@ -217,33 +455,53 @@ public class Map {
 	 * @param xPos The horizontal coordinate of the centre of the grid
 	 * @param yPos The vertical coordinate of the centre of the grid
 	 * @param viewWidth The width of the grid returned
-	 * @param players An array of all the players in the game to be displayed on the map. Players nearer the start of the array get higher priority if overlapping
+	 * @param occupancy The index of all the players in the game to be displayed on the map. Players nearer the start of the players array get higher priority if overlapping
 	 * @return The grid view at the position
 	 */
-	public char[][] getMapViewAtPos(int xPos, int yPos, int viewWidth, Player[] players) {
+	public char[][] getMapViewAtPos(int xPos, int yPos, int viewWidth, OccupancyIndex occupancy) {
 		char[][] mapView = new char[viewWidth][viewWidth];
-		int viewRadius = Math.max((viewWidth - 1) / 2, 0); // Radius calculated from the width
-		int tempXPos, tempYPos;
+		char[] view = new char[viewWidth * viewWidth];
 
-		// Goes through each position in the created grid and sets its character
+		renderView(xPos, yPos, viewWidth, occupancy, view);
 		for (int y = 0; y < viewWidth; y++) {
-			for (int x = 0; x < viewWidth; x++) {
-				tempXPos = xPos - viewRadius + x; // x coordinate on the the actual map
-				tempYPos = yPos - viewRadius + y; // y coordinate on the the actual map
-				mapView[y][x] = getCharAtPos(tempXPos, tempYPos);
-				// Goes through each player and puts their characters on the grid
-				for (Player p : players) {
-					if (p.getXPos() == tempXPos && p.getYPos() == tempYPos) {
-						mapView[y][x] = p.getPlayerChar();
-						break; // As soon as a player is found in the position, it doesn't check other players
-					}
-				}
-			}
+			System.arraycopy(view, y * viewWidth, mapView[y], 0, viewWidth); // Splits the view into rows
 		}
 
     	return mapView;
 	}
 
+	/**
+	 * Writes a grid view of the map with a specified width at a specified position into an array the caller owns, so it
+	 * can be reused for every view. Each row is copied from the tile store in one run, and positions out of range are
+	 * filled with '#' in bulk, rather than checking every position separately
+	 * @param xPos The horizontal coordinate of the centre of the grid
+	 * @param yPos The vertical coordinate of the centre of the grid
+	 * @param viewWidth The width of the grid
+	 * @param occupancy The index of all the players in the game to be displayed on the map. Players nearer the start of the players array get higher priority if overlapping
+	 * @param view The array to write the grid to in row-major order. It must hold at least viewWidth * viewWidth characters
+	 */
+	public void renderView(int xPos, int yPos, int viewWidth, OccupancyIndex occupancy, char[] view) {
+		int viewRadius = Math.max((viewWidth - 1) / 2, 0); // Radius calculated from the width
+		int left = xPos - viewRadius; // x coordinate of the grid's left column on the actual map
+		int top = yPos - viewRadius; // y coordinate of the grid's top row on the actual map
+		// The range of grid columns which are inside the map
+		int firstX = Math.min(Math.max(-left, 0), viewWidth);
+		int endX = Math.max(Math.min(mapWidth - left, viewWidth), firstX);
+
+		for (int y = 0; y < viewWidth; y++) {
+			int rowStart = y * viewWidth;
+			int mapY = top + y;
+			if (mapY < 0 || mapY >= mapHeight) {
+				Arrays.fill(view, rowStart, rowStart + viewWidth, '#'); // The whole row is out of range
+			} else {
+				Arrays.fill(view, rowStart, rowStart + firstX, '#');
+				tiles.getChars(left + firstX, mapY, endX - firstX, view, rowStart + firstX);
+				Arrays.fill(view, rowStart + endX, rowStart + viewWidth, '#');
+			}
+		}
+		occupancy.drawPlayers(left, top, viewWidth, view);
+	}
+
 	/**
 	 * Gets the gold required to win the game
 	 * @return The gold required to win the game
@@ -275,4 +533,11 @@ public class Map {
 	public String getMapName() {
 		return mapName;
 	}
+
+	/**
+	 * Releases the map's storage. For maps stored in a chunk file, changed tiles are written back to the file
+	 */
+	public void close() {
+		tiles.close();
+	}
 }
@@ -0,0 +1,489 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Class to split a map's walkable tiles (everything but walls) into connected components, the areas a player can walk
+ * between. Each component knows how much gold it held when the map was loaded and whether it has an exit, so it's known
+ * straight away whether a game can be won from a tile, and whether there's any path between two tiles
+ *
+ * Components are labelled by run: each row's unbroken runs of walkable tiles are found, and union-find joins each run to
+ * the runs it touches in the row above. Only the runs are kept, with the component of each, so the labels take memory in
+ * proportion to the walls rather than the tiles, and a tile's component is found by a binary search of its row's runs.
+ * Huge maps are split into horizontal stripes whose runs are found in parallel. Every tree is rooted at its lowest run,
+ * so a second pass can number the components in place, reusing the union-find array to hold the component of every run
+ */
+public class MapConnectivity {
+
+    /**
+     * The component of walls and positions off the map
+     */
+    public static final int NO_COMPONENT = -1;
+    /**
+     * The fewest tiles in a map for its stripes to be read in parallel
+     */
+    private static final long PARALLEL_MIN_TILES = 1 << 20;
+    /**
+     * The fewest rows in each stripe
+     */
+    private static final int MIN_STRIPE_ROWS = 64;
+
+    /**
+     * The number of tiles in each row
+     */
+    private final int width;
+    /**
+     * The number of rows
+     */
+    private final int height;
+    /**
+     * The index of the first run of each row, then the number of runs, so row y's runs are rowRuns[y] to rowRuns[y + 1]
+     */
+    private final int[] rowRuns;
+    /**
+     * The horizontal coordinate of the first tile of each run
+     */
+    private final int[] runStarts;
+    /**
+     * The horizontal coordinate after the last tile of each run
+     */
+    private final int[] runEnds;
+    /**
+     * The component of each run
+     */
+    private final int[] runComponents;
+    /**
+     * The number of components
+     */
+    private final int componentCount;
+    /**
+     * The number of tiles in each component
+     */
+    private final int[] componentSizes;
+    /**
+     * The amount of gold in each component when the map was loaded
+     */
+    private final int[] componentGold;
+    /**
+     * Whether each component has an exit
+     */
+    private final boolean[] componentExits;
+
+    /**
+     * Class to hold the runs found in one stripe of rows, with the gold and exits in each
+     */
+    private static class StripeRuns {
+
+        /**
+         * The number of runs in each row of the stripe
+         */
+        private final int[] rowCounts;
+        /**
+         * The first tile of each run
+         */
+        private int[] starts = new int[64];
+        /**
+         * The tile after the last of each run
+         */
+        private int[] ends = new int[64];
+        /**
+         * The gold in each run
+         */
+        private int[] gold = new int[64];
+        /**
+         * Whether each run has an exit
+         */
+        private boolean[] exits = new boolean[64];
+        /**
+         * The number of runs
+         */
+        private int count;
+
+        /**
+         * The constructor for StripeRuns. It finds the runs of walkable tiles in a stripe of rows
+         * @param tiles The tiles of the map
+         * @param firstRow The first row of the stripe
+         * @param endRow The row after the last row of the stripe
+         */
+        private StripeRuns(TileStore tiles, int firstRow, int endRow) {
+            int width = tiles.getWidth();
+            rowCounts = new int[endRow - firstRow];
+            char[] row = new char[width];
+            for (int yPos = firstRow; yPos < endRow; yPos++) {
+                tiles.getChars(0, yPos, width, row, 0);
+                int rowStart = count;
+                int xPos = 0;
+                while (xPos < width) {
+                    if (row[xPos] == '#') {
+                        xPos++;
+                        continue;
+                    }
+                    if (count == starts.length) { // Doubles the arrays when full
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                        gold = Arrays.copyOf(gold, count * 2);
+                        exits = Arrays.copyOf(exits, count * 2);
+                    }
+                    starts[count] = xPos;
+                    while (xPos < width && row[xPos] != '#') { // Carries on to the next wall, counting gold and exits
+                        if (row[xPos] == 'G') {
+                            gold[count]++;
+                        } else if (row[xPos] == 'E') {
+                            exits[count] = true;
+                        }
+                        xPos++;
+                    }
+                    ends[count] = xPos;
+                    count++;
+                }
+                rowCounts[yPos - firstRow] = count - rowStart;
+            }
+        }
+    }
+
+    /**
+     * The constructor for MapConnectivity. It finds the components of every tile
+     * @param tiles The tiles of the map. They're read from several threads at once for huge maps, unless they're chunked
+     */
+    public MapConnectivity(TileStore tiles) {
+        width = tiles.getWidth();
+        height = tiles.getHeight();
+
+        // Chunked stores hold a few chunks at a time, so reading them from many threads would only swap chunks in and out
+        int stripeCount = (long) width * height < PARALLEL_MIN_TILES || tiles instanceof ChunkedTileStore ? 1
+                : Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4, height / MIN_STRIPE_ROWS));
+        StripeRuns[] stripes = new StripeRuns[stripeCount];
+        if (stripeCount == 1) {
+            stripes[0] = new StripeRuns(tiles, 0, height);
+        } else {
+            IntStream.range(0, stripeCount).parallel().forEach(stripe -> stripes[stripe] = new StripeRuns(tiles,
+                    (int) ((long) stripe * height / stripeCount), (int) ((long) (stripe + 1) * height / stripeCount)));
+        }
+
+        // Puts the stripes' runs together in order
+        long totalRuns = 0;
+        for (StripeRuns stripe : stripes) {
+            totalRuns += stripe.count;
+        }
+        if (totalRuns > Map.MAX_TILE_COUNT) {
+            throw new IllegalArgumentException("Map too large to label: " + width + "x" + height);
+        }
+        int runCount = (int) totalRuns;
+        rowRuns = new int[height + 1];
+        runStarts = new int[runCount];
+        runEnds = new int[runCount];
+        int[] runGold = new int[runCount];
+        boolean[] runExits = new boolean[runCount];
+        int run = 0;
+        int yPos = 0;
+        for (StripeRuns stripe : stripes) {
+            System.arraycopy(stripe.starts, 0, runStarts, run, stripe.count);
+            System.arraycopy(stripe.ends, 0, runEnds, run, stripe.count);
+            System.arraycopy(stripe.gold, 0, runGold, run, stripe.count);
+            System.arraycopy(stripe.exits, 0, runExits, run, stripe.count);
+            for (int rowCount : stripe.rowCounts) {
+                rowRuns[yPos++] = run;
+                run += rowCount;
+            }
+        }
+        rowRuns[height] = runCount;
+
+        // Joins each run to the runs it touches in the row above, walking both rows' runs together from the left
+        int[] parents = new int[runCount];
+        for (int i = 0; i < runCount; i++) {
+            parents[i] = i;
+        }
+        for (int row = 1; row < height; row++) {
+            int above = rowRuns[row - 1];
+            int current = rowRuns[row];
+            while (above < rowRuns[row] && current < rowRuns[row + 1]) {
+                if (runStarts[above] < runEnds[current] && runStarts[current] < runEnds[above]) {
+                    union(parents, above, current);
+                }
+                if (runEnds[above] < runEnds[current]) { // The run which ends first can't touch any more runs
+                    above++;
+                } else {
+                    current++;
+                }
+            }
+        }
+
+        // Numbers the components in order of their lowest run. A run's parent has a lower index, so it's numbered already
+        int count = 0;
+        int[] sizes = new int[16];
+        int[] gold = new int[16];
+        boolean[] exits = new boolean[16];
+        for (int i = 0; i < runCount; i++) {
+            int parent = parents[i];
+            int component;
+            if (parent == i) { // The root of a tree starts a new component
+                if (count == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, count * 2);
+                    gold = Arrays.copyOf(gold, count * 2);
+                    exits = Arrays.copyOf(exits, count * 2);
+                }
+                component = count++;
+            } else {
+                component = parents[parent];
+            }
+            parents[i] = component;
+            sizes[component] += runEnds[i] - runStarts[i];
+            gold[component] += runGold[i];
+            exits[component] |= runExits[i];
+        }
+        runComponents = parents;
+        componentCount = count;
+        componentSizes = Arrays.copyOf(sizes, count);
+        componentGold = Arrays.copyOf(gold, count);
+        componentExits = Arrays.copyOf(exits, count);
+    }
+
+    /**
+     * The constructor for MapConnectivity, for the connectivity of a map after a change, from arrays made for it
+     * @param width The number of tiles in each row
+     * @param height The number of rows
+     * @param rowRuns The index of the first run of each row, then the number of runs
+     * @param runStarts The horizontal coordinate of the first tile of each run
+     * @param runEnds The horizontal coordinate after the last tile of each run
+     * @param runComponents The component of each run
+     * @param componentCount The number of components
+     * @param componentSizes The number of tiles in each component
+     * @param componentGold The amount of gold in each component when the map was loaded
+     * @param componentExits Whether each component has an exit
+     */
+    private MapConnectivity(int width, int height, int[] rowRuns, int[] runStarts, int[] runEnds, int[] runComponents,
+                            int componentCount, int[] componentSizes, int[] componentGold, boolean[] componentExits) {
+        this.width = width;
+        this.height = height;
+        this.rowRuns = rowRuns;
+        this.runStarts = runStarts;
+        this.runEnds = runEnds;
+        this.runComponents = runComponents;
+        this.componentCount = componentCount;
+        this.componentSizes = componentSizes;
+        this.componentGold = componentGold;
+        this.componentExits = componentExits;
+    }
+
+    /**
+     * Gets the connectivity of the map after a wall is reset to floor, without reading any tiles. The new tile joins the
+     * runs either side of it and the components of every walkable tile next to it. This connectivity isn't changed, as
+     * copies of the map share it, so the new one takes time in proportion to the runs, rather than the tiles
+     * @param xPos The horizontal coordinate of the tile which was a wall
+     * @param yPos The vertical coordinate of the tile which was a wall
+     * @return The new connectivity, or this one if the tile wasn't a wall
+     */
+    public MapConnectivity withFloor(int xPos, int yPos) {
+        if (xPos < 0 || yPos < 0 || xPos >= width || yPos >= height || getComponent(xPos, yPos) != NO_COMPONENT) {
+            return this;
+        }
+        // Finds the runs ending just before the tile and starting just after it, which it joins together
+        int rowStart = rowRuns[yPos];
+        int rowEnd = rowRuns[yPos + 1];
+        int at = rowStart; // The first run of the row after the tile
+        while (at < rowEnd && runStarts[at] < xPos) {
+            at++;
+        }
+        int left = at > rowStart && runEnds[at - 1] == xPos ? at - 1 : -1;
+        int right = at < rowEnd && runStarts[at] == xPos + 1 ? at : -1;
+
+        // The components the tile joins, with the lowest kept
+        int[] joined = {left >= 0 ? runComponents[left] : NO_COMPONENT, right >= 0 ? runComponents[right] : NO_COMPONENT,
+                getComponent(xPos, yPos - 1), getComponent(xPos, yPos + 1)};
+        int root = NO_COMPONENT;
+        for (int component : joined) {
+            if (component != NO_COMPONENT && (root == NO_COMPONENT || component < root)) {
+                root = component;
+            }
+        }
+
+        // Numbers the components again, closing the gaps left by the ones joined to the root
+        int[] numbers = new int[componentCount];
+        int count = 0;
+        for (int component = 0; component < componentCount; component++) {
+            boolean merged = false;
+            for (int other : joined) {
+                merged |= other == component && component != root;
+            }
+            numbers[component] = merged ? numbers[root] : count++; // The root is lower, so it's numbered already
+        }
+        int tileComponent = root == NO_COMPONENT ? count++ : numbers[root]; // A tile on its own starts a new component
+        int[] sizes = new int[count];
+        int[] gold = new int[count];
+        boolean[] exits = new boolean[count];
+        for (int component = 0; component < componentCount; component++) {
+            sizes[numbers[component]] += componentSizes[component];
+            gold[numbers[component]] += componentGold[component];
+            exits[numbers[component]] |= componentExits[component];
+        }
+        sizes[tileComponent]++; // The tile was a wall, so it adds no gold or exit
+
+        // Widens the runs either side to cover the tile, joining them into one if there are both, or adds a run for it
+        int change = left >= 0 && right >= 0 ? -1 : left < 0 && right < 0 ? 1 : 0;
+        int runCount = runStarts.length;
+        int[] starts = new int[runCount + change];
+        int[] ends = new int[runCount + change];
+        int[] components = new int[runCount + change];
+        System.arraycopy(runStarts, 0, starts, 0, at);
+        System.arraycopy(runEnds, 0, ends, 0, at);
+        int skip = change == -1 ? 1 : 0; // The run after the tile is dropped when it's joined to the one before
+        System.arraycopy(runStarts, at + skip, starts, at + skip + change, runCount - at - skip);
+        System.arraycopy(runEnds, at + skip, ends, at + skip + change, runCount - at - skip);
+        for (int run = 0; run < at; run++) {
+            components[run] = numbers[runComponents[run]];
+        }
+        for (int run = at + skip; run < runCount; run++) {
+            components[run + change] = numbers[runComponents[run]];
+        }
+        if (change == -1) {
+            ends[left] = runEnds[right];
+        } else if (change == 1) {
+            starts[at] = xPos;
+            ends[at] = xPos + 1;
+            components[at] = tileComponent;
+        } else if (left >= 0) {
+            ends[left] = xPos + 1;
+        } else {
+            starts[right] = xPos;
+        }
+        int[] rows = rowRuns.clone();
+        for (int row = yPos + 1; row <= height; row++) {
+            rows[row] += change;
+        }
+        return new MapConnectivity(width, height, rows, starts, ends, components, count, sizes, gold, exits);
+    }
+
+    /**
+     * Finds the root of a run's tree, halving the path to it as it goes
+     * @param parents The union-find array
+     * @param run The run
+     * @return The root run
+     */
+    private static int find(int[] parents, int run) {
+        while (parents[run] != run) {
+            parents[run] = parents[parents[run]]; // Still points to a lower index, so numbering in place works
+            run = parents[run];
+        }
+        return run;
+    }
+
+    /**
+     * Joins the trees of two runs, keeping the lower root as the root
+     * @param parents The union-find array
+     * @param first The first run
+     * @param second The second run
+     */
+    private static void union(int[] parents, int first, int second) {
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        int root = Math.min(firstRoot, secondRoot);
+        parents[firstRoot] = root;
+        parents[secondRoot] = root;
+        parents[first] = root; // Both runs now point straight at the root, as their neighbours are likely to be joined next
+        parents[second] = root;
+    }
+
+    /**
+     * Gets the component a tile is in
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The component, or NO_COMPONENT for walls and positions off the map
+     */
+    public int getComponent(int xPos, int yPos) {
+        if (xPos < 0 || yPos < 0 || xPos >= width || yPos >= height) {
+            return NO_COMPONENT;
+        }
+        // Finds the last run in the row starting at or before the tile
+        int low = rowRuns[yPos];
+        int high = rowRuns[yPos + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (runStarts[middle] <= xPos) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= rowRuns[yPos] && xPos < runEnds[high] ? runComponents[high] : NO_COMPONENT;
+    }
+
+    /**
+     * Gets the number of runs of walkable tiles the labels are kept for
+     * @return The number of runs
+     */
+    public int getRunCount() {
+        return runStarts.length;
+    }
+
+    /**
+     * Checks if there's a path between two tiles
+     * @param startX The horizontal coordinate of the first tile
+     * @param startY The vertical coordinate of the first tile
+     * @param goalX The horizontal coordinate of the second tile
+     * @param goalY The vertical coordinate of the second tile
+     * @return True if both tiles are walkable and in the same component
+     */
+    public boolean isConnected(int startX, int startY, int goalX, int goalY) {
+        int component = getComponent(startX, startY);
+        return component != NO_COMPONENT && component == getComponent(goalX, goalY);
+    }
+
+    /**
+     * Checks if a game can be won from a component: it must have an exit, and held enough gold when the map was loaded
+     * @param component The component
+     * @param goldRequired The gold required to win
+     * @return True if the game can be won from the component
+     */
+    public boolean canWin(int component, int goldRequired) {
+        return component != NO_COMPONENT && componentExits[component] && componentGold[component] >= goldRequired;
+    }
+
+    /**
+     * Gets the number of components
+     * @return The number of components
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Gets the number of tiles in a component
+     * @param component The component
+     * @return The number of tiles
+     */
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+
+    /**
+     * Gets the amount of gold a component held when the map was loaded
+     * @param component The component
+     * @return The amount of gold
+     */
+    public int getComponentGold(int component) {
+        return componentGold[component];
+    }
+
+    /**
+     * Checks if a component has an exit
+     * @param component The component
+     * @return True if it has an exit
+     */
+    public boolean hasExit(int component) {
+        return componentExits[component];
+    }
+
+    /**
+     * Counts the walkable tiles a game can be won from
+     * @param goldRequired The gold required to win
+     * @return The number of tiles
+     */
+    public long countWinnableTiles(int goldRequired) {
+        long count = 0;
+        for (int component = 0; component < componentCount; component++) {
+            if (canWin(component, goldRequired)) {
+                count += componentSizes[component];
+            }
+        }
+        return count;
+    }
+}
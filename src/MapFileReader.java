@@ -0,0 +1,267 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Class to read a map file in the text map format: a "name" line, a "win" line, then rows of tiles of equal length
+ * Each row is passed on as tile codes as soon as it's read, so the reader can fill any kind of tile store
+ */
+public class MapFileReader {
+
+	/**
+	 * The size of the buffer used to read the map file
+	 */
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+	/**
+	 * The length the first row's array starts with. It's doubled until the row ends
+	 */
+	private static final int INITIAL_ROW_CAPACITY = 64;
+	/**
+	 * Marks bytes in the tile table which don't start a new character, so aren't counted as a tile
+	 */
+	private static final byte SKIP_BYTE = -1;
+	/**
+	 * Maps every byte value to the code of the tile it's read as. Invalid characters map to the default (floor) tile
+	 */
+	private static final byte[] TILE_TABLE = createTileTable();
+
+	/**
+	 * The path of the file being read
+	 */
+	private final String filePath;
+	/**
+	 * The name of the map
+	 */
+	private String mapName;
+	/**
+	 * The gold required for a player to win the game
+	 */
+	private int goldRequired;
+	/**
+	 * The width of the map, or -1 until the first row has been read
+	 */
+	private int width;
+	/**
+	 * The number of rows read
+	 */
+	private int rowCount;
+
+	/**
+	 * The constructor for MapFileReader
+	 * @param filePath The path of the file to read the map from
+	 */
+	public MapFileReader(String filePath) {
+		this.filePath = filePath;
+		width = -1;
+		rowCount = 0;
+	}
+
+	/**
+	 * Creates the lookup table used to validate map characters
+	 * @return The tile table, indexed by the unsigned value of a byte
+	 */
+	private static byte[] createTileTable() {
+		byte[] table = new byte[256];
+		Arrays.fill(table, (byte) TileStore.FLOOR); // Invalid characters are set to the default character
+		table['#'] = TileStore.WALL;
+		table['G'] = TileStore.GOLD;
+		table['E'] = TileStore.EXIT;
+		for (int b = 0x80; b < 0xC0; b++) {
+			table[b] = SKIP_BYTE; // UTF-8 continuation bytes belong to the previous character
+		}
+		return table;
+	}
+
+	/**
+	 * Outputs a specific error message and quits the program
+	 */
+	private void invalidFileFormat() {
+		System.out.println("Invalid file format");
+		System.exit(0);
+	}
+
+	/**
+	 * Takes a line of text and a header, and returns the data according to the specified format of the map file
+	 * @param line The line of text to extract the data from
+	 * @param header The title/name of the data being extracted, which precedes the data in the specified map format
+	 * @return The data which is extracted from the line
+	 */
+	private String extractDataFromLine(String line, String header) {
+		int headerLength = header.length();
+		String data = "";
+
+		// Checks that the line is long enough, then checks that the header matches the first word of the line
+		if ((line.length() > headerLength + 1) && (line.substring(0, headerLength + 1).equals(header + " "))) {
+			data = line.substring(headerLength + 1); // Gets the data following the header
+		} else {
+			invalidFileFormat(); // Causes error if these conditions aren't met
+		}
+
+		return data;
+	}
+
+	/**
+	 * Sets the name or gold required from one of the header lines at the start of the file
+	 * @param line The header line
+	 * @param lineNumber The index of the line in the file (0 for the name, 1 for the gold required)
+	 */
+	private void setHeaderData(String line, int lineNumber) {
+		if (lineNumber == 0) {
+			mapName = extractDataFromLine(line, "name"); // Sets map name from first line
+		} else {
+			try { // Tries to set goldRequired from second line
+				goldRequired = Integer.parseInt(extractDataFromLine(line, "win"));
+			} catch (NumberFormatException e) {
+				invalidFileFormat(); // Causes error if gold value not numeric
+			}
+		}
+	}
+
+	/**
+	 * Reads the file once from start to end, setting the header data and passing each row on as soon as it's read
+	 * Rows are validated a byte at a time through the tile table
+	 * @param channel A FileChannel used to read the file. Assumed to be positioned at the start of the file.
+	 * @param rowConsumer Given the tile codes of each row. The array is reused for the next row, and its length is the map width
+	 * @throws IOException If the file can't be read
+	 */
+	private void readRows(FileChannel channel, Consumer<byte[]> rowConsumer) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		byte[] bytes = buffer.array();
+		ByteArrayOutputStream headerLine = new ByteArrayOutputStream(); // Collects the bytes of the current header line
+		int headerLinesRead = 0;
+		byte[] row = new byte[INITIAL_ROW_CAPACITY]; // Holds the tile codes of the current row. It grows until the map width is known
+		int rowLength = 0;
+		boolean lineStarted = false; // Whether anything has been read since the last line ending
+		boolean previousCarriageReturn = false; // Used to treat "\r\n" as a single line ending
+
+		while (channel.read(buffer) != -1) { // Reads until no bytes left
+			int bytesRead = buffer.position();
+			for (int i = 0; i < bytesRead; i++) {
+				byte b = bytes[i];
+				if (b == '\n' || b == '\r') {
+					if (b == '\n' && previousCarriageReturn) { // Second half of a "\r\n" line ending
+						previousCarriageReturn = false;
+						continue;
+					}
+					previousCarriageReturn = b == '\r';
+					lineStarted = false;
+					if (headerLinesRead < 2) { // The line is one of the two header lines
+						setHeaderData(headerLine.toString(Charset.defaultCharset()), headerLinesRead);
+						headerLine.reset();
+						headerLinesRead++;
+					} else { // The line is a row of the map
+						row = endRow(row, rowLength, rowConsumer);
+						rowLength = 0;
+					}
+				} else {
+					previousCarriageReturn = false;
+					lineStarted = true;
+					if (headerLinesRead < 2) {
+						headerLine.write(b);
+					} else {
+						byte tileCode = TILE_TABLE[b & 0xFF]; // Corrects invalid characters to the default character
+						if (tileCode != SKIP_BYTE) {
+							if (rowLength == row.length) {
+								if (width != -1) {
+									invalidFileFormat(); // Row is longer than the first row
+								}
+								row = Arrays.copyOf(row, rowLength * 2); // Grows the first row while its length is unknown
+							}
+							row[rowLength++] = tileCode;
+						}
+					}
+				}
+			}
+			buffer.clear();
+		}
+
+		// A last line without a line ending still counts as a line
+		if (lineStarted) {
+			if (headerLinesRead < 2) {
+				setHeaderData(headerLine.toString(Charset.defaultCharset()), headerLinesRead);
+				headerLinesRead++;
+			} else {
+				endRow(row, rowLength, rowConsumer);
+			}
+		}
+		if (headerLinesRead < 2 || rowCount == 0) { // Checks the file has a name, gold required, and at least one row
+			invalidFileFormat();
+		}
+	}
+
+	/**
+	 * Finishes reading a row of the map and passes it on. The first row sets the width of the map
+	 * @param row The tile codes of the row
+	 * @param rowLength The number of tiles read in the row
+	 * @param rowConsumer Given the tile codes of the row
+	 * @return The array to read the next row into
+	 */
+	private byte[] endRow(byte[] row, int rowLength, Consumer<byte[]> rowConsumer) {
+		if (width == -1) { // The first row sets the width of the map
+			if (rowLength == 0) {
+				invalidFileFormat(); // The map must be at least one tile wide
+			}
+			width = rowLength;
+			row = Arrays.copyOf(row, rowLength); // Later rows can't be longer than the first
+		} else if (rowLength != width) { // Checks that the current line is the same length as the first one
+			invalidFileFormat();
+		}
+		rowConsumer.accept(row);
+		rowCount++;
+		return row;
+	}
+
+	/**
+	 * Reads the map file, setting the header data and passing each row on as soon as it's read
+	 * The whole map is never held by the reader, so files of any size can be read in constant memory
+	 * @param rowConsumer Given the tile codes of each row. The array is reused for the next row, and its length is the map width
+	 */
+	public void read(Consumer<byte[]> rowConsumer) {
+		// Opens a FileChannel, which is closed automatically once the map has been read
+		try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+			readRows(channel, rowConsumer); // Reads the rows using FileChannel
+		} catch (IOException | InvalidPathException e) {
+			System.out.println(e.toString()); // Prints error message
+			System.exit(0); // Exits program
+		}
+	}
+
+	/**
+	 * Gets the name of the map. Set once the first line has been read
+	 * @return The map name
+	 */
+	public String getMapName() {
+		return mapName;
+	}
+
+	/**
+	 * Gets the gold required to win the game. Set once the second line has been read
+	 * @return The gold required to win the game
+	 */
+	public int getGoldRequired() {
+		return goldRequired;
+	}
+
+	/**
+	 * Gets the width of the map
+	 * @return The map width, or -1 if no rows have been read
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the number of rows read so far
+	 * @return The number of rows
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+}
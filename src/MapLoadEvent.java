@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for loading a map with Map.load, recorded when instrumentation is on (see GameStats)
+ */
+@Name("dungeon.MapLoad")
+@Label("Map Load")
+@Category("Dungeon of Doom")
+@Description("Reading a text or binary map file")
+public class MapLoadEvent extends Event {
+
+    /**
+     * The path of the map file
+     */
+    @Label("Path")
+    String path;
+    /**
+     * The name of the map
+     */
+    @Label("Map Name")
+    String mapName;
+    /**
+     * The width of the map
+     */
+    @Label("Width")
+    int width;
+    /**
+     * The height of the map
+     */
+    @Label("Height")
+    int height;
+}
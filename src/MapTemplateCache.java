@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Class to hold the maps of every map file loaded in the process as templates, which games copy rather than reading the
+ * file again. A template's tiles are shared by all its copies and never changed, so each game only keeps which gold it
+ * has picked up (Map.shareTiles)
+ *
+ * Templates are kept by the file's path, with its size and time last modified. If the file has changed since, it's read
+ * again, and games already playing keep the template they were copied from. The thread which puts an entry in reads the
+ * file after it has, without holding any lock of the cache, and other threads wanting the same template wait for it
+ */
+public class MapTemplateCache {
+
+    /**
+     * A template, which may still be being read, with what the file was like when it was read
+     */
+    private static class Entry {
+
+        /**
+         * The time the file was last modified when it was read
+         */
+        private final long lastModified;
+        /**
+         * The size of the file in bytes when it was read
+         */
+        private final long size;
+        /**
+         * Reads the template, which must never be changed, once it's run by the thread which put the entry in
+         */
+        private final FutureTask<Map> template;
+
+        /**
+         * The constructor for Entry
+         * @param attributes The file's attributes when it was read
+         * @param filePath The path of the map file, which is read when the template is
+         */
+        private Entry(BasicFileAttributes attributes, String filePath) {
+            lastModified = attributes.lastModifiedTime().toMillis();
+            size = attributes.size();
+            template = new FutureTask<>(() -> load(filePath));
+        }
+
+        /**
+         * Gets the template, waiting for it to be read if it hasn't been yet
+         * @return The template
+         */
+        private Map getTemplate() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return template.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true; // The game can't start without the map, so the interrupt is kept for later
+                    }
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause(); // Thrown again here, as it would have been by reading the file here
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw (RuntimeException) cause; // Loading only throws unchecked exceptions
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Checks whether the file is as it was when it was read
+         * @param attributes The file's attributes now
+         * @return True if it hasn't changed
+         */
+        private boolean matches(BasicFileAttributes attributes) {
+            return attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == size;
+        }
+    }
+
+    /**
+     * The templates, keyed by the absolute path of their file
+     */
+    private static final ConcurrentHashMap<Path, Entry> TEMPLATES = new ConcurrentHashMap<>();
+    /**
+     * The number of templates found in the cache
+     */
+    private static long hits;
+    /**
+     * The number of templates which had to be read from their file
+     */
+    private static long misses;
+
+    /**
+     * MapTemplateCache only has static methods
+     */
+    private MapTemplateCache() {
+    }
+
+    /**
+     * Gets the template of a map file, reading it only if it isn't cached or the file has changed since
+     * Games must play on copies of the template (new Map(template)), never on the template itself
+     * @param filePath The path of the map file
+     * @return The template
+     */
+    public static Map get(String filePath) {
+        Path path = null;
+        BasicFileAttributes attributes = null;
+        try {
+            path = Paths.get(filePath).toAbsolutePath().normalize();
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+
+        Entry entry = TEMPLATES.get(path);
+        boolean hit = entry != null && entry.matches(attributes);
+        if (!hit) {
+            // Only the entry is put in under the key's lock, so sessions starting together on a new map read it once,
+            // and a slow read doesn't hold up other keys
+            Entry fresh = new Entry(attributes, filePath);
+            BasicFileAttributes current = attributes;
+            entry = TEMPLATES.compute(path, (key, old) -> old != null && old.matches(current) ? old : fresh);
+            hit = entry != fresh; // Put in by another thread, which reads the file
+            if (!hit) {
+                fresh.template.run();
+            }
+        }
+        synchronized (MapTemplateCache.class) {
+            if (hit) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        try {
+            return entry.getTemplate();
+        } catch (RuntimeException | Error e) {
+            TEMPLATES.remove(path, entry); // The next game tries the file again
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a map file into a template
+     * @param filePath The path of the map file
+     * @return The template
+     */
+    private static Map load(String filePath) {
+        Map template = Map.load(filePath).shareTiles();
+        template.getChecksum(); // Calculated once here, so every game's copy of the template already has it
+        template.getPathHierarchy(); // Likewise built once here, so no game's turn waits for it
+        return template;
+    }
+
+    /**
+     * Drops every template. Games already playing keep the templates they were copied from
+     */
+    public static void clear() {
+        TEMPLATES.clear();
+    }
+
+    /**
+     * Gets the number of templates found in the cache
+     * @return The number of hits
+     */
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of templates which had to be read from their file
+     * @return The number of misses
+     */
+    public static synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,604 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class to create a bot which chooses its moves with Monte Carlo tree search, using as much time as it's given
+ * The bot still LOOKs every few turns, as the heuristic bot does. For every other turn, it plays thousands of short
+ * simulated futures (rollouts) of the game on forks of its own copy of the map, following the real game rules. In each,
+ * the human player starts where it might be given what the bot has seen: near where it was last seen, or anywhere the
+ * bot hasn't just looked. The move whose rollouts went best is played
+ *
+ * Rollouts run on a pool of threads, which share one search tree of the bot's moves. The tree is updated without locks:
+ * each move's visit count and total reward are atomic, and a visit is counted as soon as a rollout picks the move, before
+ * its reward is known (a virtual loss), so threads searching at once spread out over different moves
+ */
+public class MctsBotPlayer extends BotPlayer {
+
+    /**
+     * The number of turns the bot moves for after each LOOK, before looking again
+     */
+    private static final int LOOK_INTERVAL = 3;
+    /**
+     * The number of rounds each rollout lasts, unless the human player is caught sooner
+     */
+    private static final int ROLLOUT_ROUNDS = 24;
+    /**
+     * The number of times a move must be tried before the tree grows below it
+     */
+    private static final int EXPAND_VISITS = 2;
+    /**
+     * How much the search favours trying moves it knows little about over moves which have done well
+     */
+    private static final double EXPLORATION = 0.7;
+    /**
+     * Rewards are kept as fixed point numbers, so they can be added atomically
+     */
+    private static final double REWARD_SCALE = 1 << 20;
+    /**
+     * The most turns after seeing the human player that it's assumed to still be nearby
+     */
+    private static final int MAX_TRACKED_TURNS = 12;
+    /**
+     * The chance of the bot moving straight towards the human player in a rollout, past the moves in the tree
+     */
+    private static final double GREEDY_CHANCE = 0.8;
+    /**
+     * The chance of the human player moving straight away from the bot in a rollout, rather than at random
+     */
+    private static final double FLEE_CHANCE = 0.5;
+    /**
+     * The most attempts to find a position for the human player when it hasn't been seen for a while
+     */
+    private static final int MAX_SAMPLE_ATTEMPTS = 100;
+    /**
+     * The directions of moves, indexed by action
+     */
+    private static final char[] DIRECTIONS = {'N', 'S', 'E', 'W'};
+    /**
+     * The horizontal change of each action
+     */
+    private static final int[] X_MOVES = {0, 0, 1, -1};
+    /**
+     * The vertical change of each action
+     */
+    private static final int[] Y_MOVES = {-1, 1, 0, 0};
+
+    /**
+     * A position in the search tree, reached by a sequence of the bot's moves from the current turn
+     * The human player's moves aren't part of the tree, so each rollout passing through a node can be in a different state
+     */
+    private static final class Node {
+
+        /**
+         * The number of rollouts which have made each move from here, including ones still running
+         */
+        private final AtomicLongArray visits = new AtomicLongArray(DIRECTIONS.length);
+        /**
+         * The total reward of the finished rollouts which made each move from here, scaled by REWARD_SCALE
+         */
+        private final AtomicLongArray rewards = new AtomicLongArray(DIRECTIONS.length);
+        /**
+         * The node reached by each move, or null if the tree hasn't grown there yet
+         */
+        private final AtomicReferenceArray<Node> children = new AtomicReferenceArray<>(DIRECTIONS.length);
+    }
+
+    /**
+     * A thread's share of the search, with its own fork of the game to play rollouts on
+     */
+    private final class Worker implements Callable<Long> {
+
+        /**
+         * The fork rollouts are played on, which is restored to the current turn before each one
+         */
+        private final Game game;
+        /**
+         * The fork's human player
+         */
+        private final HumanPlayer human;
+        /**
+         * The fork's bot
+         */
+        private final BotPlayer bot;
+        /**
+         * Chooses the moves played in rollouts
+         */
+        private final SplittableRandom random;
+        /**
+         * The nodes a rollout passed through
+         */
+        private final Node[] pathNodes = new Node[ROLLOUT_ROUNDS];
+        /**
+         * The move the rollout made from each node it passed through
+         */
+        private final int[] pathActions = new int[ROLLOUT_ROUNDS];
+
+        /**
+         * The constructor for Worker
+         * @param game The fork to play rollouts on
+         * @param seed The seed used to choose moves
+         */
+        private Worker(Game game, long seed) {
+            this.game = game;
+            human = game.getHumanPlayer();
+            bot = game.getBotPlayer();
+            random = new SplittableRandom(seed);
+        }
+
+        /**
+         * Plays rollouts until the time budget or the rollout limit runs out
+         * @return The number of rollouts played
+         */
+        @Override
+        public Long call() {
+            long count = 0;
+            while (System.nanoTime() < deadline && remainingRollouts.getAndDecrement() > 0) {
+                playRollout(this);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The bot's copy of the map. It's only read while the search runs
+     */
+    private final Map map;
+    /**
+     * A game on the bot's map, which is given the bot's position each turn and snapshotted for the search
+     */
+    private final Game model;
+    /**
+     * Runs the workers
+     */
+    private final ExecutorService executor;
+    /**
+     * The workers, one per thread
+     */
+    private final List<Worker> workers = new ArrayList<>();
+    /**
+     * Chooses positions of the human player and moves when the search couldn't
+     */
+    private final SplittableRandom random;
+    /**
+     * How long the bot searches each turn, in nanoseconds
+     */
+    private final long budgetNanos;
+    /**
+     * The most rollouts played each turn
+     */
+    private long maxRollouts = Long.MAX_VALUE;
+    /**
+     * The number of rollouts played since the bot was created
+     */
+    private final AtomicLong rolloutCount = new AtomicLong();
+    /**
+     * The number of turns the bot has taken
+     */
+    private int turn;
+    /**
+     * The turn the bot last looked, or -1 if it hasn't yet
+     */
+    private int lookTurn = -1;
+    /**
+     * The horizontal position the bot last looked from
+     */
+    private int lookXPos;
+    /**
+     * The vertical position the bot last looked from
+     */
+    private int lookYPos;
+    /**
+     * How far the bot could see in each direction when it last looked
+     */
+    private int lookRadius;
+    /**
+     * The field of view the bot last looked with, or null if it saw the whole square around it
+     */
+    private FieldOfView lookFieldOfView;
+    /**
+     * The tiles the bot saw when it last looked with a field of view
+     */
+    private long[] lookVisible;
+    /**
+     * The turn the human player was last seen, or -1 if it hasn't been seen
+     */
+    private int sightingTurn = -1;
+    /**
+     * The horizontal position the human player was last seen at
+     */
+    private int sightingXPos;
+    /**
+     * The vertical position the human player was last seen at
+     */
+    private int sightingYPos;
+    /**
+     * The root of the current turn's search tree
+     */
+    private Node root;
+    /**
+     * The state of the game at the start of the current turn's search
+     */
+    private GameSnapshot rootSnapshot;
+    /**
+     * The time the current turn's search stops, from System.nanoTime
+     */
+    private volatile long deadline;
+    /**
+     * The number of rollouts the current turn's search can still start
+     */
+    private final AtomicLong remainingRollouts = new AtomicLong();
+
+    /**
+     * The constructor for MctsBotPlayer
+     * @param playerChar The character to represent the player on the map
+     * @param map The map the game is played on. The bot keeps a fork of it, so it must have the same walls as the game's map
+     * @param threadCount The number of threads to run rollouts on
+     * @param budgetMillis How long the bot searches for each move
+     * @param seed The seed used to choose rollouts
+     */
+    public MctsBotPlayer(char playerChar, Map map, int threadCount, long budgetMillis, long seed) {
+        super(playerChar, seed);
+        this.map = map.fork();
+        budgetNanos = budgetMillis * 1_000_000;
+        random = new SplittableRandom(seed);
+        // The model's players are moved to where each turn's search needs them, so where they start doesn't matter
+        model = new Game(this.map, new HumanPlayer('P', null, null), new BotPlayer(playerChar, seed), seed);
+        for (int i = 0; i < threadCount; i++) {
+            workers.add(new Worker(model.fork(), random.nextLong()));
+        }
+        executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "mcts-worker");
+            thread.setDaemon(true); // The threads never stop the program from exiting
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the most rollouts played for each move, on top of the time budget, e.g. so searches can be compared
+     * @param maxRollouts The number of rollouts
+     */
+    public void setMaxRollouts(long maxRollouts) {
+        this.maxRollouts = maxRollouts;
+    }
+
+    /**
+     * Gets the number of rollouts the bot has played
+     * @return The number of rollouts since the bot was created
+     */
+    public long getRolloutCount() {
+        return rolloutCount.get();
+    }
+
+    /**
+     * Gets a command from the bot: a LOOK every few turns, or the move chosen by searching
+     * @return The command, from Command
+     */
+    @Override
+    public int getCommand() {
+        turn++;
+        if (lookTurn < 0 || turn - lookTurn > LOOK_INTERVAL) {
+            return Command.LOOK;
+        }
+        return chooseMove();
+    }
+
+    /**
+     * Remembers where the bot looked from, and where the human player was if it was seen
+     * @param view The grid view produced by the command, in row-major order
+     * @param viewWidth The width and height of the grid
+     * @param opponentPlayerChar The opponent's player char to search for
+     */
+    @Override
+    public void processLookResult(char[] view, int viewWidth, char opponentPlayerChar) {
+        lookTurn = turn;
+        lookXPos = getXPos();
+        lookYPos = getYPos();
+        lookRadius = (viewWidth - 1) / 2;
+        lookFieldOfView = null;
+        for (int i = 0; i < view.length; i++) {
+            if (view[i] == opponentPlayerChar) {
+                sightingTurn = turn;
+                sightingXPos = lookXPos + i % viewWidth - lookRadius;
+                sightingYPos = lookYPos + i / viewWidth - lookRadius;
+            }
+        }
+    }
+
+    /**
+     * Remembers where the bot looked from and which tiles it saw, and where the human player was if it was seen
+     * @param fieldOfView The field of view the bot looked with
+     * @param visible The tiles the bot can see
+     * @param opponentXPos The horizontal coordinate of the human player
+     * @param opponentYPos The vertical coordinate of the human player
+     */
+    @Override
+    public void processVisibleTiles(FieldOfView fieldOfView, long[] visible, int opponentXPos, int opponentYPos) {
+        lookTurn = turn;
+        lookXPos = getXPos();
+        lookYPos = getYPos();
+        lookRadius = fieldOfView.getRadius();
+        lookFieldOfView = fieldOfView;
+        lookVisible = visible;
+        if (fieldOfView.isVisible(visible, opponentXPos - lookXPos, opponentYPos - lookYPos)) {
+            sightingTurn = turn;
+            sightingXPos = opponentXPos;
+            sightingYPos = opponentYPos;
+        }
+    }
+
+    /**
+     * Searches for the best move from the bot's current position, using all threads until the budget runs out
+     * @return The move command, from Command
+     */
+    public int chooseMove() {
+        model.getBotPlayer().setPos(getXPos(), getYPos());
+        rootSnapshot = model.snapshot();
+        root = new Node();
+        remainingRollouts.set(maxRollouts);
+        deadline = System.nanoTime() + budgetNanos;
+
+        try {
+            for (Future<Long> result : executor.invokeAll(workers)) {
+                rolloutCount.addAndGet(result.get());
+            }
+        } catch (ExecutionException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Plays the best move found so far
+        }
+
+        // Plays the move tried the most, which is the most reliable choice as the best moves are tried the most
+        int best = -1;
+        long bestVisits = 0;
+        for (int action = 0; action < DIRECTIONS.length; action++) {
+            if (root.visits.get(action) > bestVisits) {
+                best = action;
+                bestVisits = root.visits.get(action);
+            }
+        }
+        if (best == -1) { // No rollouts finished in time, so any open direction is taken
+            best = randomOpenAction(getXPos(), getYPos(), random);
+        }
+        return Command.move(DIRECTIONS[best]);
+    }
+
+    /**
+     * Plays one rollout, from the current turn until the human player is caught or the rollout runs out of rounds
+     * Moves are chosen from the tree while the rollout is in it, then by simple rules past it
+     * @param worker The worker playing the rollout
+     */
+    private void playRollout(Worker worker) {
+        Game game = worker.game;
+        game.restore(rootSnapshot);
+        placeOpponent(worker);
+
+        Node node = root;
+        int treeDepth = 0;
+        int rounds = 0;
+        int closest = Integer.MAX_VALUE; // The closest the bot got to the human player
+        while (rounds < ROLLOUT_ROUNDS) {
+            int action;
+            if (node != null) {
+                action = selectAction(node, worker);
+                worker.pathNodes[treeDepth] = node;
+                worker.pathActions[treeDepth++] = action;
+                node = getChild(node, action);
+            } else {
+                action = chaseAction(worker);
+            }
+            game.playTurn(worker.bot, Command.move(DIRECTIONS[action]));
+            if (!game.isActive()) {
+                break;
+            }
+            game.playTurn(worker.human, Command.move(DIRECTIONS[fleeAction(worker)]));
+            if (!game.isActive()) {
+                break;
+            }
+            closest = Math.min(closest, Math.abs(worker.bot.getXPos() - worker.human.getXPos())
+                    + Math.abs(worker.bot.getYPos() - worker.human.getYPos()));
+            rounds++;
+        }
+
+        // Catching the human player is always best, and sooner is better. Otherwise, getting closer to it at any point is better,
+        // as the bot would see it from there
+        double reward;
+        if (game.getOutcome() == GameResult.Outcome.BOT_WIN) {
+            reward = 1 - 0.5 * rounds / ROLLOUT_ROUNDS;
+        } else {
+            reward = 0.5 * Math.max(0, 1 - closest / (2.0 * ROLLOUT_ROUNDS));
+        }
+        long scaledReward = (long) (reward * REWARD_SCALE);
+        for (int i = 0; i < treeDepth; i++) { // The visits were already counted when the moves were chosen
+            worker.pathNodes[i].rewards.addAndGet(worker.pathActions[i], scaledReward);
+        }
+    }
+
+    /**
+     * Puts the fork's human player where it might be, given what the bot has seen
+     * @param worker The worker playing the rollout
+     */
+    private void placeOpponent(Worker worker) {
+        int turnsSinceSighting = turn - sightingTurn;
+        if (sightingTurn >= 0 && turnsSinceSighting <= MAX_TRACKED_TURNS) {
+            // Seen recently, so it's wherever a random walk from there has taken it
+            int xPos = sightingXPos;
+            int yPos = sightingYPos;
+            for (int i = 0; i < turnsSinceSighting; i++) {
+                int action = randomOpenAction(xPos, yPos, worker.random);
+                if (!map.isWall(xPos + X_MOVES[action], yPos + Y_MOVES[action])) {
+                    xPos += X_MOVES[action];
+                    yPos += Y_MOVES[action];
+                }
+            }
+            worker.human.setPos(xPos, yPos);
+            return;
+        }
+
+        // Not seen for a while, so it's on any floor the bot didn't see it on when it last looked
+        int xPos = 0;
+        int yPos = 0;
+        for (int attempt = 0; attempt < MAX_SAMPLE_ATTEMPTS; attempt++) {
+            xPos = worker.random.nextInt(map.getMapWidth());
+            yPos = worker.random.nextInt(map.getMapHeight());
+            if (!map.isWall(xPos, yPos) && !sawTile(xPos, yPos)) {
+                break;
+            }
+        }
+        worker.human.setPos(xPos, yPos);
+    }
+
+    /**
+     * Checks if the bot saw a tile when it last looked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return True if the tile was in sight
+     */
+    private boolean sawTile(int xPos, int yPos) {
+        if (lookFieldOfView != null) {
+            return lookFieldOfView.isVisible(lookVisible, xPos - lookXPos, yPos - lookYPos);
+        }
+        return Math.abs(xPos - lookXPos) <= lookRadius && Math.abs(yPos - lookYPos) <= lookRadius;
+    }
+
+    /**
+     * Chooses the bot's move from a node of the tree, balancing moves which have done well against moves tried least
+     * The move's visit is counted straight away, so other threads see it as a loss until the rollout's reward is added
+     * @param node The node
+     * @param worker The worker playing the rollout
+     * @return The action
+     */
+    private int selectAction(Node node, Worker worker) {
+        int xPos = worker.bot.getXPos();
+        int yPos = worker.bot.getYPos();
+        long totalVisits = 0;
+        for (int action = 0; action < DIRECTIONS.length; action++) {
+            totalVisits += node.visits.get(action);
+        }
+        double logVisits = Math.log(Math.max(totalVisits, 1));
+
+        int start = worker.random.nextInt(DIRECTIONS.length); // Starts at a random move, so ties are broken at random
+        int best = start;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            int action = (start + i) & 3;
+            if (map.isWall(xPos + X_MOVES[action], yPos + Y_MOVES[action])) {
+                continue; // Moving into a wall wastes the turn, so it's never worth trying
+            }
+            long visits = node.visits.get(action);
+            if (visits == 0) {
+                best = action;
+                break;
+            }
+            double score = node.rewards.get(action) / (REWARD_SCALE * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+            if (score > bestScore) {
+                best = action;
+                bestScore = score;
+            }
+        }
+        node.visits.incrementAndGet(best);
+        return best;
+    }
+
+    /**
+     * Gets the node reached by a move, growing the tree there once the move has been tried enough
+     * @param node The node the move is made from
+     * @param action The move
+     * @return The child node, or null if the tree doesn't reach there yet
+     */
+    private static Node getChild(Node node, int action) {
+        Node child = node.children.get(action);
+        if (child == null && node.visits.get(action) >= EXPAND_VISITS) {
+            node.children.compareAndSet(action, null, new Node()); // Only one thread's node is kept
+            child = node.children.get(action);
+        }
+        return child;
+    }
+
+    /**
+     * Chooses the bot's move past the tree: usually the move which gets it closest to the human player, sometimes any
+     * @param worker The worker playing the rollout
+     * @return The action
+     */
+    private int chaseAction(Worker worker) {
+        if (worker.random.nextDouble() >= GREEDY_CHANCE) {
+            return randomOpenAction(worker.bot.getXPos(), worker.bot.getYPos(), worker.random);
+        }
+        return bestOpenAction(worker.bot, worker.human, -1, worker.random);
+    }
+
+    /**
+     * Chooses the human player's move in a rollout: sometimes the move which gets it furthest from the bot, otherwise any
+     * @param worker The worker playing the rollout
+     * @return The action
+     */
+    private int fleeAction(Worker worker) {
+        if (worker.random.nextDouble() >= FLEE_CHANCE) {
+            return randomOpenAction(worker.human.getXPos(), worker.human.getYPos(), worker.random);
+        }
+        return bestOpenAction(worker.human, worker.bot, 1, worker.random);
+    }
+
+    /**
+     * Finds the move which changes a player's distance to another player the most in one direction
+     * @param mover The player moving
+     * @param other The other player
+     * @param sign 1 to move as far away as possible, or -1 to get as close as possible
+     * @param random Breaks ties
+     * @return The action, or a random one if every direction is a wall
+     */
+    private int bestOpenAction(Player mover, Player other, int sign, SplittableRandom random) {
+        int start = random.nextInt(DIRECTIONS.length);
+        int best = start;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            int action = (start + i) & 3;
+            int xPos = mover.getXPos() + X_MOVES[action];
+            int yPos = mover.getYPos() + Y_MOVES[action];
+            if (map.isWall(xPos, yPos)) {
+                continue;
+            }
+            int score = sign * (Math.abs(xPos - other.getXPos()) + Math.abs(yPos - other.getYPos()));
+            if (score > bestScore) {
+                best = action;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Chooses a random direction which isn't into a wall
+     * @param xPos The horizontal position moved from
+     * @param yPos The vertical position moved from
+     * @param random Chooses the direction
+     * @return The action, or a random one if every direction is a wall
+     */
+    private int randomOpenAction(int xPos, int yPos, SplittableRandom random) {
+        int start = random.nextInt(DIRECTIONS.length);
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            int action = (start + i) & 3;
+            if (!map.isWall(xPos + X_MOVES[action], yPos + Y_MOVES[action])) {
+                return action;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Stops the bot's threads. The bot can't choose moves afterwards
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
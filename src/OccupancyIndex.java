@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * Class to keep track of which players are standing on which map positions
+ * Positions are kept in a spatial hash keyed by the packed (x, y) coordinates, so finding the players on a position
+ * takes the same time no matter how many players are in the game. Players sharing a position are chained in order of
+ * their index in the players array, so the player nearest the start of the array is always found first
+ */
+public class OccupancyIndex {
+
+    /**
+     * Marks an empty slot in the hash table. No valid map position packs to this key
+     */
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    /**
+     * Marks the end of a chain of players
+     */
+    private static final int NO_PLAYER = -1;
+
+    /**
+     * All players in the index, where a player's id is its index in the array
+     */
+    private final Player[] players;
+    /**
+     * The id of the next player on the same position as each player, or NO_PLAYER if it's the last one
+     */
+    private final int[] nextOccupant;
+    /**
+     * Whether each player has been given a position yet
+     */
+    private final boolean[] placed;
+    /**
+     * The packed positions stored in the hash table
+     */
+    private final long[] keys;
+    /**
+     * The id of the first player on the position in the matching slot of keys
+     */
+    private final int[] firstOccupants;
+    /**
+     * Used to wrap slot numbers around the hash table. The table's size is a power of 2
+     */
+    private final int mask;
+
+    /**
+     * The constructor for OccupancyIndex. It joins every player to the index, using their position in the array as their id
+     * @param players All players in the game. Players nearer the start of the array get higher priority if overlapping
+     */
+    public OccupancyIndex(Player[] players) {
+        this.players = players;
+        nextOccupant = new int[players.length];
+        placed = new boolean[players.length];
+        // There's never more occupied positions than players, so the table is kept at most half full
+        int capacity = Math.max(Integer.highestOneBit(Math.max(players.length, 1)) * 4, 4);
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        firstOccupants = new int[capacity];
+        mask = capacity - 1;
+        for (int id = 0; id < players.length; id++) {
+            players[id].joinOccupancyIndex(this, id);
+        }
+    }
+
+    /**
+     * Packs a position into a single hash key
+     * @param xPos The horizontal coordinate
+     * @param yPos The vertical coordinate
+     * @return The packed key
+     */
+    private static long packPosition(int xPos, int yPos) {
+        return ((long) yPos << 32) | (xPos & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the slot a key would be stored in if there were no collisions
+     * @param key The packed position
+     * @return The home slot of the key
+     */
+    private int homeSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it would be added
+     * @param key The packed position
+     * @return The slot number
+     */
+    private int findSlot(long key) {
+        int slot = homeSlot(key);
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask; // Linear probing
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot, shifting back any later keys in the same probe sequence so they can still be found
+     * @param slot The slot to empty
+     */
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            // The key can fill the hole if the hole lies between its home slot and where it currently is
+            if (((next - homeSlot(keys[next])) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                firstOccupants[hole] = firstOccupants[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY_KEY;
+    }
+
+    /**
+     * Adds a player to a position, keeping the chain of players on it in id order
+     * @param id The id of the player
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     */
+    private void addPlayer(int id, int xPos, int yPos) {
+        long key = packPosition(xPos, yPos);
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY_KEY) { // First player on the position
+            keys[slot] = key;
+            firstOccupants[slot] = id;
+            nextOccupant[id] = NO_PLAYER;
+        } else if (id < firstOccupants[slot]) { // Player becomes the first on the position
+            nextOccupant[id] = firstOccupants[slot];
+            firstOccupants[slot] = id;
+        } else { // Player is inserted further down the chain
+            int previous = firstOccupants[slot];
+            while (nextOccupant[previous] != NO_PLAYER && nextOccupant[previous] < id) {
+                previous = nextOccupant[previous];
+            }
+            nextOccupant[id] = nextOccupant[previous];
+            nextOccupant[previous] = id;
+        }
+    }
+
+    /**
+     * Removes a player from a position
+     * @param id The id of the player
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     */
+    private void removePlayer(int id, int xPos, int yPos) {
+        int slot = findSlot(packPosition(xPos, yPos));
+        if (firstOccupants[slot] == id) {
+            if (nextOccupant[id] == NO_PLAYER) {
+                deleteSlot(slot); // Position is now empty
+            } else {
+                firstOccupants[slot] = nextOccupant[id];
+            }
+        } else {
+            int previous = firstOccupants[slot];
+            while (nextOccupant[previous] != id) {
+                previous = nextOccupant[previous];
+            }
+            nextOccupant[previous] = nextOccupant[id];
+        }
+    }
+
+    /**
+     * Updates the index when a player changes position
+     * @param id The id of the player
+     * @param oldXPos The horizontal coordinate the player is moving from
+     * @param oldYPos The vertical coordinate the player is moving from
+     * @param newXPos The horizontal coordinate the player is moving to
+     * @param newYPos The vertical coordinate the player is moving to
+     */
+    public void movePlayer(int id, int oldXPos, int oldYPos, int newXPos, int newYPos) {
+        if (placed[id]) { // Players are only in the index once they've been given a position
+            removePlayer(id, oldXPos, oldYPos);
+        }
+        addPlayer(id, newXPos, newYPos);
+        placed[id] = true;
+    }
+
+    /**
+     * Gets the player shown at a position. If several players overlap, the one nearest the start of the players array is returned
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return The first player at the position, or null if there isn't one
+     */
+    public Player getFirstOccupant(int xPos, int yPos) {
+        int slot = findSlot(packPosition(xPos, yPos));
+        return keys[slot] == EMPTY_KEY ? null : players[firstOccupants[slot]];
+    }
+
+    /**
+     * Draws the players standing inside a square area onto a view of it. If several players overlap, the one nearest
+     * the start of the players array is drawn. When there are fewer players than cells, each player's position is
+     * checked, and otherwise each cell is looked up in the index
+     * @param left The horizontal coordinate of the view's left column
+     * @param top The vertical coordinate of the view's top row
+     * @param viewWidth The width and height of the view
+     * @param view The view's characters in row-major order, which players are drawn over
+     */
+    public void drawPlayers(int left, int top, int viewWidth, char[] view) {
+        if (players.length < viewWidth * viewWidth) {
+            // Goes backwards, so players nearer the start of the array are drawn last and end up on top
+            for (int id = players.length - 1; id >= 0; id--) {
+                if (placed[id]) {
+                    int x = players[id].getXPos() - left;
+                    int y = players[id].getYPos() - top;
+                    if (x >= 0 && y >= 0 && x < viewWidth && y < viewWidth) {
+                        view[y * viewWidth + x] = players[id].getPlayerChar();
+                    }
+                }
+            }
+        } else {
+            for (int y = 0; y < viewWidth; y++) {
+                for (int x = 0; x < viewWidth; x++) {
+                    Player occupant = getFirstOccupant(left + x, top + y);
+                    if (occupant != null) {
+                        view[y * viewWidth + x] = occupant.getPlayerChar();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if any player is at a position
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return True if the position is occupied
+     */
+    public boolean isOccupied(int xPos, int yPos) {
+        return keys[findSlot(packPosition(xPos, yPos))] != EMPTY_KEY;
+    }
+
+    /**
+     * Checks if more than one player is at a position
+     * @param xPos The horizontal coordinate of the position
+     * @param yPos The vertical coordinate of the position
+     * @return True if at least two players share the position
+     */
+    public boolean isShared(int xPos, int yPos) {
+        int slot = findSlot(packPosition(xPos, yPos));
+        return keys[slot] != EMPTY_KEY && nextOccupant[firstOccupants[slot]] != NO_PLAYER;
+    }
+}
@@ -0,0 +1,189 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Class to store the tiles of a map outside the Java heap, in a direct buffer or a buffer mapped straight from a binary
+ * map file, so however large the map is, the garbage collector never has to look at it or copy it
+ *
+ * The tiles are packed 2 bits each, in the same layout as a PackedTileStore and a binary map file, and read 32 at a time
+ * as little-endian longs through a VarHandle. The store is never changed once made, so one store can be shared by every
+ * game on the map without copying it: copies are overlays over it, which hold only the tiles changed since
+ */
+public class OffHeapTileStore implements TileStore {
+
+    /**
+     * The character of each tile, indexed by tile code
+     */
+    private static final char[] TILE_CHARS = {'.', '#', 'G', 'E'};
+    /**
+     * Reads 8 bytes of a buffer as a long. Little-endian, so tile i of a long is in bits 2i and 2i + 1, as it is in the bytes
+     */
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The packed tile codes, four tiles per byte, from index 0
+     */
+    private final ByteBuffer tiles;
+    /**
+     * The number of bytes of packed tiles
+     */
+    private final int byteLength;
+    /**
+     * The number of tiles in each row
+     */
+    private final int width;
+    /**
+     * The number of rows
+     */
+    private final int height;
+
+    /**
+     * The constructor for OffHeapTileStore, for tiles which are already packed in a buffer
+     * @param width The number of tiles in each row
+     * @param height The number of rows
+     * @param packedTiles The packed tile codes, from the buffer's position to its limit. They must never be changed after this
+     */
+    public OffHeapTileStore(int width, int height, ByteBuffer packedTiles) {
+        long size = (long) width * height;
+        if ((size + 3) >>> 2 != packedTiles.remaining()) {
+            throw new IllegalArgumentException("The buffer holds " + packedTiles.remaining() + " bytes, not "
+                    + ((size + 3) >>> 2) + " for " + width + "x" + height + " tiles");
+        }
+        this.width = width;
+        this.height = height;
+        tiles = packedTiles.slice(); // Indexes from the first tile, and its position can't be moved by anyone else
+        byteLength = tiles.remaining();
+    }
+
+    /**
+     * Copies a packed tile store into a direct buffer
+     * @param store The store to copy
+     * @return The off-heap store
+     */
+    public static OffHeapTileStore copyOf(PackedTileStore store) {
+        return copyOf(store.getWidth(), store.getHeight(), store.toPackedBytes());
+    }
+
+    /**
+     * Copies packed tiles into a direct buffer
+     * @param width The number of tiles in each row
+     * @param height The number of rows
+     * @param packedTiles The packed tile codes, four tiles per byte, as returned by PackedTileStore.toPackedBytes
+     * @return The off-heap store
+     */
+    public static OffHeapTileStore copyOf(int width, int height, byte[] packedTiles) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(packedTiles.length);
+        buffer.put(packedTiles).flip();
+        return new OffHeapTileStore(width, height, buffer);
+    }
+
+    /**
+     * Reads the 32 tiles of a long
+     * @param byteIndex The index of the long's first byte, a multiple of 8
+     * @return The packed tiles. Past the last tile, they're floor
+     */
+    private long getWord(int byteIndex) {
+        if (byteIndex + Long.BYTES <= byteLength) {
+            return (long) WORDS.get(tiles, byteIndex);
+        }
+        long word = 0; // The last long can run off the end of the buffer, so it's read a byte at a time
+        for (int i = byteIndex; i < byteLength; i++) {
+            word |= (tiles.get(i) & 0xFFL) << ((i - byteIndex) << 3);
+        }
+        return word;
+    }
+
+    /**
+     * Gets the code of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The tile code
+     */
+    @Override
+    public int getTileCode(int xPos, int yPos) {
+        long tileIndex = (long) yPos * width + xPos;
+        return (int) (getWord((int) (tileIndex >>> 5) << 3) >>> ((tileIndex & 31) << 1)) & 3;
+    }
+
+    /**
+     * Off-heap stores can't be changed, as they may be shared or mapped from a file. Maps wrap them in an overlay instead
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param tileCode The new code of the tile
+     */
+    @Override
+    public void setTileCode(int xPos, int yPos, int tileCode) {
+        throw new UnsupportedOperationException("Off-heap tile stores can't be changed; use an OverlayTileStore over them");
+    }
+
+    /**
+     * Gets the character of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The character of the tile
+     */
+    @Override
+    public char getChar(int xPos, int yPos) {
+        return TILE_CHARS[getTileCode(xPos, yPos)];
+    }
+
+    /**
+     * Decodes the characters of a run of tiles in one row into an array, reading each long of tiles once. The positions
+     * aren't range checked
+     * @param xPos The horizontal coordinate of the first tile
+     * @param yPos The vertical coordinate of the row
+     * @param length The number of tiles to copy
+     * @param dest The array to copy into
+     * @param destPos The position in the array to copy the first character to
+     */
+    @Override
+    public void getChars(int xPos, int yPos, int length, char[] dest, int destPos) {
+        long tileIndex = (long) yPos * width + xPos;
+        int i = 0;
+        while (i < length) {
+            long word = getWord((int) (tileIndex >>> 5) << 3) >>> ((tileIndex & 31) << 1);
+            int end = i + Math.min(32 - (int) (tileIndex & 31), length - i); // Up to the end of the long, or of the run
+            tileIndex += end - i;
+            for (; i < end; i++, word >>>= 2) {
+                dest[destPos + i] = TILE_CHARS[(int) word & 3];
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of the store in constant time, as an overlay over it, since the store itself never changes
+     * @return The copy, which can be changed without affecting this store
+     */
+    @Override
+    public TileStore copy() {
+        return new OverlayTileStore(this);
+    }
+
+    /**
+     * Gets the number of bytes the tiles take up outside the heap
+     * @return The number of bytes
+     */
+    public long getSizeInBytes() {
+        return byteLength;
+    }
+
+    /**
+     * Gets the number of tiles in each row
+     * @return The width of the store
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows
+     * @return The height of the store
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
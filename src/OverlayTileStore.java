@@ -0,0 +1,189 @@
+/**
+ * Class to store the tiles of a map as changes over a base store, which is shared with other overlays and never changed
+ * Copying an overlay takes constant time: the copy shares both the base and the array of changes. The array is never
+ * changed once it has been filled in, so a tile change creates a new array (copy on write). Games only ever remove gold,
+ * so there are few changes, and the base only has to be held once however many copies are made
+ */
+public class OverlayTileStore implements TileStore {
+
+    /**
+     * The changes of a store with none
+     */
+    private static final long[] NO_CHANGES = new long[0];
+
+    /**
+     * The tiles before any change. They must never be changed while an overlay uses them
+     */
+    private final TileStore base;
+    /**
+     * The changed tiles, sorted by row-major tile index. Each holds the tile index shifted left by 2, with the new tile code
+     * in the low 2 bits. The array can be shared between copies, so it's replaced rather than changed
+     */
+    private long[] changes;
+    /**
+     * The number of tiles in each row
+     */
+    private final int width;
+    /**
+     * The number of rows
+     */
+    private final int height;
+
+    /**
+     * The constructor for OverlayTileStore, with no changes over a base store
+     * @param base The tiles before any change. The caller must never change them after this
+     */
+    public OverlayTileStore(TileStore base) {
+        this.base = base;
+        changes = NO_CHANGES;
+        width = base.getWidth();
+        height = base.getHeight();
+    }
+
+    /**
+     * The copy constructor for OverlayTileStore. It shares the other store's base and changes, so it takes constant time
+     * @param other The store to copy
+     */
+    public OverlayTileStore(OverlayTileStore other) {
+        base = other.base;
+        changes = other.changes;
+        width = other.width;
+        height = other.height;
+    }
+
+    /**
+     * Finds the change to a tile
+     * @param tileIndex The row-major index of the tile
+     * @return The index of the change, or (-(insertion point) - 1) if the tile hasn't changed, as with Arrays.binarySearch
+     */
+    private int findChange(long tileIndex) {
+        int low = 0;
+        int high = changes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midIndex = changes[mid] >>> 2;
+            if (midIndex < tileIndex) {
+                low = mid + 1;
+            } else if (midIndex > tileIndex) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Gets the code of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The tile code
+     */
+    @Override
+    public int getTileCode(int xPos, int yPos) {
+        if (changes.length != 0) {
+            int i = findChange((long) yPos * width + xPos);
+            if (i >= 0) {
+                return (int) (changes[i] & 3);
+            }
+        }
+        return base.getTileCode(xPos, yPos);
+    }
+
+    /**
+     * Sets the code of the tile at the specified position, by replacing the array of changes. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param tileCode The new code of the tile
+     */
+    @Override
+    public void setTileCode(int xPos, int yPos, int tileCode) {
+        long tileIndex = (long) yPos * width + xPos;
+        long change = (tileIndex << 2) | tileCode;
+        int i = findChange(tileIndex);
+        long[] newChanges;
+        if (i >= 0) { // Replaces the earlier change to the tile
+            newChanges = changes.clone();
+            newChanges[i] = change;
+        } else { // Inserts the change, keeping the changes sorted
+            int insertAt = -(i + 1);
+            newChanges = new long[changes.length + 1];
+            System.arraycopy(changes, 0, newChanges, 0, insertAt);
+            newChanges[insertAt] = change;
+            System.arraycopy(changes, insertAt, newChanges, insertAt + 1, changes.length - insertAt);
+        }
+        changes = newChanges;
+    }
+
+    /**
+     * Checks if the tile at the specified position is a wall. The position isn't range checked
+     * Unchanged tiles are checked in the base, e.g. using its wall bitmap
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return True if the tile is a wall
+     */
+    @Override
+    public boolean isWall(int xPos, int yPos) {
+        if (changes.length != 0) {
+            int i = findChange((long) yPos * width + xPos);
+            if (i >= 0) {
+                return (changes[i] & 3) == WALL;
+            }
+        }
+        return base.isWall(xPos, yPos);
+    }
+
+    /**
+     * Copies the characters of a run of tiles in one row into an array. The run is copied from the base, then the
+     * changes inside it are applied
+     * @param xPos The horizontal coordinate of the first tile
+     * @param yPos The vertical coordinate of the row
+     * @param length The number of tiles to copy
+     * @param dest The array to copy into
+     * @param destPos The position in the array to copy the first character to
+     */
+    @Override
+    public void getChars(int xPos, int yPos, int length, char[] dest, int destPos) {
+        base.getChars(xPos, yPos, length, dest, destPos);
+        long firstIndex = (long) yPos * width + xPos;
+        int i = findChange(firstIndex);
+        for (i = i >= 0 ? i : -(i + 1); i < changes.length && (changes[i] >>> 2) < firstIndex + length; i++) {
+            dest[destPos + (int) ((changes[i] >>> 2) - firstIndex)] = TileStore.getTileChar((int) (changes[i] & 3));
+        }
+    }
+
+    /**
+     * Creates a copy of the store, sharing its base and changes
+     * @return The copy
+     */
+    @Override
+    public OverlayTileStore copy() {
+        return new OverlayTileStore(this);
+    }
+
+    /**
+     * Gets the number of tiles which have been changed from the base
+     * @return The number of changes
+     */
+    public int getChangeCount() {
+        return changes.length;
+    }
+
+    /**
+     * Gets the number of tiles in each row
+     * @return The width of the store
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows
+     * @return The height of the store
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+
+/**
+ * Class to store the tiles of a map in one flat, packed array
+ * Each tile is stored as a 2-bit code, four tiles to a byte, in row-major order.
+ * Walls are also kept in a separate bitmap, so a movement check only needs to read a single bit
+ */
+public class PackedTileStore implements TileStore {
+
+    /**
+     * The character of each tile, indexed by tile code
+     */
+    private static final char[] TILE_CHARS = {'.', '#', 'G', 'E'};
+    /**
+     * The wall bits of the 4 tiles in a packed byte, indexed by the unsigned value of the byte
+     */
+    private static final byte[] WALL_NIBBLES = createWallNibbles();
+
+    /**
+     * The packed tile codes, four tiles per byte
+     */
+    private byte[] tiles;
+    /**
+     * A bitmap with a bit set for every wall tile
+     */
+    private long[] walls;
+    /**
+     * The number of tiles in each row
+     */
+    private final int width;
+    /**
+     * The number of rows stored
+     */
+    private int height;
+
+    /**
+     * The constructor for PackedTileStore. The store starts empty, and grows as rows are added
+     * @param width The number of tiles in each row. Must be greater than 0
+     * @param rowCapacity The number of rows to allocate space for initially
+     */
+    public PackedTileStore(int width, int rowCapacity) {
+        this.width = width;
+        long capacity = Math.max((long) width * Math.max(rowCapacity, 1), 64);
+        tiles = new byte[byteIndex(capacity - 1) + 1];
+        walls = new long[wallIndex(capacity - 1) + 1];
+        height = 0;
+    }
+
+    /**
+     * The constructor for PackedTileStore, for tiles which are already packed, e.g. read from a binary map file
+     * The wall bitmap is built from the packed tiles a byte at a time
+     * @param width The number of tiles in each row. Must be greater than 0
+     * @param height The number of rows
+     * @param packedTiles The packed tile codes, four tiles per byte, as returned by toPackedBytes. The store takes ownership of the array
+     */
+    public PackedTileStore(int width, int height, byte[] packedTiles) {
+        this.width = width;
+        this.height = height;
+        long size = (long) width * height;
+        tiles = packedTiles;
+        walls = new long[size == 0 ? 0 : wallIndex(size - 1) + 1];
+        for (int i = 0; i < tiles.length; i++) {
+            // Each byte holds 4 tiles, so 16 bytes fill one long of the bitmap
+            walls[i >>> 4] |= (long) WALL_NIBBLES[tiles[i] & 0xFF] << ((i & 15) << 2);
+        }
+    }
+
+    /**
+     * The copy constructor for PackedTileStore. The copy has its own storage, so changes to one store don't affect the other
+     * @param other The store to copy
+     */
+    public PackedTileStore(PackedTileStore other) {
+        width = other.width;
+        height = other.height;
+        tiles = other.tiles.clone();
+        walls = other.walls.clone();
+    }
+
+    /**
+     * Creates the table of the wall bits of every packed byte
+     * @return The table, indexed by the unsigned value of a byte
+     */
+    private static byte[] createWallNibbles() {
+        byte[] table = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            for (int tile = 0; tile < 4; tile++) {
+                if (((b >> (tile << 1)) & 3) == WALL) {
+                    table[b] |= (byte) (1 << tile);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Gets the index of the byte holding a tile
+     * @param tileIndex The row-major index of the tile
+     * @return The index in the tile array
+     */
+    private static int byteIndex(long tileIndex) {
+        return (int) (tileIndex >>> 2);
+    }
+
+    /**
+     * Gets the index of the long holding a tile's wall bit
+     * @param tileIndex The row-major index of the tile
+     * @return The index in the wall bitmap
+     */
+    private static int wallIndex(long tileIndex) {
+        return (int) (tileIndex >>> 6);
+    }
+
+    /**
+     * Gets the shift of a tile's 2-bit code within its byte
+     * @param tileIndex The row-major index of the tile
+     * @return The number of bits to shift by
+     */
+    private static int bitShift(long tileIndex) {
+        return (int) (tileIndex & 3) << 1;
+    }
+
+    /**
+     * Adds a row after the last row added, growing the store if it's full
+     * @param tileCodes An array containing the codes of the tiles in the row. Only the first width codes are used
+     */
+    public void addRow(byte[] tileCodes) {
+        long rowStart = (long) width * height;
+        long rowEnd = rowStart + width;
+        if (byteIndex(rowEnd - 1) >= tiles.length) { // Doubles the storage when full
+            int newLength = Math.max(tiles.length * 2, byteIndex(rowEnd - 1) + 1);
+            tiles = Arrays.copyOf(tiles, newLength);
+            walls = Arrays.copyOf(walls, wallIndex((long) newLength * 4 - 1) + 1);
+        }
+        long tileIndex = rowStart;
+        for (int x = 0; x < width; x++, tileIndex++) {
+            int tileCode = tileCodes[x];
+            long wallBit = ((tileCode ^ WALL) - 1) >>> 31; // 1 if the tile is a wall, without branching on the tile
+            // The store only ever grows, so the bits being written are still clear
+            tiles[byteIndex(tileIndex)] |= (byte) (tileCode << bitShift(tileIndex));
+            walls[wallIndex(tileIndex)] |= wallBit << tileIndex;
+        }
+        height++;
+    }
+
+    /**
+     * Shrinks the storage to fit the rows which have been added
+     */
+    public void trimToSize() {
+        long size = (long) width * height;
+        tiles = Arrays.copyOf(tiles, size == 0 ? 0 : byteIndex(size - 1) + 1);
+        walls = Arrays.copyOf(walls, size == 0 ? 0 : wallIndex(size - 1) + 1);
+    }
+
+    /**
+     * Gets a copy of the packed tile codes, four tiles per byte in row-major order, with no spare bytes at the end
+     * @return The packed tiles
+     */
+    public byte[] toPackedBytes() {
+        long size = (long) width * height;
+        return Arrays.copyOf(tiles, size == 0 ? 0 : byteIndex(size - 1) + 1);
+    }
+
+    /**
+     * Sets the code of a tile, keeping the wall bitmap up to date
+     * @param tileIndex The row-major index of the tile
+     * @param tileCode The new code of the tile
+     */
+    private void setTileCode(long tileIndex, int tileCode) {
+        int shift = bitShift(tileIndex);
+        int i = byteIndex(tileIndex);
+        tiles[i] = (byte) ((tiles[i] & ~(3 << shift)) | (tileCode << shift));
+        if (tileCode == WALL) {
+            walls[wallIndex(tileIndex)] |= 1L << tileIndex;
+        } else {
+            walls[wallIndex(tileIndex)] &= ~(1L << tileIndex);
+        }
+    }
+
+    /**
+     * Gets the code of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The tile code
+     */
+    @Override
+    public int getTileCode(int xPos, int yPos) {
+        long tileIndex = (long) yPos * width + xPos;
+        return (tiles[byteIndex(tileIndex)] >> bitShift(tileIndex)) & 3;
+    }
+
+    /**
+     * Sets the code of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param tileCode The new code of the tile
+     */
+    @Override
+    public void setTileCode(int xPos, int yPos, int tileCode) {
+        setTileCode((long) yPos * width + xPos, tileCode);
+    }
+
+    /**
+     * Gets the character of the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The character of the tile
+     */
+    @Override
+    public char getChar(int xPos, int yPos) {
+        return TILE_CHARS[getTileCode(xPos, yPos)];
+    }
+
+    /**
+     * Decodes the characters of a run of tiles in one row into an array. The positions aren't range checked
+     * @param xPos The horizontal coordinate of the first tile
+     * @param yPos The vertical coordinate of the row
+     * @param length The number of tiles to copy
+     * @param dest The array to copy into
+     * @param destPos The position in the array to copy the first character to
+     */
+    @Override
+    public void getChars(int xPos, int yPos, int length, char[] dest, int destPos) {
+        long tileIndex = (long) yPos * width + xPos;
+        for (int i = 0; i < length; i++, tileIndex++) {
+            dest[destPos + i] = TILE_CHARS[(tiles[byteIndex(tileIndex)] >> bitShift(tileIndex)) & 3];
+        }
+    }
+
+    /**
+     * Checks the wall bitmap for the tile at the specified position. The position isn't range checked
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return True if the tile is a wall
+     */
+    @Override
+    public boolean isWall(int xPos, int yPos) {
+        long tileIndex = (long) yPos * width + xPos;
+        return (walls[wallIndex(tileIndex)] & (1L << tileIndex)) != 0;
+    }
+
+    /**
+     * Creates a copy of the store with its own arrays
+     * @return The copy
+     */
+    @Override
+    public PackedTileStore copy() {
+        return new PackedTileStore(this);
+    }
+
+    /**
+     * Gets the number of tiles in each row
+     * @return The width of the store
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows stored
+     * @return The height of the store
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
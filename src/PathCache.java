@@ -0,0 +1,307 @@
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class to find and remember the first step of shortest paths on a map, so that many bots chasing the same target share the work
+ * Once a path is found, the step to take from every tile on it towards the goal is cached, so a bot following the path
+ * never searches again. Goals which can't be reached are cached too. The cache has a fixed number of entries, and a new entry replaces whatever was in its slot.
+ * Only walls affect paths, so picking up gold leaves entries as they are. Resetting a wall on the cache's map can make
+ * any path shorter, so the cache listens to its map and empties itself when one is. The cache can be shared between threads
+ *
+ * Paths are found by a breadth-first search back from the goal (PathFinder.findPathFromGoal), which takes the same step
+ * from a tile towards a goal whichever start it searched from. So the step cached for a (tile, goal) pair is the step
+ * a search for that pair would find, however it got into the cache, and bots sharing the cache make the same moves
+ * whichever games or threads searched first. Goals far away are searched for on the map's abstract graph
+ * (HierarchicalPathFinder), whose route depends on the start, so only the start's own step is cached for them
+ *
+ * A path finder holds 12 bytes for every tile of the map, so the cache keeps a small pool of them rather than one for
+ * every thread. A thread which misses the cache borrows one for its search, and waits if they're all in use. Many
+ * sessions on their own (e.g. virtual) threads then need no more finders than can search at once
+ */
+public class PathCache implements TileListener {
+
+    /**
+     * Marks an empty slot in the cache. No (start, goal) pair packs to this key
+     */
+    private static final long EMPTY_KEY = -1L;
+    /**
+     * The default maximum number of tiles expanded when searching for a path
+     */
+    public static final int DEFAULT_MAX_EXPANSIONS = 100000;
+    /**
+     * The fewest tiles apart (Manhattan distance) a start and goal must be to search the map's abstract graph rather than
+     * its tiles. Closer goals are found faster by searching the tiles, and their paths are always the shortest
+     */
+    public static final int HIERARCHICAL_MIN_DISTANCE = 4 * PathHierarchy.CLUSTER_SIZE;
+
+    /**
+     * The map the paths are on
+     */
+    private final Map map;
+    /**
+     * The packed (start tile, goal tile) pair held in each slot
+     */
+    private final long[] keys;
+    /**
+     * The direction to move from the start towards the goal in each slot
+     */
+    private final char[] steps;
+    /**
+     * Used to wrap slot numbers around the cache. The cache's size is a power of 2
+     */
+    private final int mask;
+    /**
+     * The maximum number of tiles, or nodes of the abstract graph for long paths, expanded when searching for a path
+     */
+    private final int maxExpansions;
+    /**
+     * The most path finders made, and so the most searches run at once
+     */
+    private final int maxFinders;
+    /**
+     * The path finders which aren't being used by a search
+     */
+    private final ArrayBlockingQueue<Finders> idleFinders;
+    /**
+     * The number of path finders made so far. Guarded by idleFinders
+     */
+    private int finderCount;
+    /**
+     * The number of walls reset on the map, so a search which started before one isn't cached after it
+     */
+    private int wallResets;
+    /**
+     * The number of lookups answered from the cache
+     */
+    private long hits;
+    /**
+     * The number of lookups which needed a search
+     */
+    private long misses;
+
+    /**
+     * Class to hold the path finders one search borrows. They can't be shared, so each is used by one thread at a time
+     */
+    private static class Finders {
+
+        /**
+         * Finds paths over the map's tiles
+         */
+        private final PathFinder pathFinder;
+        /**
+         * Finds paths over the map's abstract graph, or null until the first far goal
+         */
+        private HierarchicalPathFinder hierarchicalPathFinder;
+
+        /**
+         * The constructor for Finders
+         * @param pathFinder Finds paths over the map's tiles
+         */
+        private Finders(PathFinder pathFinder) {
+            this.pathFinder = pathFinder;
+        }
+    }
+
+    /**
+     * The constructor for PathCache, which runs as many searches at once as there are processors
+     * @param map The map the paths are on. Only its walls are used, so copies of the map can share one cache, as long as
+     *            walls are only reset on this map. The cache listens to it, and empties itself when a wall is reset
+     * @param capacity The number of steps the cache can hold. It's rounded up to a power of 2
+     * @param maxExpansions The maximum number of tiles, or graph nodes for long paths, expanded when searching for a path
+     */
+    public PathCache(Map map, int capacity, int maxExpansions) {
+        this(map, capacity, maxExpansions, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The constructor for PathCache
+     * @param map The map the paths are on. Only its walls are used, so copies of the map can share one cache, as long as
+     *            walls are only reset on this map. The cache listens to it, and empties itself when a wall is reset
+     * @param capacity The number of steps the cache can hold. It's rounded up to a power of 2
+     * @param maxExpansions The maximum number of tiles, or graph nodes for long paths, expanded when searching for a path
+     * @param maxFinders The most path finders made, each holding 12 bytes a tile. Searches beyond this many at once wait
+     */
+    public PathCache(Map map, int capacity, int maxExpansions, int maxFinders) {
+        this.map = map;
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        keys = new long[size];
+        Arrays.fill(keys, EMPTY_KEY);
+        steps = new char[size];
+        mask = size - 1;
+        this.maxExpansions = maxExpansions;
+        this.maxFinders = Math.max(maxFinders, 1);
+        idleFinders = new ArrayBlockingQueue<>(this.maxFinders);
+        map.addTileListener(this);
+    }
+
+    /**
+     * Empties the cache when a wall on its map is reset, as the new floor can make any path shorter
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param previousChar The character of the tile before it was reset
+     */
+    @Override
+    public synchronized void tileReset(int xPos, int yPos, char previousChar) {
+        if (previousChar == '#') {
+            Arrays.fill(keys, EMPTY_KEY);
+            wallResets++;
+        }
+    }
+
+    /**
+     * Gets the slot a (start, goal) pair is cached in
+     * @param key The packed pair
+     * @return The slot number
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * Gets the direction of the first step on a shortest path between two positions
+     * @param startX The horizontal coordinate of the start
+     * @param startY The vertical coordinate of the start
+     * @param goalX The horizontal coordinate of the goal
+     * @param goalY The vertical coordinate of the goal
+     * @return The direction to move in (N, E, S or W), or 0 if the goal can't be reached or is the start
+     */
+    public char getNextStep(int startX, int startY, int goalX, int goalY) {
+        int width = map.getMapWidth();
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+        if (start == goal || map.isWall(startX, startY) || map.isWall(goalX, goalY)) {
+            return 0;
+        }
+        long key = ((long) start << 32) | goal;
+        int slot = slot(key);
+
+        int searchWallResets;
+        synchronized (this) {
+            if (keys[slot] == key) {
+                hits++;
+                return steps[slot];
+            }
+            misses++;
+            searchWallResets = wallResets;
+        }
+
+        int[] path;
+        boolean far = Math.abs(startX - goalX) + Math.abs(startY - goalY) >= HIERARCHICAL_MIN_DISTANCE;
+        Finders finders = borrowFinders();
+        try {
+            if (far) {
+                if (finders.hierarchicalPathFinder == null) {
+                    finders.hierarchicalPathFinder = new HierarchicalPathFinder(map, maxExpansions);
+                }
+                path = finders.hierarchicalPathFinder.findPathSegment(startX, startY, goalX, goalY); // Only to the next node
+            } else {
+                path = finders.pathFinder.findPathFromGoal(startX, startY, goalX, goalY);
+            }
+        } finally {
+            idleFinders.add(finders);
+        }
+        if (path == null) {
+            synchronized (this) {
+                if (searchWallResets == wallResets) { // Remembers that there's no path, so the search isn't repeated
+                    store(key, (char) 0);
+                }
+            }
+            return 0;
+        }
+        char step = PathFinder.directionTo(start, path[0], width);
+        if (far) { // The path over the abstract graph depends on the start, so only the start's step is cached
+            synchronized (this) {
+                if (searchWallResets == wallResets) {
+                    store(key, step);
+                }
+            }
+            return step;
+        }
+        // Caches the step from every tile on the path, so following the path needs no more searches. Tiles far enough
+        // from the goal to be searched on the abstract graph are left out, as a search from them would go that way instead
+        synchronized (this) {
+            if (searchWallResets != wallResets) {
+                return step; // A wall was reset during the search, so the path may no longer be the shortest
+            }
+            int from = start;
+            for (int to : path) {
+                if (Math.abs(from % width - goalX) + Math.abs(from / width - goalY) < HIERARCHICAL_MIN_DISTANCE) {
+                    store(((long) from << 32) | goal, PathFinder.directionTo(from, to, width));
+                }
+                from = to;
+            }
+        }
+        return step;
+    }
+
+    /**
+     * Takes path finders from the pool for a search, making them if fewer than maxFinders have been made, or waiting for
+     * another search to finish if not. They must be put back in idleFinders once the search is done
+     * @return The path finders
+     */
+    private Finders borrowFinders() {
+        Finders finders = idleFinders.poll();
+        if (finders != null) {
+            return finders;
+        }
+        boolean make;
+        synchronized (idleFinders) {
+            make = finderCount < maxFinders;
+            if (make) {
+                finderCount++;
+            }
+        }
+        if (make) {
+            return new Finders(new PathFinder(map, maxExpansions));
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return idleFinders.take();
+                } catch (InterruptedException e) {
+                    interrupted = true; // The search still has to finish, so the interrupt is kept for later
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Puts a step in the cache, replacing whatever was in its slot
+     * @param key The packed (start, goal) pair
+     * @param step The direction to move in
+     */
+    private void store(long key, char step) {
+        int slot = slot(key);
+        keys[slot] = key;
+        steps[slot] = step;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache
+     * @return The number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups which needed a search
+     * @return The number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Stops the cache listening to its map. The map holds on to the cache until then, so a cache on a template which
+     * outlives it must be closed, or its slots are kept for as long as the template is
+     */
+    public void close() {
+        map.removeTileListener(this);
+    }
+}
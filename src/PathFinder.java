@@ -0,0 +1,310 @@
+import java.util.Arrays;
+
+/**
+ * Class to find shortest paths between map positions using A* search, or a breadth-first search back from the goal
+ * Moves are one tile north, east, south or west, so the Manhattan distance is used as the heuristic.
+ * The search arrays are kept between searches, so a PathFinder must only be used by one thread at a time
+ */
+public class PathFinder {
+
+    /**
+     * The map being searched
+     */
+    private final Map map;
+    /**
+     * The width of the map
+     */
+    private final int width;
+    /**
+     * The maximum number of tiles expanded by one search, so a search for an unreachable goal can't take too long
+     */
+    private final int maxExpansions;
+    /**
+     * The cost of the best known path from the start to each tile. Only valid for tiles stamped in the current search
+     */
+    private final int[] costs;
+    /**
+     * The tile each tile was reached from on the best known path. Only valid for tiles stamped in the current search
+     */
+    private final int[] previousTiles;
+    /**
+     * For each tile, the number of the last search which reached it
+     */
+    private final int[] searchStamps;
+    /**
+     * The tiles waiting to be expanded, as a binary heap ordered by estimated total cost
+     */
+    private int[] heapTiles;
+    /**
+     * The estimated total cost of each tile in the heap
+     */
+    private int[] heapCosts;
+    /**
+     * The tiles waiting to be visited by a breadth-first search
+     */
+    private int[] queue;
+    /**
+     * The number of the current search. Using a new number each search avoids clearing the arrays
+     */
+    private int searchNumber;
+
+    /**
+     * The constructor for PathFinder
+     * The search arrays hold 12 bytes for every tile of the map, so finders should be shared rather than made per game
+     * @param map The map to search
+     * @param maxExpansions The maximum number of tiles expanded by one search
+     * @throws IllegalArgumentException If the map has more than Map.MAX_TILE_COUNT tiles
+     */
+    public PathFinder(Map map, int maxExpansions) {
+        this.map = map;
+        this.maxExpansions = maxExpansions;
+        width = map.getMapWidth();
+        long tileCount = (long) width * map.getMapHeight();
+        if (tileCount > Map.MAX_TILE_COUNT) {
+            throw new IllegalArgumentException("Map too large to search: " + width + "x" + map.getMapHeight());
+        }
+        costs = new int[(int) tileCount];
+        previousTiles = new int[(int) tileCount];
+        searchStamps = new int[(int) tileCount];
+        heapTiles = new int[64];
+        heapCosts = new int[64];
+        queue = new int[64];
+        searchNumber = 0;
+    }
+
+    /**
+     * Finds a shortest path between two positions
+     * @param startX The horizontal coordinate of the start
+     * @param startY The vertical coordinate of the start
+     * @param goalX The horizontal coordinate of the goal
+     * @param goalY The vertical coordinate of the goal
+     * @return The tile indexes (y * width + x) on the path, from the tile after the start up to the goal,
+     *         or null if the goal can't be reached within the expansion limit
+     */
+    public int[] findPath(int startX, int startY, int goalX, int goalY) {
+        if (map.isWall(startX, startY) || map.isWall(goalX, goalY)) {
+            return null; // Walls and positions off the map can't be part of a path
+        }
+        if (!map.canReach(startX, startY, goalX, goalY)) {
+            return null; // The goal is in another area of the map, so searching would only expand the start's whole area
+        }
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+        int heapSize = 0;
+        int expansions = 0;
+
+        searchNumber++;
+        if (searchNumber == 0) { // Stamps have wrapped around, so old ones could be mistaken for the current search
+            Arrays.fill(searchStamps, 0);
+            searchNumber = 1;
+        }
+        searchStamps[start] = searchNumber;
+        costs[start] = 0;
+        heapSize = push(heapSize, start, distance(startX, startY, goalX, goalY));
+
+        while (heapSize > 0 && expansions < maxExpansions) {
+            int tile = heapTiles[0];
+            int estimate = heapCosts[0];
+            heapSize = pop(heapSize);
+            int x = tile % width;
+            int y = tile / width;
+            if (estimate > costs[tile] + distance(x, y, goalX, goalY)) {
+                continue; // A better path to this tile has been found since it was added to the heap
+            }
+            if (tile == goal) {
+                return buildPath(start, goal);
+            }
+            expansions++;
+            // Relaxes each neighbouring tile which isn't a wall
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                if (!map.isWall(nextX, nextY)) {
+                    int next = nextY * width + nextX;
+                    int cost = costs[tile] + 1;
+                    if (searchStamps[next] != searchNumber || cost < costs[next]) {
+                        searchStamps[next] = searchNumber;
+                        costs[next] = cost;
+                        previousTiles[next] = tile;
+                        heapSize = push(heapSize, next, cost + distance(nextX, nextY, goalX, goalY));
+                    }
+                }
+            }
+        }
+
+        return null; // Goal unreachable, or too far away
+    }
+
+    /**
+     * Finds a shortest path between two positions with a breadth-first search back from the goal
+     * Neighbours are always visited in the same order, and a tile's next step is towards the tile it was first reached
+     * from, so the searches for one goal all grow the same tree, however far they get. The step taken from a tile is
+     * then the same whichever start the path was searched from, so every step on the path can be cached for the goal
+     * @param startX The horizontal coordinate of the start
+     * @param startY The vertical coordinate of the start
+     * @param goalX The horizontal coordinate of the goal
+     * @param goalY The vertical coordinate of the goal
+     * @return The tile indexes (y * width + x) on the path, from the tile after the start up to the goal,
+     *         or null if the goal can't be reached within the expansion limit
+     */
+    public int[] findPathFromGoal(int startX, int startY, int goalX, int goalY) {
+        if (map.isWall(startX, startY) || map.isWall(goalX, goalY)) {
+            return null; // Walls and positions off the map can't be part of a path
+        }
+        if (!map.canReach(startX, startY, goalX, goalY)) {
+            return null; // Different areas, so there's no need to search
+        }
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+
+        searchNumber++;
+        if (searchNumber == 0) { // Stamps have wrapped around, so old ones could be mistaken for the current search
+            Arrays.fill(searchStamps, 0);
+            searchNumber = 1;
+        }
+        searchStamps[goal] = searchNumber;
+        costs[goal] = 0;
+        queue[0] = goal;
+        int tail = 1;
+        for (int head = 0; head < tail && head < maxExpansions && searchStamps[start] != searchNumber; head++) {
+            int tile = queue[head];
+            int x = tile % width;
+            int y = tile / width;
+            // Reaches each neighbouring tile which isn't a wall and hasn't been reached already
+            for (int direction = 0; direction < 4; direction++) {
+                int nextX = x + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = y + (direction == 1 ? 1 : direction == 0 ? -1 : 0);
+                if (!map.isWall(nextX, nextY)) {
+                    int next = nextY * width + nextX;
+                    if (searchStamps[next] != searchNumber) {
+                        searchStamps[next] = searchNumber;
+                        costs[next] = costs[tile] + 1;
+                        previousTiles[next] = tile; // The step towards the goal
+                        if (tail == queue.length) { // Doubles the queue when full
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        if (searchStamps[start] != searchNumber) {
+            return null; // Goal unreachable, or too far away
+        }
+
+        // Follows the steps from the start, which lead to the goal
+        int[] path = new int[costs[start]];
+        int tile = start;
+        for (int i = 0; i < path.length; i++) {
+            tile = previousTiles[tile];
+            path[i] = tile;
+        }
+        return path;
+    }
+
+    /**
+     * Gets the Manhattan distance between two positions
+     * @param x1 The horizontal coordinate of the first position
+     * @param y1 The vertical coordinate of the first position
+     * @param x2 The horizontal coordinate of the second position
+     * @param y2 The vertical coordinate of the second position
+     * @return The distance
+     */
+    private static int distance(int x1, int y1, int x2, int y2) {
+        return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+    }
+
+    /**
+     * Walks back from the goal to the start to build the path found
+     * @param start The tile index of the start
+     * @param goal The tile index of the goal
+     * @return The tile indexes on the path, not including the start
+     */
+    private int[] buildPath(int start, int goal) {
+        int[] path = new int[costs[goal]];
+        int tile = goal;
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = tile;
+            tile = previousTiles[tile];
+        }
+        return path;
+    }
+
+    /**
+     * Adds a tile to the heap
+     * @param heapSize The number of tiles in the heap
+     * @param tile The tile index
+     * @param estimate The estimated total cost of a path through the tile
+     * @return The new number of tiles in the heap
+     */
+    private int push(int heapSize, int tile, int estimate) {
+        if (heapSize == heapTiles.length) { // Doubles the heap when full
+            heapTiles = Arrays.copyOf(heapTiles, heapSize * 2);
+            heapCosts = Arrays.copyOf(heapCosts, heapSize * 2);
+        }
+        int i = heapSize;
+        // Moves the new tile up the heap until its parent isn't more costly
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapCosts[parent] <= estimate) {
+                break;
+            }
+            heapTiles[i] = heapTiles[parent];
+            heapCosts[i] = heapCosts[parent];
+            i = parent;
+        }
+        heapTiles[i] = tile;
+        heapCosts[i] = estimate;
+        return heapSize + 1;
+    }
+
+    /**
+     * Removes the least costly tile from the heap
+     * @param heapSize The number of tiles in the heap
+     * @return The new number of tiles in the heap
+     */
+    private int pop(int heapSize) {
+        heapSize--;
+        int tile = heapTiles[heapSize];
+        int estimate = heapCosts[heapSize];
+        int i = 0;
+        // Moves the last tile down from the top of the heap until its children aren't less costly
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapCosts[child + 1] < heapCosts[child]) {
+                child++;
+            }
+            if (heapCosts[child] >= estimate) {
+                break;
+            }
+            heapTiles[i] = heapTiles[child];
+            heapCosts[i] = heapCosts[child];
+            i = child;
+        }
+        heapTiles[i] = tile;
+        heapCosts[i] = estimate;
+        return heapSize;
+    }
+
+    /**
+     * Gets the direction from a tile to a neighbouring tile
+     * @param from The index of the tile being moved from
+     * @param to The index of the neighbouring tile
+     * @param width The width of the map
+     * @return The direction (N, E, S or W)
+     */
+    public static char directionTo(int from, int to, int width) {
+        if (to == from - width) {
+            return 'N';
+        } else if (to == from + width) {
+            return 'S';
+        } else if (to == from + 1) {
+            return 'E';
+        } else {
+            return 'W';
+        }
+    }
+}
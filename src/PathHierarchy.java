@@ -0,0 +1,520 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Class to hold an abstract graph of a map for finding long paths quickly (HPA*), shared by the map's copies
+ * The map is split into square clusters. Wherever walkable tiles face each other across the border of two clusters, a
+ * run of them is an entrance, and the tiles in the middle of the run (or at both ends of a long run) on each side are
+ * nodes of the graph. Each cluster knows the walking distance between every pair of its nodes without leaving it, and
+ * a node is joined to the nodes it faces across a border, so a search of the graph crosses a cluster in one step
+ *
+ * Each cluster is built from its own tiles and the tiles facing its borders, so when a wall is reset, only its cluster is
+ * built again, along with the cluster across the border if the wall was on one. The graph is never changed once made:
+ * rebuilding a cluster makes a new graph sharing the other clusters, so copies of the map keep the graph they had
+ */
+public class PathHierarchy {
+
+    /**
+     * The width and height of each cluster in tiles, except at the right and bottom of maps they don't divide
+     */
+    public static final int CLUSTER_SIZE = 32;
+    /**
+     * The distance between nodes which can't reach each other inside their cluster
+     */
+    public static final int UNREACHABLE = -1;
+    /**
+     * The distance searches of a cluster give walls, which are never reached
+     */
+    private static final int WALL = -2;
+    /**
+     * The fewest tiles in a run along a border for it to have a node at both ends rather than one in the middle
+     */
+    private static final int SPLIT_ENTRANCE_LENGTH = 6;
+    /**
+     * The fewest tiles in a map for its clusters to be built in parallel
+     */
+    private static final long PARALLEL_MIN_TILES = 1 << 20;
+
+    /**
+     * The nodes of one cluster and the distances between them
+     */
+    private static class Cluster {
+
+        /**
+         * The tile index (y * width + x) of each node, in increasing order
+         */
+        private final int[] nodeTiles;
+        /**
+         * The walking distance inside the cluster from each node to each other, indexed by from * nodeCount + to
+         */
+        private final int[] distances;
+
+        /**
+         * The constructor for Cluster
+         * @param nodeTiles The tile index of each node, in increasing order
+         * @param distances The distances between the nodes
+         */
+        private Cluster(int[] nodeTiles, int[] distances) {
+            this.nodeTiles = nodeTiles;
+            this.distances = distances;
+        }
+    }
+
+    /**
+     * Holds the walls of one cluster and searches it breadth first. Reused between clusters, so it must only be used by one
+     * thread at a time. The cluster is held with a ring of walls around it, so searches never need to check they're still
+     * in the cluster. Tiles are indexed inside the grid by (y + 1) * STRIDE + x + 1, from the cluster's top left tile
+     */
+    static class ClusterGrid {
+
+        /**
+         * The width of the grid: the cluster and the walls either side of it
+         */
+        private static final int STRIDE = CLUSTER_SIZE + 2;
+
+        /**
+         * The distance of each tile from the start of the last search, UNREACHABLE, or WALL
+         */
+        final int[] distances = new int[STRIDE * STRIDE];
+        /**
+         * The distances each search starts from: UNREACHABLE, or WALL for walls, so a search only checks one array
+         * Tiles past the edge of the cluster or the map are walls
+         */
+        private final int[] blank = new int[STRIDE * STRIDE];
+        /**
+         * The tile each tile was reached from in the last search
+         */
+        private final int[] previousTiles = new int[STRIDE * STRIDE];
+        /**
+         * Whether each tile is one a search can stop once it has reached, with all the others
+         */
+        private final boolean[] targets = new boolean[STRIDE * STRIDE];
+        /**
+         * The tiles waiting to be visited in a search
+         */
+        private final int[] queue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+        /**
+         * The horizontal coordinate of the cluster's top left tile on the map
+         */
+        int originX;
+        /**
+         * The vertical coordinate of the cluster's top left tile on the map
+         */
+        int originY;
+        /**
+         * The width of the map, to turn tiles of the cluster into tiles of the map
+         */
+        private int mapWidth;
+
+        /**
+         * The constructor for ClusterGrid. The ring around the cluster is walled once here, and never changed
+         */
+        ClusterGrid() {
+            for (int i = 0; i < STRIDE; i++) {
+                blank[i] = WALL;
+                blank[(STRIDE - 1) * STRIDE + i] = WALL;
+                blank[i * STRIDE] = WALL;
+                blank[i * STRIDE + STRIDE - 1] = WALL;
+            }
+        }
+
+        /**
+         * Reads the walls of a cluster
+         * @param map The map
+         * @param clusterX The column of the cluster
+         * @param clusterY The row of the cluster
+         */
+        void load(Map map, int clusterX, int clusterY) {
+            originX = clusterX * CLUSTER_SIZE;
+            originY = clusterY * CLUSTER_SIZE;
+            mapWidth = map.getMapWidth();
+            for (int y = 0; y < CLUSTER_SIZE; y++) {
+                for (int x = 0; x < CLUSTER_SIZE; x++) {
+                    blank[index(x, y)] = map.isWall(originX + x, originY + y) ? WALL : UNREACHABLE; // Off the map is a wall
+                }
+            }
+        }
+
+        /**
+         * Gets the index inside the grid of a tile of the cluster
+         * @param x The horizontal coordinate of the tile from the cluster's left edge
+         * @param y The vertical coordinate of the tile from the cluster's top edge
+         * @return The index inside the grid
+         */
+        static int index(int x, int y) {
+            return (y + 1) * STRIDE + x + 1;
+        }
+
+        /**
+         * Gets the index inside the grid of a map tile
+         * @param tile The tile index on the map, which must be in the cluster
+         * @return The index inside the grid
+         */
+        int toLocal(int tile) {
+            return index(tile % mapWidth - originX, tile / mapWidth - originY);
+        }
+
+        /**
+         * Gets the tile index on the map of a tile of the cluster
+         * @param local The index inside the grid
+         * @return The tile index on the map
+         */
+        int toTile(int local) {
+            return (originY + local / STRIDE - 1) * mapWidth + originX + local % STRIDE - 1;
+        }
+
+        /**
+         * Finds the distance from a tile to every tile of the cluster, without leaving it
+         * @param start The index inside the grid of the tile to search from, which mustn't be a wall
+         */
+        void search(int start) {
+            search(start, -1);
+        }
+
+        /**
+         * Finds the distance from a tile to the tiles of the cluster, without leaving it, until every target is reached
+         * Tiles the search didn't get to before stopping are left UNREACHABLE
+         * @param start The index inside the grid of the tile to search from, which mustn't be a wall
+         * @param targetCount The number of tiles marked as targets, or -1 to search the whole cluster
+         */
+        private void search(int start, int targetCount) {
+            System.arraycopy(blank, 0, distances, 0, blank.length);
+            distances[start] = 0;
+            queue[0] = start;
+            int tail = 1;
+            int reached = targets[start] ? 1 : 0;
+            for (int head = 0; head < tail && reached != targetCount; head++) {
+                int local = queue[head];
+                int distance = distances[local] + 1;
+                // Visits each neighbouring tile which isn't a wall. The ring of walls keeps the search in the cluster
+                for (int direction = 0; direction < 4; direction++) {
+                    int next = local + (direction == 0 ? -STRIDE : direction == 1 ? STRIDE : direction == 2 ? 1 : -1);
+                    if (distances[next] == UNREACHABLE) {
+                        distances[next] = distance;
+                        previousTiles[next] = local;
+                        queue[tail++] = next;
+                        if (targets[next]) {
+                            reached++;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets the path found by the last search from its start to a tile
+         * @param end The index inside the grid of the tile, which the search must have reached
+         * @return The tile indexes on the map of the path, not including the start
+         */
+        int[] pathTo(int end) {
+            int[] path = new int[distances[end]];
+            int local = end;
+            for (int i = path.length - 1; i >= 0; i--) {
+                path[i] = toTile(local);
+                local = previousTiles[local];
+            }
+            return path;
+        }
+
+        /**
+         * Gets the path found by the last search from a tile back to its start
+         * @param from The index inside the grid of the tile, which the search must have reached
+         * @return The tile indexes on the map of the path, not including the tile, up to the start of the search
+         */
+        int[] pathFrom(int from) {
+            int[] path = new int[distances[from]];
+            int local = from;
+            for (int i = 0; i < path.length; i++) {
+                local = previousTiles[local];
+                path[i] = toTile(local);
+            }
+            return path;
+        }
+    }
+
+    /**
+     * The width of the map
+     */
+    private final int width;
+    /**
+     * The number of columns of clusters
+     */
+    private final int clustersWide;
+    /**
+     * The clusters, in row-major order
+     */
+    private final Cluster[] clusters;
+    /**
+     * The number of the first node of each cluster, with the total number of nodes after the last cluster
+     */
+    private final int[] firstNodes;
+    /**
+     * The cluster of each node, by number
+     */
+    private final int[] nodeClusters;
+
+    /**
+     * The constructor for PathHierarchy. It builds every cluster of a map
+     * @param map The map
+     * @param parallel Whether huge maps' clusters can be built on several threads at once, which chunked maps shouldn't be
+     */
+    public PathHierarchy(Map map, boolean parallel) {
+        width = map.getMapWidth();
+        int height = map.getMapHeight();
+        clustersWide = (width + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        int clustersHigh = (height + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        clusters = new Cluster[clustersWide * clustersHigh];
+        IntStream rows = IntStream.range(0, clustersHigh);
+        if (parallel && (long) width * height >= PARALLEL_MIN_TILES) {
+            rows = rows.parallel();
+        }
+        // Each row of clusters is built with its own grid, and each cluster only reads the map, so rows can be built at once
+        rows.forEach(clusterY -> {
+            ClusterGrid grid = new ClusterGrid();
+            for (int clusterX = 0; clusterX < clustersWide; clusterX++) {
+                clusters[clusterY * clustersWide + clusterX] = buildCluster(map, grid, clusterX, clusterY);
+            }
+        });
+        firstNodes = new int[clusters.length + 1];
+        nodeClusters = numberNodes(clusters, firstNodes);
+    }
+
+    /**
+     * The constructor for PathHierarchy, for a graph with some clusters rebuilt
+     * @param other The graph the clusters were rebuilt from
+     * @param clusters The clusters, with the rebuilt ones replaced
+     */
+    private PathHierarchy(PathHierarchy other, Cluster[] clusters) {
+        width = other.width;
+        clustersWide = other.clustersWide;
+        this.clusters = clusters;
+        firstNodes = new int[clusters.length + 1];
+        nodeClusters = numberNodes(clusters, firstNodes);
+    }
+
+    /**
+     * Numbers the nodes of every cluster in turn
+     * @param clusters The clusters
+     * @param firstNodes Set to the number of the first node of each cluster, with the total number of nodes at the end
+     * @return The cluster of each node, by number
+     */
+    private static int[] numberNodes(Cluster[] clusters, int[] firstNodes) {
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            firstNodes[cluster + 1] = firstNodes[cluster] + clusters[cluster].nodeTiles.length;
+        }
+        int[] nodeClusters = new int[firstNodes[clusters.length]];
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            Arrays.fill(nodeClusters, firstNodes[cluster], firstNodes[cluster + 1], cluster);
+        }
+        return nodeClusters;
+    }
+
+    /**
+     * Builds one cluster: finds its nodes along each border, then searches from each node for the distances to the others
+     * @param map The map
+     * @param grid The grid to read the cluster into
+     * @param clusterX The column of the cluster
+     * @param clusterY The row of the cluster
+     * @return The cluster
+     */
+    private static Cluster buildCluster(Map map, ClusterGrid grid, int clusterX, int clusterY) {
+        grid.load(map, clusterX, clusterY);
+        int[] found = new int[16];
+        int[] count = {0};
+        // The left, right, top and bottom borders, each walked from its first tile, with the direction of the tiles facing it
+        found = findEntrances(map, grid, 0, 0, 0, 1, -1, 0, found, count);
+        found = findEntrances(map, grid, CLUSTER_SIZE - 1, 0, 0, 1, 1, 0, found, count);
+        found = findEntrances(map, grid, 0, 0, 1, 0, 0, -1, found, count);
+        found = findEntrances(map, grid, 0, CLUSTER_SIZE - 1, 1, 0, 0, 1, found, count);
+
+        // Corner tiles can be nodes of two borders, so duplicates are dropped
+        Arrays.sort(found, 0, count[0]);
+        int nodeCount = 0;
+        for (int i = 0; i < count[0]; i++) {
+            if (nodeCount == 0 || found[i] != found[nodeCount - 1]) {
+                found[nodeCount++] = found[i];
+            }
+        }
+
+        int[] distances = new int[nodeCount * nodeCount];
+        int[] nodeTiles = new int[nodeCount];
+        for (int from = 0; from < nodeCount; from++) {
+            grid.targets[found[from]] = true; // Each search stops once it has reached every node
+        }
+        for (int from = 0; from < nodeCount; from++) {
+            nodeTiles[from] = grid.toTile(found[from]);
+            if (from + 1 < nodeCount) {
+                grid.search(found[from], nodeCount);
+                for (int to = from + 1; to < nodeCount; to++) { // Distances are the same both ways
+                    distances[from * nodeCount + to] = grid.distances[found[to]];
+                    distances[to * nodeCount + from] = grid.distances[found[to]];
+                }
+            }
+        }
+        for (int from = 0; from < nodeCount; from++) {
+            grid.targets[found[from]] = false;
+        }
+        return new Cluster(nodeTiles, distances);
+    }
+
+    /**
+     * Finds the runs of walkable tiles along one border of a cluster which face walkable tiles in the next cluster, and
+     * adds the nodes of each run. The cluster on the other side finds the same runs, so the nodes on both sides match
+     * @param map The map
+     * @param grid The grid holding the cluster
+     * @param startX The horizontal coordinate in the cluster of the border's first tile
+     * @param startY The vertical coordinate in the cluster of the border's first tile
+     * @param stepX The horizontal step along the border
+     * @param stepY The vertical step along the border
+     * @param facingX The horizontal step from a border tile to the tile it faces
+     * @param facingY The vertical step from a border tile to the tile it faces
+     * @param found The indexes inside the grid of the nodes found so far
+     * @param count The number of nodes found so far, which is updated
+     * @return The array of nodes found, which may have been replaced by a larger one
+     */
+    private static int[] findEntrances(Map map, ClusterGrid grid, int startX, int startY, int stepX, int stepY,
+                                       int facingX, int facingY, int[] found, int[] count) {
+        int runStart = -1;
+        for (int i = 0; i <= CLUSTER_SIZE; i++) {
+            int x = startX + stepX * i;
+            int y = startY + stepY * i;
+            boolean open = i < CLUSTER_SIZE && grid.blank[ClusterGrid.index(x, y)] != WALL
+                    && !map.isWall(grid.originX + x + facingX, grid.originY + y + facingY);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) { // The run has ended, so its nodes are added
+                if (count[0] + 2 > found.length) {
+                    found = Arrays.copyOf(found, found.length * 2);
+                }
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= SPLIT_ENTRANCE_LENGTH) {
+                    found[count[0]++] = ClusterGrid.index(startX + stepX * runStart, startY + stepY * runStart);
+                    found[count[0]++] = ClusterGrid.index(startX + stepX * runEnd, startY + stepY * runEnd);
+                } else {
+                    int middle = (runStart + runEnd) / 2;
+                    found[count[0]++] = ClusterGrid.index(startX + stepX * middle, startY + stepY * middle);
+                }
+                runStart = -1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Makes a graph for the map after a wall has been reset, rebuilding only the clusters it affects: its own, and the
+     * cluster across the border if the tile was on one. The other clusters are shared with this graph, which isn't changed
+     * @param map The map, with the wall already reset
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The new graph
+     */
+    public PathHierarchy rebuildAt(Map map, int xPos, int yPos) {
+        Cluster[] rebuilt = clusters.clone();
+        ClusterGrid grid = new ClusterGrid();
+        int clusterX = xPos / CLUSTER_SIZE;
+        int clusterY = yPos / CLUSTER_SIZE;
+        int clustersHigh = clusters.length / clustersWide;
+        rebuilt[clusterY * clustersWide + clusterX] = buildCluster(map, grid, clusterX, clusterY);
+        // A border tile changes which tiles face each other across the border, so the cluster there gets new nodes too
+        if (xPos % CLUSTER_SIZE == 0 && clusterX > 0) {
+            rebuilt[clusterY * clustersWide + clusterX - 1] = buildCluster(map, grid, clusterX - 1, clusterY);
+        }
+        if (xPos % CLUSTER_SIZE == CLUSTER_SIZE - 1 && clusterX + 1 < clustersWide) {
+            rebuilt[clusterY * clustersWide + clusterX + 1] = buildCluster(map, grid, clusterX + 1, clusterY);
+        }
+        if (yPos % CLUSTER_SIZE == 0 && clusterY > 0) {
+            rebuilt[(clusterY - 1) * clustersWide + clusterX] = buildCluster(map, grid, clusterX, clusterY - 1);
+        }
+        if (yPos % CLUSTER_SIZE == CLUSTER_SIZE - 1 && clusterY + 1 < clustersHigh) {
+            rebuilt[(clusterY + 1) * clustersWide + clusterX] = buildCluster(map, grid, clusterX, clusterY + 1);
+        }
+        return new PathHierarchy(this, rebuilt);
+    }
+
+    /**
+     * Gets the cluster a position is in
+     * @param xPos The horizontal coordinate of the position, which must be on the map
+     * @param yPos The vertical coordinate of the position, which must be on the map
+     * @return The cluster, numbered in row-major order
+     */
+    public int getClusterAt(int xPos, int yPos) {
+        return yPos / CLUSTER_SIZE * clustersWide + xPos / CLUSTER_SIZE;
+    }
+
+    /**
+     * Gets the number of clusters
+     * @return The number of clusters
+     */
+    public int getClusterCount() {
+        return clusters.length;
+    }
+
+    /**
+     * Gets the number of nodes in every cluster
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return nodeClusters.length;
+    }
+
+    /**
+     * Gets the number of a cluster's first node. Its nodes are numbered in turn from there, in increasing order of tile
+     * @param cluster The cluster
+     * @return The number of the node
+     */
+    public int getFirstNode(int cluster) {
+        return firstNodes[cluster];
+    }
+
+    /**
+     * Gets the number after a cluster's last node
+     * @param cluster The cluster
+     * @return The number of the first node of the next cluster
+     */
+    public int getEndNode(int cluster) {
+        return firstNodes[cluster + 1];
+    }
+
+    /**
+     * Gets the cluster a node is in
+     * @param node The number of the node
+     * @return The cluster
+     */
+    public int getNodeCluster(int node) {
+        return nodeClusters[node];
+    }
+
+    /**
+     * Gets the tile of a node
+     * @param node The number of the node
+     * @return The tile index (y * width + x)
+     */
+    public int getNodeTile(int node) {
+        int cluster = nodeClusters[node];
+        return clusters[cluster].nodeTiles[node - firstNodes[cluster]];
+    }
+
+    /**
+     * Gets the walking distance between two nodes of the same cluster, without leaving the cluster
+     * @param from The number of the first node
+     * @param to The number of the second node, in the same cluster
+     * @return The distance, or UNREACHABLE
+     */
+    public int getDistance(int from, int to) {
+        int cluster = nodeClusters[from];
+        int first = firstNodes[cluster];
+        return clusters[cluster].distances[(from - first) * clusters[cluster].nodeTiles.length + to - first];
+    }
+
+    /**
+     * Finds the node at a tile
+     * @param xPos The horizontal coordinate of the tile, which must be on the map
+     * @param yPos The vertical coordinate of the tile, which must be on the map
+     * @return The number of the node, or -1 if the tile isn't a node
+     */
+    public int findNode(int xPos, int yPos) {
+        int cluster = getClusterAt(xPos, yPos);
+        int local = Arrays.binarySearch(clusters[cluster].nodeTiles, yPos * width + xPos);
+        return local < 0 ? -1 : firstNodes[cluster] + local;
+    }
+}
@@ -0,0 +1,270 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class to keep the cells of a map which players can be placed on: every cell which isn't a wall or gold
+ * Choosing a random cell takes constant time, rather than trying random coordinates until one isn't a wall. The cells
+ * placeable when the map was loaded are held in an array shared by every copy of the map. Cells which become placeable
+ * later, when gold is picked up, are kept by each copy in its own small array. Copies share that too, and it's copied
+ * before either adds to it, so copying an index takes constant time
+ */
+public class PlacementIndex {
+
+    /**
+     * Decides whether a player can be placed on a cell, e.g. because no one is standing on it
+     */
+    public interface CellFilter {
+
+        /**
+         * Checks a cell
+         * @param xPos The horizontal coordinate of the cell
+         * @param yPos The vertical coordinate of the cell
+         * @return True if a player can be placed on it
+         */
+        boolean accepts(int xPos, int yPos);
+    }
+
+    /**
+     * The number of cells the array of added cells starts with room for
+     */
+    private static final int INITIAL_ADDED_CAPACITY = 16;
+    /**
+     * The cells added by a map with none
+     */
+    private static final int[] NO_CELLS = new int[0];
+
+    /**
+     * The number of cells in each row of the map
+     */
+    private final int width;
+    /**
+     * The row-major indexes of the cells which were placeable when the map was loaded. It's shared, so it's never changed
+     */
+    private final int[] loadedCells;
+    /**
+     * The row-major indexes of the cells which have become placeable since, followed by room for more
+     */
+    private int[] addedCells;
+    /**
+     * The number of cells at the start of addedCells which have become placeable
+     */
+    private int addedCount;
+    /**
+     * True if addedCells may be shared with a copy, so it must be copied before it's changed
+     */
+    private boolean addedShared;
+
+    /**
+     * Class to hold which placeable cells are free while players are being placed, for one game. Players are placed
+     * on free cells, which are then taken out, so a full map never has to be searched for the few cells left
+     * The free cells are the index's cells in a different order: the first size slots are free. A cell is taken out by
+     * swapping it with the last free cell, and only the slots and cells which have been swapped are kept, so it takes
+     * memory in proportion to the cells taken out rather than the size of the map
+     */
+    public static class FreeCells {
+
+        /**
+         * The index the cells are from, which mustn't have cells added while they're in use
+         */
+        private final PlacementIndex index;
+        /**
+         * The cell in each slot which has been swapped, by slot
+         */
+        private final TileTable slotCells = new TileTable();
+        /**
+         * The slot of each cell which has been swapped or was added after the map was loaded, by row-major index
+         */
+        private final TileTable cellSlots = new TileTable();
+        /**
+         * The number of free cells
+         */
+        private int size;
+
+        /**
+         * The constructor for FreeCells, where every placeable cell is free
+         * @param index The cells
+         */
+        private FreeCells(PlacementIndex index) {
+            this.index = index;
+            size = index.size();
+            // The loaded cells are in order, so their slots are found by binary search, but added ones need looking up
+            for (int i = 0; i < index.addedCount; i++) {
+                cellSlots.put(index.addedCells[i], index.loadedCells.length + i);
+            }
+        }
+
+        /**
+         * Gets the cell in a slot
+         * @param slot The slot, from 0 to the number of placeable cells - 1
+         * @return The row-major index of the cell
+         */
+        private int cellAt(int slot) {
+            int original = slot < index.loadedCells.length ? index.loadedCells[slot]
+                    : index.addedCells[slot - index.loadedCells.length];
+            return slotCells.get(slot, original);
+        }
+
+        /**
+         * Gets the slot of a cell
+         * @param cell The row-major index of the cell
+         * @return The slot, or -1 if the cell isn't placeable
+         */
+        private int slotOf(int cell) {
+            int slot = cellSlots.get(cell, -1);
+            if (slot == -1) {
+                slot = Math.max(-1, Arrays.binarySearch(index.loadedCells, cell)); // Not found gives a negative number
+            }
+            return slot;
+        }
+
+        /**
+         * Swaps the cells in two slots
+         * @param first The first slot
+         * @param second The second slot
+         */
+        private void swap(int first, int second) {
+            int firstCell = cellAt(first);
+            int secondCell = cellAt(second);
+            slotCells.put(first, secondCell);
+            slotCells.put(second, firstCell);
+            cellSlots.put(secondCell, first);
+            cellSlots.put(firstCell, second);
+        }
+
+        /**
+         * Takes a cell out of the free cells, e.g. because a player has been placed on it
+         * @param cell The row-major index of the cell
+         * @return True if the cell was free
+         */
+        public boolean remove(int cell) {
+            int slot = slotOf(cell);
+            if (slot < 0 || slot >= size) {
+                return false;
+            }
+            size--;
+            swap(slot, size); // The last free cell takes its place
+            return true;
+        }
+
+        /**
+         * Puts a cell which was taken out back into the free cells
+         * @param cell The row-major index of the cell
+         */
+        public void add(int cell) {
+            int slot = slotOf(cell);
+            if (slot >= size) {
+                swap(slot, size); // Moves to just after the free cells, which then include it
+                size++;
+            }
+        }
+
+        /**
+         * Gets the number of free cells
+         * @return The number of cells
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Chooses a free cell at random, where every cell the filter accepts is equally likely
+         * Cells are drawn without replacement: a rejected cell is swapped past the end of the cells left to draw, but
+         * stays free. So it takes constant time unless the filter rejects most cells, and never checks a cell twice
+         * @param random Chooses the cell
+         * @param filter Decides which cells can be chosen
+         * @return The row-major index of the cell, or -1 if the filter accepts none
+         */
+        public int choose(Random random, CellFilter filter) {
+            int width = index.width;
+            int left = size;
+            while (left > 0) {
+                int slot = random.nextInt(left);
+                int cell = cellAt(slot);
+                if (filter.accepts(cell % width, cell / width)) {
+                    return cell;
+                }
+                left--;
+                swap(slot, left);
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The constructor for PlacementIndex. It finds every placeable cell, a row at a time
+     * @param tiles The tiles of the map
+     */
+    public PlacementIndex(TileStore tiles) {
+        width = tiles.getWidth();
+        char[] row = new char[width];
+        int[] cells = new int[Math.max(width, 16)];
+        int count = 0;
+        for (int yPos = 0; yPos < tiles.getHeight(); yPos++) {
+            tiles.getChars(0, yPos, width, row, 0);
+            for (int xPos = 0; xPos < width; xPos++) {
+                if (row[xPos] != '#' && row[xPos] != 'G') {
+                    if (count == cells.length) {
+                        cells = Arrays.copyOf(cells, cells.length * 2);
+                    }
+                    cells[count++] = yPos * width + xPos;
+                }
+            }
+        }
+        loadedCells = Arrays.copyOf(cells, count);
+        addedCells = NO_CELLS;
+    }
+
+    /**
+     * The copy constructor for PlacementIndex. It shares the other index's arrays, so it takes constant time
+     * @param other The index to copy. Its added cells are copied before it adds to them again
+     */
+    public PlacementIndex(PlacementIndex other) {
+        width = other.width;
+        loadedCells = other.loadedCells;
+        addedCells = other.addedCells;
+        addedCount = other.addedCount;
+        addedShared = true;
+        if (other.addedCells != NO_CELLS) { // Templates never add cells, so copying them from many threads writes nothing
+            other.addedShared = true;
+        }
+    }
+
+    /**
+     * Adds a cell which has become placeable, e.g. because the gold on it was picked up
+     * The array of added cells doubles when it's full, so adding every gold on a map takes time in proportion to the gold
+     * @param xPos The horizontal coordinate of the cell
+     * @param yPos The vertical coordinate of the cell
+     */
+    public void add(int xPos, int yPos) {
+        if (addedShared || addedCount == addedCells.length) {
+            int capacity = addedCount == addedCells.length ? Math.max(INITIAL_ADDED_CAPACITY, addedCount * 2) : addedCells.length;
+            addedCells = Arrays.copyOf(addedCells, capacity);
+            addedShared = false;
+        }
+        addedCells[addedCount++] = yPos * width + xPos;
+    }
+
+    /**
+     * Gets the number of placeable cells
+     * @return The number of cells
+     */
+    public int size() {
+        return loadedCells.length + addedCount;
+    }
+
+    /**
+     * Gets the placeable cells, all free, to place a game's players on
+     * @return The free cells, which must be used before any more cells are added to the index
+     */
+    public FreeCells freeCells() {
+        return new FreeCells(this);
+    }
+
+    /**
+     * Gets the number of cells in each row, to turn the row-major indexes of cells into coordinates
+     * @return The width of the map
+     */
+    public int getWidth() {
+        return width;
+    }
+}
@@ -15,6 +15,14 @@ public abstract class Player {
      * The character used to represent the player
      */
     private final char playerChar;
+    /**
+     * The index which tracks the player's position, or null if the player isn't in one
+     */
+    private OccupancyIndex occupancyIndex;
+    /**
+     * The player's id in the occupancy index
+     */
+    private int playerId;
 
     /**
      * Constructor for Player
@@ -26,9 +34,9 @@ public abstract class Player {
 
     /**
      * Abstract method to get the player's command on their turn
-     * @return An array containing each word of the command
+     * @return The command, from Command
      */
-    public abstract String[] getCommand();
+    public abstract int getCommand();
 
     /**
      * Moves the player's position by an x and y value
@@ -36,8 +44,7 @@ public abstract class Player {
      * @param yMove The vertical displacement
      */
     public void move(int xMove, int yMove) {
-        xPos += xMove;
-        yPos += yMove;
+        setPos(xPos + xMove, yPos + yMove);
     }
 
     /**
@@ -70,7 +77,20 @@ public abstract class Player {
      * @param yPos The y coordinate to move the player to
      */
     public void setPos(int xPos, int yPos) {
+        if (occupancyIndex != null) { // Keeps the occupancy index up to date
+            occupancyIndex.movePlayer(playerId, this.xPos, this.yPos, xPos, yPos);
+        }
         this.xPos = xPos;
         this.yPos = yPos;
     }
+
+    /**
+     * Joins the player to an occupancy index, which is updated whenever the player changes position
+     * @param occupancyIndex The index to join
+     * @param playerId The player's id in the index
+     */
+    public void joinOccupancyIndex(OccupancyIndex occupancyIndex, int playerId) {
+        this.occupancyIndex = occupancyIndex;
+        this.playerId = playerId;
+    }
 }
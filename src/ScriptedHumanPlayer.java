@@ -0,0 +1,37 @@
+/**
+ * Class to create a human player which plays a fixed list of commands instead of reading the console
+ */
+public class ScriptedHumanPlayer extends HumanPlayer {
+
+    /**
+     * The commands to play, in order, parsed from how they would be typed on the console
+     */
+    private final int[] script;
+    /**
+     * The index of the next command to play
+     */
+    private int scriptPos;
+
+    /**
+     * The constructor for ScriptedHumanPlayer
+     * @param playerChar The character to represent the player on the map
+     * @param script The commands to play, in order. Once they run out, the player quits
+     */
+    public ScriptedHumanPlayer(char playerChar, String... script) {
+        super(playerChar);
+        this.script = new int[script.length];
+        for (int i = 0; i < script.length; i++) {
+            this.script[i] = Command.parse(script[i]);
+        }
+        scriptPos = 0;
+    }
+
+    /**
+     * Gets the next command in the script
+     * @return The command, from Command
+     */
+    @Override
+    public int getCommand() {
+        return scriptPos < script.length ? script[scriptPos++] : Command.QUIT; // Quits once the script has run out
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Random;
+
+/**
+ * Class to create a computer-controlled human player, used to play games without the console
+ * Unlike the bot, it can see the whole map. Each turn it picks up gold if it's standing on some, quits if it's on an
+ * exit with enough gold, and otherwise moves along the shortest path to the nearest gold (or exit, once it has enough).
+ * Shortest paths are read from distance fields, which are kept up to date as gold is picked up
+ */
+public class SimulatedHumanPlayer extends HumanPlayer {
+
+    /**
+     * The map being played on
+     */
+    private final Map map;
+    /**
+     * Used to choose a direction when there's nothing reachable to head for
+     */
+    private final Random random;
+    /**
+     * The distance from every tile to the nearest gold
+     */
+    private final DistanceField goldField;
+    /**
+     * The distance from every tile to the nearest exit
+     */
+    private final DistanceField exitField;
+
+    /**
+     * The constructor for SimulatedHumanPlayer. It builds its own distance fields for the map
+     * @param playerChar The character to represent the player on the map
+     * @param map The map being played on
+     * @param seed The seed for the player's random choices
+     */
+    public SimulatedHumanPlayer(char playerChar, Map map, long seed) {
+        this(playerChar, map, new DistanceField(map, 'G'), new DistanceField(map, 'E'), seed);
+    }
+
+    /**
+     * The constructor for SimulatedHumanPlayer, with distance fields which have already been built
+     * The gold field is joined to the map so it's updated when gold is picked up
+     * @param playerChar The character to represent the player on the map
+     * @param map The map being played on
+     * @param goldField The distance field to gold on the map. It mustn't be shared with other maps
+     * @param exitField The distance field to exits on the map. Exits never change, so it can be shared with copies of the map
+     * @param seed The seed for the player's random choices
+     */
+    public SimulatedHumanPlayer(char playerChar, Map map, DistanceField goldField, DistanceField exitField, long seed) {
+        super(playerChar);
+        this.map = map;
+        this.goldField = goldField;
+        this.exitField = exitField;
+        random = new Random(seed);
+        map.addTileListener(goldField);
+    }
+
+    /**
+     * Selects a command for the player
+     * @return The command, from Command
+     */
+    @Override
+    public int getCommand() {
+        char currentTile = map.getCharAtPos(getXPos(), getYPos());
+        boolean enoughGold = getGold() >= map.getGoldRequired();
+
+        if (currentTile == 'G' && !enoughGold) {
+            return Command.PICKUP;
+        } else if (currentTile == 'E' && enoughGold) {
+            return Command.QUIT;
+        }
+        char direction = (enoughGold ? exitField : goldField).getNextStep(getXPos(), getYPos());
+        if (direction == 0 && !enoughGold) { // No gold left to collect, so the best option is to leave
+            direction = exitField.getNextStep(getXPos(), getYPos());
+            if (direction == 0 && currentTile == 'E') {
+                return Command.QUIT;
+            }
+        }
+        if (direction == 0) { // Nothing reachable, so moves in a random direction
+            direction = "NESW".charAt(random.nextInt(4));
+        }
+
+        return Command.move(direction);
+    }
+}
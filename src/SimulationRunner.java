@@ -0,0 +1,281 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class to play many independent headless games across all processor cores and report statistics about them
+ * Every game gets its own copy of the map and its own seed, worked out from the base seed and the game's number,
+ * so the results are the same however many threads are used
+ */
+public class SimulationRunner {
+
+    /**
+     * The number of games each task plays before handing back its statistics
+     */
+    private static final int GAMES_PER_TASK = 1000;
+    /**
+     * The number of path steps the shared path cache can hold
+     */
+    private static final int PATH_CACHE_SIZE = 1 << 20;
+
+    /**
+     * The map which every game starts from a copy of
+     */
+    private final Map mapTemplate;
+    /**
+     * The number of rounds after which a game is stopped
+     */
+    private final int maxRounds;
+    /**
+     * The seed which each game's seed is worked out from
+     */
+    private final long baseSeed;
+    /**
+     * Finds paths for the bots of every game. All games are played on copies of the same map, so they share one cache
+     */
+    private final PathCache pathCache;
+    /**
+     * The distance field to gold on the map template, copied for each game as gold is picked up
+     */
+    private final DistanceField goldFieldTemplate;
+    /**
+     * The distance field to exits, shared by every game as exits never change
+     */
+    private final DistanceField exitField;
+    /**
+     * The journal every game is recorded to, or null if games aren't recorded
+     */
+    private GameJournal journal;
+
+    /**
+     * Class to collect statistics about a group of games
+     */
+    private static class Statistics {
+
+        /**
+         * The number of games which ended with each outcome, indexed by the outcome's ordinal
+         */
+        private final long[] outcomeCounts = new long[GameResult.Outcome.values().length];
+        /**
+         * The number of games which lasted each number of rounds, indexed by the number of rounds
+         */
+        private final long[] roundCounts;
+        /**
+         * The number of games played
+         */
+        private long games;
+        /**
+         * The total number of rounds played in all games
+         */
+        private long totalRounds;
+
+        /**
+         * The constructor for Statistics
+         * @param maxRounds The largest number of rounds a game can last
+         */
+        private Statistics(int maxRounds) {
+            roundCounts = new long[maxRounds + 1];
+        }
+
+        /**
+         * Adds the result of a game to the statistics
+         * @param result The result of the game
+         */
+        private void add(GameResult result) {
+            outcomeCounts[result.getOutcome().ordinal()]++;
+            roundCounts[result.getRounds()]++;
+            games++;
+            totalRounds += result.getRounds();
+        }
+
+        /**
+         * Adds another group's statistics to these
+         * @param other The statistics to add
+         */
+        private void add(Statistics other) {
+            for (int i = 0; i < outcomeCounts.length; i++) {
+                outcomeCounts[i] += other.outcomeCounts[i];
+            }
+            for (int i = 0; i < roundCounts.length; i++) {
+                roundCounts[i] += other.roundCounts[i];
+            }
+            games += other.games;
+            totalRounds += other.totalRounds;
+        }
+
+        /**
+         * Finds the number of rounds which a given fraction of games lasted no longer than
+         * @param fraction The fraction of games, between 0 and 1
+         * @return The number of rounds
+         */
+        private int roundsPercentile(double fraction) {
+            long target = (long) Math.ceil(fraction * games);
+            long seen = 0;
+            for (int rounds = 0; rounds < roundCounts.length; rounds++) {
+                seen += roundCounts[rounds];
+                if (seen >= Math.max(target, 1)) {
+                    return rounds;
+                }
+            }
+            return roundCounts.length - 1;
+        }
+    }
+
+    /**
+     * The constructor for SimulationRunner
+     * @param mapTemplate The map which every game starts from a copy of. It isn't changed by the games
+     * @param maxRounds The number of rounds after which a game is stopped
+     * @param baseSeed The seed which each game's seed is worked out from
+     */
+    public SimulationRunner(Map mapTemplate, int maxRounds, long baseSeed) {
+        this.mapTemplate = mapTemplate.shareTiles(); // Each game's copy then only keeps which of the gold it has picked up
+        this.maxRounds = maxRounds;
+        this.baseSeed = baseSeed;
+        pathCache = new PathCache(mapTemplate, PATH_CACHE_SIZE, PathCache.DEFAULT_MAX_EXPANSIONS);
+        goldFieldTemplate = new DistanceField(mapTemplate, 'G');
+        exitField = new DistanceField(mapTemplate, 'E');
+    }
+
+    /**
+     * Works out the seed of a game from the base seed and the game's number
+     * @param gameNumber The number of the game
+     * @return The seed of the game
+     */
+    public long getGameSeed(long gameNumber) {
+        // SplitMix64 finaliser, so that neighbouring game numbers get unrelated seeds
+        long z = baseSeed + (gameNumber + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays a single headless game with a simulated human player and a bot
+     * @param gameNumber The number of the game, used to work out its seed
+     * @return The result of the game
+     */
+    public GameResult playGame(long gameNumber) {
+        long seed = getGameSeed(gameNumber);
+        Map map = new Map(mapTemplate); // Each game removes gold from its own copy
+        DistanceField goldField = new DistanceField(goldFieldTemplate, map);
+        HumanPlayer humanPlayer = new SimulatedHumanPlayer('P', map, goldField, exitField, seed);
+        BotPlayer botPlayer = new BotPlayer('B', ~seed, pathCache);
+        Game game = new Game(map, humanPlayer, botPlayer, seed);
+        if (journal != null) {
+            game.setJournal(journal);
+        }
+
+        return game.playHeadless(maxRounds);
+    }
+
+    /**
+     * Records every game played from now on to a journal, so they can be replayed by GameReplayer
+     * @param journal The journal to record to
+     */
+    public void setJournal(GameJournal journal) {
+        mapTemplate.getChecksum(); // Calculated once here, so each game's copy of the map already has it
+        this.journal = journal;
+    }
+
+    /**
+     * Plays a range of games and collects their statistics
+     * @param firstGame The number of the first game
+     * @param gameCount The number of games to play
+     * @return The statistics of the games
+     */
+    private Statistics playGames(long firstGame, int gameCount) {
+        Statistics statistics = new Statistics(maxRounds);
+        for (long gameNumber = firstGame; gameNumber < firstGame + gameCount; gameNumber++) {
+            statistics.add(playGame(gameNumber));
+        }
+        return statistics;
+    }
+
+    /**
+     * Plays games on a pool of threads and prints a report of the results
+     * @param gameCount The number of games to play
+     * @param threadCount The number of threads to play games on
+     */
+    public void run(long gameCount, int threadCount) {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Statistics>> tasks = new ArrayList<>();
+        Statistics total = new Statistics(maxRounds);
+        long startTime = System.nanoTime();
+
+        try {
+            // Splits the games into tasks so threads which finish early can take more work
+            for (long firstGame = 0; firstGame < gameCount; firstGame += GAMES_PER_TASK) {
+                long taskFirstGame = firstGame;
+                int taskGameCount = (int) Math.min(GAMES_PER_TASK, gameCount - firstGame);
+                tasks.add(executor.submit(() -> playGames(taskFirstGame, taskGameCount)));
+            }
+            for (Future<Statistics> task : tasks) {
+                total.add(task.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        } finally {
+            executor.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        printReport(total, seconds, threadCount);
+        System.out.printf("Path cache: %d hits, %d misses%n", pathCache.getHits(), pathCache.getMisses());
+    }
+
+    /**
+     * Releases the path cache the runner's bots share, which the map template holds on to until then
+     */
+    public void close() {
+        pathCache.close();
+    }
+
+    /**
+     * Prints the statistics of a run
+     * @param statistics The statistics of all games played
+     * @param seconds The time taken to play the games
+     * @param threadCount The number of threads used
+     */
+    private void printReport(Statistics statistics, double seconds, int threadCount) {
+        System.out.println("Map: " + mapTemplate.getMapName());
+        System.out.printf("Games: %d on %d threads in %.2f s (%.0f games/sec)%n",
+                statistics.games, threadCount, seconds, statistics.games / seconds);
+        for (GameResult.Outcome outcome : GameResult.Outcome.values()) {
+            long count = statistics.outcomeCounts[outcome.ordinal()];
+            System.out.printf("  %-10s %10d (%5.1f%%)%n", outcome, count, 100.0 * count / statistics.games);
+        }
+        System.out.printf("Rounds: mean %.1f, p50 %d, p90 %d, p99 %d, max %d%n",
+                (double) statistics.totalRounds / statistics.games, statistics.roundsPercentile(0.5),
+                statistics.roundsPercentile(0.9), statistics.roundsPercentile(0.99), statistics.roundsPercentile(1.0));
+    }
+
+    /**
+     * Runs a simulation from the command line
+     * @param args The map file path, then optionally the number of games, the number of threads, the round limit, the seed and a journal file to record games to
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: SimulationRunner <map file> [games] [threads] [max rounds] [seed] [journal file]");
+            System.exit(0);
+        }
+        long gameCount = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxRounds = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        SimulationRunner runner = new SimulationRunner(MapTemplateCache.get(args[0]), maxRounds, seed);
+        GameJournal journal = args.length > 5 ? new GameJournal(args[5]) : null;
+        if (journal != null) {
+            runner.setJournal(journal);
+        }
+        runner.run(gameCount, threadCount);
+        runner.close();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class to host many games at once over TCP, with each game played by the ordinary blocking playGame on its own thread
+ * Unlike GameServer, games aren't rewritten around a Selector: each session just reads its socket through streams.
+ * Sessions can run on virtual threads (Java 21 and later), which only hold an operating system thread while a turn is
+ * being played, so mostly idle sessions are cheap. They can also run on a fixed pool of platform threads, where every
+ * session holds a thread for its whole game and sessions beyond the pool's size wait for one to finish
+ */
+public class ThreadedGameServer {
+
+    /**
+     * The number of path steps the shared path cache can hold
+     */
+    private static final int PATH_CACHE_SIZE = 1 << 20;
+    /**
+     * The number of characters each session buffers from its input. Commands are short, and the default buffer of 8192
+     * characters would be most of the memory of an idle session
+     */
+    public static final int INPUT_BUFFER_SIZE = 256;
+
+    /**
+     * The map which every game starts from a copy of
+     */
+    private final Map mapTemplate;
+    /**
+     * Finds paths for the bots of every game. All games are played on copies of the same map, so they share one cache
+     */
+    private final PathCache pathCache;
+    /**
+     * Accepts new connections
+     */
+    private final ServerSocket serverSocket;
+    /**
+     * Runs each session's game
+     */
+    private final ExecutorService sessions;
+    /**
+     * Gives each game a different seed
+     */
+    private long nextSeed;
+    /**
+     * The journal every game is recorded to, or null if games aren't recorded
+     */
+    private GameJournal journal;
+
+    /**
+     * The constructor for ThreadedGameServer. It starts listening straight away, but connections aren't accepted until run is called
+     * @param mapTemplate The map which every game starts from a copy of. It isn't changed by the games
+     * @param port The port to listen on, or 0 for any free port
+     * @param sessions Runs each session's game, e.g. from newSessionExecutor
+     * @throws IOException If the port can't be listened on
+     */
+    public ThreadedGameServer(Map mapTemplate, int port, ExecutorService sessions) throws IOException {
+        this.mapTemplate = mapTemplate.shareTiles(); // Each game's copy then only keeps which of the gold it has picked up
+        this.sessions = sessions;
+        pathCache = new PathCache(mapTemplate, PATH_CACHE_SIZE, PathCache.DEFAULT_MAX_EXPANSIONS);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port), 4096);
+        nextSeed = System.nanoTime();
+    }
+
+    /**
+     * Creates an executor which runs each task on its own thread
+     * Virtual threads need Java 21, but the game is built for Java 11, so they're looked up by reflection
+     * @param virtual Whether to use virtual threads. If they aren't available, this returns null
+     * @param platformThreads The number of threads in the pool, if platform threads are used
+     * @return The executor, or null if virtual threads were asked for but aren't available
+     */
+    public static ExecutorService newSessionExecutor(boolean virtual, int platformThreads) {
+        if (!virtual) {
+            return Executors.newFixedThreadPool(platformThreads);
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null; // Java is older than 21
+        }
+    }
+
+    /**
+     * Records every game started from now on to a journal, so they can be replayed by GameReplayer
+     * @param journal The journal to record to
+     */
+    public void setJournal(GameJournal journal) {
+        mapTemplate.getChecksum(); // Calculated once here, so each game's copy of the map already has it
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the port the server is listening on
+     * @return The port number
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections and starts a session for each, until the server is stopped
+     */
+    public void run() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                long seed = nextSeed++;
+                sessions.execute(() -> playSession(socket, seed));
+            }
+        } catch (IOException e) {
+            // The server socket has been closed by stop
+        } finally {
+            sessions.shutdown();
+            pathCache.close(); // Sessions still running keep using it. The template just stops holding on to it
+        }
+    }
+
+    /**
+     * Stops accepting connections. Sessions already running carry on until their games end
+     */
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // The socket is closed either way
+        }
+    }
+
+    /**
+     * Plays one game over a connection, then closes it
+     * @param socket The connection to the client
+     * @param seed The seed for the game
+     */
+    private void playSession(Socket socket, long seed) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), INPUT_BUFFER_SIZE);
+            PrintStream output = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), true, "UTF-8");
+            Map map = new Map(mapTemplate); // Each game removes gold from its own copy
+            Game game = new Game(map, input, output, pathCache, seed);
+            if (journal != null) {
+                game.setJournal(journal);
+            }
+            game.playGame();
+        } catch (IOException e) {
+            // The client has gone, which only ends this session
+        }
+    }
+
+    /**
+     * Runs a server from the command line
+     * @param args The map file path, then optionally the port, "virtual" or "platform", the size of the platform thread pool and a journal file to record games to
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: ThreadedGameServer <map file> [port] [virtual|platform] [platform threads] [journal file]");
+            System.exit(0);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        boolean virtual = args.length <= 2 || args[2].equals("virtual");
+        int platformThreads = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        ExecutorService sessions = newSessionExecutor(virtual, platformThreads);
+        if (sessions == null) {
+            System.out.println("Virtual threads need Java 21 or later");
+            System.exit(0);
+        }
+        try {
+            ThreadedGameServer server = new ThreadedGameServer(MapTemplateCache.get(args[0]), port, sessions);
+            if (args.length > 4) {
+                server.setJournal(GameJournal.openUntilExit(args[4]));
+            }
+            System.out.println("Listening on port " + server.getPort() + " with " + (virtual ? "virtual threads" : platformThreads + " platform threads"));
+            server.run();
+        } catch (IOException e) {
+            System.out.println(e.toString()); // Prints error message
+            System.exit(0); // Exits program
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Interface for objects which need to know when a map tile is reset, such as when gold is picked up
+ */
+public interface TileListener {
+
+    /**
+     * Called after a tile has been reset to the default character
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param previousChar The character of the tile before it was reset
+     */
+    void tileReset(int xPos, int yPos, char previousChar);
+}
@@ -0,0 +1,106 @@
+/**
+ * Interface for the storage behind a map's tiles
+ * Tiles are stored as 2-bit codes. Positions passed to a store are never out of range, as Map checks them first
+ */
+public interface TileStore {
+
+    /**
+     * The tile code for a floor tile ('.')
+     */
+    int FLOOR = 0;
+    /**
+     * The tile code for a wall tile ('#')
+     */
+    int WALL = 1;
+    /**
+     * The tile code for a gold tile ('G')
+     */
+    int GOLD = 2;
+    /**
+     * The tile code for an exit tile ('E')
+     */
+    int EXIT = 3;
+
+    /**
+     * Gets the code of the tile at the specified position
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The tile code
+     */
+    int getTileCode(int xPos, int yPos);
+
+    /**
+     * Sets the code of the tile at the specified position
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @param tileCode The new code of the tile
+     */
+    void setTileCode(int xPos, int yPos, int tileCode);
+
+    /**
+     * Checks if the tile at the specified position is a wall
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return True if the tile is a wall
+     */
+    default boolean isWall(int xPos, int yPos) {
+        return getTileCode(xPos, yPos) == WALL;
+    }
+
+    /**
+     * Gets the character of the tile at the specified position
+     * @param xPos The horizontal coordinate of the tile
+     * @param yPos The vertical coordinate of the tile
+     * @return The character of the tile
+     */
+    default char getChar(int xPos, int yPos) {
+        return getTileChar(getTileCode(xPos, yPos));
+    }
+
+    /**
+     * Copies the characters of a run of tiles in one row into an array
+     * @param xPos The horizontal coordinate of the first tile
+     * @param yPos The vertical coordinate of the row
+     * @param length The number of tiles to copy
+     * @param dest The array to copy into
+     * @param destPos The position in the array to copy the first character to
+     */
+    default void getChars(int xPos, int yPos, int length, char[] dest, int destPos) {
+        for (int i = 0; i < length; i++) {
+            dest[destPos + i] = getChar(xPos + i, yPos);
+        }
+    }
+
+    /**
+     * Gets the number of tiles in each row
+     * @return The width of the store
+     */
+    int getWidth();
+
+    /**
+     * Gets the number of rows
+     * @return The height of the store
+     */
+    int getHeight();
+
+    /**
+     * Creates a copy of the store, which can be changed without affecting this one
+     * @return The copy
+     */
+    TileStore copy();
+
+    /**
+     * Releases any files held by the store. Stores which don't hold files don't need closing
+     */
+    default void close() {
+    }
+
+    /**
+     * Gets the character a tile code represents
+     * @param tileCode The tile code
+     * @return The character of the tile
+     */
+    static char getTileChar(int tileCode) {
+        return ".#GE".charAt(tileCode); // Characters in order of tile code
+    }
+}
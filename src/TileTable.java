@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * A hash table from tile indexes to ints, using open addressing, for the few tiles of a map something keeps apart from
+ * the rest, such as the distances a DistanceField has changed. It takes memory in proportion to the tiles in it,
+ * rather than the size of the map
+ */
+public class TileTable {
+
+    /**
+     * Marks an empty slot. No tile has this index
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The tile in each slot, or EMPTY
+     */
+    private int[] tiles = new int[16];
+    /**
+     * The value of the tile in each slot
+     */
+    private int[] values = new int[16];
+    /**
+     * The number of tiles in the table
+     */
+    private int size;
+
+    /**
+     * The constructor for TileTable, which starts empty
+     */
+    public TileTable() {
+        Arrays.fill(tiles, EMPTY);
+    }
+
+    /**
+     * The copy constructor for TileTable
+     * @param other The table to copy
+     */
+    public TileTable(TileTable other) {
+        tiles = other.tiles.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * Finds the slot a tile is in, or the empty slot it would go in
+     * @param tile The tile index
+     * @return The slot number
+     */
+    private int find(int tile) {
+        int mask = tiles.length - 1;
+        int hash = tile * 0x9E3779B9; // Spreads neighbouring tiles over the table
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (tiles[slot] != tile && tiles[slot] != EMPTY) {
+            slot = (slot + 1) & mask; // Moves on to the next slot until the tile or a gap is found
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the value of a tile
+     * @param tile The tile index
+     * @param missing The value to return if the tile isn't in the table
+     * @return The value
+     */
+    public int get(int tile, int missing) {
+        if (size == 0) {
+            return missing; // Saves hashing until anything has been added
+        }
+        int slot = find(tile);
+        return tiles[slot] == EMPTY ? missing : values[slot];
+    }
+
+    /**
+     * Sets the value of a tile, adding it to the table if it isn't there
+     * @param tile The tile index, which mustn't be negative
+     * @param value The value
+     */
+    public void put(int tile, int value) {
+        int slot = find(tile);
+        if (tiles[slot] == EMPTY) {
+            if (size * 2 >= tiles.length) { // Doubles the table when half full, so searches stay short
+                grow();
+                slot = find(tile);
+            }
+            tiles[slot] = tile;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Moves every tile into a table twice the size
+     */
+    private void grow() {
+        int[] oldTiles = tiles;
+        int[] oldValues = values;
+        tiles = new int[oldTiles.length * 2];
+        values = new int[oldTiles.length * 2];
+        Arrays.fill(tiles, EMPTY);
+        for (int slot = 0; slot < oldTiles.length; slot++) {
+            if (oldTiles[slot] != EMPTY) {
+                int newSlot = find(oldTiles[slot]);
+                tiles[newSlot] = oldTiles[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    /**
+     * Removes every tile, keeping the table's size
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(tiles, EMPTY);
+            size = 0;
+        }
+    }
+
+    /**
+     * Gets the number of tiles in the table
+     * @return The number of tiles
+     */
+    public int size() {
+        return size;
+    }
+}
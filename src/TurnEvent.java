@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one turn of a game, recorded when instrumentation is on (see GameStats)
+ */
+@Name("dungeon.Turn")
+@Label("Turn")
+@Category("Dungeon of Doom")
+@Description("A player's turn, from its command to its response")
+public class TurnEvent extends Event {
+
+    /**
+     * The type of player which took the turn
+     */
+    @Label("Player")
+    String player;
+    /**
+     * The character of the player which took the turn
+     */
+    @Label("Player Character")
+    char playerChar;
+    /**
+     * The command the player gave, as it would be typed
+     */
+    @Label("Command")
+    String command;
+    /**
+     * Whether the command failed
+     */
+    @Label("Failed")
+    boolean failed;
+}
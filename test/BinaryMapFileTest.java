@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that maps written to binary map files read back with the same tiles, stored as they are or run-length encoded
+ */
+public class BinaryMapFileTest {
+
+    /**
+     * Sizes whose tile counts aren't whole bytes of packed tiles, and rows which don't start on a byte
+     */
+    private static final int[][] SIZES = {{1, 1}, {1, 7}, {3, 5}, {5, 3}, {7, 13}, {17, 3}, {31, 9}, {33, 33}, {130, 7}};
+
+    /**
+     * The directory the files are written to
+     */
+    @TempDir
+    Path directory;
+    /**
+     * The number of files written, so each gets a new name. A file mapped off the heap mustn't be written over
+     */
+    private int fileCount;
+
+    /**
+     * Creates tiles in runs of random lengths, so they can be encoded, or of length 1, so they can't
+     * @param random The source of the tiles
+     * @param width The width of the tiles
+     * @param height The height of the tiles
+     * @param maxRun The longest run of one tile
+     * @return The tiles
+     */
+    private static PackedTileStore randomTiles(Random random, int width, int height, int maxRun) {
+        PackedTileStore tiles = new PackedTileStore(width, height);
+        byte[] row = new byte[width];
+        int code = 0, run = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (run == 0) {
+                    code = random.nextInt(4);
+                    run = 1 + random.nextInt(maxRun);
+                }
+                row[x] = (byte) code;
+                run--;
+            }
+            tiles.addRow(row);
+        }
+        return tiles;
+    }
+
+    /**
+     * Writes tiles to a binary map file and checks they read back the same, on and off the heap
+     * @param tiles The tiles
+     * @param compress Whether to run-length encode the tiles
+     * @return The length of the file
+     */
+    private long roundTrip(PackedTileStore tiles, boolean compress) {
+        String filePath = directory.resolve("map" + fileCount++ + BinaryMapFile.EXTENSION).toString();
+        BinaryMapFile.write(filePath, "Round Trip", 3, tiles, compress);
+        for (boolean offHeap : new boolean[] {false, true}) {
+            BinaryMapFile file = new BinaryMapFile(filePath, offHeap);
+            assertEquals("Round Trip", file.getMapName());
+            assertEquals(3, file.getGoldRequired());
+            TileStore read = file.getTiles();
+            assertEquals(tiles.getWidth(), read.getWidth());
+            assertEquals(tiles.getHeight(), read.getHeight());
+            for (int y = 0; y < tiles.getHeight(); y++) {
+                for (int x = 0; x < tiles.getWidth(); x++) {
+                    assertEquals(tiles.getTileCode(x, y), read.getTileCode(x, y), "tile at " + x + "," + y);
+                    assertEquals(tiles.isWall(x, y), read.isWall(x, y), "wall at " + x + "," + y);
+                }
+            }
+        }
+        return new File(filePath).length();
+    }
+
+    /**
+     * Tiles stored as they are read back the same at every size
+     */
+    @Test
+    public void rawTilesRoundTrip() {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            roundTrip(randomTiles(random, size[0], size[1], 1), false);
+            roundTrip(randomTiles(random, size[0], size[1], 40), false);
+        }
+    }
+
+    /**
+     * Encoded tiles read back the same at every size, and long runs make the file smaller
+     */
+    @Test
+    public void encodedTilesRoundTrip() {
+        Random random = new Random(2);
+        for (int[] size : SIZES) {
+            roundTrip(randomTiles(random, size[0], size[1], 1), true);
+            PackedTileStore runs = randomTiles(random, size[0], size[1], 40);
+            long encodedLength = roundTrip(runs, true);
+            long rawLength = roundTrip(runs, false);
+            assertTrue(encodedLength <= rawLength, "encoded file is larger");
+            if (size[0] * size[1] >= 256) {
+                assertTrue(encodedLength < rawLength, "long runs weren't encoded");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that Command.parse reads lines the way the console game read them, by upper-casing and splitting on spaces
+ */
+public class CommandTest {
+
+    /**
+     * Pieces random lines are made from
+     */
+    private static final String[] PIECES = {"hello", "GOLD", "PickUp", "look", "QUIT", "move", "MOVE", "n", "E", "s",
+            "w", "x", "north", " ", "  ", "pick", "up", "hell", "o", "\t"};
+
+    /**
+     * Parses a line the way the console game did before commands were ints
+     * @param line The line
+     * @return The command
+     */
+    private static int splitParse(String line) {
+        String[] words = line.toUpperCase().split(" ");
+        if (words.length == 1) {
+            switch (words[0]) {
+                case "HELLO":
+                    return Command.HELLO;
+                case "GOLD":
+                    return Command.GOLD;
+                case "PICKUP":
+                    return Command.PICKUP;
+                case "LOOK":
+                    return Command.LOOK;
+                case "QUIT":
+                    return Command.QUIT;
+                default:
+                    return Command.INVALID;
+            }
+        }
+        if (words.length == 2 && words[0].equals("MOVE")) {
+            return Command.move(words[1].length() == 1 ? words[1].charAt(0) : 0);
+        }
+        return Command.INVALID; // Including lines of only spaces, which split into no words
+    }
+
+    /**
+     * Checks every way of parsing a line against the split rules, with the line between other text
+     * @param line The line
+     */
+    private static void assertParsedLikeSplit(String line) {
+        int expected = splitParse(line);
+        assertEquals(expected, Command.parse(line), "[" + line + "]");
+        String text = "xx" + line + "\n";
+        int end = 2 + line.length();
+        assertEquals(expected, Command.parse(text, 2, end), "[" + line + "] in text");
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(expected, Command.parse(bytes, 2, end), "[" + line + "] in bytes");
+        assertEquals(expected, Command.parse(ByteBuffer.wrap(bytes), 2, end), "[" + line + "] in a buffer");
+    }
+
+    /**
+     * Lines which the split rules treat specially
+     */
+    @Test
+    public void edgeCases() {
+        String[] lines = {"", " ", "   ", "hello", "HELLO  ", " HELLO", "MOVE", "MOVE ", "move n", "MOVE N  ", "MOVE  N",
+                " MOVE N", "MOVE N S", "MOVE NORTH", "MOVE X", "MOVEN", "PICKUPS", "PICK UP", "look\t"};
+        for (String line : lines) {
+            assertParsedLikeSplit(line);
+        }
+        assertEquals(Command.move('N'), Command.parse("move n"));
+        assertEquals(Command.INVALID, Command.parse(" "));
+    }
+
+    /**
+     * Random lines of command words, letters and spaces
+     */
+    @Test
+    public void randomLines() {
+        Random random = new Random(1);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            line.setLength(0);
+            int pieces = random.nextInt(5);
+            for (int j = 0; j < pieces; j++) {
+                line.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            assertParsedLikeSplit(line.toString());
+        }
+    }
+}
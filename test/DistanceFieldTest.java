@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a DistanceField updated as tiles are reset has the same distances as a field built afresh on the new map
+ */
+public class DistanceFieldTest {
+
+    /**
+     * Creates a map of random floor, walls and gold, walled in at its edges
+     * @param random The source of the tiles
+     * @param width The width of the map
+     * @param height The height of the map
+     * @return The map
+     */
+    private static Map randomMap(Random random, int width, int height) {
+        PackedTileStore tiles = new PackedTileStore(width, height);
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean edge = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                int roll = random.nextInt(100);
+                row[x] = (byte) (edge || roll < 30 ? TileStore.WALL : roll < 36 ? TileStore.GOLD : TileStore.FLOOR);
+            }
+            tiles.addRow(row);
+        }
+        return new Map("Test", 1, tiles);
+    }
+
+    /**
+     * Resets a random gold or inner wall tile, if the random tile is one
+     * @param random The source of the tile
+     * @param map The map to change
+     */
+    private static void resetRandomTile(Random random, Map map) {
+        int x = 1 + random.nextInt(map.getMapWidth() - 2);
+        int y = 1 + random.nextInt(map.getMapHeight() - 2);
+        map.resetCharAtPos(x, y);
+    }
+
+    /**
+     * Checks every distance of a field against a field built afresh on its map
+     * @param field The updated field
+     * @param map The map the field covers
+     */
+    private static void assertSameAsRebuilt(DistanceField field, Map map) {
+        DistanceField rebuilt = new DistanceField(map, 'G');
+        for (int y = 0; y < map.getMapHeight(); y++) {
+            for (int x = 0; x < map.getMapWidth(); x++) {
+                assertEquals(rebuilt.getDistance(x, y), field.getDistance(x, y), "distance at " + x + "," + y);
+            }
+        }
+    }
+
+    /**
+     * Picking up gold and knocking down walls in any order leaves the same distances as a rebuild
+     */
+    @Test
+    public void updatesMatchRebuild() {
+        Random random = new Random(1);
+        for (int trial = 0; trial < 20; trial++) {
+            Map map = randomMap(random, 5 + random.nextInt(30), 5 + random.nextInt(30));
+            DistanceField field = new DistanceField(map, 'G');
+            map.addTileListener(field);
+            for (int step = 0; step < 60; step++) {
+                resetRandomTile(random, map);
+                assertSameAsRebuilt(field, map);
+            }
+        }
+    }
+
+    /**
+     * A copy of a field follows its own map, and leaves the field it was copied from unchanged
+     */
+    @Test
+    public void copiesUpdateSeparately() {
+        Random random = new Random(2);
+        Map map = randomMap(random, 31, 23);
+        DistanceField field = new DistanceField(map, 'G');
+        map.addTileListener(field);
+        for (int step = 0; step < 40; step++) {
+            resetRandomTile(random, map);
+        }
+
+        Map copy = new Map(map);
+        DistanceField copyField = new DistanceField(field, copy);
+        copy.addTileListener(copyField);
+        for (int step = 0; step < 200; step++) {
+            resetRandomTile(random, copy);
+        }
+        assertSameAsRebuilt(copyField, copy);
+        assertSameAsRebuilt(field, map);
+    }
+}
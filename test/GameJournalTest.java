@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that games recorded to a journal end the same way when GameReplayer replays them
+ */
+public class GameJournalTest {
+
+    /**
+     * The directory the journal is written to
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Records simulated games, including ones stopped by the round limit, and replays them
+     * @param mapFilePath The path of the map file the games are played on
+     */
+    private void recordAndReplay(String mapFilePath) {
+        String journalFilePath = directory.resolve("games.jnl").toString();
+        Map map = Map.load(mapFilePath);
+        int gameCount = 300;
+        SimulationRunner runner = new SimulationRunner(map, 200, 42);
+        GameJournal journal = new GameJournal(journalFilePath);
+        runner.setJournal(journal);
+        for (int gameNumber = 0; gameNumber < gameCount; gameNumber++) {
+            runner.playGame(gameNumber);
+        }
+        journal.close();
+        runner.close();
+
+        GameReplayer replayer = new GameReplayer(Map.load(mapFilePath));
+        replayer.replay(journalFilePath);
+        assertEquals(0, replayer.getDifferentGames());
+        assertEquals(gameCount, replayer.getMatchedGames());
+    }
+
+    /**
+     * Games on the small example map replay the same
+     */
+    @Test
+    public void smallMapGamesReplay() {
+        recordAndReplay("small_example_map.txt");
+    }
+
+    /**
+     * Games on the medium example map replay the same
+     */
+    @Test
+    public void mediumMapGamesReplay() {
+        recordAndReplay("medium_example_map.txt");
+    }
+}